@@ -1,30 +1,67 @@
 package com.mcp.cicd;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mcp.core.Env;
+import com.mcp.core.JsonRpcDispatcher;
+import com.mcp.core.JsonRpcRequest;
+import com.mcp.core.JsonRpcWriter;
+import com.mcp.core.ToolRegistry;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.net.http.HttpClient;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.mcp.core.McpMessages.createParam;
+import static com.mcp.core.McpMessages.createProgress;
+import static com.mcp.core.McpMessages.createTool;
+import static com.mcp.core.McpMessages.createToolResponse;
 
 public class CicdMcpServer {
-    private final HttpClient httpClient;
+    private static final int MAX_PER_PAGE = 100;
+    private static final int DEFAULT_MAX_ITEMS = 1000;
+    private static final int DEFAULT_BATCH_CONCURRENCY = 8;
+    private static final int DEFAULT_LOG_TAIL = 100;
+    private static final Pattern LINK = Pattern.compile("<([^>]+)>;\\s*rel=\"(\\w+)\"");
+    private static final Pattern PAGE = Pattern.compile("[?&]page=(\\d+)");
+
+    private final GitHubClient github;
+    private final RunDownloader downloader;
+    private final int pageConcurrency;
     private final ObjectMapper mapper;
+    private final ToolRegistry toolRegistry;
     private final String githubToken;
-    private final String baseUrl = "https://api.github.com";
+    private final String baseUrl;
+    private JsonRpcWriter writer;
 
     public CicdMcpServer() {
-        this.httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
+        // GitHub Enterprise Server exposes the same API under its own host
+        this(System.getenv("GITHUB_API_URL"), System.getenv("GITHUB_TOKEN"));
+    }
+
+    CicdMcpServer(String apiUrl, String githubToken) {
+        this.pageConcurrency = Env.getInt("GITHUB_PAGE_CONCURRENCY", 4, 1);
         this.mapper = new ObjectMapper();
-        this.githubToken = System.getenv("GITHUB_TOKEN");
+        this.toolRegistry = new ToolRegistry(mapper, "cicd-mcp-server", "1.0.0");
+        this.toolRegistry.registerAll(createTools());
+        this.githubToken = githubToken;
+        this.baseUrl = apiUrl == null || apiUrl.isBlank() ? "https://api.github.com" : apiUrl.replaceAll("/+$", "");
+        this.github = new GitHubClient(mapper, githubToken, GitHubResponseCache.fromEnv());
+        this.downloader = new RunDownloader(github);
         System.err.println("CI/CD MCP Server initialized");
     }
 
@@ -34,29 +71,11 @@ public class CicdMcpServer {
 
     private void run() {
         System.err.println("Starting MCP server main loop...");
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.err.println("Received request: " + line);
-                try {
-                    JsonNode request = mapper.readTree(line);
-                    JsonNode response = handleRequest(request);
-                    
-                    // Only send response if it's not null (notifications don't need responses)
-                    if (response != null) {
-                        String responseStr = mapper.writeValueAsString(response);
-                        System.err.println("Sending response: " + responseStr);
-                        System.out.println(responseStr);
-                        System.out.flush();
-                    }
-                } catch (Exception e) {
-                    System.err.println("Parse error: " + e.getMessage());
-                    e.printStackTrace();
-                    ObjectNode errorResponse = createErrorResponse(null, -32700, "Parse error: " + e.getMessage());
-                    System.out.println(mapper.writeValueAsString(errorResponse));
-                    System.out.flush();
-                }
-            }
+        try {
+            writer = new JsonRpcWriter(System.out, mapper);
+            JsonRpcDispatcher dispatcher = JsonRpcDispatcher.forAsyncHandler(mapper, this::handleRequest,
+                writer, toolRegistry, JsonRpcDispatcher.maxInFlightFromEnv());
+            dispatcher.run(System.in);
             System.err.println("Input stream closed, exiting...");
         } catch (Exception e) {
             System.err.println("Fatal error in main loop: " + e.getMessage());
@@ -64,58 +83,28 @@ public class CicdMcpServer {
         }
     }
 
-    private JsonNode handleRequest(JsonNode request) {
-        String method = request.get("method").asText();
-        JsonNode id = request.get("id");
-        
-        try {
-            JsonNode result = switch (method) {
-                case "initialize" -> handleInitialize();
-                case "initialized" -> handleInitialized();
-                case "tools/list" -> handleToolsList();
-                case "tools/call" -> handleToolCall(request.get("params"));
-                default -> throw new RuntimeException("Unknown method: " + method);
-            };
-            
-            return result != null ? createSuccessResponse(id, result) : null;
-        } catch (Exception e) {
-            System.err.println("Error handling request: " + e.getMessage());
-            return createErrorResponse(id, -32603, "Internal error: " + e.getMessage());
-        }
-    }
-
-    private JsonNode handleInitialize() {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("protocolVersion", "2024-11-05");
-        
-        ObjectNode capabilities = mapper.createObjectNode();
-        ObjectNode tools = mapper.createObjectNode();
-        tools.put("listChanged", false);
-        capabilities.set("tools", tools);
-        response.set("capabilities", capabilities);
-        
-        ObjectNode serverInfo = mapper.createObjectNode();
-        serverInfo.put("name", "cicd-mcp-server");
-        serverInfo.put("version", "1.0.0");
-        response.set("serverInfo", serverInfo);
-        
-        System.err.println("MCP Server initialized successfully");
-        return response;
+    private CompletableFuture<JsonNode> handleRequest(JsonRpcRequest request) {
+        return switch (request.method()) {
+            case "initialized" -> handleInitialized();
+            case "tools/call" -> handleToolCall(request.params());
+            default -> throw new RuntimeException("Unknown method: " + request.method());
+        };
     }
 
-    private JsonNode handleInitialized() {
+    private CompletableFuture<JsonNode> handleInitialized() {
         // This is a notification, no response needed
         System.err.println("MCP Server initialization completed");
-        return null;
+        return CompletableFuture.completedFuture(null);
     }
 
-    private JsonNode handleToolsList() {
+    private ArrayNode createTools() {
         ArrayNode tools = mapper.createArrayNode();
         
         tools.add(createTool("health_check", "Check GitHub API connectivity"));
         tools.add(createTool("list_workflows", "List workflows in repository",
             createParam("owner", "string", "Repository owner", true),
-            createParam("repo", "string", "Repository name", true)));
+            createParam("repo", "string", "Repository name", true),
+            createParam("max_items", "number", "Maximum workflows to return (default " + DEFAULT_MAX_ITEMS + ")", false)));
         tools.add(createTool("trigger_workflow", "Trigger workflow run",
             createParam("owner", "string", "Repository owner", true),
             createParam("repo", "string", "Repository name", true),
@@ -124,26 +113,49 @@ public class CicdMcpServer {
         tools.add(createTool("get_workflow_runs", "Get workflow run history",
             createParam("owner", "string", "Repository owner", true),
             createParam("repo", "string", "Repository name", true),
-            createParam("workflow_id", "string", "Workflow ID (optional)", false)));
+            createParam("workflow_id", "string", "Workflow ID (optional)", false),
+            createParam("max_items", "number", "Maximum runs to return, newest first (default " + DEFAULT_MAX_ITEMS + ")", false)));
         tools.add(createTool("get_run_status", "Get specific run status",
             createParam("owner", "string", "Repository owner", true),
             createParam("repo", "string", "Repository name", true),
             createParam("run_id", "string", "Run ID", true)));
+        tools.add(createTool("get_runs_status", "Get the status of many runs at once",
+            createParam("owner", "string", "Repository owner", true),
+            createParam("repo", "string", "Repository name", true),
+            createParam("run_ids", "array", "Run IDs", true),
+            createParam("concurrency", "number", "Runs fetched in parallel (default " + DEFAULT_BATCH_CONCURRENCY + ")", false)));
         tools.add(createTool("get_run_artifacts", "Get run artifacts",
             createParam("owner", "string", "Repository owner", true),
             createParam("repo", "string", "Repository name", true),
-            createParam("run_id", "string", "Run ID", true)));
+            createParam("run_id", "string", "Run ID", true),
+            createParam("max_items", "number", "Maximum artifacts to return (default " + DEFAULT_MAX_ITEMS + ")", false)));
+        tools.add(createTool("download_run_logs", "Stream a run's log archive (zip) to a local file or s3://bucket/key",
+            createParam("owner", "string", "Repository owner", true),
+            createParam("repo", "string", "Repository name", true),
+            createParam("run_id", "string", "Run ID", true),
+            createParam("destination", "string", "Local path or s3://bucket/key", true),
+            createParam("resume", "boolean", "Continue a partial local download from its current size", false)));
+        tools.add(createTool("download_artifact", "Stream an artifact archive (zip) to a local file or s3://bucket/key",
+            createParam("owner", "string", "Repository owner", true),
+            createParam("repo", "string", "Repository name", true),
+            createParam("artifact_id", "string", "Artifact ID", true),
+            createParam("destination", "string", "Local path or s3://bucket/key", true),
+            createParam("resume", "boolean", "Continue a partial local download from its current size", false)));
+        tools.add(createTool("get_job_logs", "Read a job's log, keeping the last lines that match",
+            createParam("owner", "string", "Repository owner", true),
+            createParam("repo", "string", "Repository name", true),
+            createParam("job_id", "string", "Job ID", true),
+            createParam("tail", "number", "Lines to return from the end (default " + DEFAULT_LOG_TAIL + ")", false),
+            createParam("grep", "string", "Only keep lines matching this regular expression", false)));
         tools.add(createTool("cancel_workflow_run", "Cancel workflow run",
             createParam("owner", "string", "Repository owner", true),
             createParam("repo", "string", "Repository name", true),
             createParam("run_id", "string", "Run ID", true)));
         
-        ObjectNode response = mapper.createObjectNode();
-        response.set("tools", tools);
-        return response;
+        return tools;
     }
 
-    private JsonNode handleToolCall(JsonNode params) {
+    CompletableFuture<JsonNode> handleToolCall(JsonNode params) {
         String name = params.get("name").asText();
         JsonNode arguments = params.get("arguments");
         
@@ -151,7 +163,8 @@ public class CicdMcpServer {
             case "health_check" -> healthCheck();
             case "list_workflows" -> listWorkflows(
                 arguments.get("owner").asText(),
-                arguments.get("repo").asText());
+                arguments.get("repo").asText(),
+                maxItems(arguments));
             case "trigger_workflow" -> triggerWorkflow(
                 arguments.get("owner").asText(),
                 arguments.get("repo").asText(),
@@ -160,15 +173,41 @@ public class CicdMcpServer {
             case "get_workflow_runs" -> getWorkflowRuns(
                 arguments.get("owner").asText(),
                 arguments.get("repo").asText(),
-                arguments.has("workflow_id") ? arguments.get("workflow_id").asText() : null);
+                arguments.has("workflow_id") ? arguments.get("workflow_id").asText() : null,
+                maxItems(arguments));
             case "get_run_status" -> getRunStatus(
                 arguments.get("owner").asText(),
                 arguments.get("repo").asText(),
                 arguments.get("run_id").asText());
+            case "get_runs_status" -> getRunsStatus(
+                arguments.get("owner").asText(),
+                arguments.get("repo").asText(),
+                arguments.get("run_ids"),
+                arguments.has("concurrency") ? arguments.get("concurrency").asInt() : DEFAULT_BATCH_CONCURRENCY,
+                params.path("_meta").get("progressToken"));
             case "get_run_artifacts" -> getRunArtifacts(
                 arguments.get("owner").asText(),
                 arguments.get("repo").asText(),
-                arguments.get("run_id").asText());
+                arguments.get("run_id").asText(),
+                maxItems(arguments));
+            case "download_run_logs" -> download(
+                String.format("%s/repos/%s/%s/actions/runs/%s/logs", baseUrl, arguments.get("owner").asText(),
+                    arguments.get("repo").asText(), arguments.get("run_id").asText()),
+                arguments.get("destination").asText(),
+                arguments.path("resume").asBoolean(false),
+                "Failed to download run logs");
+            case "download_artifact" -> download(
+                String.format("%s/repos/%s/%s/actions/artifacts/%s/zip", baseUrl, arguments.get("owner").asText(),
+                    arguments.get("repo").asText(), arguments.get("artifact_id").asText()),
+                arguments.get("destination").asText(),
+                arguments.path("resume").asBoolean(false),
+                "Failed to download artifact");
+            case "get_job_logs" -> getJobLogs(
+                arguments.get("owner").asText(),
+                arguments.get("repo").asText(),
+                arguments.get("job_id").asText(),
+                arguments.has("tail") ? arguments.get("tail").asInt() : DEFAULT_LOG_TAIL,
+                arguments.has("grep") ? arguments.get("grep").asText() : null);
             case "cancel_workflow_run" -> cancelWorkflowRun(
                 arguments.get("owner").asText(),
                 arguments.get("repo").asText(),
@@ -177,260 +216,386 @@ public class CicdMcpServer {
         };
     }
 
-    private JsonNode healthCheck() {
+    private CompletableFuture<JsonNode> healthCheck() {
         if (githubToken == null || githubToken.isEmpty()) {
-            return createToolResponse("text", "❌ GitHub token not configured. Set GITHUB_TOKEN environment variable.");
+            return CompletableFuture.completedFuture(
+                createToolResponse("text", "❌ GitHub token not configured. Set GITHUB_TOKEN environment variable."));
         }
         
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/user"))
-                .header("Authorization", "Bearer " + githubToken)
-                .header("Accept", "application/vnd.github.v3+json")
-                .GET()
-                .build();
-            
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() == 200) {
-                JsonNode user = mapper.readTree(response.body());
-                return createToolResponse("text", "✅ GitHub API connected successfully! User: " + user.get("login").asText());
-            } else {
-                return createToolResponse("text", "❌ GitHub API authentication failed. Status: " + response.statusCode());
-            }
-        } catch (Exception e) {
-            return createToolResponse("text", "❌ GitHub API connection failed: " + e.getMessage());
-        }
+        return attempt(() -> github.send(github.request(baseUrl + "/user").GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> {
+                if (response.statusCode() == 200) {
+                    JsonNode user = github.readTree(response.body());
+                    return createToolResponse("text", "✅ GitHub API connected successfully! User: " + user.get("login").asText());
+                } else {
+                    return createToolResponse("text", "❌ GitHub API authentication failed. Status: " + response.statusCode());
+                }
+            }), "❌ GitHub API connection failed");
     }
 
-    private JsonNode listWorkflows(String owner, String repo) {
-        try {
-            String url = String.format("%s/repos/%s/%s/actions/workflows", baseUrl, owner, repo);
-            JsonNode response = makeGitHubRequest(url);
-            
-            ArrayNode workflows = mapper.createArrayNode();
-            for (JsonNode workflow : response.get("workflows")) {
-                ObjectNode wf = mapper.createObjectNode();
-                wf.put("id", workflow.get("id").asText());
-                wf.put("name", workflow.get("name").asText());
-                wf.put("path", workflow.get("path").asText());
-                wf.put("state", workflow.get("state").asText());
-                workflows.add(wf);
-            }
-            
-            return createToolResponse("text", mapper.writeValueAsString(workflows));
-        } catch (Exception e) {
-            return createToolResponse("text", "Failed to list workflows: " + e.getMessage());
-        }
+    private CompletableFuture<JsonNode> listWorkflows(String owner, String repo, int maxItems) {
+        String url = String.format("%s/repos/%s/%s/actions/workflows", baseUrl, owner, repo);
+        
+        return attempt(() -> paginate(url, "workflows", maxItems, workflow -> {
+            ObjectNode wf = mapper.createObjectNode();
+            wf.put("id", workflow.get("id").asText());
+            wf.put("name", workflow.get("name").asText());
+            wf.put("path", workflow.get("path").asText());
+            wf.put("state", workflow.get("state").asText());
+            return wf;
+        }), "Failed to list workflows");
     }
 
-    private JsonNode triggerWorkflow(String owner, String repo, String workflowId, String ref) {
-        try {
-            String url = String.format("%s/repos/%s/%s/actions/workflows/%s/dispatches", baseUrl, owner, repo, workflowId);
-            
+    private CompletableFuture<JsonNode> triggerWorkflow(String owner, String repo, String workflowId, String ref) {
+        String url = String.format("%s/repos/%s/%s/actions/workflows/%s/dispatches", baseUrl, owner, repo, workflowId);
+        
+        return attempt(() -> {
             ObjectNode payload = mapper.createObjectNode();
             payload.put("ref", ref);
             
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("Authorization", "Bearer " + githubToken)
-                .header("Accept", "application/vnd.github.v3+json")
+            HttpRequest request = github.request(url)
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(payload)))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(payload)))
                 .build();
             
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() == 204) {
-                return createToolResponse("text", "✅ Workflow triggered successfully");
-            } else {
-                return createToolResponse("text", "Failed to trigger workflow. Status: " + response.statusCode());
-            }
-        } catch (Exception e) {
-            return createToolResponse("text", "Failed to trigger workflow: " + e.getMessage());
-        }
+            return github.send(request, HttpResponse.BodyHandlers.discarding()).thenApply(response -> {
+                if (response.statusCode() == 204) {
+                    return createToolResponse("text", "✅ Workflow triggered successfully");
+                } else {
+                    return createToolResponse("text", "Failed to trigger workflow. Status: " + response.statusCode());
+                }
+            });
+        }, "Failed to trigger workflow");
     }
 
-    private JsonNode getWorkflowRuns(String owner, String repo, String workflowId) {
-        try {
-            String url = workflowId != null 
-                ? String.format("%s/repos/%s/%s/actions/workflows/%s/runs", baseUrl, owner, repo, workflowId)
-                : String.format("%s/repos/%s/%s/actions/runs", baseUrl, owner, repo);
-            
-            JsonNode response = makeGitHubRequest(url);
-            
-            ArrayNode runs = mapper.createArrayNode();
-            for (JsonNode run : response.get("workflow_runs")) {
-                ObjectNode runObj = mapper.createObjectNode();
-                runObj.put("id", run.get("id").asText());
-                runObj.put("name", run.get("name").asText());
-                runObj.put("status", run.get("status").asText());
-                runObj.put("conclusion", run.has("conclusion") ? run.get("conclusion").asText() : "");
-                runObj.put("created_at", run.get("created_at").asText());
-                runObj.put("html_url", run.get("html_url").asText());
-                runs.add(runObj);
-            }
-            
-            return createToolResponse("text", mapper.writeValueAsString(runs));
-        } catch (Exception e) {
-            return createToolResponse("text", "Failed to get workflow runs: " + e.getMessage());
-        }
+    private CompletableFuture<JsonNode> getWorkflowRuns(String owner, String repo, String workflowId, int maxItems) {
+        String url = workflowId != null 
+            ? String.format("%s/repos/%s/%s/actions/workflows/%s/runs", baseUrl, owner, repo, workflowId)
+            : String.format("%s/repos/%s/%s/actions/runs", baseUrl, owner, repo);
+        
+        return attempt(() -> paginate(url, "workflow_runs", maxItems, run -> {
+            ObjectNode runObj = mapper.createObjectNode();
+            runObj.put("id", run.get("id").asText());
+            runObj.put("name", run.get("name").asText());
+            runObj.put("status", run.get("status").asText());
+            runObj.put("conclusion", run.has("conclusion") ? run.get("conclusion").asText() : "");
+            runObj.put("created_at", run.get("created_at").asText());
+            runObj.put("html_url", run.get("html_url").asText());
+            return runObj;
+        }), "Failed to get workflow runs");
     }
 
-    private JsonNode getRunStatus(String owner, String repo, String runId) {
-        try {
-            String url = String.format("%s/repos/%s/%s/actions/runs/%s", baseUrl, owner, repo, runId);
-            JsonNode run = makeGitHubRequest(url);
-            
-            ObjectNode status = mapper.createObjectNode();
-            status.put("id", run.get("id").asText());
-            status.put("name", run.get("name").asText());
-            status.put("status", run.get("status").asText());
-            status.put("conclusion", run.has("conclusion") ? run.get("conclusion").asText() : "");
-            status.put("created_at", run.get("created_at").asText());
-            status.put("updated_at", run.get("updated_at").asText());
-            status.put("html_url", run.get("html_url").asText());
-            
-            return createToolResponse("text", mapper.writeValueAsString(status));
-        } catch (Exception e) {
-            return createToolResponse("text", "Failed to get run status: " + e.getMessage());
-        }
+    private CompletableFuture<JsonNode> getRunStatus(String owner, String repo, String runId) {
+        String url = String.format("%s/repos/%s/%s/actions/runs/%s", baseUrl, owner, repo, runId);
+        
+        return attempt(() -> github.getJson(url).thenApply(run ->
+            createToolResponse("text", runStatus(run).toString())), "Failed to get run status");
     }
 
-    private JsonNode getRunArtifacts(String owner, String repo, String runId) {
-        try {
-            String url = String.format("%s/repos/%s/%s/actions/runs/%s/artifacts", baseUrl, owner, repo, runId);
-            JsonNode response = makeGitHubRequest(url);
+    /**
+     * Fetches each run in {@code runIds} with {@code concurrency} requests in flight. Every finished run is
+     * reported as a progress notification carrying its status; the response lists all runs in the order asked,
+     * with an {@code error} in place of the status for runs that could not be read.
+     */
+    private CompletableFuture<JsonNode> getRunsStatus(String owner, String repo, JsonNode runIds, int concurrency,
+                                                      JsonNode progressToken) {
+        return attempt(() -> {
+            if (runIds == null || !runIds.isArray()) {
+                throw new IllegalArgumentException("run_ids must be an array of run IDs");
+            }
+            ObjectNode[] results = new ObjectNode[runIds.size()];
+            AtomicInteger next = new AtomicInteger();
+            AtomicInteger done = new AtomicInteger();
             
-            ArrayNode artifacts = mapper.createArrayNode();
-            for (JsonNode artifact : response.get("artifacts")) {
-                ObjectNode art = mapper.createObjectNode();
-                art.put("id", artifact.get("id").asText());
-                art.put("name", artifact.get("name").asText());
-                art.put("size_in_bytes", artifact.get("size_in_bytes").asLong());
-                art.put("created_at", artifact.get("created_at").asText());
-                art.put("download_url", artifact.get("archive_download_url").asText());
-                artifacts.add(art);
+            class Lane {
+                CompletableFuture<Void> next() {
+                    int index = next.getAndIncrement();
+                    if (index >= results.length) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    String runId = runIds.get(index).asText();
+                    String url = String.format("%s/repos/%s/%s/actions/runs/%s", baseUrl, owner, repo, runId);
+                    return github.getJson(url).thenApply(run -> runStatus(run)).exceptionally(error -> {
+                        ObjectNode failure = mapper.createObjectNode();
+                        failure.put("id", runId);
+                        failure.put("error", cause(error).getMessage());
+                        return failure;
+                    }).thenCompose(result -> {
+                        // Progress must only ever increase
+                        synchronized (results) {
+                            results[index] = result;
+                            reportProgress(progressToken, done.incrementAndGet(), results.length, result);
+                        }
+                        return next();
+                    });
+                }
             }
             
-            return createToolResponse("text", mapper.writeValueAsString(artifacts));
-        } catch (Exception e) {
-            return createToolResponse("text", "Failed to get artifacts: " + e.getMessage());
-        }
+            CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.max(1, Math.min(concurrency, results.length))];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new Lane().next();
+            }
+            return CompletableFuture.allOf(lanes).thenApply(ignored -> {
+                ArrayNode runs = mapper.createArrayNode();
+                int failed = 0;
+                for (ObjectNode result : results) {
+                    runs.add(result);
+                    failed += result.has("error") ? 1 : 0;
+                }
+                JsonNode response = createToolResponse("text", runs.toString());
+                ((ArrayNode) response.get("content")).addObject()
+                    .put("type", "text")
+                    .put("text", mapper.createObjectNode().put("count", results.length).put("failed", failed).toString());
+                return response;
+            });
+        }, "Failed to get runs status");
+    }
+
+    private ObjectNode runStatus(JsonNode run) {
+        ObjectNode status = mapper.createObjectNode();
+        status.put("id", run.get("id").asText());
+        status.put("name", run.get("name").asText());
+        status.put("status", run.get("status").asText());
+        status.put("conclusion", run.has("conclusion") ? run.get("conclusion").asText() : "");
+        status.put("created_at", run.get("created_at").asText());
+        status.put("updated_at", run.get("updated_at").asText());
+        status.put("html_url", run.get("html_url").asText());
+        return status;
     }
 
-    private JsonNode cancelWorkflowRun(String owner, String repo, String runId) {
+    /**
+     * Sends a {@code notifications/progress} for a tool call that asked for it, with {@code result} as the
+     * message.
+     */
+    private void reportProgress(JsonNode progressToken, long progress, long total, JsonNode result) {
+        if (progressToken == null || writer == null) {
+            return;
+        }
         try {
-            String url = String.format("%s/repos/%s/%s/actions/runs/%s/cancel", baseUrl, owner, repo, runId);
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("Authorization", "Bearer " + githubToken)
-                .header("Accept", "application/vnd.github.v3+json")
-                .POST(HttpRequest.BodyPublishers.noBody())
-                .build();
-            
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() == 202) {
-                return createToolResponse("text", "✅ Workflow run cancelled successfully");
-            } else {
-                return createToolResponse("text", "Failed to cancel run. Status: " + response.statusCode());
-            }
-        } catch (Exception e) {
-            return createToolResponse("text", "Failed to cancel run: " + e.getMessage());
+            writer.writeNotification("notifications/progress",
+                createProgress(progressToken, progress, total).put("message", result.toString()));
+        } catch (IOException e) {
+            System.err.println("Failed to send progress: " + e.getMessage());
         }
     }
 
-    private JsonNode makeGitHubRequest(String url) throws Exception {
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(url))
-            .header("Authorization", "Bearer " + githubToken)
-            .header("Accept", "application/vnd.github.v3+json")
-            .GET()
-            .build();
+    private CompletableFuture<JsonNode> getRunArtifacts(String owner, String repo, String runId, int maxItems) {
+        String url = String.format("%s/repos/%s/%s/actions/runs/%s/artifacts", baseUrl, owner, repo, runId);
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("GitHub API error: " + response.statusCode());
-        }
+        return attempt(() -> paginate(url, "artifacts", maxItems, artifact -> {
+            ObjectNode art = mapper.createObjectNode();
+            art.put("id", artifact.get("id").asText());
+            art.put("name", artifact.get("name").asText());
+            art.put("size_in_bytes", artifact.get("size_in_bytes").asLong());
+            art.put("created_at", artifact.get("created_at").asText());
+            art.put("download_url", artifact.get("archive_download_url").asText());
+            return art;
+        }), "Failed to get artifacts");
+    }
+
+    private CompletableFuture<JsonNode> download(String url, String destination, boolean resume, String failure) {
+        return attempt(() -> downloader.download(url, destination, resume).thenApply(result -> {
+            ObjectNode saved = mapper.createObjectNode();
+            saved.put("destination", result.destination());
+            saved.put("bytes", result.bytes());
+            saved.put("resumed", result.resumed());
+            return createToolResponse("text", saved.toString());
+        }), failure);
+    }
+
+    private CompletableFuture<JsonNode> getJobLogs(String owner, String repo, String jobId, int tail, String grep) {
+        String url = String.format("%s/repos/%s/%s/actions/jobs/%s/logs", baseUrl, owner, repo, jobId);
         
-        return mapper.readTree(response.body());
+        return attempt(() -> downloader.lines(url, grep == null ? null : Pattern.compile(grep), tail)
+            .thenApply(lines -> {
+                JsonNode response = createToolResponse("text", String.join("\n", lines.lines()));
+                ObjectNode info = mapper.createObjectNode();
+                info.put("lines", lines.total());
+                info.put("matched", lines.matched());
+                info.put("returned", lines.lines().size());
+                ((ArrayNode) response.get("content")).addObject()
+                    .put("type", "text")
+                    .put("text", info.toString());
+                return response;
+            }), "Failed to get job logs");
     }
 
-    private ObjectNode createTool(String name, String description, ObjectNode... params) {
-        ObjectNode tool = mapper.createObjectNode();
-        tool.put("name", name);
-        tool.put("description", description);
+    private CompletableFuture<JsonNode> cancelWorkflowRun(String owner, String repo, String runId) {
+        String url = String.format("%s/repos/%s/%s/actions/runs/%s/cancel", baseUrl, owner, repo, runId);
         
-        ObjectNode inputSchema = mapper.createObjectNode();
-        inputSchema.put("type", "object");
+        return attempt(() -> github.send(github.request(url).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.discarding())
+            .thenApply(response -> {
+                if (response.statusCode() == 202) {
+                    return createToolResponse("text", "✅ Workflow run cancelled successfully");
+                } else {
+                    return createToolResponse("text", "Failed to cancel run. Status: " + response.statusCode());
+                }
+            }), "Failed to cancel run");
+    }
+
+    /**
+     * Returns up to {@code maxItems} entries of a paginated list, projected by {@code project}. The first page
+     * tells how many pages there are (the Link header's last page, or {@code total_count}); the rest are fetched
+     * {@code GITHUB_PAGE_CONCURRENCY} at a time and written out in order. A second content block reports the
+     * count, GitHub's total and whether the list was cut short.
+     */
+    private CompletableFuture<JsonNode> paginate(String url, String field, int maxItems,
+                                                 Function<JsonNode, ObjectNode> project) {
+        int limit = Math.max(1, maxItems);
+        int perPage = Math.min(MAX_PER_PAGE, limit);
+        int wantedPages = (limit + perPage - 1) / perPage;
         
-        ObjectNode properties = mapper.createObjectNode();
-        ArrayNode required = mapper.createArrayNode();
+        return github.get(pageUrl(url, perPage, 1)).thenCompose(first -> {
+            JsonNode firstBody = github.readTree(first.body());
+            long totalCount = firstBody.path("total_count").asLong(-1);
+            String next = link(first.link(), "next");
+            String last = link(first.link(), "last");
+            int lastPage = last != null ? pageNumber(last)
+                : next == null ? 1
+                : totalCount >= 0 ? (int) ((totalCount + perPage - 1) / perPage)
+                : -1;
+            
+            List<JsonNode> pages = new ArrayList<>();
+            pages.add(firstBody.path(field));
+            CompletableFuture<Boolean> more;
+            if (lastPage >= 0) {
+                int pageCount = Math.min(lastPage, wantedPages);
+                more = fetchPages(url, field, perPage, pageCount, pages)
+                    .thenApply(ignored -> lastPage > wantedPages);
+            } else {
+                // No page count to go by: follow the next links one by one
+                more = followPages(next, field, limit - pages.get(0).size(), pages);
+            }
+            return more.thenApply(truncated -> listing(pages, project, limit, totalCount, truncated));
+        });
+    }
+
+    /**
+     * Fetches pages 2 to {@code pageCount} with a fixed number of lanes, each taking the next page as soon as
+     * its previous one arrives, and adds them to {@code pages} in page order.
+     */
+    private CompletableFuture<Void> fetchPages(String url, String field, int perPage, int pageCount,
+                                               List<JsonNode> pages) {
+        JsonNode[] fetched = new JsonNode[Math.max(0, pageCount - 1)];
+        AtomicInteger nextPage = new AtomicInteger(2);
         
-        for (ObjectNode param : params) {
-            String paramName = param.get("name").asText();
-            properties.set(paramName, param);
-            if (param.get("required").asBoolean()) {
-                required.add(paramName);
+        class Lane {
+            CompletableFuture<Void> next() {
+                int page = nextPage.getAndIncrement();
+                if (page > pageCount) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                return github.getJson(pageUrl(url, perPage, page)).thenCompose(body -> {
+                    fetched[page - 2] = body.path(field);
+                    return next();
+                });
             }
         }
         
-        inputSchema.set("properties", properties);
-        inputSchema.set("required", required);
-        tool.set("inputSchema", inputSchema);
-        
-        return tool;
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.min(pageConcurrency, fetched.length)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane().next();
+        }
+        return CompletableFuture.allOf(lanes).thenRun(() -> pages.addAll(List.of(fetched)));
     }
 
-    private ObjectNode createParam(String name, String type, String description, boolean required) {
-        ObjectNode param = mapper.createObjectNode();
-        param.put("name", name);
-        param.put("type", type);
-        param.put("description", description);
-        param.put("required", required);
-        return param;
+    /**
+     * Follows {@code next} links until {@code wanted} more items are in hand; completes with whether there was
+     * more to read.
+     */
+    private CompletableFuture<Boolean> followPages(String next, String field, int wanted, List<JsonNode> pages) {
+        if (next == null || wanted <= 0) {
+            return CompletableFuture.completedFuture(next != null);
+        }
+        return github.get(next).thenCompose(page -> {
+            JsonNode items = github.readTree(page.body()).path(field);
+            pages.add(items);
+            return followPages(link(page.link(), "next"), field, wanted - items.size(), pages);
+        });
     }
 
-    private ObjectNode createSuccessResponse(JsonNode id, JsonNode result) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        if (id != null && !id.isNull()) {
-            response.set("id", id);
+    private JsonNode listing(List<JsonNode> pages, Function<JsonNode, ObjectNode> project, int limit,
+                             long totalCount, boolean more) {
+        StringWriter json = new StringWriter();
+        int count = 0;
+        int seen = 0;
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(json)) {
+            generator.writeStartArray();
+            for (JsonNode items : pages) {
+                seen += items.size();
+                for (JsonNode item : items) {
+                    if (count == limit) {
+                        break;
+                    }
+                    generator.writeTree(project.apply(item));
+                    count++;
+                }
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        JsonNode response = createToolResponse("text", json.toString());
+        ObjectNode info = mapper.createObjectNode();
+        info.put("count", count);
+        if (totalCount >= 0) {
+            info.put("total_count", totalCount);
         }
-        response.set("result", result);
+        info.put("truncated", more || seen > count);
+        ((ArrayNode) response.get("content")).addObject()
+            .put("type", "text")
+            .put("text", info.toString());
         return response;
     }
 
-    private ObjectNode createErrorResponse(JsonNode id, int code, String message) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        if (id != null && !id.isNull()) {
-            response.set("id", id);
-        } else {
-            response.putNull("id");
+    /**
+     * Runs a tool call and turns any failure, thrown or asynchronous, into the tool's error text.
+     */
+    private static CompletableFuture<JsonNode> attempt(Callable<CompletableFuture<JsonNode>> call, String failure) {
+        CompletableFuture<JsonNode> result;
+        try {
+            result = call.call();
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
         }
-        
-        ObjectNode error = mapper.createObjectNode();
-        error.put("code", code);
-        error.put("message", message);
-        response.set("error", error);
-        
-        return response;
+        return result.exceptionally(error -> createToolResponse("text", failure + ": " + cause(error).getMessage()));
     }
 
-    private ObjectNode createToolResponse(String type, String content) {
-        ObjectNode response = mapper.createObjectNode();
-        ArrayNode contentArray = mapper.createArrayNode();
-        
-        ObjectNode contentObj = mapper.createObjectNode();
-        contentObj.put("type", type);
-        contentObj.put("text", content);
-        contentArray.add(contentObj);
-        
-        response.set("content", contentArray);
-        return response;
+    private static Throwable cause(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static String pageUrl(String url, int perPage, int page) {
+        return url + (url.contains("?") ? "&" : "?") + "per_page=" + perPage + "&page=" + page;
+    }
+
+    private static String link(String header, String rel) {
+        if (header == null) {
+            return null;
+        }
+        Matcher matcher = LINK.matcher(header);
+        while (matcher.find()) {
+            if (matcher.group(2).equals(rel)) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    private static int pageNumber(String url) {
+        Matcher matcher = PAGE.matcher(url);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+    }
+
+    private static int maxItems(JsonNode arguments) {
+        return arguments.has("max_items") ? arguments.get("max_items").asInt() : DEFAULT_MAX_ITEMS;
     }
-}
\ No newline at end of file
+}
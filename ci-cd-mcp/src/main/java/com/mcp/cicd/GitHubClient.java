@@ -0,0 +1,141 @@
+package com.mcp.cicd;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcp.core.RateLimitScheduler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Non-blocking GitHub REST client. Requests are multiplexed over one HTTP/2 connection (HTTP/1.1 where the server
+ * does not offer h2) and scheduled against the token's rate limit as interactive traffic. GETs are cached and
+ * revalidated, and concurrent GETs of the same URL share a single network request. Bodies stay bytes until
+ * Jackson parses them.
+ */
+class GitHubClient {
+    private final HttpClient httpClient;
+    private final RateLimitScheduler rateLimiter;
+    private final GitHubResponseCache responseCache;
+    private final ObjectMapper mapper;
+    private final String token;
+    private final Map<String, CompletableFuture<GitHubResponseCache.Entry>> inFlight = new ConcurrentHashMap<>();
+
+    GitHubClient(ObjectMapper mapper, String token, GitHubResponseCache responseCache) {
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        this.rateLimiter = RateLimitScheduler.shared();
+        this.responseCache = responseCache;
+        this.mapper = mapper;
+        this.token = token;
+    }
+
+    HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .header("Authorization", "Bearer " + token)
+            .header("Accept", "application/vnd.github.v3+json");
+    }
+
+    <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return rateLimiter.sendAsync(httpClient, request, handler, RateLimitScheduler.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Resolves an endpoint GitHub answers with a redirect to short-lived storage (logs, archives).
+     */
+    CompletableFuture<URI> location(String url) {
+        return send(request(url).GET().build(), HttpResponse.BodyHandlers.discarding()).thenApply(response -> {
+            if (response.statusCode() / 100 != 3) {
+                throw new RuntimeException("GitHub API error: " + response.statusCode());
+            }
+            return response.headers().firstValue("Location").map(location -> response.uri().resolve(location))
+                .orElseThrow(() -> new RuntimeException("GitHub API error: redirect without a Location"));
+        });
+    }
+
+    /**
+     * Fetches from storage GitHub redirected to. The URL is pre-signed, so the token is not sent and the rate
+     * limit does not apply.
+     */
+    <T> CompletableFuture<HttpResponse<T>> download(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return httpClient.sendAsync(request, handler);
+    }
+
+    CompletableFuture<JsonNode> getJson(String url) {
+        return get(url).thenApply(entry -> readTree(entry.body()));
+    }
+
+    /**
+     * Returns the body and Link header of a GET. A request for a URL that is already being fetched joins that
+     * fetch instead of sending another.
+     */
+    CompletableFuture<GitHubResponseCache.Entry> get(String url) {
+        CompletableFuture<GitHubResponseCache.Entry> created = new CompletableFuture<>();
+        CompletableFuture<GitHubResponseCache.Entry> pending = inFlight.putIfAbsent(url, created);
+        if (pending != null) {
+            return pending;
+        }
+        fetch(url).whenComplete((entry, error) -> {
+            inFlight.remove(url, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(entry);
+            }
+        });
+        return created;
+    }
+
+    JsonNode readTree(byte[] body) {
+        try {
+            return mapper.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompletableFuture<GitHubResponseCache.Entry> fetch(String url) {
+        HttpRequest.Builder builder;
+        try {
+            builder = request(url).GET();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Revalidate what we already have; GitHub answers 304 without charging the rate limit
+        GitHubResponseCache.Entry cached = responseCache.get(url);
+        if (cached != null && cached.eTag() != null) {
+            builder.header("If-None-Match", cached.eTag());
+        } else if (cached != null) {
+            builder.header("If-Modified-Since", cached.lastModified());
+        }
+
+        return send(builder.build(), HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() == 304 && cached != null) {
+                return cached;
+            }
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("GitHub API error: " + response.statusCode());
+            }
+
+            GitHubResponseCache.Entry entry = new GitHubResponseCache.Entry(
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null),
+                response.headers().firstValue("Link").orElse(null),
+                response.body());
+            responseCache.put(url, entry);
+            return entry;
+        });
+    }
+}
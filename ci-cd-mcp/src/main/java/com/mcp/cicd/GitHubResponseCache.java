@@ -0,0 +1,79 @@
+package com.mcp.cicd;
+
+import com.mcp.core.Env;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of GitHub GET responses keyed by URL and bounded by the memory of the stored bodies, kept as the raw
+ * bytes GitHub sent. Entries keep the validators GitHub sent ({@code ETag}, {@code Last-Modified}) so the next
+ * request can be conditional; a 304 is served from the cache and does not count against the rate limit.
+ */
+class GitHubResponseCache {
+    static final long DEFAULT_CAPACITY = 32L * 1024 * 1024;
+    private static final int ENTRY_OVERHEAD = 128;
+
+    record Entry(String eTag, String lastModified, String link, byte[] body) {
+    }
+
+    private final long capacity;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    GitHubResponseCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Capacity from {@code GITHUB_CACHE_MB} (default 32, 0 disables the cache).
+     */
+    static GitHubResponseCache fromEnv() {
+        return new GitHubResponseCache(Env.getLong("GITHUB_CACHE_MB", DEFAULT_CAPACITY >> 20) << 20);
+    }
+
+    synchronized Entry get(String url) {
+        return entries.get(url);
+    }
+
+    /**
+     * Stores a response that carries a validator; anything else could never be revalidated.
+     */
+    synchronized void put(String url, Entry entry) {
+        if (entry.eTag() == null && entry.lastModified() == null) {
+            return;
+        }
+        long weight = weight(url, entry);
+        if (weight > capacity) {
+            return;
+        }
+        Entry previous = entries.put(url, entry);
+        if (previous != null) {
+            size -= weight(url, previous);
+        }
+        size += weight;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (size > capacity && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            size -= weight(evicted.getKey(), evicted.getValue());
+            eldest.remove();
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long bytes() {
+        return size;
+    }
+
+    // Strings are counted at two bytes per char, which is the worst case for compact strings
+    private static long weight(String url, Entry entry) {
+        return ENTRY_OVERHEAD + entry.body().length + 2L * (url.length()
+            + (entry.eTag() == null ? 0 : entry.eTag().length())
+            + (entry.lastModified() == null ? 0 : entry.lastModified().length())
+            + (entry.link() == null ? 0 : entry.link().length()));
+    }
+}
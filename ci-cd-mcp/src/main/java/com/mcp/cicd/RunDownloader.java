@@ -0,0 +1,220 @@
+package com.mcp.cicd;
+
+import org.reactivestreams.FlowAdapters;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.regex.Pattern;
+
+/**
+ * Streams workflow logs and artifact archives to a local file or an S3 object. GitHub answers these endpoints
+ * with a redirect to short-lived storage; the body is copied from there as it arrives, so nothing larger than the
+ * HTTP client's buffers is held in memory. Local downloads resume from the size of an existing file with a
+ * {@code Range} request.
+ */
+class RunDownloader {
+    private static final String S3_SCHEME = "s3://";
+
+    record Result(String destination, long bytes, boolean resumed) {
+    }
+
+    record Lines(long total, long matched, List<String> lines) {
+    }
+
+    private final GitHubClient github;
+    private S3AsyncClient s3;
+
+    RunDownloader(GitHubClient github) {
+        this.github = github;
+    }
+
+    CompletableFuture<Result> download(String url, String destination, boolean resume) {
+        if (destination.startsWith(S3_SCHEME)) {
+            String location = destination.substring(S3_SCHEME.length());
+            int slash = location.indexOf('/');
+            if (slash <= 0 || slash == location.length() - 1) {
+                return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("S3 destination must look like s3://bucket/key"));
+            }
+            return toS3(url, location.substring(0, slash), location.substring(slash + 1), destination);
+        }
+        return toFile(url, Path.of(destination), resume);
+    }
+
+    /**
+     * Reads a text log line by line, keeping the last {@code tail} lines that match {@code grep} (every line
+     * when it is null).
+     */
+    CompletableFuture<Lines> lines(String url, Pattern grep, int tail) {
+        return github.location(url)
+            .thenCompose(location -> github.download(HttpRequest.newBuilder(location).GET().build(),
+                HttpResponse.BodyHandlers.fromLineSubscriber(new LineFilter(grep, tail), LineFilter::result, null)))
+            .thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("Download failed. Status: " + response.statusCode());
+                }
+                return response.body();
+            });
+    }
+
+    private CompletableFuture<Result> toFile(String url, Path path, boolean resume) {
+        long offset;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            offset = resume && Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return github.location(url).thenCompose(location -> {
+            HttpRequest.Builder request = HttpRequest.newBuilder(location).GET();
+            if (offset > 0) {
+                request.header("Range", "bytes=" + offset + "-");
+            }
+            // Append only when the server honoured the range; a 200 carries the whole file again
+            return github.download(request.build(), info -> switch (info.statusCode()) {
+                case 206 -> HttpResponse.BodySubscribers.ofFile(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                case 200 -> HttpResponse.BodySubscribers.ofFile(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                default -> HttpResponse.BodySubscribers.replacing(path);
+            });
+        }).thenApply(response -> {
+            int status = response.statusCode();
+            if (status == 416 && offset > 0) {
+                // Nothing past what we already have
+                return new Result(path.toString(), offset, true);
+            }
+            if (status != 200 && status != 206) {
+                throw new RuntimeException("Download failed. Status: " + status);
+            }
+            try {
+                return new Result(path.toString(), Files.size(path), status == 206);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Pipes the download into {@code PutObject}. S3 needs the length up front, which storage always sends for
+     * these archives.
+     */
+    private CompletableFuture<Result> toS3(String url, String bucket, String key, String destination) {
+        return github.location(url)
+            .thenCompose(location -> github.download(HttpRequest.newBuilder(location).GET().build(),
+                info -> info.statusCode() == 200
+                    ? HttpResponse.BodySubscribers.ofPublisher()
+                    : HttpResponse.BodySubscribers.<Flow.Publisher<List<ByteBuffer>>>replacing(null)))
+            .thenCompose(response -> {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("Download failed. Status: " + response.statusCode());
+                }
+                long length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+                if (length < 0) {
+                    response.body().subscribe(new Cancel());
+                    throw new RuntimeException("Download has no Content-Length; save it to a local file instead");
+                }
+                SdkPublisher<ByteBuffer> body = SdkPublisher.adapt(FlowAdapters.toPublisher(response.body()))
+                    .flatMapIterable(buffers -> buffers);
+                return s3().putObject(request -> request.bucket(bucket).key(key).contentLength(length),
+                        AsyncRequestBody.fromPublisher(body))
+                    .thenApply(put -> new Result(destination, length, false));
+            });
+    }
+
+    /**
+     * The S3 client is only created once something is sent to S3. {@code S3_ENDPOINT_URL} and
+     * {@code S3_FORCE_PATH_STYLE} work as they do for the S3 server.
+     */
+    private synchronized S3AsyncClient s3() {
+        if (s3 == null) {
+            S3AsyncClientBuilder builder = S3AsyncClient.builder();
+            String endpoint = System.getenv("S3_ENDPOINT_URL");
+            if (endpoint != null && !endpoint.isBlank()) {
+                builder.endpointOverride(URI.create(endpoint.trim()));
+            }
+            builder.forcePathStyle(Boolean.parseBoolean(System.getenv("S3_FORCE_PATH_STYLE")));
+            s3 = builder.build();
+        }
+        return s3;
+    }
+
+    private static final class LineFilter implements Flow.Subscriber<String> {
+        private final Pattern grep;
+        private final int tail;
+        private final ArrayDeque<String> lines = new ArrayDeque<>();
+        private long total;
+        private long matched;
+
+        LineFilter(Pattern grep, int tail) {
+            this.grep = grep;
+            this.tail = Math.max(0, tail);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            total++;
+            if (grep != null && !grep.matcher(line).find()) {
+                return;
+            }
+            matched++;
+            lines.addLast(line);
+            if (lines.size() > tail) {
+                lines.removeFirst();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        Lines result() {
+            return new Lines(total, matched, List.copyOf(lines));
+        }
+    }
+
+    private static final class Cancel implements Flow.Subscriber<List<ByteBuffer>> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
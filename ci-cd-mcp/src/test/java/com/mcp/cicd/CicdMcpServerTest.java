@@ -1,9 +1,60 @@
 package com.mcp.cicd;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class CicdMcpServerTest {
+    private static final Pattern QUERY = Pattern.compile("per_page=(\\d+)&page=(\\d+)");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final Map<String, AtomicInteger> notModified = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private String baseUrl;
+    @TempDir
+    Path downloads;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
 
     @Test
     void testServerInitialization() {
@@ -23,4 +74,349 @@ class CicdMcpServerTest {
         // Test workflow operations
         assertTrue(true); // Placeholder test
     }
-}
\ No newline at end of file
+
+    @Test
+    void testResponseCacheEvictsLeastRecentlyUsed() {
+        GitHubResponseCache cache = new GitHubResponseCache(1000);
+        byte[] body = "x".repeat(300).getBytes(StandardCharsets.UTF_8);
+        cache.put("/a", new GitHubResponseCache.Entry("\"a\"", null, null, body));
+        cache.put("/b", new GitHubResponseCache.Entry(null, "Mon, 01 Jan 2024 00:00:00 GMT", null, body));
+        cache.put("/unvalidated", new GitHubResponseCache.Entry(null, null, null, body));
+        assertNull(cache.get("/unvalidated"));
+
+        assertNotNull(cache.get("/a"));
+        cache.put("/c", new GitHubResponseCache.Entry("\"c\"", null, null, body));
+        assertNull(cache.get("/b"));
+        assertEquals("\"a\"", cache.get("/a").eTag());
+        assertArrayEquals(body, cache.get("/c").body());
+        assertTrue(cache.bytes() <= 1000);
+    }
+
+    @Test
+    void testRevalidatesCachedResponsesAndServes304FromCache() throws Exception {
+        AtomicInteger version = new AtomicInteger(1);
+        String lastModified = "Mon, 01 Jan 2024 00:00:00 GMT";
+        server.createContext("/repos/o/r/actions/runs/1", exchange -> {
+            String eTag = "\"v" + version.get() + "\"";
+            if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                respondNotModified(exchange);
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", eTag);
+            respond(exchange, "{\"id\":1,\"version\":" + version.get() + "}");
+        });
+        server.createContext("/repos/o/r/actions/runs/2", exchange -> {
+            if (lastModified.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"))) {
+                respondNotModified(exchange);
+                return;
+            }
+            exchange.getResponseHeaders().add("Last-Modified", lastModified);
+            respond(exchange, "{\"id\":2}");
+        });
+        GitHubClient github = new GitHubClient(mapper, "test", new GitHubResponseCache(1024 * 1024));
+        String url = baseUrl + "/repos/o/r/actions/runs/1";
+
+        assertEquals(1, github.getJson(url).get(5, TimeUnit.SECONDS).get("version").asInt());
+        assertEquals(1, github.getJson(url).get(5, TimeUnit.SECONDS).get("version").asInt());
+        assertEquals(1, notModified("/repos/o/r/actions/runs/1"));
+        // A new version replaces the cached one
+        version.set(2);
+        assertEquals(2, github.getJson(url).get(5, TimeUnit.SECONDS).get("version").asInt());
+        assertEquals(2, github.getJson(url).get(5, TimeUnit.SECONDS).get("version").asInt());
+        assertEquals(2, notModified("/repos/o/r/actions/runs/1"));
+
+        String dated = baseUrl + "/repos/o/r/actions/runs/2";
+        github.getJson(dated).get(5, TimeUnit.SECONDS);
+        assertEquals(2, github.getJson(dated).get(5, TimeUnit.SECONDS).get("id").asInt());
+        assertEquals(1, notModified("/repos/o/r/actions/runs/2"));
+    }
+
+    @Test
+    void testCoalescesConcurrentGetsOfTheSameUrl() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        server.createContext("/repos/o/r/actions/runs/3", exchange -> {
+            requests.add(exchange.getRequestURI().toString());
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, "{\"id\":3}");
+        });
+        GitHubClient github = new GitHubClient(mapper, "test", new GitHubResponseCache(0));
+        String url = baseUrl + "/repos/o/r/actions/runs/3";
+
+        List<CompletableFuture<JsonNode>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(github.getJson(url));
+        }
+        release.countDown();
+
+        for (CompletableFuture<JsonNode> result : results) {
+            assertEquals(3, result.get(5, TimeUnit.SECONDS).get("id").asInt());
+        }
+        assertEquals(1, requests.size());
+        // Once answered, the next GET goes out again
+        github.getJson(url).get(5, TimeUnit.SECONDS);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void testPaginatesByLastPageLink() throws Exception {
+        servePages("/repos/o/r/actions/workflows", "workflows", 250, true, true);
+
+        JsonNode result = callTool("list_workflows", Map.of("owner", "o", "repo", "r"));
+
+        List<Integer> ids = ids(result);
+        assertEquals(250, ids.size());
+        assertEquals(0, ids.get(0));
+        assertEquals(249, ids.get(249));
+        assertEquals(mapper.readTree("{\"count\":250,\"total_count\":250,\"truncated\":false}"), info(result));
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    void testPaginatesByTotalCountAndCutsShort() throws Exception {
+        servePages("/repos/o/r/actions/runs", "workflow_runs", 450, false, true);
+
+        JsonNode result = callTool("get_workflow_runs", Map.of("owner", "o", "repo", "r", "max_items", 250));
+
+        assertEquals(250, ids(result).size());
+        assertEquals(249, ids(result).get(249));
+        assertEquals(mapper.readTree("{\"count\":250,\"total_count\":450,\"truncated\":true}"), info(result));
+        // Three pages of 100 cover 250 items; the other two are never asked for
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    void testFollowsNextLinksWithoutAPageCount() throws Exception {
+        servePages("/repos/o/r/actions/runs/7/artifacts", "artifacts", 230, false, false);
+
+        JsonNode result = callTool("get_run_artifacts", Map.of("owner", "o", "repo", "r", "run_id", "7"));
+
+        assertEquals(230, ids(result).size());
+        assertEquals(mapper.readTree("{\"count\":230,\"truncated\":false}"), info(result));
+        assertEquals(List.of("page=1", "page=2", "page=3"),
+            requests.stream().map(uri -> uri.substring(uri.lastIndexOf("page="))).toList());
+    }
+
+    @Test
+    void testRunsStatusKeepsRequestOrderAndReportsFailures() throws Exception {
+        server.createContext("/repos/o/r/actions/runs/", exchange -> {
+            int id = Integer.parseInt(exchange.getRequestURI().getPath().substring("/repos/o/r/actions/runs/".length()));
+            try {
+                // Later runs answer first
+                Thread.sleep((5 - id) * 50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (id == 2) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            respond(exchange, mapper.createObjectNode().put("id", id).put("name", "ci").put("status", "completed")
+                .put("conclusion", "success").put("created_at", "2024-01-01T00:00:00Z")
+                .put("updated_at", "2024-01-01T00:01:00Z").put("html_url", "u").toString());
+        });
+
+        JsonNode result = callTool("get_runs_status",
+            Map.of("owner", "o", "repo", "r", "run_ids", List.of(1, 2, 3, 4), "concurrency", 4));
+
+        assertEquals(List.of(1, 2, 3, 4), ids(result));
+        JsonNode runs = mapper.readTree(result.get("content").get(0).get("text").asText());
+        assertEquals("GitHub API error: 404", runs.get(1).get("error").asText());
+        assertFalse(runs.get(1).has("status"));
+        assertEquals("completed", runs.get(3).get("status").asText());
+        assertEquals(mapper.readTree("{\"count\":4,\"failed\":1}"), info(result));
+
+        JsonNode empty = callTool("get_runs_status", Map.of("owner", "o", "repo", "r", "run_ids", List.of()));
+        assertEquals(List.of(), ids(empty));
+        assertEquals(mapper.readTree("{\"count\":0,\"failed\":0}"), info(empty));
+    }
+
+    @Test
+    void testResumesLocalDownloadsFromTheFileSize() throws Exception {
+        byte[] archive = "0123456789".getBytes(StandardCharsets.UTF_8);
+        serveDownload("/repos/o/r/actions/runs/7/logs", archive, true, true);
+        Path file = downloads.resolve("logs/run.zip");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "01234");
+
+        JsonNode resumed = download("7", file, true);
+        assertEquals(mapper.readTree("{\"destination\":\"" + file + "\",\"bytes\":10,\"resumed\":true}"), resumed);
+        assertEquals("0123456789", Files.readString(file));
+        assertEquals("bytes=5-", requests.get(requests.size() - 1));
+
+        // Already complete: storage answers 416 and the file is left as it is
+        assertEquals(mapper.readTree("{\"destination\":\"" + file + "\",\"bytes\":10,\"resumed\":true}"),
+            download("7", file, true));
+        assertEquals("0123456789", Files.readString(file));
+
+        // Without resume the whole archive is fetched again
+        Files.writeString(file, "stale data that is longer");
+        assertEquals(10, download("7", file, false).get("bytes").asInt());
+        assertEquals("0123456789", Files.readString(file));
+        assertEquals("none", requests.get(requests.size() - 1));
+    }
+
+    @Test
+    void testRestartsDownloadWhenStorageIgnoresTheRange() throws Exception {
+        serveDownload("/repos/o/r/actions/runs/8/logs", "0123456789".getBytes(StandardCharsets.UTF_8), false, true);
+        Path file = downloads.resolve("run.zip");
+        Files.writeString(file, "01234 and more than the archive");
+
+        JsonNode result = download("8", file, true);
+
+        assertEquals(mapper.readTree("{\"destination\":\"" + file + "\",\"bytes\":10,\"resumed\":false}"), result);
+        assertEquals("0123456789", Files.readString(file));
+        assertEquals("bytes=31-", requests.get(requests.size() - 1));
+    }
+
+    @Test
+    void testRefusesToSendDownloadWithoutLengthToS3() throws Exception {
+        serveDownload("/repos/o/r/actions/artifacts/9/zip", "zip".getBytes(StandardCharsets.UTF_8), false, false);
+
+        JsonNode result = callTool("download_artifact",
+            Map.of("owner", "o", "repo", "r", "artifact_id", "9", "destination", "s3://bucket/artifact.zip"));
+
+        assertEquals("Failed to download artifact: Download has no Content-Length; save it to a local file instead",
+            result.get("content").get(0).get("text").asText());
+        JsonNode badDestination = callTool("download_artifact",
+            Map.of("owner", "o", "repo", "r", "artifact_id", "9", "destination", "s3://bucket"));
+        assertEquals("Failed to download artifact: S3 destination must look like s3://bucket/key",
+            badDestination.get("content").get(0).get("text").asText());
+    }
+
+    @Test
+    void testJobLogsKeepTheLastMatchingLines() throws Exception {
+        StringBuilder log = new StringBuilder();
+        for (int line = 1; line <= 50; line++) {
+            log.append(line % 10 == 0 ? "ERROR step " : "ok step ").append(line).append('\n');
+        }
+        serveDownload("/repos/o/r/actions/jobs/4/logs", log.toString().getBytes(StandardCharsets.UTF_8), false, false);
+
+        JsonNode grep = callTool("get_job_logs", Map.of("owner", "o", "repo", "r", "job_id", "4", "tail", 2,
+            "grep", "^ERROR"));
+        assertEquals("ERROR step 40\nERROR step 50", grep.get("content").get(0).get("text").asText());
+        assertEquals(mapper.readTree("{\"lines\":50,\"matched\":5,\"returned\":2}"), info(grep));
+
+        JsonNode tail = callTool("get_job_logs", Map.of("owner", "o", "repo", "r", "job_id", "4", "tail", 3));
+        assertEquals("ok step 48\nok step 49\nERROR step 50", tail.get("content").get(0).get("text").asText());
+        assertEquals(mapper.readTree("{\"lines\":50,\"matched\":50,\"returned\":3}"), info(tail));
+    }
+
+    /**
+     * Serves {@code total} items in pages, with a Link header that has {@code rel="last"} only when
+     * {@code lastLink}, and {@code total_count} only when {@code totalCount}.
+     */
+    private void servePages(String path, String field, int total, boolean lastLink, boolean totalCount) {
+        server.createContext(path, exchange -> {
+            requests.add(exchange.getRequestURI().toString());
+            Matcher query = QUERY.matcher(exchange.getRequestURI().getQuery());
+            assertTrue(query.find());
+            int perPage = Integer.parseInt(query.group(1));
+            int page = Integer.parseInt(query.group(2));
+            int pages = (total + perPage - 1) / perPage;
+
+            ObjectNode body = mapper.createObjectNode();
+            if (totalCount) {
+                body.put("total_count", total);
+            }
+            ArrayNode items = body.putArray(field);
+            for (int id = (page - 1) * perPage; id < Math.min(total, page * perPage); id++) {
+                items.addObject().put("id", id).put("name", "item " + id).put("path", "p").put("state", "active")
+                    .put("status", "completed").put("created_at", "2024-01-01T00:00:00Z").put("html_url", "u")
+                    .put("size_in_bytes", 1).put("archive_download_url", "z");
+            }
+            List<String> links = new ArrayList<>();
+            String pageUrl = baseUrl + path + "?per_page=" + perPage + "&page=";
+            if (page < pages) {
+                links.add("<" + pageUrl + (page + 1) + ">; rel=\"next\"");
+                if (lastLink) {
+                    links.add("<" + pageUrl + pages + ">; rel=\"last\"");
+                }
+            }
+            if (!links.isEmpty()) {
+                exchange.getResponseHeaders().add("Link", String.join(", ", links));
+            }
+            respond(exchange, body.toString());
+        });
+    }
+
+    /**
+     * Answers {@code path} with a redirect to storage that serves {@code content}. Storage honours {@code Range}
+     * only when {@code ranges}, and sends a Content-Length only when {@code length}. The Range asked for (or
+     * "none") is recorded in {@link #requests}.
+     */
+    private void serveDownload(String path, byte[] content, boolean ranges, boolean length) {
+        server.createContext(path, exchange -> {
+            exchange.getResponseHeaders().add("Location", "/storage" + path + "?signature=x");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.createContext("/storage" + path, exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            requests.add(range == null ? "none" : range);
+            int offset = 0;
+            if (ranges && range != null) {
+                Matcher matcher = RANGE.matcher(range);
+                assertTrue(matcher.matches());
+                offset = Integer.parseInt(matcher.group(1));
+                if (offset >= content.length) {
+                    exchange.sendResponseHeaders(416, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            int status = offset > 0 ? 206 : 200;
+            exchange.sendResponseHeaders(status, length ? content.length - offset : 0);
+            exchange.getResponseBody().write(content, offset, content.length - offset);
+            exchange.close();
+        });
+    }
+
+    private JsonNode download(String runId, Path destination, boolean resume) throws Exception {
+        JsonNode result = callTool("download_run_logs", Map.of("owner", "o", "repo", "r", "run_id", runId,
+            "destination", destination.toString(), "resume", resume));
+        return mapper.readTree(result.get("content").get(0).get("text").asText());
+    }
+
+    private JsonNode callTool(String name, Map<String, Object> arguments) throws Exception {
+        ObjectNode params = mapper.createObjectNode();
+        params.put("name", name);
+        params.set("arguments", mapper.valueToTree(arguments));
+        return new CicdMcpServer(baseUrl, "test").handleToolCall(params).get(10, TimeUnit.SECONDS);
+    }
+
+    private List<Integer> ids(JsonNode result) throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        for (JsonNode item : mapper.readTree(result.get("content").get(0).get("text").asText())) {
+            ids.add(item.get("id").asInt());
+        }
+        return ids;
+    }
+
+    private JsonNode info(JsonNode result) throws IOException {
+        return mapper.readTree(result.get("content").get(1).get("text").asText());
+    }
+
+    private int notModified(String path) {
+        return notModified.getOrDefault(path, new AtomicInteger()).get();
+    }
+
+    private void respondNotModified(HttpExchange exchange) throws IOException {
+        notModified.computeIfAbsent(exchange.getRequestURI().getPath(), unused -> new AtomicInteger())
+            .incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}
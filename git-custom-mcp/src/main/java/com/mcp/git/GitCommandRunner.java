@@ -0,0 +1,232 @@
+package com.mcp.git;
+
+import com.mcp.core.Env;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs git for the server. The executable is resolved once, independent commands run in parallel on a bounded
+ * pool, and object lookups go through a long-lived {@code git cat-file --batch} process instead of a fork per
+ * lookup.
+ */
+public class GitCommandRunner implements AutoCloseable {
+    private static final int DEFAULT_WORKERS = 4;
+
+    private final File workingDir;
+    private final String gitExecutable;
+    private final ExecutorService workers;
+    private final ExecutorService errorReaders;
+    private final CatFileProcess objectReader;
+
+    public GitCommandRunner(String workingDir) {
+        this.workingDir = new File(workingDir);
+        this.gitExecutable = findGitExecutable();
+        this.workers = Executors.newFixedThreadPool(Env.getInt("GIT_WORKER_THREADS", DEFAULT_WORKERS, 1),
+            daemonThreads("git-worker"));
+        this.errorReaders = Executors.newCachedThreadPool(daemonThreads("git-stderr"));
+        this.objectReader = new CatFileProcess();
+    }
+
+    /**
+     * Runs a git command and returns its stdout. The first element is a placeholder for the executable,
+     * e.g. {@code run("git", "status", "--porcelain")}.
+     */
+    public String run(String... command) throws Exception {
+        String[] fullCommand = command.clone();
+        fullCommand[0] = gitExecutable;
+        
+        ProcessBuilder pb = new ProcessBuilder(fullCommand);
+        pb.directory(workingDir);
+        // Never take optional locks: a status refresh must not rewrite the index under a concurrent add/commit
+        pb.environment().put("GIT_OPTIONAL_LOCKS", "0");
+        Process process = pb.start();
+        
+        // Drained alongside stdout: git blocks once a pipe is full, so reading one stream to the end first hangs
+        // any command that writes enough to the other
+        Future<String> error = errorReaders.submit(() -> readFully(process.getErrorStream()));
+        String output = readFully(process.getInputStream());
+        
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new RuntimeException("Git command failed: " + error.get());
+        }
+        
+        return output;
+    }
+
+    /**
+     * Runs a command on the worker pool so independent commands can overlap.
+     */
+    public CompletableFuture<String> runAsync(String... command) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return run(command);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }, workers);
+    }
+
+    /**
+     * Waits for a command started with {@link #runAsync}, rethrowing its original failure.
+     */
+    public static String await(CompletableFuture<String> result) throws Exception {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Reads an object with its content, or returns null if it does not exist.
+     */
+    public GitObject readObject(String revision) throws IOException {
+        return objectReader.lookup(revision);
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        errorReaders.shutdownNow();
+        objectReader.close();
+    }
+
+    private String readFully(InputStream in) {
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append("\n");
+            }
+        } catch (IOException e) {
+            output.append(e.getMessage());
+        }
+        return output.toString();
+    }
+
+    private static String findGitExecutable() {
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.contains("win")) {
+            // Try common Windows git paths
+            String[] paths = {
+                "git", "git.exe", 
+                "C:\\Program Files\\Git\\bin\\git.exe",
+                "C:\\Program Files (x86)\\Git\\bin\\git.exe"
+            };
+            for (String path : paths) {
+                try {
+                    new ProcessBuilder(path, "--version").start().waitFor();
+                    return path;
+                } catch (Exception ignored) {}
+            }
+        }
+        return "git"; // Default for Unix/Linux/Mac
+    }
+
+    static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One {@code git cat-file --batch} process kept open across lookups. Requests are serialized because the
+     * process answers strictly in order; a dead process is restarted on the next lookup.
+     */
+    private final class CatFileProcess {
+        private Process process;
+        private OutputStream stdin;
+        private InputStream stdout;
+
+        synchronized GitObject lookup(String revision) throws IOException {
+            if (revision.indexOf('\n') >= 0) {
+                throw new IllegalArgumentException("Invalid revision: " + revision);
+            }
+            ensureStarted();
+            try {
+                stdin.write((revision + "\n").getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+                
+                String header = readLine();
+                if (header == null) {
+                    throw new IOException("git cat-file --batch exited unexpectedly");
+                }
+                // "<sha> <type> <size>", or "<revision> missing" / "<revision> ambiguous"; the revision may
+                // contain spaces, so only its last word tells
+                if (header.endsWith(" missing") || header.endsWith(" ambiguous")) {
+                    return null;
+                }
+                String[] parts = header.split(" ");
+                if (parts.length != 3) {
+                    throw new IOException("Unexpected git cat-file --batch output: " + header);
+                }
+                long size = Long.parseLong(parts[2]);
+                if (size > Integer.MAX_VALUE - 8) {
+                    // The content is left unread, so the process is restarted
+                    throw new IOException("Object " + parts[0] + " is too large to read (" + size + " bytes)");
+                }
+                byte[] content = stdout.readNBytes((int) size);
+                stdout.read(); // trailing LF
+                return new GitObject(parts[0], parts[1], size, content);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void ensureStarted() throws IOException {
+            if (process != null && process.isAlive()) {
+                return;
+            }
+            ProcessBuilder pb = new ProcessBuilder(List.of(gitExecutable, "cat-file", "--batch"));
+            pb.directory(workingDir);
+            pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+            process = pb.start();
+            stdin = new BufferedOutputStream(process.getOutputStream());
+            stdout = new BufferedInputStream(process.getInputStream());
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+            int b;
+            while ((b = stdout.read()) != -1) {
+                if (b == '\n') {
+                    return line.toString(StandardCharsets.UTF_8);
+                }
+                line.write(b);
+            }
+            return null;
+        }
+
+        synchronized void close() {
+            if (process != null) {
+                process.destroy();
+                process = null;
+            }
+        }
+    }
+}
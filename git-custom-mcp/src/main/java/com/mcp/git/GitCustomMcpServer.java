@@ -3,31 +3,65 @@ package com.mcp.git;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mcp.core.EventLog;
+import com.mcp.core.JsonRpcDispatcher;
+import com.mcp.core.JsonRpcRequest;
+import com.mcp.core.JsonRpcWriter;
+import com.mcp.core.ToolRegistry;
+import com.mcp.core.WebhookIntake;
+import com.mcp.git.model.GitStatistics;
+import com.mcp.git.repo.Commit;
+import com.mcp.git.repo.GitRepository;
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.mcp.core.McpMessages.createParam;
+import static com.mcp.core.McpMessages.createTool;
+import static com.mcp.core.McpMessages.createToolResponse;
 
 public class GitCustomMcpServer {
     private final ObjectMapper mapper;
+    private final ToolRegistry toolRegistry;
     private final String workingDir;
+    private final GitCommandRunner git;
+    private final GitRepository repository;
+    private final WorkingTreeStatus workingTreeStatus;
+    private final Object gitWriteLock = new Object();
     private HttpServer webhookServer;
-    private String lastProjectId;
-    private String lastPipelineId;
-    private String lastCommitSha;
+    private WebhookIntake webhookIntake;
+    private EventLog eventLog;
+    private PipelineHistory pipelineHistory;
+    private StatisticsSink statisticsSink;
+    private RepoStatistics repoStatistics;
+    private ExecutorService repoStatsScanner;
+    private final AtomicBoolean scanPending = new AtomicBoolean();
 
     public GitCustomMcpServer() {
         this.mapper = new ObjectMapper();
+        this.toolRegistry = new ToolRegistry(mapper, "git-custom-mcp-server", "1.0.0");
+        this.toolRegistry.registerAll(createTools());
         this.workingDir = System.getProperty("user.dir");
+        this.git = new GitCommandRunner(workingDir);
+        this.repository = GitRepository.open(Path.of(workingDir));
+        this.workingTreeStatus = new WorkingTreeStatus(git, repository);
         System.err.println("Git Custom MCP Server initialized");
     }
 
@@ -36,71 +70,69 @@ public class GitCustomMcpServer {
     }
 
     private void run() {
+        eventLog = EventLog.openFromEnv("git-custom-events");
+        openPipelineHistory();
+        openStatisticsSink();
+        openRepoStatistics();
         startWebhookServer();
+        workingTreeStatus.start();
         
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                try {
-                    JsonNode request = mapper.readTree(line);
-                    JsonNode response = handleRequest(request);
-                    System.out.println(mapper.writeValueAsString(response));
-                    System.out.flush();
-                } catch (Exception e) {
-                    ObjectNode errorResponse = createErrorResponse(null, -32603, "Parse error: " + e.getMessage());
-                    System.out.println(mapper.writeValueAsString(errorResponse));
-                    System.out.flush();
-                }
-            }
+        System.err.println("Starting MCP server main loop...");
+        try {
+            JsonRpcDispatcher dispatcher = new JsonRpcDispatcher(mapper, this::handleRequest,
+                new JsonRpcWriter(System.out, mapper), toolRegistry, JsonRpcDispatcher.maxInFlightFromEnv());
+            dispatcher.run(System.in);
+            System.err.println("Input stream closed, exiting...");
         } catch (Exception e) {
+            System.err.println("Fatal error in main loop: " + e.getMessage());
             e.printStackTrace();
         } finally {
             if (webhookServer != null) {
                 webhookServer.stop(0);
+                webhookIntake.close();
             }
+            if (statisticsSink != null) {
+                statisticsSink.close();
+            }
+            if (repoStatistics != null) {
+                repoStatsScanner.shutdownNow();
+                try {
+                    repoStatistics.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to write statistics snapshot: " + e.getMessage());
+                }
+            }
+            if (pipelineHistory != null) {
+                try {
+                    pipelineHistory.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close pipeline history: " + e.getMessage());
+                }
+            }
+            if (eventLog != null) {
+                try {
+                    eventLog.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close event log: " + e.getMessage());
+                }
+            }
+            workingTreeStatus.close();
+            git.close();
         }
     }
 
-    private JsonNode handleRequest(JsonNode request) {
-        String method = request.get("method").asText();
-        JsonNode id = request.get("id");
-        
-        try {
-            JsonNode result = switch (method) {
-                case "initialize" -> handleInitialize();
-                case "tools/list" -> handleToolsList();
-                case "tools/call" -> handleToolCall(request.get("params"));
-                default -> throw new RuntimeException("Unknown method: " + method);
-            };
-            
-            return createSuccessResponse(id, result);
-        } catch (Exception e) {
-            return createErrorResponse(id, -32603, "Internal error: " + e.getMessage());
-        }
-    }
-
-    private JsonNode handleInitialize() {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("protocolVersion", "2024-11-05");
-        
-        ObjectNode capabilities = mapper.createObjectNode();
-        ObjectNode tools = mapper.createObjectNode();
-        tools.put("listChanged", false);
-        capabilities.set("tools", tools);
-        response.set("capabilities", capabilities);
-        
-        ObjectNode serverInfo = mapper.createObjectNode();
-        serverInfo.put("name", "git-custom-mcp-server");
-        serverInfo.put("version", "1.0.0");
-        response.set("serverInfo", serverInfo);
-        
-        return response;
+    private JsonNode handleRequest(JsonRpcRequest request) {
+        return switch (request.method()) {
+            case "tools/call" -> handleToolCall(request.params());
+            default -> throw new RuntimeException("Unknown method: " + request.method());
+        };
     }
 
-    private JsonNode handleToolsList() {
+    private ArrayNode createTools() {
         ArrayNode tools = mapper.createArrayNode();
         
-        tools.add(createTool("git_status", "Get git repository status"));
+        tools.add(createTool("git_status", "Get git repository status",
+            createParam("since", "string", "Status token from an earlier call; only changes since then are returned", false)));
         tools.add(createTool("git_log", "Get git commit history", 
             createParam("limit", "number", "Number of commits to show", false)));
         tools.add(createTool("git_branch", "List or create branches",
@@ -117,11 +149,28 @@ public class GitCustomMcpServer {
             createParam("file", "string", "Specific file to diff", false)));
         tools.add(createTool("get_repo_info", "Get repository information"));
         tools.add(createTool("webhook_status", "Check webhook server status"));
-        tools.add(createTool("get_pipeline_info", "Get latest pipeline information"));
+        tools.add(createTool("get_pipeline_info",
+            "Get pipeline information: the latest pipeline, or past ones by commit, branch or time range",
+            createParam("commit", "string", "Commit SHA or SHA prefix", false),
+            createParam("branch", "string", "Branch name", false),
+            createParam("since", "string", "Received at or after (ISO-8601 instant or date)", false),
+            createParam("until", "string", "Received before (ISO-8601 instant or date)", false),
+            createParam("repo", "string", "Only this repository (owner/name)", false),
+            createParam("limit", "number", "Maximum number of pipelines (default: 1 without filters, 10 with)", false)));
+        tools.add(createTool("get_repo_stats",
+            "Get pre-aggregated repository statistics, e.g. commits per author today or pipelines per hour",
+            createParam("metric", "string",
+                "commits, files_changed, lines_added, lines_deleted or pipelines (default: commits)", false),
+            createParam("by", "string", "author, branch, hour or day (default: author)", false),
+            createParam("period", "string",
+                "today, yesterday, week, 24h, 7d or 30d (default: today; 24h by hour, 7d by day)", false),
+            createParam("date", "string", "A single UTC day instead of a period (YYYY-MM-DD)", false),
+            createParam("repo", "string", "Only this repository (owner/name)", false)));
+        tools.add(createTool("get_events", "Replay webhook events received by this server, oldest first",
+            createParam("since_offset", "number", "Offset to start from (default: 0, the oldest retained)", false),
+            createParam("limit", "number", "Maximum number of events (default: 50)", false)));
         
-        ObjectNode response = mapper.createObjectNode();
-        response.set("tools", tools);
-        return response;
+        return tools;
     }
 
     private JsonNode handleToolCall(JsonNode params) {
@@ -129,7 +178,7 @@ public class GitCustomMcpServer {
         JsonNode arguments = params.has("arguments") ? params.get("arguments") : mapper.createObjectNode();
         
         return switch (name) {
-            case "git_status" -> gitStatus();
+            case "git_status" -> gitStatus(arguments.has("since") ? arguments.get("since").asText() : null);
             case "git_log" -> gitLog(arguments.has("limit") ? arguments.get("limit").asInt() : 10);
             case "git_branch" -> gitBranch(arguments.has("branch_name") ? arguments.get("branch_name").asText() : null);
             case "git_add" -> gitAdd(arguments.has("files") ? arguments.get("files").asText() : ".");
@@ -141,18 +190,43 @@ public class GitCustomMcpServer {
             case "git_diff" -> gitDiff(arguments.has("file") ? arguments.get("file").asText() : null);
             case "get_repo_info" -> getRepoInfo();
             case "webhook_status" -> webhookStatus();
-            case "get_pipeline_info" -> getPipelineInfo();
+            case "get_pipeline_info" -> getPipelineInfo(arguments);
+            case "get_repo_stats" -> getRepoStats(arguments);
+            case "get_events" -> getEvents(
+                arguments.has("since_offset") ? arguments.get("since_offset").asLong() : 0,
+                arguments.has("limit") ? arguments.get("limit").asInt() : 50);
             default -> throw new RuntimeException("Unknown tool: " + name);
         };
     }
 
-    private JsonNode gitStatus() {
+    private JsonNode gitStatus(String since) {
         try {
-            String output = executeGitCommand("git", "status", "--porcelain");
-            if (output.trim().isEmpty()) {
-                return createToolResponse("text", "✅ Working directory clean");
+            WorkingTreeStatus.Result status;
+            try {
+                status = workingTreeStatus.status(since);
+            } catch (Exception e) {
+                System.err.println("Incremental status failed, using git CLI: " + e.getMessage());
+                String output = executeGitCommand("git", "status", "--porcelain");
+                if (output.trim().isEmpty()) {
+                    return createToolResponse("text", "✅ Working directory clean");
+                }
+                return createToolResponse("text", "📋 Git Status:\n" + output);
+            }
+            
+            String token = "\n🔖 Status token: " + status.token();
+            if (status.delta()) {
+                if (status.lines().isEmpty() && status.clearedPaths().isEmpty()) {
+                    return createToolResponse("text", "✅ No changes since " + since + token);
+                }
+                StringBuilder output = new StringBuilder("📋 Git Status changes since ").append(since).append(":\n");
+                status.lines().forEach(line -> output.append(line).append('\n'));
+                status.clearedPaths().forEach(path -> output.append("   ").append(path).append(" (clean)\n"));
+                return createToolResponse("text", output + token);
+            }
+            if (status.lines().isEmpty()) {
+                return createToolResponse("text", "✅ Working directory clean" + token);
             }
-            return createToolResponse("text", "📋 Git Status:\n" + output);
+            return createToolResponse("text", "📋 Git Status:\n" + String.join("\n", status.lines()) + "\n" + token);
         } catch (Exception e) {
             return createToolResponse("text", "❌ Error: " + e.getMessage());
         }
@@ -160,7 +234,7 @@ public class GitCustomMcpServer {
 
     private JsonNode gitLog(int limit) {
         try {
-            String output = executeGitCommand("git", "log", "--oneline", "-" + limit);
+            String output = readLogOneline(limit);
             return createToolResponse("text", "📜 Recent Commits:\n" + output);
         } catch (Exception e) {
             return createToolResponse("text", "❌ Error: " + e.getMessage());
@@ -170,10 +244,10 @@ public class GitCustomMcpServer {
     private JsonNode gitBranch(String branchName) {
         try {
             if (branchName == null) {
-                String output = executeGitCommand("git", "branch", "-a");
+                String output = readBranches();
                 return createToolResponse("text", "🌿 Branches:\n" + output);
             } else {
-                String output = executeGitCommand("git", "checkout", "-b", branchName);
+                String output = executeGitWriteCommand("git", "checkout", "-b", branchName);
                 return createToolResponse("text", "✅ Created and switched to branch: " + branchName);
             }
         } catch (Exception e) {
@@ -183,7 +257,7 @@ public class GitCustomMcpServer {
 
     private JsonNode gitAdd(String files) {
         try {
-            String output = executeGitCommand("git", "add", files);
+            String output = executeGitWriteCommand("git", "add", files);
             return createToolResponse("text", "✅ Added files: " + files);
         } catch (Exception e) {
             return createToolResponse("text", "❌ Error: " + e.getMessage());
@@ -192,7 +266,9 @@ public class GitCustomMcpServer {
 
     private JsonNode gitCommit(String message) {
         try {
-            String output = executeGitCommand("git", "commit", "-m", message);
+            String output = executeGitWriteCommand("git", "commit", "-m", message);
+            recordLocalEvent("commit", null);
+            scheduleGitLogScan();
             return createToolResponse("text", "✅ Committed: " + message + "\n" + output);
         } catch (Exception e) {
             return createToolResponse("text", "❌ Error: " + e.getMessage());
@@ -204,7 +280,8 @@ public class GitCustomMcpServer {
             String[] command = branch != null 
                 ? new String[]{"git", "push", remote, branch}
                 : new String[]{"git", "push", remote};
-            String output = executeGitCommand(command);
+            String output = executeGitWriteCommand(command);
+            recordLocalEvent("push", branch);
             return createToolResponse("text", "✅ Pushed to " + remote + "\n" + output);
         } catch (Exception e) {
             return createToolResponse("text", "❌ Error: " + e.getMessage());
@@ -213,7 +290,8 @@ public class GitCustomMcpServer {
 
     private JsonNode gitPull() {
         try {
-            String output = executeGitCommand("git", "pull");
+            String output = executeGitWriteCommand("git", "pull");
+            scheduleGitLogScan();
             return createToolResponse("text", "✅ Pulled changes:\n" + output);
         } catch (Exception e) {
             return createToolResponse("text", "❌ Error: " + e.getMessage());
@@ -237,9 +315,21 @@ public class GitCustomMcpServer {
 
     private JsonNode getRepoInfo() {
         try {
-            String remote = executeGitCommand("git", "remote", "get-url", "origin");
-            String branch = executeGitCommand("git", "branch", "--show-current");
-            String lastCommit = executeGitCommand("git", "log", "-1", "--oneline");
+            String remote;
+            String branch;
+            String lastCommit;
+            String[] inProcess = readRepoInfo();
+            if (inProcess != null) {
+                remote = inProcess[0];
+                branch = inProcess[1];
+                lastCommit = inProcess[2];
+            } else {
+                CompletableFuture<String> remoteResult = git.runAsync("git", "remote", "get-url", "origin");
+                CompletableFuture<String> branchResult = git.runAsync("git", "branch", "--show-current");
+                lastCommit = lastCommitOneline();
+                remote = GitCommandRunner.await(remoteResult);
+                branch = GitCommandRunner.await(branchResult);
+            }
             
             StringBuilder info = new StringBuilder();
             info.append("📍 Repository Information:\n\n");
@@ -254,11 +344,110 @@ public class GitCustomMcpServer {
         }
     }
 
+    private String readLogOneline(int limit) throws Exception {
+        if (repository != null) {
+            try {
+                String head = repository.resolve("HEAD");
+                if (head != null) {
+                    int abbrev = repository.abbreviationLength();
+                    StringBuilder output = new StringBuilder();
+                    for (Commit commit : repository.log(head, limit)) {
+                        output.append(commit.sha(), 0, abbrev).append(' ').append(commit.subject()).append('\n');
+                    }
+                    return output.toString();
+                }
+            } catch (IOException e) {
+                System.err.println("In-process git log failed, using git CLI: " + e.getMessage());
+            }
+        }
+        return executeGitCommand("git", "log", "--oneline", "-" + limit);
+    }
+
+    private String readBranches() throws Exception {
+        if (repository != null) {
+            try {
+                String head = repository.headRef();
+                // Detached HEADs, unborn branches and linked worktrees get special markers; leave those to git
+                if (head != null && repository.resolve(head) != null && !repository.hasLinkedWorktrees()) {
+                    StringBuilder output = new StringBuilder();
+                    for (Map.Entry<String, String> ref : repository.listRefs("refs/heads/").entrySet()) {
+                        if (ref.getValue().startsWith("ref: ")) {
+                            throw new IOException("Symbolic branch " + ref.getKey());
+                        }
+                        output.append(ref.getKey().equals(head) ? "* " : "  ")
+                            .append(ref.getKey().substring("refs/heads/".length())).append('\n');
+                    }
+                    for (Map.Entry<String, String> ref : repository.listRefs("refs/remotes/").entrySet()) {
+                        output.append("  ").append(ref.getKey().substring("refs/".length()));
+                        if (ref.getValue().startsWith("ref: ")) {
+                            output.append(" -> ").append(ref.getValue().substring("ref: refs/remotes/".length()));
+                        }
+                        output.append('\n');
+                    }
+                    return output.toString();
+                }
+            } catch (IOException e) {
+                System.err.println("In-process git branch failed, using git CLI: " + e.getMessage());
+            }
+        }
+        return executeGitCommand("git", "branch", "-a");
+    }
+
+    private String readCurrentBranch() throws Exception {
+        if (repository != null) {
+            try {
+                String head = repository.headRef();
+                if (head == null) {
+                    return "";
+                }
+                if (head.startsWith("refs/heads/")) {
+                    return head.substring("refs/heads/".length());
+                }
+            } catch (IOException e) {
+                System.err.println("In-process branch lookup failed, using git CLI: " + e.getMessage());
+            }
+        }
+        return executeGitCommand("git", "branch", "--show-current");
+    }
+
+    /**
+     * Remote, branch and last commit for get_repo_info, or null if the in-process reader can't answer.
+     */
+    private String[] readRepoInfo() {
+        if (repository == null) {
+            return null;
+        }
+        try {
+            String remote = repository.remoteUrl("origin");
+            if (remote == null) {
+                return null;
+            }
+            return new String[]{remote, readCurrentBranch(), readLogOneline(1)};
+        } catch (Exception e) {
+            System.err.println("In-process repo info failed, using git CLI: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String lastCommitOneline() throws Exception {
+        // Same output as "git log -1 --oneline", read from the long-lived cat-file process. The abbreviation
+        // grows with the repository, so without the in-process reader to size it git formats the line itself.
+        GitObject commit = repository != null ? git.readObject("HEAD") : null;
+        if (commit == null || !"commit".equals(commit.type())) {
+            return executeGitCommand("git", "log", "-1", "--oneline");
+        }
+        String text = commit.text();
+        int messageStart = text.indexOf("\n\n");
+        String subject = messageStart >= 0 ? text.substring(messageStart + 2).lines().findFirst().orElse("") : "";
+        return commit.sha().substring(0, repository.abbreviationLength()) + " " + subject;
+    }
+
     private void startWebhookServer() {
         try {
             webhookServer = HttpServer.create(new InetSocketAddress(8081), 0);
-            webhookServer.createContext("/webhook", new WebhookHandler());
-            webhookServer.setExecutor(null);
+            webhookIntake = WebhookIntake.fromEnv("git-webhook", this::processWebhook,
+                GitCustomMcpServer::welcome, eventLog);
+            webhookIntake.bind(webhookServer, "/webhook");
             webhookServer.start();
             System.err.println("Webhook server started on port 8081");
         } catch (IOException e) {
@@ -268,251 +457,435 @@ public class GitCustomMcpServer {
 
     private JsonNode webhookStatus() {
         String status = webhookServer != null 
-            ? "✅ Webhook server running on http://localhost:8081/webhook"
+            ? "✅ Webhook server running on http://localhost:8081/webhook\n📥 " + webhookIntake.status()
             : "❌ Webhook server not running";
-        
+        status += eventLog != null ? "\n🗄️ Event log: " + eventLog.describe() : "\n❌ Event log not available";
+        status += statisticsSink != null
+            ? "\n📊 Statistics: " + statisticsSink.describe()
+            : "\n⚪ Statistics not enabled (set STATS_TABLE)";
+        status += repoStatistics != null
+            ? "\n📈 Rollups: " + repoStatistics.describe()
+            : "\n❌ Rollups not available";
+
         return createToolResponse("text", status);
     }
 
-    private JsonNode getPipelineInfo() {
+    private JsonNode getPipelineInfo(JsonNode arguments) {
+        if (pipelineHistory == null) {
+            return createToolResponse("text", "🔧 Pipeline Information:\n\n❌ Pipeline history not available");
+        }
+        String commit = arguments.path("commit").asText(null);
+        String branch = arguments.path("branch").asText(null);
+        String repo = arguments.path("repo").asText(null);
+        String since = arguments.path("since").asText(null);
+        String until = arguments.path("until").asText(null);
+        boolean filtered = commit != null || branch != null || repo != null || since != null || until != null;
+        int limit = Math.max(1, Math.min(arguments.path("limit").asInt(filtered ? 10 : 1), 1000));
+
+        List<PipelineHistory.Pipeline> pipelines;
+        try {
+            if (commit != null) {
+                pipelines = pipelineHistory.byCommit(commit, repo, limit);
+            } else {
+                pipelines = pipelineHistory.between(since == null ? 0 : parseTime(since),
+                    until == null ? Long.MAX_VALUE : parseTime(until), branch, repo, limit);
+            }
+        } catch (DateTimeParseException e) {
+            return createToolResponse("text", "❌ Invalid time '" + e.getParsedString()
+                + "': use an ISO-8601 instant (2024-05-01T12:00:00Z) or date (2024-05-01)");
+        } catch (Exception e) {
+            return createToolResponse("text", "❌ Error reading pipeline history: " + e.getMessage());
+        }
+
         StringBuilder info = new StringBuilder();
-        info.append("🔧 Pipeline Information:\n\n");
-        
-        if (lastProjectId != null) {
-            info.append("📋 Project ID: ").append(lastProjectId).append("\n");
-        } else {
-            info.append("📋 Project ID: Not available\n");
+        info.append(pipelines.size() > 1
+            ? "🔧 " + pipelines.size() + " pipelines, newest first:\n"
+            : "🔧 Pipeline Information:\n");
+        if (pipelines.isEmpty()) {
+            info.append("\n").append(filtered ? "No pipelines match" : "No pipelines recorded yet").append("\n");
         }
-        
-        if (lastPipelineId != null) {
-            info.append("🚀 Pipeline ID: ").append(lastPipelineId).append("\n");
-        } else {
-            info.append("🚀 Pipeline ID: Not available\n");
+        for (PipelineHistory.Pipeline pipeline : pipelines) {
+            info.append("\n🚀 Pipeline ID: ").append(pipeline.id()).append("\n");
+            info.append("📋 Project ID: ").append(pipeline.projectId()).append("\n");
+            info.append("📁 Repository: ").append(pipeline.repo());
+            if (!pipeline.branch().isEmpty()) {
+                info.append(" (").append(pipeline.branch()).append(")");
+            }
+            info.append("\n");
+            info.append("📝 Commit: ").append(pipeline.sha()).append("\n");
+            info.append("🕒 Received: ").append(Instant.ofEpochMilli(pipeline.receivedAt())).append("\n");
+            if (pipeline.pusher() != null) {
+                info.append("👤 Pusher: ").append(pipeline.pusher()).append("\n");
+            }
+            if (pipeline.message() != null) {
+                info.append("💬 ").append(pipeline.message()).append("\n");
+            }
         }
-        
-        if (lastCommitSha != null) {
-            info.append("📝 Last Commit: ").append(lastCommitSha).append("\n");
+        return createToolResponse("text", info.toString());
+    }
+
+    private record StatsPeriod(long from, long to, RepoStatistics.Granularity granularity, String label) {
+    }
+
+    private JsonNode getRepoStats(JsonNode arguments) {
+        if (repoStatistics == null) {
+            return createToolResponse("text", "📈 Repository statistics:\n\n❌ Statistics rollups not available");
+        }
+        String by = arguments.path("by").asText("author").toLowerCase(Locale.ROOT);
+        String repo = arguments.path("repo").asText(null);
+        RepoStatistics.Metric metric;
+        try {
+            metric = RepoStatistics.Metric.valueOf(arguments.path("metric").asText("commits").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return createToolResponse("text", "❌ Unknown metric '" + arguments.path("metric").asText()
+                + "': use commits, files_changed, lines_added, lines_deleted or pipelines");
+        }
+        if (!List.of("author", "branch", "hour", "day").contains(by)) {
+            return createToolResponse("text", "❌ Unknown grouping '" + by + "': use author, branch, hour or day");
+        }
+        StatsPeriod period;
+        try {
+            String date = arguments.path("date").asText(null);
+            period = date != null
+                ? statsPeriod(LocalDate.parse(date))
+                : statsPeriod(arguments.path("period").asText(switch (by) {
+                    case "hour" -> "24h";
+                    case "day" -> "7d";
+                    default -> "today";
+                }), System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return createToolResponse("text", "❌ Invalid date '" + e.getParsedString() + "': use YYYY-MM-DD");
+        }
+        if (period == null) {
+            return createToolResponse("text", "❌ Unknown period '" + arguments.path("period").asText()
+                + "': use today, yesterday, week, 24h, 7d or 30d");
+        }
+
+        String metricName = metric.name().toLowerCase(Locale.ROOT);
+        StringBuilder stats = new StringBuilder("📈 ").append(metricName).append(" by ").append(by).append(", ")
+            .append(period.label()).append(repo != null ? " in " + repo : "").append("\n\n");
+        long total = 0;
+        if (by.equals("author") || by.equals("branch")) {
+            Map<String, Long> breakdown = repoStatistics.breakdown(metric,
+                by.equals("author") ? RepoStatistics.Dimension.AUTHOR : RepoStatistics.Dimension.BRANCH,
+                period.granularity(), period.from(), period.to(), repo);
+            for (Map.Entry<String, Long> entry : breakdown.entrySet()) {
+                stats.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+            }
+            total = repoStatistics.series(metric, period.granularity(), period.from(), period.to(), repo).values()
+                .stream().mapToLong(Long::longValue).sum();
         } else {
-            info.append("📝 Last Commit: Not available\n");
+            RepoStatistics.Granularity granularity = by.equals("hour")
+                ? RepoStatistics.Granularity.HOUR
+                : RepoStatistics.Granularity.DAY;
+            for (Map.Entry<Long, Long> window
+                : repoStatistics.series(metric, granularity, period.from(), period.to(), repo).entrySet()) {
+                Instant start = Instant.ofEpochMilli(window.getKey());
+                stats.append("  ").append(by.equals("hour") ? start : LocalDate.ofInstant(start, ZoneOffset.UTC))
+                    .append(": ").append(window.getValue()).append("\n");
+                total += window.getValue();
+            }
         }
-        
-        return createToolResponse("text", info.toString());
+        stats.append(total == 0 ? "  (none)\n" : "").append("\nTotal: ").append(total);
+        long retainedFrom = repoStatistics.retainedFrom(by.equals("hour")
+            ? RepoStatistics.Granularity.HOUR
+            : period.granularity());
+        if (retainedFrom > period.from()) {
+            stats.append("\n⚠️ Only kept since ").append(Instant.ofEpochMilli(Math.max(0, retainedFrom)));
+        }
+        return createToolResponse("text", stats.toString());
+    }
+
+    // UTC periods ending with the current hour or day; null for an unknown name
+    private static StatsPeriod statsPeriod(String name, long now) {
+        long hour = RepoStatistics.Granularity.HOUR.millis();
+        long day = RepoStatistics.Granularity.DAY.millis();
+        long today = Math.floorDiv(now, day) * day;
+        LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(now), ZoneOffset.UTC);
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "today" -> new StatsPeriod(today, today + day, RepoStatistics.Granularity.DAY, "today (" + date + ")");
+            case "yesterday" -> new StatsPeriod(today - day, today, RepoStatistics.Granularity.DAY,
+                "yesterday (" + date.minusDays(1) + ")");
+            case "week" -> {
+                long monday = today - (date.getDayOfWeek().getValue() - 1) * day;
+                yield new StatsPeriod(monday, monday + 7 * day, RepoStatistics.Granularity.DAY,
+                    "this week (from " + LocalDate.ofInstant(Instant.ofEpochMilli(monday), ZoneOffset.UTC) + ")");
+            }
+            case "24h" -> {
+                long thisHour = Math.floorDiv(now, hour) * hour;
+                yield new StatsPeriod(thisHour - 23 * hour, thisHour + hour, RepoStatistics.Granularity.HOUR,
+                    "last 24 hours");
+            }
+            case "7d" -> new StatsPeriod(today - 6 * day, today + day, RepoStatistics.Granularity.DAY, "last 7 days");
+            case "30d" -> new StatsPeriod(today - 29 * day, today + day, RepoStatistics.Granularity.DAY,
+                "last 30 days");
+            default -> null;
+        };
+    }
+
+    private static StatsPeriod statsPeriod(LocalDate date) {
+        long start = date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        return new StatsPeriod(start, start + RepoStatistics.Granularity.DAY.millis(), RepoStatistics.Granularity.DAY,
+            date.toString());
+    }
+
+    private static long parseTime(String value) {
+        return value.contains("T")
+            ? Instant.parse(value).toEpochMilli()
+            : LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
     }
 
     private void showGitStatusOnConsole() {
         try {
-            String status = executeGitCommand("git", "status", "--porcelain");
-            String branch = executeGitCommand("git", "branch", "--show-current");
+            String branch = readCurrentBranch();
+            String status = String.join("\n", workingTreeStatus.status(null).lines());
             
-            System.out.println("\n=== GIT STATUS DETAILS ===");
-            System.out.println("📍 Current Branch: " + branch.trim());
+            System.err.println("\n=== GIT STATUS DETAILS ===");
+            System.err.println("📍 Current Branch: " + branch.trim());
             
             if (status.trim().isEmpty()) {
-                System.out.println("✅ Working directory clean");
+                System.err.println("✅ Working directory clean");
             } else {
-                System.out.println("📋 Changes detected:");
-                System.out.println(status);
+                System.err.println("📋 Changes detected:");
+                System.err.println(status);
             }
-            System.out.println("========================\n");
+            System.err.println("========================\n");
         } catch (Exception e) {
             System.err.println("Error getting git status: " + e.getMessage());
         }
     }
 
-    private class WebhookHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            String method = exchange.getRequestMethod();
-            
-            if ("POST".equals(method)) {
-                try {
-                    String body = new String(exchange.getRequestBody().readAllBytes());
-                    JsonNode payload = mapper.readTree(body);
-                    String event = exchange.getRequestHeaders().getFirst("X-GitHub-Event");
-                    if (event == null) event = "unknown";
-                    
-                    System.out.println("\n🔔 Webhook received:");
-                    System.out.println("Event: " + event);
-                    String repoName = payload.path("repository").path("full_name").asText("");
-                    System.out.println("Repository: " + (repoName.isEmpty() ? "unknown" : repoName));
-                    
-                    // Extract project and pipeline info on push events
-                    if ("push".equals(event)) {
-                        extractPipelineInfo(payload);
-                    }
-                    
-                    showGitStatusOnConsole();
-                    
-                    String response = "OK";
-                    exchange.sendResponseHeaders(200, response.length());
-                    OutputStream os = exchange.getResponseBody();
-                    os.write(response.getBytes());
-                    os.close();
-                } catch (Exception e) {
-                    System.err.println("Webhook error: " + e.getMessage());
-                    exchange.sendResponseHeaders(500, 0);
-                    exchange.getResponseBody().close();
+    private void processWebhook(WebhookIntake.Delivery delivery) throws IOException {
+        JsonNode payload = mapper.readTree(delivery.body());
+        String event = delivery.event();
+
+        System.err.println("\n🔔 Webhook received:");
+        System.err.println("Event: " + event);
+        String repoName = payload.path("repository").path("full_name").asText("");
+        System.err.println("Repository: " + (repoName.isEmpty() ? "unknown" : repoName));
+
+        // Extract project and pipeline info on push events
+        PipelineHistory.Pipeline pipeline = null;
+        if ("push".equals(event)) {
+            pipeline = extractPipelineInfo(payload, delivery.receivedAt());
+        }
+        if (statisticsSink != null || repoStatistics != null) {
+            String pipelineId = pipeline != null ? pipeline.id() : null;
+            for (GitStatistics row : StatisticsSink.fromWebhook(event, payload, pipelineId, delivery.receivedAt())) {
+                if (statisticsSink != null) {
+                    statisticsSink.offer(row);
+                }
+                if (repoStatistics != null) {
+                    repoStatistics.add(row);
                 }
-            } else if ("GET".equals(method)) {
-                String welcomeMessage = "Welcome to webhook of mcp server";
-                exchange.sendResponseHeaders(200, welcomeMessage.length());
-                OutputStream os = exchange.getResponseBody();
-                os.write(welcomeMessage.getBytes());
-                os.close();
-            } else {
-                exchange.sendResponseHeaders(405, 0);
-                exchange.getResponseBody().close();
             }
         }
+
+        showGitStatusOnConsole();
     }
 
-    private void extractPipelineInfo(JsonNode payload) {
+    private JsonNode getEvents(long since, int limit) {
+        if (eventLog == null) {
+            return createToolResponse("text", "❌ Event log not available");
+        }
         try {
-            // Extract project ID from repository
-            JsonNode repository = payload.path("repository");
-            lastProjectId = repository.path("id").asText();
-            
-            // Extract commit SHA
-            lastCommitSha = payload.path("after").asText();
-            
-            // Generate pipeline ID (could be workflow run ID or custom logic)
-            String repoName = repository.path("full_name").asText();
-            lastPipelineId = "pipeline_" + System.currentTimeMillis();
-            
-            System.out.println("\n🔧 Pipeline Info Extracted:");
-            System.out.println("📋 Project ID: " + lastProjectId);
-            System.out.println("🚀 Pipeline ID: " + lastPipelineId);
-            System.out.println("📝 Commit SHA: " + lastCommitSha);
-            System.out.println("📁 Repository: " + repoName);
-            
+            JsonNode page = eventLog.page(mapper, since, Math.max(1, Math.min(limit, 500)));
+            return createToolResponse("text", mapper.writerWithDefaultPrettyPrinter().writeValueAsString(page));
         } catch (Exception e) {
-            System.err.println("Error extracting pipeline info: " + e.getMessage());
+            return createToolResponse("text", "❌ Error reading events: " + e.getMessage());
         }
     }
 
-    private String executeGitCommand(String... command) throws Exception {
-        // Try to find git executable
-        String gitCmd = findGitExecutable();
-        String[] fullCommand = new String[command.length];
-        fullCommand[0] = gitCmd;
-        System.arraycopy(command, 1, fullCommand, 1, command.length - 1);
-        
-        ProcessBuilder pb = new ProcessBuilder(fullCommand);
-        pb.directory(Paths.get(workingDir).toFile());
-        Process process = pb.start();
-        
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+    private void openPipelineHistory() {
+        try {
+            pipelineHistory = PipelineHistory.fromEnv(mapper);
+            seedPipelineHistory();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Pipeline history disabled: " + e.getMessage());
+        }
+    }
+
+    private void openStatisticsSink() {
+        try {
+            statisticsSink = StatisticsSink.fromEnv();
+            if (statisticsSink != null) {
+                System.err.println("Statistics sink writing to DynamoDB");
             }
+        } catch (RuntimeException e) {
+            System.err.println("Statistics disabled: " + e.getMessage());
         }
-        
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            StringBuilder error = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    error.append(line).append("\n");
+    }
+
+    private void openRepoStatistics() {
+        try {
+            repoStatistics = RepoStatistics.fromEnv();
+            repoStatsScanner = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "repo-stats-scanner");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduleGitLogScan();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Statistics rollups disabled: " + e.getMessage());
+        }
+    }
+
+    private void scheduleGitLogScan() {
+        if (repoStatistics != null && scanPending.compareAndSet(false, true)) {
+            repoStatsScanner.execute(() -> {
+                scanPending.set(false);
+                scanGitLog();
+            });
+        }
+    }
+
+    // Adds commits on local branches that the rollups haven't read yet, starting from the head read last time
+    private void scanGitLog() {
+        String repo = repositoryName();
+        List<String> branches = new ArrayList<>();
+        try {
+            String current = readCurrentBranch().trim();
+            if (!current.isEmpty()) {
+                branches.add(current);
+            }
+            executeGitCommand("git", "for-each-ref", "--format=%(refname:short)", "refs/heads/").lines()
+                .map(String::trim)
+                .filter(branch -> !branch.isEmpty() && !branches.contains(branch))
+                .forEach(branches::add);
+        } catch (Exception e) {
+            System.err.println("Failed to list branches for statistics: " + e.getMessage());
+            return;
+        }
+        String since = "--since=" + Instant.ofEpochMilli(repoStatistics.countedFrom());
+        int commits = 0;
+        for (String branch : branches) {
+            try {
+                String head = executeGitCommand("git", "rev-parse", "--verify", "refs/heads/" + branch).trim();
+                String previous = repoStatistics.scannedHead(repo, branch);
+                if (head.equals(previous)) {
+                    continue;
                 }
+                String range = previous != null && isAncestor(previous, head) ? previous + ".." + head : head;
+                commits += repoStatistics.addGitLog(repo, branch,
+                    executeGitCommand("git", "log", "--numstat", "--format=%x1e%H%x1f%an%x1f%ct", since, range));
+                repoStatistics.setScannedHead(repo, branch, head);
+            } catch (Exception e) {
+                System.err.println("Failed to read " + branch + " for statistics: " + e.getMessage());
             }
-            throw new RuntimeException("Git command failed: " + error.toString());
         }
-        
-        return output.toString();
-    }
-
-    private String findGitExecutable() {
-        String os = System.getProperty("os.name").toLowerCase();
-        if (os.contains("win")) {
-            // Try common Windows git paths
-            String[] paths = {
-                "git", "git.exe", 
-                "C:\\Program Files\\Git\\bin\\git.exe",
-                "C:\\Program Files (x86)\\Git\\bin\\git.exe"
-            };
-            for (String path : paths) {
-                try {
-                    new ProcessBuilder(path, "--version").start().waitFor();
-                    return path;
-                } catch (Exception ignored) {}
+        if (commits > 0) {
+            System.err.println("Added " + commits + " commits from git log to repository statistics");
+        }
+    }
+
+    private boolean isAncestor(String ancestor, String commit) {
+        try {
+            executeGitCommand("git", "merge-base", "--is-ancestor", ancestor, commit);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Commits and pushes made through the tools count the same as the ones webhooks report
+    private void recordLocalEvent(String eventType, String branch) {
+        if (statisticsSink == null) {
+            return;
+        }
+        try {
+            String[] head = executeGitCommand("git", "log", "-1", "--format=%H%x1f%an").trim().split("\u001f", 2);
+            String files = executeGitCommand("git", "diff-tree", "--no-commit-id", "--name-only", "-r", "--root",
+                "HEAD").trim();
+            GitStatistics row = StatisticsSink.newRecord(repositoryName(), eventType, System.currentTimeMillis());
+            row.setBranch(branch != null ? branch : readCurrentBranch());
+            row.setCommitSha(head[0]);
+            row.setAuthor(head.length > 1 ? head[1] : null);
+            row.setFilesChanged(files.isEmpty() ? 0 : (int) files.lines().count());
+            statisticsSink.offer(row);
+        } catch (Exception e) {
+            System.err.println("Failed to record " + eventType + " statistics: " + e.getMessage());
+        }
+    }
+
+    // owner/repo from the origin URL, as in webhook payloads; the directory name without one
+    private String repositoryName() {
+        String remote = null;
+        try {
+            remote = repository != null
+                ? repository.remoteUrl("origin")
+                : executeGitCommand("git", "config", "--get", "remote.origin.url").trim();
+        } catch (Exception e) {
+            // No origin; fall through
+        }
+        if (remote != null && !remote.isBlank()) {
+            String[] parts = remote.trim().replaceFirst("\\.git$", "").split("[/:]");
+            if (parts.length >= 2) {
+                return parts[parts.length - 2] + "/" + parts[parts.length - 1];
             }
         }
-        return "git"; // Default for Unix/Linux/Mac
+        return Path.of(workingDir).getFileName().toString();
     }
 
-    private ObjectNode createTool(String name, String description, ObjectNode... params) {
-        ObjectNode tool = mapper.createObjectNode();
-        tool.put("name", name);
-        tool.put("description", description);
-        
-        ObjectNode inputSchema = mapper.createObjectNode();
-        inputSchema.put("type", "object");
-        
-        ObjectNode properties = mapper.createObjectNode();
-        ArrayNode required = mapper.createArrayNode();
-        
-        for (ObjectNode param : params) {
-            String paramName = param.get("name").asText();
-            properties.set(paramName, param);
-            if (param.get("required").asBoolean()) {
-                required.add(paramName);
+    // A history file starts empty; fill it from pushes already in the event log
+    private void seedPipelineHistory() {
+        if (pipelineHistory == null || eventLog == null || pipelineHistory.latest() != null) {
+            return;
+        }
+        for (long offset = eventLog.firstOffset(); offset < eventLog.endOffset(); ) {
+            List<EventLog.Event> events = eventLog.read(offset, 500);
+            for (EventLog.Event event : events) {
+                if ("push".equals(event.type())) {
+                    try {
+                        pipelineHistory.record(mapper.readTree(event.body()), event.timestamp());
+                    } catch (IOException e) {
+                        System.err.println("Skipping unreadable push at offset " + event.offset());
+                    }
+                }
             }
+            offset = events.isEmpty() ? eventLog.endOffset() : events.get(events.size() - 1).offset() + 1;
         }
-        
-        inputSchema.set("properties", properties);
-        inputSchema.set("required", required);
-        tool.set("inputSchema", inputSchema);
-        
-        return tool;
     }
 
-    private ObjectNode createParam(String name, String type, String description, boolean required) {
-        ObjectNode param = mapper.createObjectNode();
-        param.put("name", name);
-        param.put("type", type);
-        param.put("description", description);
-        param.put("required", required);
-        return param;
+    private static void welcome(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, 0);
+            exchange.getResponseBody().close();
+            return;
+        }
+        String welcomeMessage = "Welcome to webhook of mcp server";
+        exchange.sendResponseHeaders(200, welcomeMessage.length());
+        OutputStream os = exchange.getResponseBody();
+        os.write(welcomeMessage.getBytes());
+        os.close();
     }
 
-    private ObjectNode createSuccessResponse(JsonNode id, JsonNode result) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        if (id != null) {
-            response.set("id", id);
+    private PipelineHistory.Pipeline extractPipelineInfo(JsonNode payload, long receivedAt) {
+        if (pipelineHistory == null) {
+            return null;
+        }
+        try {
+            PipelineHistory.Pipeline pipeline = pipelineHistory.record(payload, receivedAt);
+            
+            System.err.println("\n🔧 Pipeline Info Extracted:");
+            System.err.println("📋 Project ID: " + pipeline.projectId());
+            System.err.println("🚀 Pipeline ID: " + pipeline.id());
+            System.err.println("📝 Commit SHA: " + pipeline.sha());
+            System.err.println("📁 Repository: " + pipeline.repo());
+            return pipeline;
+        } catch (Exception e) {
+            System.err.println("Error extracting pipeline info: " + e.getMessage());
+            return null;
         }
-        response.set("result", result);
-        return response;
     }
 
-    private ObjectNode createErrorResponse(JsonNode id, int code, String message) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        if (id != null) {
-            response.set("id", id);
+    private String executeGitWriteCommand(String... command) throws Exception {
+        // Requests now run concurrently; keep commands that touch the index or refs from racing on index.lock
+        synchronized (gitWriteLock) {
+            return executeGitCommand(command);
         }
-        
-        ObjectNode error = mapper.createObjectNode();
-        error.put("code", code);
-        error.put("message", message);
-        response.set("error", error);
-        
-        return response;
     }
 
-    private ObjectNode createToolResponse(String type, String content) {
-        ObjectNode response = mapper.createObjectNode();
-        ArrayNode contentArray = mapper.createArrayNode();
-        
-        ObjectNode contentObj = mapper.createObjectNode();
-        contentObj.put("type", type);
-        contentObj.put("text", content);
-        contentArray.add(contentObj);
-        
-        response.set("content", contentArray);
-        return response;
+    private String executeGitCommand(String... command) throws Exception {
+        return git.run(command);
     }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.mcp.git;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A git object as reported by {@code git cat-file --batch}, or read from the object database directly.
+ */
+public record GitObject(String sha, String type, long size, byte[] content) {
+
+    public String text() {
+        return content != null ? new String(content, StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,147 @@
+package com.mcp.git;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from {@code long} to {@code long} with linear probing, so counters cost two array slots
+ * instead of a boxed entry each. Key 0 marks an empty slot and must not be used. Not thread-safe.
+ */
+final class LongCounterMap {
+    interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    interface EntryPredicate {
+        boolean test(long key, long value);
+    }
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    LongCounterMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+    }
+
+    long get(long key) {
+        int slot = slot(keys, key);
+        return keys[slot] == key ? values[slot] : 0;
+    }
+
+    /**
+     * Adds {@code delta} to the value for {@code key}, starting from 0, and returns the new value.
+     */
+    long add(long key, long delta) {
+        int slot = slot(keys, key);
+        if (keys[slot] == key) {
+            return values[slot] += delta;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return delta;
+    }
+
+    void put(long key, long value) {
+        int slot = slot(keys, key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+        } else {
+            add(key, value);
+        }
+    }
+
+    boolean containsKey(long key) {
+        return keys[slot(keys, key)] == key;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Empties the map but keeps its capacity, since a reused window tends to fill up to the same size again.
+     */
+    void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    void removeIf(EntryPredicate predicate) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length];
+        values = new long[oldValues.length];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0 && !predicate.test(oldKeys[i], oldValues[i])) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                out.writeLong(keys[i]);
+                out.writeLong(values[i]);
+            }
+        }
+    }
+
+    static LongCounterMap read(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative map size " + count);
+        }
+        LongCounterMap map = new LongCounterMap(count);
+        for (int i = 0; i < count; i++) {
+            map.put(in.readLong(), in.readLong());
+        }
+        return map;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Slot holding key, or the empty slot where it would go
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        long mixed = key * 0x9e3779b97f4a7c15L;
+        int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
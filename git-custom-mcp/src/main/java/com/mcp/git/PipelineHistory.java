@@ -0,0 +1,329 @@
+package com.mcp.git;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mcp.core.Env;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Every pipeline started by a push, queryable by commit, branch and time. The newest pipelines are held in
+ * concurrent skip lists: one ordered by time, one by commit SHA (so a prefix is a sub-map), and one per branch.
+ * Reads go straight to those maps without locking; only recording takes a lock.
+ * <p>
+ * Each pipeline is also appended to a JSON-lines file, which is what the store is reloaded from on startup. Memory
+ * holds at most {@code memoryLimit} pipelines; older ones are dropped from the maps and answered from the file
+ * when a query reaches past what memory covers. The file rolls over to {@code .old} at {@code maxFileBytes}, so
+ * the disk history is bounded too.
+ */
+public class PipelineHistory implements AutoCloseable {
+    // Time keys are epoch millis shifted left to make room for a sequence number, so pipelines recorded in the
+    // same millisecond keep their order; 43 bits of millis last until the year 2248
+    private static final int SEQUENCE_BITS = 20;
+
+    public record Pipeline(String id, String projectId, String repo, String branch, String sha, String before,
+                           String pusher, String message, long receivedAt) {
+    }
+
+    private final ObjectMapper mapper;
+    private final Path file;
+    private final int memoryLimit;
+    private final long maxFileBytes;
+    private final ConcurrentSkipListMap<Long, Pipeline> byTime = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Pipeline> bySha = new ConcurrentSkipListMap<>();
+    private final Map<String, ConcurrentSkipListMap<Long, Pipeline>> byBranch = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private BufferedWriter writer;
+    private long fileBytes;
+    private long sequence;
+    // True once some pipeline is only on disk
+    private volatile boolean spilled;
+
+    public PipelineHistory(ObjectMapper mapper, Path file, int memoryLimit, long maxFileBytes) throws IOException {
+        this.mapper = mapper;
+        this.file = file;
+        this.memoryLimit = Math.max(1, memoryLimit);
+        this.maxFileBytes = maxFileBytes;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        load();
+        this.writer = open();
+        if (fileBytes > 0 && endsTorn()) {
+            // Start the next record on a line of its own
+            writer.write("\n");
+            writer.flush();
+            fileBytes++;
+        }
+    }
+
+    /**
+     * Opens the history at {@code PIPELINE_HISTORY_FILE} (default {@code ~/.mcp/git-custom-pipelines.jsonl}),
+     * keeping {@code PIPELINE_HISTORY_MEMORY} pipelines in memory (default 10000) and at most
+     * {@code PIPELINE_HISTORY_MAX_MB} on disk (default 256, split over the file and its {@code .old}).
+     */
+    public static PipelineHistory fromEnv(ObjectMapper mapper) throws IOException {
+        String configured = System.getenv("PIPELINE_HISTORY_FILE");
+        Path file = configured == null || configured.isBlank()
+            ? Path.of(System.getProperty("user.home"), ".mcp", "git-custom-pipelines.jsonl")
+            : Path.of(configured.trim());
+        return new PipelineHistory(mapper, file, Env.getInt("PIPELINE_HISTORY_MEMORY", 10_000, 1),
+            Env.getInt("PIPELINE_HISTORY_MAX_MB", 256, 1) * 1024L * 1024 / 2);
+    }
+
+    /**
+     * Records the pipeline a push event starts.
+     */
+    public Pipeline record(JsonNode push, long receivedAt) {
+        JsonNode repository = push.path("repository");
+        String ref = push.path("ref").asText("");
+        String message = push.path("head_commit").path("message").asText("");
+        Pipeline pipeline = new Pipeline("pipeline_" + receivedAt, repository.path("id").asText(),
+            repository.path("full_name").asText(), ref.startsWith("refs/heads/") ? ref.substring(11) : ref,
+            push.path("after").asText(), push.path("before").asText(null),
+            push.path("pusher").path("name").asText(null),
+            message.isEmpty() ? null : message.lines().findFirst().orElse(""), receivedAt);
+        synchronized (writeLock) {
+            try {
+                append(pipeline);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            index(pipeline);
+        }
+        return pipeline;
+    }
+
+    public Pipeline latest() {
+        Map.Entry<Long, Pipeline> last = byTime.lastEntry();
+        return last == null ? null : last.getValue();
+    }
+
+    /**
+     * Pipelines whose commit starts with {@code shaPrefix}, newest first.
+     */
+    public List<Pipeline> byCommit(String shaPrefix, String repo, int limit) {
+        String prefix = shaPrefix.toLowerCase();
+        List<Pipeline> found = new ArrayList<>();
+        for (Pipeline pipeline : bySha.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (repo == null || pipeline.repo().equalsIgnoreCase(repo)) {
+                found.add(pipeline);
+            }
+        }
+        found.sort((a, b) -> Long.compare(b.receivedAt(), a.receivedAt()));
+        if (found.size() < limit && spilled) {
+            found.addAll(fromDisk(pipeline -> pipeline.sha().startsWith(prefix)
+                && (repo == null || pipeline.repo().equalsIgnoreCase(repo)), limit - found.size()));
+        }
+        return found.size() > limit ? found.subList(0, limit) : found;
+    }
+
+    /**
+     * Pipelines received in {@code [since, until)}, newest first, optionally only for one branch or repository.
+     */
+    public List<Pipeline> between(long since, long until, String branch, String repo, int limit) {
+        NavigableMap<Long, Pipeline> source = branch == null ? byTime : byBranch.get(branch);
+        List<Pipeline> found = new ArrayList<>();
+        if (source != null) {
+            for (Pipeline pipeline : source.subMap(timeKey(since), true, timeKey(until), false)
+                    .descendingMap().values()) {
+                if (repo == null || pipeline.repo().equalsIgnoreCase(repo)) {
+                    found.add(pipeline);
+                    if (found.size() == limit) {
+                        return found;
+                    }
+                }
+            }
+        }
+        // Memory only goes back to its oldest pipeline; anything earlier in the range is on disk
+        if (spilled && since < covered()) {
+            found.addAll(fromDisk(pipeline -> pipeline.receivedAt() >= since && pipeline.receivedAt() < until
+                    && (branch == null || branch.equals(pipeline.branch()))
+                    && (repo == null || pipeline.repo().equalsIgnoreCase(repo)),
+                limit - found.size()));
+        }
+        return found;
+    }
+
+    public int size() {
+        return byTime.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            writer.close();
+        }
+    }
+
+    private void index(Pipeline pipeline) {
+        long key = timeKey(pipeline.receivedAt()) | (sequence++ & ((1L << SEQUENCE_BITS) - 1));
+        byTime.put(key, pipeline);
+        bySha.put(shaKey(pipeline, key), pipeline);
+        byBranch.computeIfAbsent(pipeline.branch(), branch -> new ConcurrentSkipListMap<>()).put(key, pipeline);
+        while (byTime.size() > memoryLimit) {
+            Map.Entry<Long, Pipeline> evicted = byTime.pollFirstEntry();
+            Pipeline old = evicted.getValue();
+            bySha.remove(shaKey(old, evicted.getKey()));
+            ConcurrentSkipListMap<Long, Pipeline> branch = byBranch.get(old.branch());
+            branch.remove(evicted.getKey());
+            if (branch.isEmpty()) {
+                byBranch.remove(old.branch(), branch);
+            }
+            spilled = true;
+        }
+    }
+
+    // The same commit can start pipelines on several branches or pushes; the time key keeps them apart
+    private static String shaKey(Pipeline pipeline, long key) {
+        return pipeline.sha() + " " + Long.toHexString(key);
+    }
+
+    private static long timeKey(long millis) {
+        return millis >= Long.MAX_VALUE >> SEQUENCE_BITS ? Long.MAX_VALUE : Math.max(0, millis) << SEQUENCE_BITS;
+    }
+
+    // Time of the oldest pipeline still in memory; everything from then on is in the maps
+    private long covered() {
+        Map.Entry<Long, Pipeline> oldest = byTime.firstEntry();
+        return oldest == null ? Long.MAX_VALUE : oldest.getValue().receivedAt();
+    }
+
+    /**
+     * Scans the files for matching pipelines older than anything in memory and returns the newest {@code limit}
+     * of them, newest first. Appends are flushed line by line, so the scan needs no lock; a line being written
+     * is skipped like a torn one.
+     */
+    private List<Pipeline> fromDisk(Predicate<Pipeline> filter, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        long before = covered();
+        Deque<Pipeline> newest = new ArrayDeque<>();
+        try {
+            for (Path source : List.of(old(), file)) {
+                readFile(source, pipeline -> {
+                    if (pipeline.receivedAt() < before && filter.test(pipeline)) {
+                        newest.addLast(pipeline);
+                        if (newest.size() > limit) {
+                            newest.removeFirst();
+                        }
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<Pipeline> found = new ArrayList<>(newest);
+        Collections.reverse(found);
+        return found;
+    }
+
+    private void load() throws IOException {
+        long[] count = new long[1];
+        for (Path source : List.of(old(), file)) {
+            readFile(source, pipeline -> {
+                index(pipeline);
+                count[0]++;
+            });
+        }
+        fileBytes = Files.exists(file) ? Files.size(file) : 0;
+        if (count[0] > 0) {
+            System.err.println("Loaded " + count[0] + " pipelines from " + file);
+        }
+    }
+
+    private void readFile(Path source, Consumer<Pipeline> consumer) throws IOException {
+        if (!Files.exists(source)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    consumer.accept(fromJson(mapper.readTree(line)));
+                } catch (IOException e) {
+                    // A line cut short by a crash; the rest of the file is still good
+                }
+            }
+        }
+    }
+
+    private void append(Pipeline pipeline) throws IOException {
+        String line = mapper.writeValueAsString(toJson(pipeline)) + "\n";
+        int length = line.getBytes(StandardCharsets.UTF_8).length;
+        if (fileBytes + length > maxFileBytes && fileBytes > 0) {
+            writer.close();
+            Files.move(file, old(), StandardCopyOption.REPLACE_EXISTING);
+            writer = open();
+            fileBytes = 0;
+            // Whatever was only in the replaced .old file is gone; memory still has the newest pipelines
+        }
+        writer.write(line);
+        writer.flush();
+        fileBytes += length;
+    }
+
+    private boolean endsTorn() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            raf.seek(raf.length() - 1);
+            return raf.read() != '\n';
+        }
+    }
+
+    private BufferedWriter open() throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND);
+    }
+
+    private Path old() {
+        return file.resolveSibling(file.getFileName() + ".old");
+    }
+
+    private ObjectNode toJson(Pipeline pipeline) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("id", pipeline.id());
+        node.put("project_id", pipeline.projectId());
+        node.put("repo", pipeline.repo());
+        node.put("branch", pipeline.branch());
+        node.put("sha", pipeline.sha());
+        node.put("before", pipeline.before());
+        node.put("pusher", pipeline.pusher());
+        node.put("message", pipeline.message());
+        node.put("received_at", pipeline.receivedAt());
+        return node;
+    }
+
+    private static Pipeline fromJson(JsonNode node) throws IOException {
+        if (!node.hasNonNull("sha") || !node.hasNonNull("received_at")) {
+            throw new IOException("Incomplete pipeline record");
+        }
+        return new Pipeline(node.path("id").asText(), node.path("project_id").asText(), node.path("repo").asText(),
+            node.path("branch").asText(), node.path("sha").asText(), node.path("before").asText(null),
+            node.path("pusher").asText(null), node.path("message").asText(null), node.path("received_at").asLong());
+    }
+}
@@ -0,0 +1,627 @@
+package com.mcp.git;
+
+import com.mcp.core.Env;
+
+import com.mcp.git.model.GitStatistics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Pre-aggregated repository statistics: commits, files and lines changed, and pipelines, counted per author, per
+ * branch and in total for each hour and each day. Every event is added to its window once when it arrives, so a
+ * query reads a handful of counters instead of scanning history, and costs the same however much history there is.
+ * <p>
+ * Each granularity is a ring of tumbling windows; window {@code w} lives in slot {@code w % length} and reuses the
+ * slot of the window {@code length} before it, which is how old windows expire. A window's counters are a
+ * {@link LongCounterMap} keyed by metric and an interned dimension id. Commits are counted once however many times
+ * they are reported (webhook, local git log, another branch), on the branch they were first seen on. A webhook
+ * carries no line counts, so a commit it reports first is remembered until git log reads it, and the lines are then
+ * added to the windows, author and branch the commit was counted in.
+ * <p>
+ * The whole state is written to a snapshot file every {@code snapshotMillis} when it has changed and on close,
+ * and read back on startup, so a restart doesn't have to replay history.
+ */
+public class RepoStatistics implements AutoCloseable {
+    private static final int MAGIC = 0x52535402;
+    // Snapshots from before commits awaiting line counts were kept
+    private static final int MAGIC_V1 = 0x52535401;
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    // Dimension ids share a key with the metric, which takes the bits above them
+    private static final int DIMENSION_BITS = 32;
+
+    public enum Metric {
+        COMMITS, FILES_CHANGED, LINES_ADDED, LINES_DELETED, PIPELINES
+    }
+
+    public enum Dimension {
+        TOTAL, AUTHOR, BRANCH
+    }
+
+    public enum Granularity {
+        HOUR(HOUR_MILLIS), DAY(DAY_MILLIS);
+
+        private final long millis;
+
+        Granularity(long millis) {
+            this.millis = millis;
+        }
+
+        public long millis() {
+            return millis;
+        }
+    }
+
+    private record DimensionValue(Dimension dimension, String repo, String value) {
+    }
+
+    /**
+     * Where an event is counted: its time and the dimension ids it is added to (0 for none).
+     */
+    private record Counted(long millis, int total, int author, int branch) {
+    }
+
+    /**
+     * Tumbling windows of one granularity. Slots are allocated on first use and cleared when a newer window
+     * takes them over.
+     */
+    private static final class Ring {
+        final long millis;
+        final long[] windows;
+        final LongCounterMap[] counters;
+        long newest = -1;
+
+        Ring(Granularity granularity, int length) {
+            millis = granularity.millis();
+            windows = new long[length];
+            counters = new LongCounterMap[length];
+            Arrays.fill(windows, -1);
+        }
+
+        long oldest() {
+            return newest - windows.length + 1;
+        }
+
+        // Null when the window has already expired
+        LongCounterMap forWrite(long window) {
+            if (window < 0 || window <= newest - windows.length) {
+                return null;
+            }
+            int slot = (int) (window % windows.length);
+            if (windows[slot] != window) {
+                if (counters[slot] == null) {
+                    counters[slot] = new LongCounterMap(64);
+                } else {
+                    counters[slot].clear();
+                }
+                windows[slot] = window;
+            }
+            newest = Math.max(newest, window);
+            return counters[slot];
+        }
+
+        LongCounterMap forRead(long window) {
+            if (window < 0) {
+                return null;
+            }
+            int slot = (int) (window % windows.length);
+            return windows[slot] == window && window >= oldest() ? counters[slot] : null;
+        }
+    }
+
+    private final Path file;
+    private final Ring hours;
+    private final Ring days;
+    private final Map<DimensionValue, Integer> dimensionIds = new HashMap<>();
+    private final List<DimensionValue> dimensions = new ArrayList<>();
+    private final Map<Dimension, List<Integer>> idsByDimension = new EnumMap<>(Dimension.class);
+    // Commit hash to the day it was counted in; pruned of expired days as it grows
+    private LongCounterMap seenCommits = new LongCounterMap(1024);
+    private int pruneSeenAt = 1024;
+    // Commit hash to where it was counted, for commits still waiting for git log to bring their line counts
+    private final Map<Long, Counted> awaitingLines = new HashMap<>();
+    // Last commit read with git log, per repository and branch
+    private final Map<String, String> scannedHeads = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService snapshotter;
+    private boolean dirty;
+
+    public RepoStatistics(Path file, int hoursKept, int daysKept, long snapshotMillis) throws IOException {
+        this.file = file;
+        this.hours = new Ring(Granularity.HOUR, Math.max(1, hoursKept));
+        this.days = new Ring(Granularity.DAY, Math.max(1, daysKept));
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        load();
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "repo-stats-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, snapshotMillis, snapshotMillis,
+            TimeUnit.MILLISECONDS);
+    }
+
+    public static RepoStatistics fromEnv() throws IOException {
+        String configured = System.getenv("REPO_STATS_FILE");
+        Path file = configured == null || configured.isBlank()
+            ? Path.of(System.getProperty("user.home"), ".mcp", "git-custom-stats.bin")
+            : Path.of(configured.trim());
+        return new RepoStatistics(file, Env.getInt("REPO_STATS_HOURS", 24 * 31, 1),
+            Env.getInt("REPO_STATS_DAYS", 400, 1),
+            Env.getInt("REPO_STATS_SNAPSHOT_SECONDS", 60, 1) * 1000L);
+    }
+
+    /**
+     * Counts a commit, unless a commit with the same SHA was counted already. Returns whether it was counted.
+     * If it was counted from a webhook, without line counts, the lines given here are added to it.
+     */
+    public boolean addCommit(String repo, String sha, String branch, String author, long millis, int files,
+                          long linesAdded, long linesDeleted) {
+        return addCommit(repo, sha, branch, author, millis, files, linesAdded, linesDeleted, true);
+    }
+
+    private boolean addCommit(String repo, String sha, String branch, String author, long millis, int files,
+                              long linesAdded, long linesDeleted, boolean linesKnown) {
+        lock.writeLock().lock();
+        try {
+            long day = Math.floorDiv(millis, DAY_MILLIS);
+            long hash = sha == null || sha.isEmpty() ? 0 : hash(sha);
+            if (hash != 0 && seenCommits.containsKey(hash)) {
+                Counted counted = linesKnown ? awaitingLines.remove(hash) : null;
+                if (counted != null) {
+                    count(counted, Metric.LINES_ADDED, linesAdded);
+                    count(counted, Metric.LINES_DELETED, linesDeleted);
+                    dirty = true;
+                }
+                return false;
+            }
+            if (day <= days.newest - days.windows.length) {
+                return false;
+            }
+            Counted counted = at(repo, branch, author, millis);
+            if (hash != 0) {
+                seenCommits.put(hash, day);
+                if (!linesKnown) {
+                    awaitingLines.put(hash, counted);
+                }
+                if (seenCommits.size() > pruneSeenAt) {
+                    long expired = days.newest - days.windows.length;
+                    seenCommits.removeIf((key, seenDay) -> seenDay <= expired);
+                    awaitingLines.values().removeIf(
+                        waiting -> Math.floorDiv(waiting.millis(), DAY_MILLIS) <= expired);
+                    pruneSeenAt = Math.max(1024, seenCommits.size() * 2);
+                }
+            }
+            count(counted, Metric.COMMITS, 1);
+            count(counted, Metric.FILES_CHANGED, files);
+            count(counted, Metric.LINES_ADDED, linesAdded);
+            count(counted, Metric.LINES_DELETED, linesDeleted);
+            dirty = true;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addPipeline(String repo, String branch, String author, long millis) {
+        lock.writeLock().lock();
+        try {
+            count(at(repo, branch, author, millis), Metric.PIPELINES, 1);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a row built for the statistics table: commits count as commits, pushes as pipelines, and other events
+     * aren't rolled up. Rows come from webhooks, which don't say how many lines a commit changed.
+     */
+    public void add(GitStatistics row) {
+        String timestamp = row.getTimestamp();
+        int separator = timestamp == null ? -1 : timestamp.indexOf('#');
+        long millis = Instant.parse(separator < 0 ? timestamp : timestamp.substring(0, separator)).toEpochMilli();
+        if ("commit".equals(row.getEventType())) {
+            addCommit(row.getRepository(), row.getCommitSha(), row.getBranch(), row.getAuthor(), millis,
+                row.getFilesChanged() == null ? 0 : row.getFilesChanged(), 0, 0, false);
+        } else if ("push".equals(row.getEventType())) {
+            addPipeline(row.getRepository(), row.getBranch(), row.getAuthor(), millis);
+        }
+    }
+
+    /**
+     * Adds the commits in the output of {@code git log --numstat --format=%x1e%H%x1f%an%x1f%ct} run on
+     * {@code branch}. Returns how many of them were new.
+     */
+    public int addGitLog(String repo, String branch, String log) {
+        int commits = 0;
+        for (String record : log.split("\u001e")) {
+            List<String> lines = record.lines().filter(line -> !line.isBlank()).toList();
+            if (lines.isEmpty()) {
+                continue;
+            }
+            String[] header = lines.get(0).split("\u001f", 3);
+            if (header.length < 3) {
+                continue;
+            }
+            int files = 0;
+            long added = 0;
+            long deleted = 0;
+            for (String line : lines.subList(1, lines.size())) {
+                String[] numstat = line.split("\t", 3);
+                if (numstat.length == 3) {
+                    files++;
+                    // Binary files show "-" for both counts
+                    added += numstat[0].equals("-") ? 0 : Long.parseLong(numstat[0]);
+                    deleted += numstat[1].equals("-") ? 0 : Long.parseLong(numstat[1]);
+                }
+            }
+            if (addCommit(repo, header[0], branch, header[1], Long.parseLong(header[2].trim()) * 1000, files,
+                added, deleted)) {
+                commits++;
+            }
+        }
+        return commits;
+    }
+
+    public String scannedHead(String repo, String branch) {
+        lock.readLock().lock();
+        try {
+            return scannedHeads.get(repo + "\u001f" + branch);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setScannedHead(String repo, String branch, String sha) {
+        lock.writeLock().lock();
+        try {
+            scannedHeads.put(repo + "\u001f" + branch, sha);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Totals per author or branch over the windows that overlap {@code [from, to)}, largest first.
+     */
+    public Map<String, Long> breakdown(Metric metric, Dimension dimension, Granularity granularity, long from,
+                                       long to, String repo) {
+        Map<String, Long> totals = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            Ring ring = ring(granularity);
+            long first = Math.max(Math.floorDiv(from, granularity.millis()), ring.oldest());
+            long last = Math.min(Math.floorDiv(to - 1, granularity.millis()), ring.newest);
+            List<Integer> ids = dimensionIds(dimension, repo);
+            for (long window = first; window <= last; window++) {
+                LongCounterMap counters = ring.forRead(window);
+                if (counters == null) {
+                    continue;
+                }
+                for (int id : ids) {
+                    long value = counters.get(key(metric, id));
+                    if (value != 0) {
+                        totals.merge(dimensions.get(id - 1).value(), value, Long::sum);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        totals.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    /**
+     * The total for each window that overlaps {@code [from, to)}, keyed by window start, including empty ones
+     * still within retention.
+     */
+    public TreeMap<Long, Long> series(Metric metric, Granularity granularity, long from, long to, String repo) {
+        TreeMap<Long, Long> series = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            Ring ring = ring(granularity);
+            long first = Math.max(Math.floorDiv(from, granularity.millis()), ring.oldest());
+            long last = Math.floorDiv(to - 1, granularity.millis());
+            List<Integer> ids = dimensionIds(Dimension.TOTAL, repo);
+            for (long window = first; window <= last; window++) {
+                LongCounterMap counters = ring.forRead(window);
+                long total = 0;
+                if (counters != null) {
+                    for (int id : ids) {
+                        total += counters.get(key(metric, id));
+                    }
+                }
+                series.put(window * granularity.millis(), total);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return series;
+    }
+
+    /**
+     * Start of the oldest window still kept at this granularity, or -1 when nothing has been counted.
+     */
+    public long retainedFrom(Granularity granularity) {
+        lock.readLock().lock();
+        try {
+            Ring ring = ring(granularity);
+            return ring.newest < 0 ? -1 : Math.max(0, ring.oldest()) * granularity.millis();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Start of the oldest day a commit can still be counted in, judged from today or the newest day counted.
+     */
+    public long countedFrom() {
+        lock.readLock().lock();
+        try {
+            long newest = Math.max(days.newest, Math.floorDiv(System.currentTimeMillis(), DAY_MILLIS));
+            return Math.max(0, newest - days.windows.length + 1) * DAY_MILLIS;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String describe() {
+        lock.readLock().lock();
+        try {
+            return String.format("%d authors/branches in %d repositories, %d commits tracked (%d awaiting line "
+                    + "counts), %d hours and %d days kept, snapshot at %s", dimensions.size(),
+                dimensionIds(Dimension.TOTAL, null).size(), seenCommits.size(), awaitingLines.size(),
+                hours.windows.length, days.windows.length, file);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the snapshot now if anything changed since the last one.
+     */
+    public synchronized void snapshot() throws IOException {
+        lock.readLock().lock();
+        try {
+            if (!dirty) {
+                return;
+            }
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out =
+                     new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                write(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Only writers set it, and they are held off by the read lock until here
+            dirty = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdownNow();
+        snapshot();
+    }
+
+    private Counted at(String repo, String branch, String author, long millis) {
+        String repository = repo == null ? "" : repo;
+        return new Counted(millis, dimensionId(Dimension.TOTAL, repository, ""),
+            author == null || author.isEmpty() ? 0 : dimensionId(Dimension.AUTHOR, repository, author),
+            branch == null || branch.isEmpty() ? 0 : dimensionId(Dimension.BRANCH, repository, branch));
+    }
+
+    private void count(Counted at, Metric metric, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (Ring ring : new Ring[]{hours, days}) {
+            LongCounterMap counters = ring.forWrite(Math.floorDiv(at.millis(), ring.millis));
+            if (counters == null) {
+                continue;
+            }
+            counters.add(key(metric, at.total()), delta);
+            if (at.author() != 0) {
+                counters.add(key(metric, at.author()), delta);
+            }
+            if (at.branch() != 0) {
+                counters.add(key(metric, at.branch()), delta);
+            }
+        }
+    }
+
+    private int dimensionId(Dimension dimension, String repo, String value) {
+        DimensionValue key = new DimensionValue(dimension, repo, value);
+        Integer id = dimensionIds.get(key);
+        if (id == null) {
+            dimensions.add(key);
+            id = dimensions.size();
+            dimensionIds.put(key, id);
+            idsByDimension.computeIfAbsent(dimension, unused -> new ArrayList<>()).add(id);
+        }
+        return id;
+    }
+
+    private List<Integer> dimensionIds(Dimension dimension, String repo) {
+        List<Integer> ids = idsByDimension.getOrDefault(dimension, List.of());
+        return repo == null
+            ? ids
+            : ids.stream().filter(id -> dimensions.get(id - 1).repo().equalsIgnoreCase(repo)).toList();
+    }
+
+    private Ring ring(Granularity granularity) {
+        return granularity == Granularity.HOUR ? hours : days;
+    }
+
+    private static long key(Metric metric, int dimensionId) {
+        return ((long) (metric.ordinal() + 1) << DIMENSION_BITS) | dimensionId;
+    }
+
+    // FNV-1a; never 0, which the counter map reserves
+    private static long hash(String sha) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < sha.length(); i++) {
+            hash ^= sha.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            System.err.println("Failed to write statistics snapshot: " + e.getMessage());
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(dimensions.size());
+        for (DimensionValue value : dimensions) {
+            out.writeByte(value.dimension().ordinal());
+            writeString(out, value.repo());
+            writeString(out, value.value());
+        }
+        out.writeInt(scannedHeads.size());
+        for (Map.Entry<String, String> head : scannedHeads.entrySet()) {
+            writeString(out, head.getKey());
+            writeString(out, head.getValue());
+        }
+        seenCommits.write(out);
+        out.writeInt(awaitingLines.size());
+        for (Map.Entry<Long, Counted> entry : awaitingLines.entrySet()) {
+            Counted counted = entry.getValue();
+            out.writeLong(entry.getKey());
+            out.writeLong(counted.millis());
+            out.writeInt(counted.total());
+            out.writeInt(counted.author());
+            out.writeInt(counted.branch());
+        }
+        for (Ring ring : new Ring[]{hours, days}) {
+            out.writeLong(ring.newest);
+            int used = 0;
+            for (long window : ring.windows) {
+                used += window >= 0 && window >= ring.oldest() ? 1 : 0;
+            }
+            out.writeInt(used);
+            for (int slot = 0; slot < ring.windows.length; slot++) {
+                if (ring.windows[slot] >= 0 && ring.windows[slot] >= ring.oldest()) {
+                    out.writeLong(ring.windows[slot]);
+                    ring.counters[slot].write(out);
+                }
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        long started = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int magic = in.readInt();
+            if (magic != MAGIC && magic != MAGIC_V1) {
+                throw new IOException("not a statistics snapshot");
+            }
+            int dimensionCount = in.readInt();
+            for (int i = 0; i < dimensionCount; i++) {
+                Dimension dimension = Dimension.values()[in.readUnsignedByte()];
+                dimensionId(dimension, readString(in), readString(in));
+            }
+            int headCount = in.readInt();
+            for (int i = 0; i < headCount; i++) {
+                scannedHeads.put(readString(in), readString(in));
+            }
+            seenCommits = LongCounterMap.read(in);
+            pruneSeenAt = Math.max(1024, seenCommits.size() * 2);
+            int awaitingCount = magic == MAGIC_V1 ? 0 : in.readInt();
+            for (int i = 0; i < awaitingCount; i++) {
+                long hash = in.readLong();
+                Counted counted = new Counted(in.readLong(), in.readInt(), in.readInt(),
+                    in.readInt());
+                if (counted.total() < 1 || counted.total() > dimensions.size() || counted.author() > dimensions.size()
+                    || counted.branch() > dimensions.size()) {
+                    throw new IOException("Bad dimension id");
+                }
+                awaitingLines.put(hash, counted);
+            }
+            for (Ring ring : new Ring[]{hours, days}) {
+                // Retention may have changed since the snapshot; windows that no longer fit are dropped
+                ring.newest = in.readLong();
+                int windowCount = in.readInt();
+                for (int i = 0; i < windowCount; i++) {
+                    long window = in.readLong();
+                    LongCounterMap saved = LongCounterMap.read(in);
+                    LongCounterMap counters = ring.forWrite(window);
+                    if (counters != null) {
+                        saved.forEach(counters::add);
+                    }
+                }
+            }
+            System.err.println("Loaded repository statistics from " + file + " in "
+                + (System.currentTimeMillis() - started) + " ms");
+        } catch (NoSuchFileException e) {
+            // First run
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable statistics snapshot " + file + ": "
+                + (e instanceof EOFException ? "truncated" : e.getMessage()));
+            dimensionIds.clear();
+            dimensions.clear();
+            idsByDimension.clear();
+            scannedHeads.clear();
+            seenCommits = new LongCounterMap(1024);
+            awaitingLines.clear();
+            Arrays.fill(hours.windows, -1);
+            Arrays.fill(days.windows, -1);
+            hours.newest = -1;
+            days.newest = -1;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 1 << 20) {
+            throw new IOException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,301 @@
+package com.mcp.git;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mcp.core.Env;
+import com.mcp.git.model.GitStatistics;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClientBuilder;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.ResourceInUseException;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+
+import java.net.URI;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes {@link GitStatistics} rows to DynamoDB without making anyone wait for it. Records go into a lock-free
+ * queue; a single flusher thread drains it with {@code BatchWriteItem}, 25 items per request, as soon as a full
+ * batch is waiting or every {@code flushMillis} for whatever is left. Items DynamoDB returns as unprocessed, and
+ * batches that fail outright, are sent again with exponential backoff. When the queue is full new records are
+ * dropped and counted rather than blocking the webhook workers.
+ */
+public class StatisticsSink implements AutoCloseable {
+    static final int BATCH_SIZE = 25;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final DateTimeFormatter TIMESTAMP =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    // Sort keys are the event time plus a sequence number, so rows with the same time don't overwrite each other.
+    // Commit times only have seconds, and a restart starts the sequence somewhere else.
+    private static final AtomicLong SEQUENCE = new AtomicLong(ThreadLocalRandom.current().nextLong());
+
+    public record Settings(long flushMillis, int queueLimit, int maxInFlight) {
+    }
+
+    private final DynamoDbAsyncClient client;
+    private final DynamoDbAsyncTable<GitStatistics> table;
+    private final DynamoDbEnhancedAsyncClient enhanced;
+    private final Settings settings;
+    private final Queue<GitStatistics> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    public StatisticsSink(DynamoDbAsyncClient client, String tableName, Settings settings) {
+        this.client = client;
+        this.enhanced = DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(client).build();
+        this.table = enhanced.table(tableName, TableSchema.fromBean(GitStatistics.class));
+        this.settings = settings;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, settings.flushMillis(), settings.flushMillis(),
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a sink for the table in {@code STATS_TABLE}, or null when it is not set. {@code DYNAMODB_ENDPOINT_URL}
+     * points the client elsewhere, e.g. DynamoDB Local at {@code http://localhost:8000}, and
+     * {@code STATS_CREATE_TABLE=true} creates the table if it doesn't exist.
+     */
+    public static StatisticsSink fromEnv() {
+        String tableName = System.getenv("STATS_TABLE");
+        if (tableName == null || tableName.isBlank()) {
+            return null;
+        }
+        DynamoDbAsyncClientBuilder builder = DynamoDbAsyncClient.builder();
+        String endpoint = System.getenv("DYNAMODB_ENDPOINT_URL");
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint.trim()));
+            if (System.getenv("AWS_REGION") == null && System.getenv("AWS_DEFAULT_REGION") == null) {
+                // DynamoDB Local ignores the region, but the client won't start without one
+                builder.region(Region.US_EAST_1);
+            }
+        }
+        StatisticsSink sink = new StatisticsSink(builder.build(), tableName.trim(), new Settings(
+            Env.getLong("STATS_FLUSH_MS", 1000, 1), Env.getInt("STATS_QUEUE_LIMIT", 10_000, 1),
+            Env.getInt("STATS_MAX_IN_FLIGHT", 4, 1)));
+        if (Boolean.parseBoolean(System.getenv("STATS_CREATE_TABLE"))) {
+            sink.createTable();
+        }
+        return sink;
+    }
+
+    /**
+     * Queues a record; returns false if it was dropped because the queue is full or the sink is closed.
+     */
+    public boolean offer(GitStatistics statistics) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (queued.incrementAndGet() > settings.queueLimit()) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        queue.add(statistics);
+        if (queued.get() >= BATCH_SIZE && flushPending.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+        return true;
+    }
+
+    /**
+     * A record whose sort key is {@code millis} as a sortable UTC timestamp with a sequence suffix.
+     */
+    public static GitStatistics newRecord(String repository, String eventType, long millis) {
+        GitStatistics statistics = new GitStatistics();
+        statistics.setRepository(repository);
+        statistics.setEventType(eventType);
+        statistics.setTimestamp(String.format("%s#%06x", TIMESTAMP.format(Instant.ofEpochMilli(millis)),
+            SEQUENCE.getAndIncrement() & 0xffffff));
+        return statistics;
+    }
+
+    /**
+     * Records for a webhook delivery: a push gives one row for the push and one per commit in it, other events
+     * one row. Pings carry nothing worth counting.
+     */
+    public static List<GitStatistics> fromWebhook(String event, JsonNode payload, String pipelineId, long receivedAt) {
+        List<GitStatistics> rows = new ArrayList<>();
+        String repository = payload.path("repository").path("full_name").asText("");
+        if ("ping".equals(event) || repository.isEmpty()) {
+            return rows;
+        }
+        if (!"push".equals(event)) {
+            JsonNode run = payload.path("workflow_run");
+            GitStatistics row = newRecord(repository, event, receivedAt);
+            row.setBranch(run.isMissingNode()
+                ? branch(payload.path("ref").asText(null))
+                : run.path("head_branch").asText(null));
+            row.setCommitSha(run.isMissingNode() ? null : run.path("head_sha").asText(null));
+            row.setAuthor(payload.path("sender").path("login").asText(null));
+            rows.add(row);
+            return rows;
+        }
+
+        String branch = branch(payload.path("ref").asText(null));
+        int filesChanged = 0;
+        for (JsonNode commit : payload.path("commits")) {
+            int files = commit.path("added").size() + commit.path("removed").size() + commit.path("modified").size();
+            filesChanged += files;
+            GitStatistics row = newRecord(repository, "commit", commitTime(commit, receivedAt));
+            row.setBranch(branch);
+            row.setCommitSha(commit.path("id").asText(null));
+            row.setAuthor(author(commit.path("author")));
+            row.setFilesChanged(files);
+            row.setPipelineId(pipelineId);
+            rows.add(row);
+        }
+        GitStatistics push = newRecord(repository, "push", receivedAt);
+        push.setBranch(branch);
+        push.setCommitSha(payload.path("after").asText(null));
+        push.setAuthor(payload.path("pusher").path("name").asText(null));
+        push.setFilesChanged(filesChanged);
+        push.setPipelineId(pipelineId);
+        rows.add(0, push);
+        return rows;
+    }
+
+    public String describe() {
+        return String.format("%d queued, %d in flight; %d written in %d requests, %d retried, %d dropped, %d failed",
+            queued.get(), inFlight.get(), written.get(), requests.get(), retried.get(), dropped.get(), failed.get());
+    }
+
+    /**
+     * Stops taking records and waits up to ten seconds for the queue to drain.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((queued.get() > 0 || inFlight.get() > 0) && System.currentTimeMillis() < deadline) {
+            flusher.execute(this::flush);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        flusher.shutdownNow();
+        client.close();
+    }
+
+    private void createTable() {
+        try {
+            client.createTable(request -> request.tableName(table.tableName())
+                .attributeDefinitions(stringAttribute("repository"), stringAttribute("timestamp"))
+                .keySchema(
+                    KeySchemaElement.builder().attributeName("repository").keyType(KeyType.HASH).build(),
+                    KeySchemaElement.builder().attributeName("timestamp").keyType(KeyType.RANGE).build())
+                .billingMode(BillingMode.PAY_PER_REQUEST)).join();
+            System.err.println("Created statistics table " + table.tableName());
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof ResourceInUseException)) {
+                System.err.println("Failed to create statistics table: " + e.getCause().getMessage());
+            }
+        }
+    }
+
+    // Runs on the flusher thread only
+    private void flush() {
+        flushPending.set(false);
+        while (inFlight.get() < settings.maxInFlight()) {
+            List<GitStatistics> batch = new ArrayList<>(BATCH_SIZE);
+            GitStatistics next;
+            while (batch.size() < BATCH_SIZE && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            queued.addAndGet(-batch.size());
+            send(batch, 1);
+        }
+    }
+
+    private void send(List<GitStatistics> batch, int attempt) {
+        if (attempt == 1) {
+            inFlight.incrementAndGet();
+        }
+        requests.incrementAndGet();
+        WriteBatch.Builder<GitStatistics> request = WriteBatch.builder(GitStatistics.class).mappedTableResource(table);
+        batch.forEach(request::addPutItem);
+        enhanced.batchWriteItem(builder -> builder.addWriteBatch(request.build())).whenComplete((result, error) -> {
+            List<GitStatistics> unprocessed = error != null ? batch : result.unprocessedPutItemsForTable(table);
+            written.addAndGet(batch.size() - unprocessed.size());
+            if (!unprocessed.isEmpty()) {
+                if (attempt < MAX_ATTEMPTS) {
+                    retried.addAndGet(unprocessed.size());
+                    long backoff = BASE_BACKOFF_MILLIS << (attempt - 1);
+                    // A batch backing off keeps its in-flight slot, so throttling slows the flusher down too
+                    flusher.schedule(() -> send(unprocessed, attempt + 1),
+                        backoff + ThreadLocalRandom.current().nextLong(backoff), TimeUnit.MILLISECONDS);
+                    return;
+                }
+                failed.addAndGet(unprocessed.size());
+                System.err.println("Dropped " + unprocessed.size() + " statistics rows after " + attempt
+                    + " attempts" + (error != null ? ": " + error.getMessage() : ""));
+            }
+            inFlight.decrementAndGet();
+            if (queued.get() > 0 && flushPending.compareAndSet(false, true)) {
+                flusher.execute(this::flush);
+            }
+        });
+    }
+
+    private static AttributeDefinition stringAttribute(String name) {
+        return AttributeDefinition.builder().attributeName(name).attributeType(ScalarAttributeType.S).build();
+    }
+
+    private static String branch(String ref) {
+        return ref != null && ref.startsWith("refs/heads/") ? ref.substring("refs/heads/".length()) : ref;
+    }
+
+    private static String author(JsonNode author) {
+        String username = author.path("username").asText("");
+        return username.isEmpty() ? author.path("name").asText(null) : username;
+    }
+
+    private static long commitTime(JsonNode commit, long fallback) {
+        try {
+            return OffsetDateTime.parse(commit.path("timestamp").asText()).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return fallback;
+        }
+    }
+}
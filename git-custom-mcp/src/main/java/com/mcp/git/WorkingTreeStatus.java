@@ -0,0 +1,536 @@
+package com.mcp.git;
+
+import com.mcp.git.repo.GitIndex;
+import com.mcp.git.repo.GitRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Serves {@code git status --porcelain} from memory. One full status is taken up front; after that a
+ * {@link WatchService} over the working tree, plus diffs of the index and HEAD, say which paths changed, and
+ * only those are re-checked with a pathspec-limited {@code git status}. Ignore rules, filters and untracked
+ * directory collapsing stay git's job, so the output matches a full run. A change to any ignore rule (a
+ * {@code .gitignore}, {@code .git/info/exclude}, {@code core.excludesFile} or the repository config) runs a full
+ * status instead, since it can add or hide paths that did not change themselves.
+ * <p>
+ * Every refresh that changes something bumps a version; {@link #status(String)} with an earlier token returns
+ * only what changed since. Without a native watcher each query falls back to a full status.
+ */
+public class WorkingTreeStatus implements AutoCloseable {
+    private static final int MAX_PATHSPECS = 1000;
+    private static final int PATHSPEC_BATCH = 200;
+    private static final int MAX_CLEARED = 10_000;
+
+    public record Result(List<String> lines, List<String> clearedPaths, String token, boolean delta) {
+    }
+
+    private record Line(String text, boolean untracked, long version) {
+    }
+
+    private final GitCommandRunner git;
+    private final GitRepository repository;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    // Filled by the watcher thread, drained by refresh()
+    private final Object pendingLock = new Object();
+    private final Set<String> pendingPaths = new HashSet<>();
+    private boolean rescanNeeded = true;
+    private boolean indexChanged = true;
+    private volatile boolean watching;
+
+    // Guarded by this
+    private final TreeMap<String, Line> entries = new TreeMap<>();
+    private final LinkedHashMap<String, Long> cleared = new LinkedHashMap<>();
+    private long version;
+    private long oldestDeltaVersion;
+    private GitIndex index;
+    private String headSha;
+
+    private Path topLevel;
+    private Path gitDir;
+    private WatchService watchService;
+    private final Set<Path> nestedRepos = new HashSet<>();
+    // Ignore rules outside the working tree: .git/config, .git/info/exclude and core.excludesFile
+    private volatile Set<Path> ruleFiles = Set.of();
+
+    public WorkingTreeStatus(GitCommandRunner git, GitRepository repository) {
+        this.git = git;
+        this.repository = repository;
+    }
+
+    /**
+     * Registers the watcher in the background; queries made before it is ready run a full status.
+     */
+    public void start() {
+        Thread thread = GitCommandRunner.daemonThreads("status-watcher").newThread(this::watch);
+        thread.start();
+    }
+
+    /**
+     * Current status, or only the entries changed since {@code since} (a token from an earlier result). Unknown
+     * or expired tokens get the full status.
+     */
+    public synchronized Result status(String since) throws Exception {
+        refresh();
+
+        long base = parseToken(since);
+        boolean delta = base >= oldestDeltaVersion && base <= version;
+        List<String> tracked = new ArrayList<>();
+        List<String> untracked = new ArrayList<>();
+        for (Line line : entries.values()) {
+            if (!delta || line.version() > base) {
+                (line.untracked() ? untracked : tracked).add(line.text());
+            }
+        }
+        // git lists tracked changes first, then untracked paths
+        tracked.addAll(untracked);
+
+        List<String> clearedPaths = new ArrayList<>();
+        if (delta) {
+            cleared.forEach((path, clearedAt) -> {
+                if (clearedAt > base) {
+                    clearedPaths.add(path);
+                }
+            });
+            clearedPaths.sort(null);
+        }
+        return new Result(tracked, clearedPaths, epoch + "." + version, delta);
+    }
+
+    /**
+     * Whether queries are served from the watcher, rather than a full status each.
+     */
+    boolean watching() {
+        return watching;
+    }
+
+    @Override
+    public void close() {
+        watching = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void refresh() throws Exception {
+        Set<String> paths;
+        boolean rescan;
+        boolean readIndex;
+        synchronized (pendingLock) {
+            rescan = rescanNeeded || !watching;
+            readIndex = indexChanged;
+            paths = new HashSet<>(pendingPaths);
+            pendingPaths.clear();
+            rescanNeeded = false;
+            indexChanged = false;
+        }
+
+        // Staging, commits, checkouts and resets show up as index or HEAD changes rather than file events
+        String head = resolveHead();
+        if (readIndex || index == null) {
+            try {
+                GitIndex latest = GitIndex.read(gitDir().resolve("index"));
+                if (index != null) {
+                    paths.addAll(index.changedPaths(latest));
+                }
+                index = latest;
+            } catch (IOException e) {
+                index = null;
+                rescan = true;
+            }
+        }
+        if (!Objects.equals(head, headSha)) {
+            if (headSha != null && head != null) {
+                for (String path : git.run("git", "diff", "--name-only", "--no-renames", headSha, head).split("\n")) {
+                    if (!path.isEmpty()) {
+                        paths.add(unquote(path));
+                    }
+                }
+            } else {
+                rescan = true;
+            }
+            headSha = head;
+        }
+
+        if (rescan || paths.size() > MAX_PATHSPECS) {
+            apply(new HashMap<>(entries), parse(git.run("git", "status", "--porcelain")));
+        } else if (!paths.isEmpty()) {
+            recheck(paths);
+        }
+    }
+
+    private void recheck(Set<String> paths) throws Exception {
+        // A change inside a collapsed untracked directory ("?? dir/") has to re-check the whole directory
+        Set<String> scopes = new TreeSet<>();
+        for (String path : paths) {
+            scopes.add(collapsedParent(path));
+        }
+
+        Map<String, Line> previous = new HashMap<>();
+        Map<String, Line> current = new HashMap<>();
+        List<String> batch = new ArrayList<>();
+        for (String scope : scopes) {
+            previous.putAll(entries.subMap(scope, true, scope + "/\uffff", true));
+            batch.add(":(top,literal)" + scope);
+            if (batch.size() == PATHSPEC_BATCH) {
+                current.putAll(statusOf(batch));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            current.putAll(statusOf(batch));
+        }
+        // Entries that merely share a name prefix (e.g. "ab" for scope "a") are out of scope
+        previous.keySet().removeIf(key -> !inAnyScope(key, scopes));
+        apply(previous, current);
+    }
+
+    private Map<String, Line> statusOf(List<String> pathspecs) throws Exception {
+        List<String> command = new ArrayList<>(List.of("git", "status", "--porcelain", "--"));
+        command.addAll(pathspecs);
+        return parse(git.run(command.toArray(new String[0])));
+    }
+
+    /**
+     * Replaces {@code previous} (the entries in the re-checked scope) with {@code current}, stamping anything
+     * that differs with a new version.
+     */
+    private void apply(Map<String, Line> previous, Map<String, Line> current) {
+        long next = version + 1;
+        boolean changed = false;
+        for (String path : previous.keySet()) {
+            if (!current.containsKey(path)) {
+                entries.remove(path);
+                cleared.remove(path);
+                cleared.put(path, next);
+                changed = true;
+            }
+        }
+        for (Map.Entry<String, Line> entry : current.entrySet()) {
+            Line old = previous.get(entry.getKey());
+            if (old == null || !old.text().equals(entry.getValue().text())) {
+                Line line = entry.getValue();
+                entries.put(entry.getKey(), new Line(line.text(), line.untracked(), next));
+                cleared.remove(entry.getKey());
+                changed = true;
+            }
+        }
+        if (changed) {
+            version = next;
+        }
+
+        Iterator<Long> oldest = cleared.values().iterator();
+        while (cleared.size() > MAX_CLEARED) {
+            oldestDeltaVersion = Math.max(oldestDeltaVersion, oldest.next());
+            oldest.remove();
+        }
+    }
+
+    private String collapsedParent(String path) {
+        int slash = path.indexOf('/');
+        while (slash > 0) {
+            Line line = entries.get(path.substring(0, slash + 1));
+            if (line != null && line.untracked()) {
+                return path.substring(0, slash);
+            }
+            slash = path.indexOf('/', slash + 1);
+        }
+        return path;
+    }
+
+    private static boolean inAnyScope(String key, Set<String> scopes) {
+        for (int end = key.length(); end > 0; end = key.lastIndexOf('/', end - 1)) {
+            if (scopes.contains(key.substring(0, end))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, Line> parse(String porcelain) {
+        Map<String, Line> lines = new LinkedHashMap<>();
+        for (String text : porcelain.split("\n")) {
+            if (text.length() < 4) {
+                continue;
+            }
+            String path = text.substring(3);
+            int arrow = path.indexOf(" -> ");
+            if (arrow >= 0 && (text.charAt(0) == 'R' || text.charAt(0) == 'C'
+                    || text.charAt(1) == 'R' || text.charAt(1) == 'C')) {
+                path = path.substring(arrow + 4);
+            }
+            lines.put(unquote(path), new Line(text, text.startsWith("??"), 0));
+        }
+        return lines;
+    }
+
+    /**
+     * Undoes git's C-style quoting of unusual paths ({@code core.quotePath}).
+     */
+    static String unquote(String path) {
+        if (path.length() < 2 || path.charAt(0) != '"' || path.charAt(path.length() - 1) != '"') {
+            return path;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(path.length());
+        for (int i = 1; i < path.length() - 1; i++) {
+            char c = path.charAt(i);
+            if (c != '\\') {
+                byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+                continue;
+            }
+            char escaped = path.charAt(++i);
+            switch (escaped) {
+                case 'a' -> bytes.write(7);
+                case 'b' -> bytes.write('\b');
+                case 't' -> bytes.write('\t');
+                case 'n' -> bytes.write('\n');
+                case 'v' -> bytes.write(11);
+                case 'f' -> bytes.write('\f');
+                case 'r' -> bytes.write('\r');
+                default -> {
+                    if (escaped >= '0' && escaped <= '7') {
+                        bytes.write(Integer.parseInt(path.substring(i, i + 3), 8));
+                        i += 2;
+                    } else {
+                        bytes.write(escaped);
+                    }
+                }
+            }
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private long parseToken(String token) {
+        if (token == null || !token.startsWith(epoch + ".")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(token.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String resolveHead() throws Exception {
+        if (repository != null) {
+            try {
+                return repository.resolve("HEAD");
+            } catch (IOException e) {
+                // fall through to git
+            }
+        }
+        try {
+            return git.run("git", "rev-parse", "--verify", "-q", "HEAD").trim();
+        } catch (RuntimeException e) {
+            return null; // unborn branch
+        }
+    }
+
+    private synchronized Path gitDir() throws Exception {
+        if (gitDir == null) {
+            gitDir = Path.of(git.run("git", "rev-parse", "--absolute-git-dir").trim());
+        }
+        return gitDir;
+    }
+
+    private void watch() {
+        try {
+            topLevel = Path.of(git.run("git", "rev-parse", "--show-toplevel").trim());
+            Path dotGit = gitDir();
+            watchService = topLevel.getFileSystem().newWatchService();
+            // Polling watchers (macOS) report changes seconds late; serving from memory would then be stale
+            if (watchService.getClass().getSimpleName().contains("Polling")) {
+                System.err.println("No native file watcher, git_status will run a full status per call");
+                close();
+                return;
+            }
+
+            dotGit.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchRuleFiles();
+            registerTree(topLevel, ignoredDirectories());
+            synchronized (pendingLock) {
+                rescanNeeded = true;
+                watching = true;
+            }
+            System.err.println("Watching working tree " + topLevel);
+        } catch (Exception e) {
+            System.err.println("File watcher unavailable, git_status will run a full status per call: " + e.getMessage());
+            close();
+            return;
+        }
+
+        try {
+            while (watching) {
+                WatchKey key = watchService.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        synchronized (pendingLock) {
+                            rescanNeeded = true;
+                        }
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    String name = child.getFileName().toString();
+                    if (name.equals(".gitignore") || ruleFiles.contains(child)) {
+                        ignoreRulesChanged();
+                    }
+                    if (dir.equals(gitDir)) {
+                        if (name.equals("index")) {
+                            synchronized (pendingLock) {
+                                indexChanged = true;
+                            }
+                        } else if (name.equals("info") && Files.isDirectory(child)) {
+                            watchRuleFiles();
+                        }
+                        continue;
+                    }
+                    if (!dir.startsWith(topLevel) || dir.startsWith(gitDir)) {
+                        continue; // .git/info or the directory of core.excludesFile
+                    }
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                            && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS) && !isIgnored(child)) {
+                        registerTree(child, Set.of());
+                    }
+                    markDirty(child);
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // shutting down
+        } catch (IOException e) {
+            System.err.println("File watcher failed, git_status will run a full status per call: " + e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Ignore rules decide which paths git reports at all, so a full status follows. Directories that were ignored
+     * when the tree was registered may not be any more, so the tree is walked again to watch them.
+     */
+    private void ignoreRulesChanged() {
+        try {
+            watchRuleFiles();
+            registerTree(topLevel, ignoredDirectories());
+        } catch (Exception e) {
+            System.err.println("Failed to re-register working tree after an ignore rule change: " + e.getMessage());
+        }
+        // Only now, so the full status also covers changes made before the new directories were watched
+        synchronized (pendingLock) {
+            rescanNeeded = true;
+        }
+    }
+
+    private void watchRuleFiles() throws IOException {
+        Path excludesFile = excludesFile();
+        ruleFiles = Set.of(gitDir.resolve("config"), gitDir.resolve("info").resolve("exclude"), excludesFile);
+        for (Path dir : List.of(gitDir.resolve("info"), excludesFile.getParent())) {
+            if (Files.isDirectory(dir)) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+    }
+
+    private Path excludesFile() {
+        try {
+            String configured = git.run("git", "config", "--path", "core.excludesFile").trim();
+            if (!configured.isEmpty()) {
+                return topLevel.resolve(configured).toAbsolutePath();
+            }
+        } catch (Exception e) {
+            // exit status 1: not set
+        }
+        String xdg = System.getenv("XDG_CONFIG_HOME");
+        Path config = xdg == null || xdg.isBlank() ? Path.of(System.getProperty("user.home"), ".config") : Path.of(xdg);
+        return config.resolve("git").resolve("ignore").toAbsolutePath();
+    }
+
+    private Set<Path> ignoredDirectories() throws Exception {
+        Set<Path> ignored = new HashSet<>();
+        for (String line : git.run("git", "status", "--porcelain", "--ignored").split("\n")) {
+            if (line.startsWith("!! ") && line.endsWith("/")) {
+                ignored.add(topLevel.resolve(unquote(line.substring(3, line.length() - 1))));
+            }
+        }
+        return ignored;
+    }
+
+    private void registerTree(Path root, Set<Path> ignored) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.getFileName() != null && dir.getFileName().toString().equals(".git") || ignored.contains(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (!dir.equals(topLevel) && Files.exists(dir.resolve(".git"), LinkOption.NOFOLLOW_LINKS)) {
+                    synchronized (nestedRepos) {
+                        nestedRepos.add(dir);
+                    }
+                }
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; // deleted while walking
+            }
+        });
+    }
+
+    private boolean isIgnored(Path dir) {
+        try {
+            return !git.run("git", "check-ignore", topLevel.relativize(dir).toString()).isBlank();
+        } catch (Exception e) {
+            return false; // exit status 1: not ignored
+        }
+    }
+
+    private void markDirty(Path path) {
+        // Changes inside a submodule or nested repository surface as a change of the repository itself
+        synchronized (nestedRepos) {
+            for (Path nested : nestedRepos) {
+                if (path.startsWith(nested) && !path.equals(nested)) {
+                    path = nested;
+                    break;
+                }
+            }
+        }
+        String relative = topLevel.relativize(path).toString().replace('\\', '/');
+        if (relative.isEmpty() || relative.equals(".git") || relative.startsWith(".git/")) {
+            return;
+        }
+        synchronized (pendingLock) {
+            pendingPaths.add(relative);
+        }
+    }
+}
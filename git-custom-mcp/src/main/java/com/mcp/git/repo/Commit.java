@@ -0,0 +1,85 @@
+package com.mcp.git.repo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parts of a commit object the read-only tools need.
+ */
+public record Commit(String sha, String tree, List<String> parents, String author, long commitTime, String message) {
+
+    static Commit parse(String sha, byte[] content) {
+        String text = new String(content, StandardCharsets.UTF_8);
+        String tree = null;
+        String author = "";
+        long commitTime = 0;
+        List<String> parents = new ArrayList<>(2);
+        
+        int pos = 0;
+        while (pos < text.length()) {
+            int end = text.indexOf('\n', pos);
+            if (end < 0) {
+                end = text.length();
+            }
+            if (end == pos) {
+                pos++;
+                break;
+            }
+            String line = text.substring(pos, end);
+            if (line.startsWith("tree ")) {
+                tree = line.substring(5);
+            } else if (line.startsWith("parent ")) {
+                parents.add(line.substring(7));
+            } else if (line.startsWith("author ")) {
+                author = identityName(line.substring(7));
+            } else if (line.startsWith("committer ")) {
+                commitTime = identityTime(line.substring(10));
+            }
+            pos = end + 1;
+        }
+        
+        String message = pos < text.length() ? text.substring(pos) : "";
+        return new Commit(sha, tree, List.copyOf(parents), author, commitTime, message);
+    }
+
+    /**
+     * The first paragraph of the message joined into one line, as {@code git log --oneline} prints it.
+     */
+    public String subject() {
+        StringBuilder subject = new StringBuilder();
+        for (String line : message.split("\n", -1)) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty()) {
+                if (subject.length() > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (subject.length() > 0) {
+                subject.append(' ');
+            }
+            subject.append(trimmed);
+        }
+        return subject.toString();
+    }
+
+    private static String identityName(String identity) {
+        int email = identity.indexOf(" <");
+        return email >= 0 ? identity.substring(0, email) : identity;
+    }
+
+    private static long identityTime(String identity) {
+        // "Name <email> 1700000000 +0100"
+        int emailEnd = identity.lastIndexOf("> ");
+        if (emailEnd < 0) {
+            return 0;
+        }
+        String[] parts = identity.substring(emailEnd + 2).split(" ");
+        try {
+            return Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
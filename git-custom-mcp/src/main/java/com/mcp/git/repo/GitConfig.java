@@ -0,0 +1,93 @@
+package com.mcp.git.repo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal reader for a repository's {@code config} file. Only the last value of each key is kept, and
+ * {@code [include]} sections are rejected because the included files are not followed.
+ */
+final class GitConfig {
+    private final Map<String, String> values;
+
+    private GitConfig(Map<String, String> values) {
+        this.values = values;
+    }
+
+    static GitConfig read(Path file) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        String section = null;
+        try {
+            for (String rawLine : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String line = rawLine.strip();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith(";")) {
+                    continue;
+                }
+                if (line.startsWith("[")) {
+                    section = parseSection(line);
+                    if (section.startsWith("include") || section.startsWith("includeif")) {
+                        throw new UnsupportedRepositoryException("Config includes are not supported");
+                    }
+                    continue;
+                }
+                if (section == null) {
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                String key = (eq >= 0 ? line.substring(0, eq) : line).strip().toLowerCase(Locale.ROOT);
+                String value = eq >= 0 ? unquote(line.substring(eq + 1).strip()) : "true";
+                values.put(section + "." + key, value);
+            }
+        } catch (NoSuchFileException e) {
+            // No config is the same as an empty one
+        }
+        return new GitConfig(values);
+    }
+
+    String get(String section, String subsection, String key) {
+        String name = section.toLowerCase(Locale.ROOT)
+            + (subsection != null ? "." + subsection : "")
+            + "." + key.toLowerCase(Locale.ROOT);
+        return values.get(name);
+    }
+
+    boolean usesUrlRewrites() {
+        return values.keySet().stream()
+            .anyMatch(name -> name.startsWith("url.") && (name.endsWith(".insteadof") || name.endsWith(".pushinsteadof")));
+    }
+
+    // [section] or [section "subsection"]; section names are case-insensitive, subsections are not
+    private static String parseSection(String line) {
+        int end = line.lastIndexOf(']');
+        String header = line.substring(1, end > 0 ? end : line.length()).strip();
+        int quote = header.indexOf('"');
+        if (quote < 0) {
+            return header.toLowerCase(Locale.ROOT);
+        }
+        String name = header.substring(0, quote).strip().toLowerCase(Locale.ROOT);
+        String subsection = header.substring(quote + 1, header.lastIndexOf('"'));
+        return name + "." + subsection;
+    }
+
+    private static String unquote(String value) {
+        int comment = -1;
+        boolean quoted = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == '#' || c == ';')) {
+                comment = i;
+                break;
+            }
+        }
+        String stripped = (comment >= 0 ? value.substring(0, comment) : value).strip();
+        return stripped.replace("\"", "");
+    }
+}
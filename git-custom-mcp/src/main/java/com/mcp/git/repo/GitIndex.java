@@ -0,0 +1,157 @@
+package com.mcp.git.repo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Parsed {@code .git/index} (versions 2-4). Keeps each entry's object name, mode, stage and the stat data git
+ * caches, so two snapshots can be compared to find exactly which paths an index write touched.
+ */
+public final class GitIndex {
+    private static final int SIGNATURE = 0x44495243; // "DIRC"
+    private static final int SPLIT_INDEX = 0x6c696e6b; // "link"
+
+    public record Entry(String path, int mode, String sha, int stage, long mtimeSeconds, int mtimeNanos, long size) {
+    }
+
+    private final Map<String, Entry> entries;
+
+    private GitIndex(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static GitIndex empty() {
+        return new GitIndex(Map.of());
+    }
+
+    public static GitIndex read(Path file) throws IOException {
+        ByteBuffer data;
+        try {
+            data = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return empty();
+        }
+        if (data.getInt() != SIGNATURE) {
+            throw new UnsupportedRepositoryException("Not a git index: " + file);
+        }
+        int version = data.getInt();
+        if (version < 2 || version > 4) {
+            throw new UnsupportedRepositoryException("Unsupported index version " + version);
+        }
+        int count = data.getInt();
+        
+        Map<String, Entry> entries = new HashMap<>(count * 4 / 3 + 1);
+        byte[] previousPath = new byte[0];
+        for (int i = 0; i < count; i++) {
+            int start = data.position();
+            data.position(start + 8); // ctime
+            long mtimeSeconds = Integer.toUnsignedLong(data.getInt());
+            int mtimeNanos = data.getInt();
+            data.position(data.position() + 8); // dev, ino
+            int mode = data.getInt();
+            data.position(data.position() + 8); // uid, gid
+            long size = Integer.toUnsignedLong(data.getInt());
+            byte[] sha = new byte[20];
+            data.get(sha);
+            int flags = data.getShort() & 0xffff;
+            if (version >= 3 && (flags & 0x4000) != 0) {
+                data.getShort(); // extended flags
+            }
+            
+            byte[] path;
+            if (version == 4) {
+                // Path is stored as "strip N bytes from the previous path" plus a NUL-terminated suffix
+                int strip = (int) readOffsetVarint(data);
+                byte[] suffix = readNulTerminated(data);
+                int keep = previousPath.length - strip;
+                path = new byte[keep + suffix.length];
+                System.arraycopy(previousPath, 0, path, 0, keep);
+                System.arraycopy(suffix, 0, path, keep, suffix.length);
+            } else {
+                path = readNulTerminated(data);
+                // Entries are NUL-padded to a multiple of 8 bytes
+                int entryLength = data.position() - start;
+                data.position(start + ((entryLength + 7) & ~7));
+            }
+            previousPath = path;
+            
+            String name = new String(path, StandardCharsets.UTF_8);
+            int stage = (flags >> 12) & 3;
+            Entry entry = new Entry(name, mode, ObjectDatabase.toHex(sha), stage, mtimeSeconds, mtimeNanos, size);
+            entries.put(stage == 0 ? name : name + "\0" + stage, entry);
+        }
+        
+        // A split index keeps most entries in a shared file we don't read
+        while (data.remaining() > 28) {
+            int signature = data.getInt();
+            int length = data.getInt();
+            if (signature == SPLIT_INDEX) {
+                throw new UnsupportedRepositoryException("Split index is not supported");
+            }
+            data.position(data.position() + length);
+        }
+        return new GitIndex(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * Paths whose content, mode or stage differ between the two snapshots. Stat-only changes (git refreshing
+     * its cache) are ignored.
+     */
+    public Set<String> changedPaths(GitIndex other) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (!sameContent(entry.getValue(), other.entries.get(entry.getKey()))) {
+                changed.add(entry.getValue().path());
+            }
+        }
+        for (Map.Entry<String, Entry> entry : other.entries.entrySet()) {
+            if (!entries.containsKey(entry.getKey())) {
+                changed.add(entry.getValue().path());
+            }
+        }
+        return changed;
+    }
+
+    private static boolean sameContent(Entry a, Entry b) {
+        return b != null && a.mode() == b.mode() && a.stage() == b.stage() && Objects.equals(a.sha(), b.sha());
+    }
+
+    private static byte[] readNulTerminated(ByteBuffer data) {
+        int start = data.position();
+        int end = start;
+        while (data.get(end) != 0) {
+            end++;
+        }
+        byte[] bytes = new byte[end - start];
+        data.get(bytes);
+        data.get(); // NUL
+        return bytes;
+    }
+
+    private static long readOffsetVarint(ByteBuffer data) {
+        int c = data.get() & 0xff;
+        long value = c & 0x7f;
+        while ((c & 0x80) != 0) {
+            c = data.get() & 0xff;
+            value = ((value + 1) << 7) | (c & 0x7f);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,266 @@
+package com.mcp.git.repo;
+
+import com.mcp.git.GitObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Read-only, in-process view of a git repository: refs, {@code packed-refs}, config and the object database.
+ * It covers the common layouts only; anything it does not understand surfaces as an
+ * {@link UnsupportedRepositoryException} so callers can fall back to the git CLI.
+ */
+public class GitRepository {
+    private final Path gitDir;
+    private final Path commonDir;
+    private final ObjectDatabase objects;
+    private volatile PackedRefs packedRefs = new PackedRefs(null, Map.of());
+
+    private GitRepository(Path gitDir, Path commonDir) throws IOException {
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+        this.objects = new ObjectDatabase(commonDir.resolve("objects"));
+    }
+
+    /**
+     * Finds the repository containing {@code workingDir} the way git does, walking up parent directories.
+     * Returns null when there is no repository or its layout is not supported.
+     */
+    public static GitRepository open(Path workingDir) {
+        try {
+            for (Path dir = workingDir.toAbsolutePath().normalize(); dir != null; dir = dir.getParent()) {
+                Path dotGit = dir.resolve(".git");
+                if (Files.isDirectory(dotGit)) {
+                    return openGitDir(dotGit);
+                }
+                if (Files.isRegularFile(dotGit)) {
+                    // Worktrees and submodules: ".git" is a file pointing at the real git dir
+                    String pointer = Files.readString(dotGit).trim();
+                    if (pointer.startsWith("gitdir: ")) {
+                        return openGitDir(dir.resolve(pointer.substring(8)).normalize());
+                    }
+                    return null;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("In-process git reader unavailable: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static GitRepository openGitDir(Path gitDir) throws IOException {
+        Path commonDir = gitDir;
+        Path commonFile = gitDir.resolve("commondir");
+        if (Files.isRegularFile(commonFile)) {
+            commonDir = gitDir.resolve(Files.readString(commonFile).trim()).normalize();
+        }
+        if (Files.exists(commonDir.resolve("reftable"))
+                || Files.exists(commonDir.resolve("objects/info/alternates"))
+                || Files.isDirectory(commonDir.resolve("refs/replace"))) {
+            return null;
+        }
+        GitConfig config = GitConfig.read(commonDir.resolve("config"));
+        if (config.get("extensions", null, "objectformat") != null) {
+            return null;
+        }
+        return new GitRepository(gitDir, commonDir);
+    }
+
+    /**
+     * The branch HEAD points to, e.g. {@code refs/heads/main}, or null when HEAD is detached.
+     */
+    public String headRef() throws IOException {
+        String head = Files.readString(gitDir.resolve("HEAD")).trim();
+        return head.startsWith("ref: ") ? head.substring(5) : null;
+    }
+
+    /**
+     * Resolves a ref name (following symbolic refs) or returns null if it does not exist.
+     */
+    public String resolve(String refName) throws IOException {
+        for (int depth = 0; depth < 5; depth++) {
+            String value = readRef(refName);
+            if (value == null) {
+                return null;
+            }
+            if (!value.startsWith("ref: ")) {
+                return value;
+            }
+            refName = value.substring(5);
+        }
+        throw new UnsupportedRepositoryException("Symbolic ref chain too deep: " + refName);
+    }
+
+    /**
+     * All refs under {@code prefix} (e.g. {@code refs/heads/}), sorted by name. Values are object names, or
+     * {@code ref: <target>} for symbolic refs.
+     */
+    public TreeMap<String, String> listRefs(String prefix) throws IOException {
+        TreeMap<String, String> refs = new TreeMap<>();
+        for (Map.Entry<String, String> entry : packedRefs().refs.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                refs.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Path root = commonDir.resolve(prefix);
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    String name = commonDir.relativize(file).toString().replace('\\', '/');
+                    String value = readLooseRef(file);
+                    if (value != null) {
+                        refs.put(name, value);
+                    }
+                }
+            }
+        }
+        return refs;
+    }
+
+    public GitObject readObject(String sha) throws IOException {
+        return objects.read(sha);
+    }
+
+    public Commit readCommit(String sha) throws IOException {
+        GitObject object = objects.read(sha);
+        if (object == null) {
+            return null;
+        }
+        if (!"commit".equals(object.type())) {
+            throw new UnsupportedRepositoryException("Not a commit: " + sha);
+        }
+        return Commit.parse(sha, object.content());
+    }
+
+    /**
+     * Walks history from {@code startSha} newest-first by committer time, like the default {@code git log}.
+     */
+    public List<Commit> log(String startSha, int limit) throws IOException {
+        List<Commit> result = new ArrayList<>(Math.min(limit, 256));
+        Set<String> seen = new HashSet<>();
+        // Ties keep insertion order, matching git's date-ordered commit list
+        PriorityQueue<QueuedCommit> queue = new PriorityQueue<>();
+        long sequence = 0;
+        
+        Commit start = readCommit(startSha);
+        if (start == null) {
+            throw new UnsupportedRepositoryException("Missing commit " + startSha);
+        }
+        seen.add(startSha);
+        queue.add(new QueuedCommit(start, sequence++));
+        
+        while (!queue.isEmpty() && result.size() < limit) {
+            Commit commit = queue.poll().commit;
+            result.add(commit);
+            for (String parent : commit.parents()) {
+                if (seen.add(parent)) {
+                    Commit parentCommit = readCommit(parent);
+                    if (parentCommit == null) {
+                        // Shallow clones stop at the grafted boundary
+                        continue;
+                    }
+                    queue.add(new QueuedCommit(parentCommit, sequence++));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The length git abbreviates object names to by default for a repository of this size.
+     */
+    public int abbreviationLength() {
+        long count = objects.approximateObjectCount();
+        int bits = count > 0 ? 64 - Long.numberOfLeadingZeros(count) : 0;
+        return Math.max(7, (bits + 1) / 2);
+    }
+
+    /**
+     * True when other worktrees share this repository; {@code git branch} then marks their branches specially.
+     */
+    public boolean hasLinkedWorktrees() throws IOException {
+        Path worktrees = commonDir.resolve("worktrees");
+        if (!Files.isDirectory(worktrees)) {
+            return false;
+        }
+        try (Stream<Path> entries = Files.list(worktrees)) {
+            return entries.findAny().isPresent();
+        }
+    }
+
+    public String remoteUrl(String remote) throws IOException {
+        GitConfig config = GitConfig.read(commonDir.resolve("config"));
+        if (config.usesUrlRewrites()) {
+            throw new UnsupportedRepositoryException("url.*.insteadOf rewrites are not supported");
+        }
+        return config.get("remote", remote, "url");
+    }
+
+    private String readRef(String refName) throws IOException {
+        Path base = isPerWorktree(refName) ? gitDir : commonDir;
+        String loose = readLooseRef(base.resolve(refName));
+        return loose != null ? loose : packedRefs().refs.get(refName);
+    }
+
+    private static boolean isPerWorktree(String refName) {
+        return !refName.startsWith("refs/") || refName.startsWith("refs/bisect/") || refName.startsWith("refs/worktree/");
+    }
+
+    private static String readLooseRef(Path file) throws IOException {
+        try {
+            String value = Files.readString(file, StandardCharsets.UTF_8).trim();
+            return value.isEmpty() ? null : value;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private PackedRefs packedRefs() throws IOException {
+        Path file = commonDir.resolve("packed-refs");
+        FileTime modified = Files.exists(file) ? Files.getLastModifiedTime(file) : null;
+        PackedRefs current = packedRefs;
+        if (modified == null ? current.modified == null : modified.equals(current.modified)) {
+            return current;
+        }
+        
+        Map<String, String> refs = new TreeMap<>();
+        if (modified != null) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                // Skip the header and "^<sha>" peeled-tag lines
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("^")) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                if (space > 0) {
+                    refs.put(line.substring(space + 1), line.substring(0, space));
+                }
+            }
+        }
+        current = new PackedRefs(modified, refs);
+        packedRefs = current;
+        return current;
+    }
+
+    private record PackedRefs(FileTime modified, Map<String, String> refs) {
+    }
+
+    private record QueuedCommit(Commit commit, long sequence) implements Comparable<QueuedCommit> {
+        @Override
+        public int compareTo(QueuedCommit other) {
+            int byTime = Long.compare(other.commit.commitTime(), commit.commitTime());
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
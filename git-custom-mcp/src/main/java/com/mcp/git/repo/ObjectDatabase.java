@@ -0,0 +1,175 @@
+package com.mcp.git.repo;
+
+import com.mcp.git.GitObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads objects from {@code objects/}: packs first, then loose files. Inflated commits and trees are kept in an
+ * LRU cache since log walks and tree lookups hit the same objects repeatedly.
+ */
+final class ObjectDatabase {
+    private static final long CACHE_BYTES = 32L << 20;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path objectsDir;
+    private final LruCache<String, GitObject> cache = new LruCache<>(CACHE_BYTES, o -> o.size() + 96);
+    private volatile List<PackFile> packs;
+
+    ObjectDatabase(Path objectsDir) throws IOException {
+        this.objectsDir = objectsDir;
+        this.packs = scanPacks();
+    }
+
+    /**
+     * Returns the object, or null if it does not exist.
+     */
+    GitObject read(String sha) throws IOException {
+        GitObject object = cache.get(sha);
+        if (object != null) {
+            return object;
+        }
+        
+        object = readUncached(sha);
+        if (object == null) {
+            // A fetch or gc may have written new packs since we last looked
+            packs = scanPacks();
+            object = readUncached(sha);
+        }
+        if (object != null && ("commit".equals(object.type()) || "tree".equals(object.type()))) {
+            cache.put(sha, object);
+        }
+        return object;
+    }
+
+    /**
+     * Same estimate git uses to size abbreviated object names: packed objects plus loose objects extrapolated
+     * from one fan-out directory.
+     */
+    long approximateObjectCount() {
+        long count = 0;
+        for (PackFile pack : packs) {
+            count += pack.objectCount();
+        }
+        try (DirectoryStream<Path> loose = Files.newDirectoryStream(objectsDir.resolve("17"))) {
+            int sample = 0;
+            for (Path ignored : loose) {
+                sample++;
+            }
+            count += sample * 256L;
+        } catch (IOException ignored) {
+        }
+        return count;
+    }
+
+    private GitObject readUncached(String sha) throws IOException {
+        for (PackFile pack : packs) {
+            GitObject object = pack.read(sha, this);
+            if (object != null) {
+                return object;
+            }
+        }
+        return readLoose(sha);
+    }
+
+    private GitObject readLoose(String sha) throws IOException {
+        byte[] compressed;
+        try {
+            compressed = Files.readAllBytes(objectsDir.resolve(sha.substring(0, 2)).resolve(sha.substring(2)));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 2);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new IOException("Truncated loose object " + sha);
+                }
+                out.write(buffer, 0, n);
+            }
+            byte[] raw = out.toByteArray();
+            
+            // "<type> <size>\0<content>"
+            int space = indexOf(raw, (byte) ' ', 0);
+            int nul = indexOf(raw, (byte) 0, space);
+            if (space < 0 || nul < 0) {
+                throw new IOException("Corrupt loose object " + sha);
+            }
+            String type = new String(raw, 0, space, StandardCharsets.US_ASCII);
+            byte[] content = new byte[raw.length - nul - 1];
+            System.arraycopy(raw, nul + 1, content, 0, content.length);
+            return new GitObject(sha, type, content.length, content);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt loose object " + sha, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private List<PackFile> scanPacks() throws IOException {
+        List<PackFile> found = new ArrayList<>();
+        List<PackFile> current = packs;
+        Path packDir = objectsDir.resolve("pack");
+        if (!Files.isDirectory(packDir)) {
+            return found;
+        }
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(packDir, "*.idx")) {
+            for (Path idxPath : indexes) {
+                PackFile existing = current == null ? null : current.stream()
+                    .filter(p -> p.path().equals(packPathFor(idxPath)))
+                    .findFirst().orElse(null);
+                found.add(existing != null ? existing : PackFile.open(idxPath));
+            }
+        }
+        return found;
+    }
+
+    private static Path packPathFor(Path idxPath) {
+        String name = idxPath.getFileName().toString();
+        return idxPath.resolveSibling(name.substring(0, name.length() - 4) + ".pack");
+    }
+
+    private static int indexOf(byte[] data, byte value, int from) {
+        if (from < 0) {
+            return -1;
+        }
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static byte[] toBytes(String sha) {
+        byte[] bytes = new byte[20];
+        for (int i = 0; i < 20; i++) {
+            bytes[i] = (byte) Integer.parseInt(sha, i * 2, i * 2 + 2, 16);
+        }
+        return bytes;
+    }
+
+    static String toHex(byte[] sha) {
+        char[] chars = new char[40];
+        for (int i = 0; i < 20; i++) {
+            chars[i * 2] = HEX[(sha[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[sha[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,259 @@
+package com.mcp.git.repo;
+
+import com.mcp.git.GitObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A memory-mapped {@code .pack} file and its version 2 {@code .idx}. Lookups binary-search the mapped index and
+ * inflate straight from the mapped pack; delta chains are resolved through a small per-pack base cache.
+ */
+final class PackFile {
+    private static final int IDX_MAGIC = 0xff744f63;
+    private static final int FANOUT_OFFSET = 8;
+    private static final int SHA_TABLE_OFFSET = FANOUT_OFFSET + 256 * 4;
+
+    private static final int OBJ_COMMIT = 1;
+    private static final int OBJ_TREE = 2;
+    private static final int OBJ_BLOB = 3;
+    private static final int OBJ_TAG = 4;
+    private static final int OBJ_OFS_DELTA = 6;
+    private static final int OBJ_REF_DELTA = 7;
+
+    private final Path packPath;
+    private final MappedByteBuffer idx;
+    private final MappedByteBuffer pack;
+    private final int objectCount;
+    private final int offsetTableOffset;
+    private final int largeOffsetTableOffset;
+    private final LruCache<Long, GitObject> deltaBases = new LruCache<>(8L << 20, o -> o.size() + 64);
+
+    private PackFile(Path packPath, MappedByteBuffer idx, MappedByteBuffer pack) {
+        this.packPath = packPath;
+        this.idx = idx;
+        this.pack = pack;
+        this.objectCount = idx.getInt(FANOUT_OFFSET + 255 * 4);
+        this.offsetTableOffset = SHA_TABLE_OFFSET + objectCount * 20 + objectCount * 4;
+        this.largeOffsetTableOffset = offsetTableOffset + objectCount * 4;
+    }
+
+    static PackFile open(Path idxPath) throws IOException {
+        String name = idxPath.getFileName().toString();
+        Path packPath = idxPath.resolveSibling(name.substring(0, name.length() - 4) + ".pack");
+        
+        MappedByteBuffer idx = map(idxPath);
+        if (idx.getInt(0) != IDX_MAGIC || idx.getInt(4) != 2) {
+            throw new IOException("Unsupported pack index version: " + idxPath);
+        }
+        MappedByteBuffer pack = map(packPath);
+        if (pack.getInt(0) != 0x5041434b) { // "PACK"
+            throw new IOException("Not a pack file: " + packPath);
+        }
+        return new PackFile(packPath, idx, pack);
+    }
+
+    int objectCount() {
+        return objectCount;
+    }
+
+    Path path() {
+        return packPath;
+    }
+
+    /**
+     * Returns the object, or null if this pack does not contain it.
+     */
+    GitObject read(String sha, ObjectDatabase database) throws IOException {
+        long offset = findOffset(ObjectDatabase.toBytes(sha));
+        if (offset < 0) {
+            return null;
+        }
+        GitObject object = readAt(offset, database);
+        return new GitObject(sha, object.type(), object.size(), object.content());
+    }
+
+    private long findOffset(byte[] sha) {
+        int first = sha[0] & 0xff;
+        int low = first == 0 ? 0 : idx.getInt(FANOUT_OFFSET + (first - 1) * 4);
+        int high = idx.getInt(FANOUT_OFFSET + first * 4) - 1;
+        
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareSha(SHA_TABLE_OFFSET + mid * 20, sha);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                int offset = idx.getInt(offsetTableOffset + mid * 4);
+                if (offset >= 0) {
+                    return offset;
+                }
+                return idx.getLong(largeOffsetTableOffset + (offset & 0x7fffffff) * 8);
+            }
+        }
+        return -1;
+    }
+
+    private int compareSha(int position, byte[] sha) {
+        for (int i = 0; i < 20; i++) {
+            int cmp = Integer.compare(idx.get(position + i) & 0xff, sha[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private GitObject readAt(long offset, ObjectDatabase database) throws IOException {
+        GitObject cached = deltaBases.get(offset);
+        if (cached != null) {
+            return cached;
+        }
+        
+        int pos = (int) offset;
+        int c = pack.get(pos++) & 0xff;
+        int type = (c >> 4) & 7;
+        long size = c & 15;
+        int shift = 4;
+        while ((c & 0x80) != 0) {
+            c = pack.get(pos++) & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+        
+        GitObject object;
+        switch (type) {
+            case OBJ_COMMIT, OBJ_TREE, OBJ_BLOB, OBJ_TAG -> {
+                byte[] content = inflate(pos, size);
+                object = new GitObject(null, typeName(type), content.length, content);
+            }
+            case OBJ_OFS_DELTA -> {
+                c = pack.get(pos++) & 0xff;
+                long distance = c & 0x7f;
+                while ((c & 0x80) != 0) {
+                    c = pack.get(pos++) & 0xff;
+                    distance = ((distance + 1) << 7) | (c & 0x7f);
+                }
+                GitObject base = readAt(offset - distance, database);
+                object = applyDelta(base, inflate(pos, size));
+                deltaBases.put(offset, object);
+            }
+            case OBJ_REF_DELTA -> {
+                byte[] baseSha = new byte[20];
+                pack.get(pos, baseSha);
+                GitObject base = database.read(ObjectDatabase.toHex(baseSha));
+                if (base == null) {
+                    throw new IOException("Missing delta base in " + packPath);
+                }
+                object = applyDelta(base, inflate(pos + 20, size));
+                deltaBases.put(offset, object);
+            }
+            default -> throw new IOException("Unknown object type " + type + " in " + packPath);
+        }
+        return object;
+    }
+
+    private byte[] inflate(int position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Object too large to inflate in memory");
+        }
+        byte[] out = new byte[(int) size];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(pack.duplicate().position(position));
+            int written = 0;
+            while (written < out.length && !inflater.finished()) {
+                int n = inflater.inflate(out, written, out.length - written);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated object in " + packPath);
+                }
+                written += n;
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt object in " + packPath, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static GitObject applyDelta(GitObject base, byte[] delta) throws IOException {
+        byte[] source = base.content();
+        ByteBuffer in = ByteBuffer.wrap(delta);
+        long sourceSize = readVarint(in);
+        long targetSize = readVarint(in);
+        if (sourceSize != source.length) {
+            throw new IOException("Delta base size mismatch");
+        }
+        
+        byte[] target = new byte[(int) targetSize];
+        int out = 0;
+        while (in.hasRemaining()) {
+            int cmd = in.get() & 0xff;
+            if ((cmd & 0x80) != 0) {
+                int copyOffset = 0;
+                int copySize = 0;
+                if ((cmd & 0x01) != 0) copyOffset = in.get() & 0xff;
+                if ((cmd & 0x02) != 0) copyOffset |= (in.get() & 0xff) << 8;
+                if ((cmd & 0x04) != 0) copyOffset |= (in.get() & 0xff) << 16;
+                if ((cmd & 0x08) != 0) copyOffset |= (in.get() & 0xff) << 24;
+                if ((cmd & 0x10) != 0) copySize = in.get() & 0xff;
+                if ((cmd & 0x20) != 0) copySize |= (in.get() & 0xff) << 8;
+                if ((cmd & 0x40) != 0) copySize |= (in.get() & 0xff) << 16;
+                if (copySize == 0) {
+                    copySize = 0x10000;
+                }
+                System.arraycopy(source, copyOffset, target, out, copySize);
+                out += copySize;
+            } else if (cmd != 0) {
+                in.get(target, out, cmd);
+                out += cmd;
+            } else {
+                throw new IOException("Invalid delta opcode");
+            }
+        }
+        if (out != target.length) {
+            throw new IOException("Delta produced " + out + " bytes, expected " + target.length);
+        }
+        return new GitObject(null, base.type(), target.length, target);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        int c;
+        do {
+            c = in.get() & 0xff;
+            value |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        return value;
+    }
+
+    private static String typeName(int type) {
+        return switch (type) {
+            case OBJ_COMMIT -> "commit";
+            case OBJ_TREE -> "tree";
+            case OBJ_BLOB -> "blob";
+            default -> "tag";
+        };
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Pack too large to map: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+}
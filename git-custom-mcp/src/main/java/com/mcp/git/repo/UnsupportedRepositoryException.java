@@ -0,0 +1,15 @@
+package com.mcp.git.repo;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the in-process reader meets a repository feature it does not implement; callers fall back to the
+ * git CLI.
+ */
+public class UnsupportedRepositoryException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedRepositoryException(String message) {
+        super(message);
+    }
+}
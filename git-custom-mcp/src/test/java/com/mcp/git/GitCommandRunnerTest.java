@@ -0,0 +1,89 @@
+package com.mcp.git;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GitCommandRunnerTest {
+    @TempDir
+    Path repoDir;
+
+    private GitCommandRunner git;
+
+    @BeforeEach
+    void createRepository() throws Exception {
+        git = new GitCommandRunner(repoDir.toString());
+        try {
+            git.run("git", "--version");
+        } catch (Exception e) {
+            assumeTrue(false, "git CLI not available");
+        }
+        git.run("git", "init", "-q");
+        git.run("git", "config", "user.email", "dev@example.com");
+        git.run("git", "config", "user.name", "Dev");
+        Files.writeString(repoDir.resolve("file.txt"), "hello\n");
+        git.run("git", "add", "file.txt");
+        git.run("git", "commit", "-q", "-m", "first commit");
+    }
+
+    @AfterEach
+    void close() {
+        git.close();
+    }
+
+    @Test
+    void testRunsCommandsAndReportsFailures() throws Exception {
+        assertEquals("file.txt\n", git.run("git", "ls-files"));
+
+        RuntimeException failure = assertThrows(RuntimeException.class,
+            () -> git.run("git", "rev-parse", "--verify", "no-such-branch"));
+        assertTrue(failure.getMessage().startsWith("Git command failed: fatal:"), failure.getMessage());
+
+        CompletableFuture<String> log = git.runAsync("git", "log", "--format=%s");
+        CompletableFuture<String> missing = git.runAsync("git", "show", "no-such-branch");
+        assertEquals("first commit\n", GitCommandRunner.await(log));
+        assertThrows(RuntimeException.class, () -> GitCommandRunner.await(missing));
+    }
+
+    @Test
+    void testDoesNotBlockOnAFullStderrPipe() {
+        // Far more than a pipe buffer on stderr before anything is written to stdout
+        String noisy = "alias.noisy=!i=0; while [ $i -lt 20000 ]; do echo warning $i >&2; i=$((i+1)); done; echo done";
+
+        String output = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> git.run("git", "-c", noisy, "noisy"));
+
+        assertEquals("done\n", output);
+    }
+
+    @Test
+    void testReadsObjectsThroughCatFile() throws Exception {
+        GitObject commit = git.readObject("HEAD");
+
+        assertEquals(git.run("git", "rev-parse", "HEAD").trim(), commit.sha());
+        assertEquals("commit", commit.type());
+        assertTrue(commit.text().endsWith("\n\nfirst commit\n"));
+        assertEquals("hello\n", git.readObject("HEAD:file.txt").text());
+        assertNull(git.readObject("no-such-branch"));
+    }
+
+    @Test
+    void testReadsPathsWithSpaces() throws Exception {
+        Files.writeString(repoDir.resolve("a b"), "spaced\n");
+        git.run("git", "add", "a b");
+        git.run("git", "commit", "-q", "-m", "spaced name");
+
+        assertEquals("spaced\n", git.readObject("HEAD:a b").text());
+        assertNull(git.readObject("HEAD:x y"));
+        // The process is still in step after a miss
+        assertEquals("hello\n", git.readObject("HEAD:file.txt").text());
+    }
+}
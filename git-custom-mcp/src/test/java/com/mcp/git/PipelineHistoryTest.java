@@ -0,0 +1,100 @@
+package com.mcp.git;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineHistoryTest {
+    private static final long START = 1_700_000_000_000L;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testQueriesByCommitBranchAndTime() throws Exception {
+        try (PipelineHistory history = new PipelineHistory(mapper, dir.resolve("pipelines.jsonl"), 100, 1 << 20)) {
+            for (int i = 0; i < 10; i++) {
+                history.record(push("owner/repo", i % 2 == 0 ? "main" : "feature", sha(i)), START + i * 1000);
+            }
+
+            assertEquals(sha(9), history.latest().sha());
+            assertEquals("pipeline_" + (START + 9000), history.latest().id());
+
+            List<PipelineHistory.Pipeline> byCommit = history.byCommit(sha(3).substring(0, 7), null, 10);
+            assertEquals(1, byCommit.size());
+            assertEquals("feature", byCommit.get(0).branch());
+            assertEquals("alice", byCommit.get(0).pusher());
+            assertEquals("commit " + sha(3), byCommit.get(0).message());
+
+            List<PipelineHistory.Pipeline> main = history.between(0, Long.MAX_VALUE, "main", null, 3);
+            assertEquals(List.of(sha(8), sha(6), sha(4)), main.stream().map(PipelineHistory.Pipeline::sha).toList());
+
+            List<PipelineHistory.Pipeline> window = history.between(START + 2000, START + 5000, null, null, 10);
+            assertEquals(List.of(sha(4), sha(3), sha(2)), window.stream().map(PipelineHistory.Pipeline::sha).toList());
+            assertTrue(history.between(0, Long.MAX_VALUE, null, "other/repo", 10).isEmpty());
+        }
+    }
+
+    @Test
+    void testSpillsToDiskAndReloads() throws Exception {
+        Path file = dir.resolve("pipelines.jsonl");
+        try (PipelineHistory history = new PipelineHistory(mapper, file, 5, 1 << 20)) {
+            for (int i = 0; i < 20; i++) {
+                history.record(push("owner/repo", "main", sha(i)), START + i * 1000);
+            }
+
+            assertEquals(5, history.size());
+            // Older than anything in memory, so answered from the file
+            assertEquals(sha(2), history.byCommit(sha(2), null, 10).get(0).sha());
+            List<PipelineHistory.Pipeline> all = history.between(0, Long.MAX_VALUE, "main", null, 100);
+            assertEquals(20, all.size());
+            assertEquals(sha(19), all.get(0).sha());
+            assertEquals(sha(0), all.get(19).sha());
+        }
+        Files.writeString(file, "{\"sha\":\"torn", StandardOpenOption.APPEND);
+
+        try (PipelineHistory reloaded = new PipelineHistory(mapper, file, 5, 1 << 20)) {
+            assertEquals(sha(19), reloaded.latest().sha());
+            assertEquals(5, reloaded.size());
+            assertEquals(sha(7), reloaded.byCommit(sha(7), "OWNER/REPO", 1).get(0).sha());
+            reloaded.record(push("owner/repo", "main", sha(20)), START + 20_000);
+        }
+
+        try (PipelineHistory reloaded = new PipelineHistory(mapper, file, 5, 1 << 20)) {
+            assertEquals(sha(20), reloaded.latest().sha());
+        }
+    }
+
+    @Test
+    void testRollsFileOverAtSizeLimit() throws Exception {
+        Path file = dir.resolve("pipelines.jsonl");
+        try (PipelineHistory history = new PipelineHistory(mapper, file, 1000, 2048)) {
+            for (int i = 0; i < 40; i++) {
+                history.record(push("owner/repo", "main", sha(i)), START + i * 1000);
+            }
+            assertTrue(Files.exists(dir.resolve("pipelines.jsonl.old")));
+            assertTrue(Files.size(file) <= 2048);
+            assertEquals(40, history.size());
+        }
+    }
+
+    private JsonNode push(String repo, String branch, String sha) throws Exception {
+        return mapper.readTree(String.format("{\"ref\":\"refs/heads/%s\",\"after\":\"%s\",\"before\":\"%s\","
+            + "\"repository\":{\"id\":42,\"full_name\":\"%s\"},\"pusher\":{\"name\":\"alice\"},"
+            + "\"head_commit\":{\"message\":\"commit %s\\n\\nbody\"}}", branch, sha, sha(0), repo, sha));
+    }
+
+    private static String sha(int i) {
+        return String.format("%016x%024d", (i + 1) * 0x9e3779b97f4a7c15L, i);
+    }
+}
@@ -0,0 +1,159 @@
+package com.mcp.git;
+
+import com.mcp.git.RepoStatistics.Dimension;
+import com.mcp.git.RepoStatistics.Granularity;
+import com.mcp.git.RepoStatistics.Metric;
+import com.mcp.git.model.GitStatistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepoStatisticsTest {
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    // Midnight UTC
+    private static final long START = 19_000 * DAY;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testCountsPerAuthorBranchAndWindow() throws Exception {
+        try (RepoStatistics stats = new RepoStatistics(dir.resolve("stats.bin"), 48, 30, 60_000)) {
+            stats.addCommit("owner/repo", "a1", "main", "alice", START + HOUR, 3, 10, 2);
+            stats.addCommit("owner/repo", "a2", "main", "alice", START + 2 * HOUR, 1, 5, 0);
+            stats.addCommit("owner/repo", "b1", "feature", "bob", START + 2 * HOUR + 5, 2, 1, 1);
+            // Same commit reported again, e.g. by the push webhook after git log saw it
+            stats.addCommit("owner/repo", "a1", "feature", "alice", START + HOUR, 3, 0, 0);
+            stats.addCommit("other/repo", "c1", "main", "carol", START + DAY, 1, 1, 1);
+            stats.addPipeline("owner/repo", "main", "alice", START + 2 * HOUR);
+
+            assertEquals(Map.of("alice", 2L, "bob", 1L),
+                stats.breakdown(Metric.COMMITS, Dimension.AUTHOR, Granularity.DAY, START, START + DAY, "owner/repo"));
+            assertEquals(List.of("alice", "bob", "carol"), List.copyOf(stats.breakdown(Metric.COMMITS,
+                Dimension.AUTHOR, Granularity.DAY, START, START + 2 * DAY, null).keySet()));
+            assertEquals(Map.of("main", 4L, "feature", 2L),
+                stats.breakdown(Metric.FILES_CHANGED, Dimension.BRANCH, Granularity.DAY, START, START + DAY, null));
+
+            Map<Long, Long> hourly = stats.series(Metric.COMMITS, Granularity.HOUR, START, START + 4 * HOUR, null);
+            assertEquals(List.of(0L, 1L, 2L, 0L), List.copyOf(hourly.values()));
+            assertEquals(START + HOUR, hourly.keySet().stream().skip(1).findFirst().orElseThrow());
+            assertEquals(1L, stats.series(Metric.PIPELINES, Granularity.HOUR, START + 2 * HOUR, START + 3 * HOUR,
+                "OWNER/REPO").firstEntry().getValue());
+            assertEquals(16L, stats.series(Metric.LINES_ADDED, Granularity.DAY, START, START + DAY, "owner/repo")
+                .firstEntry().getValue());
+        }
+    }
+
+    @Test
+    void testOldWindowsExpire() throws Exception {
+        try (RepoStatistics stats = new RepoStatistics(dir.resolve("stats.bin"), 24, 3, 60_000)) {
+            for (int day = 0; day < 5; day++) {
+                stats.addCommit("owner/repo", "c" + day, "main", "alice", START + day * DAY, 1, 0, 0);
+            }
+            // Older than the three days kept
+            stats.addCommit("owner/repo", "late", "main", "alice", START + DAY, 1, 0, 0);
+
+            Map<Long, Long> daily = stats.series(Metric.COMMITS, Granularity.DAY, START, START + 5 * DAY, null);
+            assertEquals(Map.of(START + 2 * DAY, 1L, START + 3 * DAY, 1L, START + 4 * DAY, 1L), daily);
+            assertEquals(START + 2 * DAY, stats.retainedFrom(Granularity.DAY));
+            assertEquals(Map.of("alice", 1L),
+                stats.breakdown(Metric.COMMITS, Dimension.AUTHOR, Granularity.HOUR, START, START + 5 * DAY, null));
+        }
+    }
+
+    @Test
+    void testReadsGitLogNumstat() throws Exception {
+        String log = "\u001eaaa\u001fAlice\u001f" + (START / 1000 + 60) + "\n\n3\t1\tsrc/A.java\n-\t-\tlogo.png\n"
+            + "\u001ebbb\u001fBob\u001f" + (START / 1000 + 120) + "\n";
+        try (RepoStatistics stats = new RepoStatistics(dir.resolve("stats.bin"), 24, 30, 60_000)) {
+            assertEquals(2, stats.addGitLog("owner/repo", "main", log));
+
+            assertEquals(Map.of("Alice", 2L),
+                stats.breakdown(Metric.FILES_CHANGED, Dimension.AUTHOR, Granularity.DAY, START, START + DAY, null));
+            assertEquals(Map.of("Alice", 3L),
+                stats.breakdown(Metric.LINES_ADDED, Dimension.AUTHOR, Granularity.DAY, START, START + DAY, null));
+            assertEquals(Map.of("Alice", 1L, "Bob", 1L),
+                stats.breakdown(Metric.COMMITS, Dimension.AUTHOR, Granularity.DAY, START, START + DAY, null));
+        }
+    }
+
+    @Test
+    void testGitLogFillsInLinesOfCommitsFirstSeenByWebhook() throws Exception {
+        Path file = dir.resolve("stats.bin");
+        try (RepoStatistics stats = new RepoStatistics(file, 48, 30, 60_000)) {
+            GitStatistics row = StatisticsSink.newRecord("owner/repo", "commit", START + HOUR + 30_000);
+            row.setCommitSha("aaa");
+            row.setBranch("feature");
+            row.setAuthor("alice");
+            row.setFilesChanged(2);
+            stats.add(row);
+            GitStatistics other = StatisticsSink.newRecord("owner/repo", "commit", START + 3 * HOUR);
+            other.setCommitSha("bbb");
+            other.setAuthor("bob");
+            stats.add(other);
+        }
+
+        String log = "\u001eaaa\u001fAlice Smith\u001f" + (START / 1000 + 7200) + "\n\n3\t1\tsrc/A.java\n4\t0\tB.java\n";
+        try (RepoStatistics stats = new RepoStatistics(file, 48, 30, 60_000)) {
+            // Counted already, so not new, but its lines are added where the webhook counted it
+            assertEquals(0, stats.addGitLog("owner/repo", "main", log));
+            assertEquals(0, stats.addGitLog("owner/repo", "main", log));
+
+            assertEquals(Map.of("alice", 7L),
+                stats.breakdown(Metric.LINES_ADDED, Dimension.AUTHOR, Granularity.DAY, START, START + DAY, null));
+            assertEquals(Map.of("feature", 1L),
+                stats.breakdown(Metric.LINES_DELETED, Dimension.BRANCH, Granularity.HOUR, START, START + DAY, null));
+            assertEquals(List.of(0L, 7L, 0L, 0L), List.copyOf(
+                stats.series(Metric.LINES_ADDED, Granularity.HOUR, START, START + 4 * HOUR, "owner/repo").values()));
+            assertEquals(Map.of("alice", 1L, "bob", 1L),
+                stats.breakdown(Metric.COMMITS, Dimension.AUTHOR, Granularity.DAY, START, START + DAY, null));
+            assertTrue(stats.describe().contains("(1 awaiting line counts)"));
+        }
+    }
+
+    @Test
+    void testSnapshotRestoresState() throws Exception {
+        Path file = dir.resolve("stats.bin");
+        try (RepoStatistics stats = new RepoStatistics(file, 48, 30, 60_000)) {
+            for (int i = 0; i < 100; i++) {
+                stats.addCommit("owner/repo", "c" + i, i % 2 == 0 ? "main" : "dev", "author" + i % 7,
+                    START + i * HOUR, 1, i, 0);
+            }
+            stats.setScannedHead("owner/repo", "main", "abc");
+        }
+        assertTrue(Files.size(file) > 0);
+
+        try (RepoStatistics reloaded = new RepoStatistics(file, 48, 30, 60_000)) {
+            assertEquals("abc", reloaded.scannedHead("owner/repo", "main"));
+            assertEquals(100L, reloaded.series(Metric.COMMITS, Granularity.DAY, START, START + 5 * DAY, null)
+                .values().stream().mapToLong(Long::longValue).sum());
+            assertEquals(Map.of("main", 50L, "dev", 50L),
+                reloaded.breakdown(Metric.COMMITS, Dimension.BRANCH, Granularity.DAY, START, START + 5 * DAY, null));
+            // The last 48 hours are still kept hourly
+            assertEquals(48L, reloaded.series(Metric.COMMITS, Granularity.HOUR, START, START + 5 * DAY, null)
+                .values().stream().mapToLong(Long::longValue).sum());
+            // Already counted before the restart
+            reloaded.addCommit("owner/repo", "c99", "main", "author1", START + 99 * HOUR, 1, 0, 0);
+            assertEquals(100L, reloaded.series(Metric.COMMITS, Granularity.DAY, START, START + 5 * DAY, null)
+                .values().stream().mapToLong(Long::longValue).sum());
+        }
+
+        // Fewer hours kept than the snapshot has: the older ones are dropped
+        try (RepoStatistics shorter = new RepoStatistics(file, 10, 30, 60_000)) {
+            assertEquals(10L, shorter.series(Metric.COMMITS, Granularity.HOUR, START, START + 5 * DAY, null)
+                .values().stream().mapToLong(Long::longValue).sum());
+        }
+
+        Files.write(file, new byte[]{1, 2, 3});
+        try (RepoStatistics corrupt = new RepoStatistics(file, 48, 30, 60_000)) {
+            assertEquals(Map.of(START, 0L), corrupt.series(Metric.COMMITS, Granularity.DAY, START, START + DAY, null));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.mcp.git;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcp.git.model.GitStatistics;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsSinkTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testWritesInBatchesAndRetriesUnprocessedItems() throws Exception {
+        RecordingClient client = new RecordingClient(3);
+        StatisticsSink sink = new StatisticsSink(client, "stats", new StatisticsSink.Settings(20, 1000, 2));
+        for (int i = 0; i < 103; i++) {
+            assertTrue(sink.offer(StatisticsSink.newRecord("owner/repo", "commit", 1_700_000_000_000L)));
+        }
+        sink.close();
+
+        assertTrue(client.batchSizes.stream().allMatch(size -> size <= StatisticsSink.BATCH_SIZE));
+        // The three items left unprocessed the first time round come back in a later request
+        assertTrue(client.batchSizes.size() > 5);
+        assertEquals(103, client.keys.size());
+        assertTrue(sink.describe().contains("103 written"));
+        assertTrue(sink.describe().contains("3 retried"));
+        assertTrue(client.closed);
+    }
+
+    @Test
+    void testDropsWhenQueueIsFull() {
+        RecordingClient client = new RecordingClient(0);
+        StatisticsSink sink = new StatisticsSink(client, "stats", new StatisticsSink.Settings(60_000, 2, 1));
+
+        assertTrue(sink.offer(StatisticsSink.newRecord("owner/repo", "push", 0)));
+        assertTrue(sink.offer(StatisticsSink.newRecord("owner/repo", "push", 0)));
+        assertFalse(sink.offer(StatisticsSink.newRecord("owner/repo", "push", 0)));
+        sink.close();
+
+        assertEquals(2, client.keys.size());
+        assertFalse(sink.offer(StatisticsSink.newRecord("owner/repo", "push", 0)));
+        assertTrue(sink.describe().contains("2 dropped"));
+    }
+
+    @Test
+    void testTurnsPushIntoPushAndCommitRows() throws Exception {
+        JsonNode push = mapper.readTree("{\"ref\":\"refs/heads/main\",\"after\":\"abc\","
+            + "\"repository\":{\"full_name\":\"owner/repo\"},\"pusher\":{\"name\":\"alice\"},\"commits\":["
+            + "{\"id\":\"a1\",\"timestamp\":\"2024-01-01T10:00:00+02:00\",\"author\":{\"name\":\"Bob\",\"username\":\"bob\"},"
+            + "\"added\":[\"x\"],\"removed\":[],\"modified\":[\"y\",\"z\"]},"
+            + "{\"id\":\"a2\",\"timestamp\":\"2024-01-01T10:00:00+02:00\",\"author\":{\"name\":\"Carol\"},"
+            + "\"added\":[],\"removed\":[\"w\"],\"modified\":[]}]}");
+
+        List<GitStatistics> rows = StatisticsSink.fromWebhook("push", push, "pipeline_1", 1_700_000_000_000L);
+
+        assertEquals(3, rows.size());
+        assertEquals("push", rows.get(0).getEventType());
+        assertEquals(4, rows.get(0).getFilesChanged());
+        assertEquals("main", rows.get(0).getBranch());
+        assertEquals("pipeline_1", rows.get(0).getPipelineId());
+        assertEquals("bob", rows.get(1).getAuthor());
+        assertEquals("Carol", rows.get(2).getAuthor());
+        assertTrue(rows.get(1).getTimestamp().startsWith("2024-01-01T08:00:00.000Z#"));
+        // Same commit time, different sort keys
+        assertNotEquals(rows.get(1).getTimestamp(), rows.get(2).getTimestamp());
+        assertTrue(StatisticsSink.fromWebhook("ping", push, null, 0).isEmpty());
+    }
+
+    /**
+     * Accepts every batch, except that it hands the last {@code unprocessedOnce} items of the first batch back.
+     */
+    private static class RecordingClient implements DynamoDbAsyncClient {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final Set<String> keys = Collections.synchronizedSet(new HashSet<>());
+        final AtomicInteger calls = new AtomicInteger();
+        final int unprocessedOnce;
+        volatile boolean closed;
+
+        RecordingClient(int unprocessedOnce) {
+            this.unprocessedOnce = unprocessedOnce;
+        }
+
+        @Override
+        public CompletableFuture<BatchWriteItemResponse> batchWriteItem(BatchWriteItemRequest request) {
+            Map<String, List<WriteRequest>> unprocessed = new HashMap<>();
+            request.requestItems().forEach((table, writes) -> {
+                batchSizes.add(writes.size());
+                int accepted = calls.getAndIncrement() == 0 ? writes.size() - unprocessedOnce : writes.size();
+                for (WriteRequest write : writes.subList(0, accepted)) {
+                    keys.add(write.putRequest().item().get("timestamp").s());
+                }
+                if (accepted < writes.size()) {
+                    unprocessed.put(table, writes.subList(accepted, writes.size()));
+                }
+            });
+            return CompletableFuture.completedFuture(
+                BatchWriteItemResponse.builder().unprocessedItems(unprocessed).build());
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
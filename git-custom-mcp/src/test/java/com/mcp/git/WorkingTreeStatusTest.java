@@ -0,0 +1,183 @@
+package com.mcp.git;
+
+import com.mcp.git.repo.GitRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class WorkingTreeStatusTest {
+    @TempDir
+    Path repoDir;
+
+    private GitCommandRunner git;
+    private WorkingTreeStatus status;
+
+    @BeforeEach
+    void createRepository() throws Exception {
+        git = new GitCommandRunner(repoDir.toString());
+        try {
+            git.run("git", "--version");
+        } catch (Exception e) {
+            assumeTrue(false, "git CLI not available");
+        }
+        git.run("git", "init", "-q");
+        git.run("git", "config", "user.email", "dev@example.com");
+        git.run("git", "config", "user.name", "Dev");
+        Files.writeString(repoDir.resolve(".gitignore"), "build/\n");
+        Files.writeString(repoDir.resolve("a.txt"), "a\n");
+        Files.writeString(repoDir.resolve("b.txt"), "b\n");
+        Files.createDirectories(repoDir.resolve("src"));
+        Files.writeString(repoDir.resolve("src/Main.java"), "class Main {}\n");
+        git.run("git", "add", ".");
+        git.run("git", "commit", "-q", "-m", "initial");
+        status = new WorkingTreeStatus(git, GitRepository.open(repoDir));
+    }
+
+    @AfterEach
+    void close() {
+        status.close();
+        git.close();
+    }
+
+    @Test
+    void testFullStatusMatchesGit() throws Exception {
+        Files.writeString(repoDir.resolve("a.txt"), "changed\n");
+        Files.writeString(repoDir.resolve("staged.txt"), "new\n");
+        git.run("git", "add", "staged.txt");
+        Files.createDirectories(repoDir.resolve("notes/deep"));
+        Files.writeString(repoDir.resolve("notes/deep/todo.txt"), "x\n");
+        Files.createDirectories(repoDir.resolve("build"));
+        Files.writeString(repoDir.resolve("build/out.bin"), "ignored\n");
+        Files.writeString(repoDir.resolve("odd name.txt"), "spaces\n");
+
+        WorkingTreeStatus.Result result = status.status(null);
+
+        assertFalse(result.delta());
+        assertEquals(gitStatus(), result.lines());
+        assertEquals(List.of(" M a.txt", "A  staged.txt", "?? notes/", "?? \"odd name.txt\""), result.lines());
+    }
+
+    @Test
+    void testDeltasAfterEditStageAndDelete() throws Exception {
+        startWatching();
+        WorkingTreeStatus.Result clean = status.status(null);
+        assertEquals(List.of(), clean.lines());
+
+        Files.writeString(repoDir.resolve("a.txt"), "changed\n");
+        WorkingTreeStatus.Result edited = awaitGitStatus();
+        WorkingTreeStatus.Result delta = status.status(clean.token());
+        assertTrue(delta.delta());
+        assertEquals(List.of(" M a.txt"), delta.lines());
+        assertEquals(List.of(), delta.clearedPaths());
+
+        git.run("git", "add", "a.txt");
+        WorkingTreeStatus.Result staged = awaitGitStatus();
+        assertEquals(List.of("M  a.txt"), status.status(edited.token()).lines());
+
+        Files.delete(repoDir.resolve("b.txt"));
+        awaitGitStatus();
+        WorkingTreeStatus.Result deleted = status.status(staged.token());
+        assertEquals(List.of(" D b.txt"), deleted.lines());
+        // Nothing changed since the last token
+        assertEquals(List.of(), status.status(deleted.token()).lines());
+
+        git.run("git", "commit", "-q", "-a", "-m", "edit and delete");
+        awaitGitStatus();
+        WorkingTreeStatus.Result committed = status.status(deleted.token());
+        assertEquals(List.of(), committed.lines());
+        assertEquals(List.of("a.txt", "b.txt"), committed.clearedPaths());
+        // An unknown token gets the full status
+        assertFalse(status.status("stale.1").delta());
+    }
+
+    @Test
+    void testChangeInsideCollapsedUntrackedDirectory() throws Exception {
+        Files.createDirectories(repoDir.resolve("new/sub"));
+        Files.writeString(repoDir.resolve("new/x.txt"), "x\n");
+        startWatching();
+        WorkingTreeStatus.Result collapsed = status.status(null);
+        assertEquals(List.of("?? new/"), collapsed.lines());
+
+        // Still one collapsed entry, so nothing to report
+        Files.writeString(repoDir.resolve("new/sub/y.txt"), "y\n");
+        awaitGitStatus();
+        assertEquals(List.of(), status.status(collapsed.token()).lines());
+
+        git.run("git", "add", "new/x.txt");
+        WorkingTreeStatus.Result split = awaitGitStatus();
+        assertEquals(List.of("A  new/x.txt", "?? new/sub/"), split.lines());
+        WorkingTreeStatus.Result delta = status.status(collapsed.token());
+        assertEquals(List.of("A  new/x.txt", "?? new/sub/"), delta.lines());
+        assertEquals(List.of("new/"), delta.clearedPaths());
+
+        Files.delete(repoDir.resolve("new/sub/y.txt"));
+        Files.delete(repoDir.resolve("new/sub"));
+        awaitGitStatus();
+        assertEquals(List.of("new/sub/"), status.status(split.token()).clearedPaths());
+    }
+
+    @Test
+    void testIgnoreRuleChangesRunAFullStatus() throws Exception {
+        Files.createDirectories(repoDir.resolve("build"));
+        Files.writeString(repoDir.resolve("build/out.bin"), "ignored\n");
+        Files.createDirectories(repoDir.resolve("notes"));
+        Files.writeString(repoDir.resolve("notes/todo.txt"), "x\n");
+        Files.writeString(repoDir.resolve("junk.log"), "junk\n");
+        startWatching();
+        WorkingTreeStatus.Result before = status.status(null);
+        assertEquals(List.of("?? junk.log", "?? notes/"), before.lines());
+
+        // junk.log did not change, but is now ignored; build/ is no longer ignored
+        Files.writeString(repoDir.resolve(".gitignore"), "*.log\n");
+        WorkingTreeStatus.Result edited = awaitGitStatus();
+        assertEquals(List.of(" M .gitignore", "?? build/", "?? notes/"), edited.lines());
+        assertEquals(List.of("junk.log"), status.status(before.token()).clearedPaths());
+        Files.writeString(repoDir.resolve("build/more.bin"), "more\n");
+        Files.delete(repoDir.resolve("build/out.bin"));
+        Files.delete(repoDir.resolve("build/more.bin"));
+        awaitGitStatus();
+
+        Files.writeString(repoDir.resolve(".git/info/exclude"), "notes/\n");
+        assertEquals(List.of(" M .gitignore"), awaitGitStatus().lines());
+        git.run("git", "config", "core.excludesFile", repoDir.resolve("global-ignore").toString());
+        Files.writeString(repoDir.resolve("global-ignore"), ".gitignore\nglobal-ignore\n");
+        Files.writeString(repoDir.resolve("fresh.txt"), "x\n");
+        assertEquals(List.of(" M .gitignore", "?? fresh.txt"), awaitGitStatus().lines());
+    }
+
+    private void startWatching() throws InterruptedException {
+        status.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!status.watching() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assumeTrue(status.watching(), "no native file watcher");
+    }
+
+    /**
+     * Waits for the watcher to catch up, i.e. until the status served from memory matches a full git status.
+     */
+    private WorkingTreeStatus.Result awaitGitStatus() throws Exception {
+        List<String> expected = gitStatus();
+        long deadline = System.currentTimeMillis() + 10_000;
+        WorkingTreeStatus.Result result = status.status(null);
+        while (!result.lines().equals(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            result = status.status(null);
+        }
+        assertEquals(expected, result.lines());
+        return result;
+    }
+
+    private List<String> gitStatus() throws Exception {
+        return git.run("git", "status", "--porcelain").lines().toList();
+    }
+}
@@ -0,0 +1,107 @@
+package com.mcp.git.repo;
+
+import com.mcp.git.GitObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GitRepositoryTest {
+    @TempDir
+    Path repoDir;
+
+    @BeforeEach
+    void createRepository() throws Exception {
+        assumeTrue(git("--version") != null, "git CLI not available");
+        git("init", "-q");
+        git("config", "user.email", "dev@example.com");
+        git("config", "user.name", "Dev");
+        git("remote", "add", "origin", "git@github.com:owner/repo.git");
+        for (int i = 1; i <= 20; i++) {
+            // Growing file contents so gc stores most versions as deltas
+            Files.writeString(repoDir.resolve("file.txt"), "line\n".repeat(i * 50) + i);
+            git("add", "file.txt");
+            git("commit", "-q", "-m", "commit " + i, "-m", "body " + i);
+        }
+        git("gc", "-q", "--aggressive");
+        Files.writeString(repoDir.resolve("loose.txt"), "not packed yet");
+        git("add", "loose.txt");
+        git("commit", "-q", "-m", "loose commit");
+    }
+
+    @Test
+    void testLogMatchesGitCli() throws Exception {
+        GitRepository repository = GitRepository.open(repoDir);
+        assertNotNull(repository);
+        
+        int abbrev = repository.abbreviationLength();
+        StringBuilder log = new StringBuilder();
+        for (Commit commit : repository.log(repository.resolve("HEAD"), 15)) {
+            log.append(commit.sha(), 0, abbrev).append(' ').append(commit.subject()).append('\n');
+        }
+        
+        assertEquals(git("log", "--oneline", "-15"), log.toString());
+    }
+
+    @Test
+    void testReadsPackedDeltasAndLooseObjects() throws Exception {
+        GitRepository repository = GitRepository.open(repoDir);
+        
+        for (String line : git("rev-list", "--objects", "--all").split("\n")) {
+            String sha = line.split(" ")[0];
+            GitObject object = repository.readObject(sha);
+            assertNotNull(object, sha);
+            assertEquals(git("cat-file", "-t", sha).trim(), object.type());
+            assertEquals(Long.parseLong(git("cat-file", "-s", sha).trim()), object.size());
+        }
+    }
+
+    @Test
+    void testRefsAndConfig() throws Exception {
+        GitRepository repository = GitRepository.open(repoDir.resolve("subdir-that-does-not-exist"));
+        
+        String branch = git("branch", "--show-current").trim();
+        assertEquals("refs/heads/" + branch, repository.headRef());
+        assertEquals(git("rev-parse", "HEAD").trim(), repository.resolve("HEAD"));
+        assertEquals(List.of("refs/heads/" + branch), List.copyOf(repository.listRefs("refs/heads/").keySet()));
+        assertEquals("git@github.com:owner/repo.git", repository.remoteUrl("origin"));
+    }
+
+    @Test
+    void testIndexChangedPaths() throws Exception {
+        Path indexFile = repoDir.resolve(".git/index");
+        GitIndex before = GitIndex.read(indexFile);
+        assertEquals(git("rev-parse", ":file.txt").trim(), before.get("file.txt").sha());
+        
+        Files.writeString(repoDir.resolve("file.txt"), "staged change");
+        Files.createDirectories(repoDir.resolve("dir"));
+        Files.writeString(repoDir.resolve("dir/new.txt"), "new");
+        git("add", "-A");
+        git("update-index", "--index-version", "4");
+        GitIndex after = GitIndex.read(indexFile);
+        
+        assertEquals(3, after.size());
+        assertEquals(Set.of("file.txt", "dir/new.txt"), before.changedPaths(after));
+        assertEquals(Set.of(), after.changedPaths(GitIndex.read(indexFile)));
+    }
+
+    private String git(String... args) throws Exception {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            Process process = new ProcessBuilder(command).directory(repoDir.toFile()).start();
+            String output = new String(process.getInputStream().readAllBytes());
+            return process.waitFor() == 0 ? output : null;
+        } catch (java.io.IOException e) {
+            return null;
+        }
+    }
+}
@@ -7,6 +7,9 @@ import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.AbuseLimitHandler;
+import org.kohsuke.github.RateLimitChecker;
+import org.kohsuke.github.RateLimitHandler;
 
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -34,7 +37,13 @@ public class GitNotifyMCPServer extends HttpServlet {
         this.repoName = System.getenv("GITHUB_REPO");
         
         if (token != null) {
-            this.github = new GitHubBuilder().withOAuthToken(token).build();
+            // Polling is background work: stop short of the last requests in the window so interactive
+            // clients of the same token still have budget, and wait out limits instead of failing
+            this.github = new GitHubBuilder().withOAuthToken(token)
+                .withRateLimitChecker(new RateLimitChecker.LiteralValue(pollingReserve()))
+                .withRateLimitHandler(RateLimitHandler.WAIT)
+                .withAbuseLimitHandler(AbuseLimitHandler.WAIT)
+                .build();
         }
         
         // Start webhook server
@@ -81,6 +90,16 @@ public class GitNotifyMCPServer extends HttpServlet {
         }
     }
     
+    // GITHUB_RATE_RESERVE_PERCENT of the 5,000 requests an hour a token gets
+    private static int pollingReserve() {
+        String value = System.getenv("GITHUB_RATE_RESERVE_PERCENT");
+        try {
+            return 5000 * (value == null || value.isBlank() ? 20 : Integer.parseInt(value.trim())) / 100;
+        } catch (NumberFormatException e) {
+            return 1000;
+        }
+    }
+    
     private void startPolling() {
         scheduler.scheduleAtFixedRate(() -> {
             try {
@@ -3,41 +3,81 @@ package com.mcp.gitnotify;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
+import com.mcp.core.Env;
+import com.mcp.core.EventLog;
+import com.mcp.core.JsonRpcDispatcher;
+import com.mcp.core.JsonRpcRequest;
+import com.mcp.core.JsonRpcWriter;
+import com.mcp.core.RateLimitScheduler;
+import com.mcp.core.ToolRegistry;
+import com.mcp.core.WebhookIntake;
 import com.sun.net.httpserver.HttpServer;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+import static com.mcp.core.McpMessages.createParam;
+import static com.mcp.core.McpMessages.createTool;
+import static com.mcp.core.McpMessages.createToolResponse;
+
 public class GitNotifyMcpServer {
     private final HttpClient httpClient;
     private final ObjectMapper mapper;
+    private final ToolRegistry toolRegistry;
     private final String githubToken;
-    private final String githubRepo;
+    private final String baseUrl;
+    private final Map<String, RunWatcher> watchers;
     private final ScheduledExecutorService scheduler;
     private HttpServer webhookServer;
+    private WebhookIntake webhookIntake;
+    private EventLog eventLog;
 
     public GitNotifyMcpServer() {
+        this(System.getenv("GITHUB_API_URL"), System.getenv("GITHUB_TOKEN"), reposFromEnv(), new RunWatcher.Settings(
+            Env.getLong("GITHUB_POLL_MIN_SECONDS", 10, 1) * 1000, Env.getLong("GITHUB_POLL_MAX_SECONDS", 300, 1) * 1000,
+            Env.getLong("WEBHOOK_IDLE_SECONDS", 600, 1) * 1000));
+    }
+
+    GitNotifyMcpServer(String apiUrl, String githubToken, List<String> repos, RunWatcher.Settings settings) {
+        // Every poll runs on this small pool, however many repositories are watched
+        this.scheduler = Executors.newScheduledThreadPool(Env.getInt("GITHUB_WATCH_THREADS", 2, 1), runnable -> {
+            Thread thread = new Thread(runnable, "run-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
         this.httpClient = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
+            .executor(scheduler)
             .build();
         this.mapper = new ObjectMapper();
-        this.githubToken = System.getenv("GITHUB_TOKEN");
-        this.githubRepo = System.getenv("GITHUB_REPO");
-        this.scheduler = Executors.newScheduledThreadPool(2);
+        this.toolRegistry = new ToolRegistry(mapper, "git-notify-mcp-server", "1.0.0");
+        this.toolRegistry.registerAll(createTools());
+        this.githubToken = githubToken;
+        this.baseUrl = apiUrl == null || apiUrl.isBlank() ? "https://api.github.com" : apiUrl.replaceAll("/+$", "");
+        this.watchers = new LinkedHashMap<>();
+        if (githubToken != null) {
+            for (String repo : repos) {
+                watchers.putIfAbsent(repo.toLowerCase(Locale.ROOT), new RunWatcher(repo, settings));
+            }
+        }
         System.err.println("Git Notify MCP Server initialized");
     }
 
@@ -46,24 +86,18 @@ public class GitNotifyMcpServer {
     }
 
     private void run() {
+        eventLog = EventLog.openFromEnv("git-notify-events");
         startWebhookServer();
         startPolling();
         
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                try {
-                    JsonNode request = mapper.readTree(line);
-                    JsonNode response = handleRequest(request);
-                    System.out.println(mapper.writeValueAsString(response));
-                    System.out.flush();
-                } catch (Exception e) {
-                    ObjectNode errorResponse = createErrorResponse(null, -32603, "Parse error: " + e.getMessage());
-                    System.out.println(mapper.writeValueAsString(errorResponse));
-                    System.out.flush();
-                }
-            }
+        System.err.println("Starting MCP server main loop...");
+        try {
+            JsonRpcDispatcher dispatcher = new JsonRpcDispatcher(mapper, this::handleRequest,
+                new JsonRpcWriter(System.out, mapper), toolRegistry, JsonRpcDispatcher.maxInFlightFromEnv());
+            dispatcher.run(System.in);
+            System.err.println("Input stream closed, exiting...");
         } catch (Exception e) {
+            System.err.println("Fatal error in main loop: " + e.getMessage());
             e.printStackTrace();
         } finally {
             shutdown();
@@ -73,8 +107,8 @@ public class GitNotifyMcpServer {
     private void startWebhookServer() {
         try {
             webhookServer = HttpServer.create(new InetSocketAddress(8080), 0);
-            webhookServer.createContext("/webhook", new WebhookHandler());
-            webhookServer.setExecutor(null);
+            webhookIntake = WebhookIntake.fromEnv("notify-webhook", this::processWebhook, null, eventLog);
+            webhookIntake.bind(webhookServer, "/webhook");
             webhookServer.start();
             System.err.println("Webhook server started on port 8080");
         } catch (IOException e) {
@@ -82,107 +116,171 @@ public class GitNotifyMcpServer {
         }
     }
 
-    private void startPolling() {
-        scheduler.scheduleAtFixedRate(this::pollWorkflowStatus, 0, 30, TimeUnit.SECONDS);
-        System.err.println("Started polling workflow status every 30 seconds");
+    /**
+     * Starts every watcher, staggered across the minimum interval so the first polls don't go out together.
+     */
+    void startPolling() {
+        if (watchers.isEmpty()) return;
+        
+        long spread = watchers.values().iterator().next().nextDelay();
+        int index = 0;
+        for (RunWatcher watcher : watchers.values()) {
+            scheduler.schedule(() -> pollWorkflowStatus(watcher), spread * index++ / watchers.size(),
+                TimeUnit.MILLISECONDS);
+        }
+        System.err.println("Started watching workflow runs of " + watchers.size() + " repositories");
     }
 
-    private void pollWorkflowStatus() {
-        if (githubToken == null || githubRepo == null) return;
+    /**
+     * One poll of a watched repository, after which the next one is scheduled at the watcher's current
+     * interval. Skipped entirely while webhooks are keeping us up to date. The request is asynchronous, so no
+     * thread waits on GitHub.
+     */
+    private void pollWorkflowStatus(RunWatcher watcher) {
+        if (watcher.webhookOnly()) {
+            scheduleNext(watcher);
+            return;
+        }
         
+        URI uri;
         try {
-            String url = String.format("https://api.github.com/repos/%s/actions/runs?per_page=5", githubRepo);
+            uri = URI.create(watcher.url(baseUrl));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Not watching '" + watcher.repo + "': " + e.getMessage());
+            return;
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+            .uri(uri)
+            .header("Authorization", "Bearer " + githubToken)
+            .header("Accept", "application/vnd.github.v3+json")
+            .GET();
+        String eTag = watcher.eTag();
+        if (eTag != null) {
+            request.header("If-None-Match", eTag);
+        }
+        
+        // Polling yields to tool calls on the same token and leaves them a reserve of the rate limit
+        RateLimitScheduler.shared().sendAsync(httpClient, request.build(), HttpResponse.BodyHandlers.ofByteArray(),
+                RateLimitScheduler.Priority.BACKGROUND)
+            .thenAccept(response -> {
+                if (response.statusCode() == 304) {
+                    watcher.notModified();
+                } else if (response.statusCode() == 200) {
+                    JsonNode runs = readTree(response.body()).path("workflow_runs");
+                    processWorkflowRuns(watcher.repo,
+                        watcher.accept(response.headers().firstValue("ETag").orElse(null), runs));
+                } else {
+                    System.err.println("Polling error (" + watcher.repo + "): GitHub API status " + response.statusCode());
+                }
+            })
+            .exceptionally(error -> {
+                System.err.println("Polling error (" + watcher.repo + "): " + error.getMessage());
+                return null;
+            })
+            .thenCompose(ignored -> checkOffPageRuns(watcher))
+            .thenRun(() -> scheduleNext(watcher));
+    }
+
+    /**
+     * Looks up each run the watcher lost from its page, so a run that was queued for a long time or pushed off
+     * by newer ones is still reported when it completes.
+     */
+    private CompletableFuture<Void> checkOffPageRuns(RunWatcher watcher) {
+        List<CompletableFuture<?>> checks = new ArrayList<>();
+        for (long id : watcher.offPage()) {
             HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+                .uri(URI.create(baseUrl + "/repos/" + watcher.repo + "/actions/runs/" + id))
                 .header("Authorization", "Bearer " + githubToken)
                 .header("Accept", "application/vnd.github.v3+json")
                 .GET()
                 .build();
-            
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() == 200) {
-                JsonNode runs = mapper.readTree(response.body());
-                processWorkflowRuns(runs.get("workflow_runs"));
-            }
-        } catch (Exception e) {
-            System.err.println("Polling error: " + e.getMessage());
+            checks.add(RateLimitScheduler.shared().sendAsync(httpClient, request,
+                    HttpResponse.BodyHandlers.ofByteArray(), RateLimitScheduler.Priority.BACKGROUND)
+                .thenAccept(response -> {
+                    if (response.statusCode() == 200) {
+                        JsonNode completed = watcher.checked(id, readTree(response.body()));
+                        if (completed != null) {
+                            processWorkflowRuns(watcher.repo, List.of(completed));
+                        }
+                    } else if (response.statusCode() == 404 || response.statusCode() == 410) {
+                        watcher.checked(id, null);
+                    } else {
+                        System.err.println("Run check error (" + watcher.repo + " #" + id + "): GitHub API status "
+                            + response.statusCode());
+                    }
+                })
+                .exceptionally(error -> {
+                    System.err.println("Run check error (" + watcher.repo + " #" + id + "): " + error.getMessage());
+                    return null;
+                }));
         }
+        return CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0]));
     }
 
-    private void processWorkflowRuns(JsonNode runs) {
+    // A little jitter keeps watchers that settled on the same interval from polling in lockstep
+    private void scheduleNext(RunWatcher watcher) {
+        if (scheduler.isShutdown()) return;
+        
+        long delay = watcher.nextDelay();
+        delay += ThreadLocalRandom.current().nextLong(delay / 10 + 1);
+        scheduler.schedule(() -> pollWorkflowStatus(watcher), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void processWorkflowRuns(String repo, List<JsonNode> runs) {
         for (JsonNode run : runs) {
-            String status = run.get("status").asText();
             String conclusion = run.has("conclusion") ? run.get("conclusion").asText() : "";
             String name = run.get("name").asText();
             String runId = run.get("id").asText();
             
-            if ("completed".equals(status)) {
-                String message = String.format("🔔 Workflow '%s' completed with status: %s (Run ID: %s)", 
-                    name, conclusion, runId);
-                System.err.println(message);
-            }
+            String message = String.format("🔔 %s: Workflow '%s' completed with status: %s (Run ID: %s)", 
+                repo, name, conclusion, runId);
+            System.err.println(message);
         }
     }
 
-    private JsonNode handleRequest(JsonNode request) {
-        String method = request.get("method").asText();
-        JsonNode id = request.get("id");
-        
+    private JsonNode readTree(byte[] body) {
         try {
-            JsonNode result = switch (method) {
-                case "initialize" -> handleInitialize();
-                case "tools/list" -> handleToolsList();
-                case "tools/call" -> handleToolCall(request.get("params"));
-                default -> throw new RuntimeException("Unknown method: " + method);
-            };
-            
-            return createSuccessResponse(id, result);
-        } catch (Exception e) {
-            return createErrorResponse(id, -32603, "Internal error: " + e.getMessage());
+            return mapper.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
-    private JsonNode handleInitialize() {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("protocolVersion", "2024-11-05");
-        
-        ObjectNode capabilities = mapper.createObjectNode();
-        ObjectNode tools = mapper.createObjectNode();
-        tools.put("listChanged", false);
-        capabilities.set("tools", tools);
-        response.set("capabilities", capabilities);
-        
-        ObjectNode serverInfo = mapper.createObjectNode();
-        serverInfo.put("name", "git-notify-mcp-server");
-        serverInfo.put("version", "1.0.0");
-        response.set("serverInfo", serverInfo);
-        
-        return response;
+    private JsonNode handleRequest(JsonRpcRequest request) {
+        return switch (request.method()) {
+            case "tools/call" -> handleToolCall(request.params());
+            default -> throw new RuntimeException("Unknown method: " + request.method());
+        };
     }
 
-    private JsonNode handleToolsList() {
+    private ArrayNode createTools() {
         ArrayNode tools = mapper.createArrayNode();
         
         tools.add(createTool("health_check", "Check notification service status"));
         tools.add(createTool("get_notifications", "Get recent workflow notifications"));
         tools.add(createTool("webhook_status", "Check webhook server status"));
+        tools.add(createTool("watch_status", "Show how each watched repository is being followed",
+            createParam("repo", "string", "Only this repository (owner/name)", false)));
         tools.add(createTool("get_repo_from_push", "Get repository name from git push event", 
             createParam("git_url", "string", "Git remote URL", true)));
+        tools.add(createTool("get_events", "Replay webhook events received by this server, oldest first",
+            createParam("since_offset", "number", "Offset to start from (default: 0, the oldest retained)", false),
+            createParam("limit", "number", "Maximum number of events (default: 50)", false)));
         
-        ObjectNode response = mapper.createObjectNode();
-        response.set("tools", tools);
-        return response;
+        return tools;
     }
 
-    private JsonNode handleToolCall(JsonNode params) {
+    JsonNode handleToolCall(JsonNode params) {
         String name = params.get("name").asText();
         
         return switch (name) {
             case "health_check" -> healthCheck();
             case "get_notifications" -> getNotifications();
             case "webhook_status" -> webhookStatus();
+            case "watch_status" -> watchStatus(params.path("arguments").path("repo").asText(null));
             case "get_repo_from_push" -> getRepoFromPush(params.get("arguments").get("git_url").asText());
+            case "get_events" -> getEvents(params.path("arguments").path("since_offset").asLong(0),
+                params.path("arguments").path("limit").asInt(50));
             default -> throw new RuntimeException("Unknown tool: " + name);
         };
     }
@@ -191,11 +289,11 @@ public class GitNotifyMcpServer {
         StringBuilder status = new StringBuilder();
         status.append("🔔 Git Notify MCP Server Status:\n\n");
         
-        if (githubToken != null && githubRepo != null) {
+        if (!watchers.isEmpty()) {
             status.append("✅ GitHub configuration: OK\n");
-            status.append("📍 Repository: ").append(githubRepo).append("\n");
+            status.append("📍 Repositories: ").append(watchers.size()).append("\n");
         } else {
-            status.append("❌ GitHub configuration: Missing GITHUB_TOKEN or GITHUB_REPO\n");
+            status.append("❌ GitHub configuration: Missing GITHUB_TOKEN or GITHUB_REPOS\n");
         }
         
         if (webhookServer != null) {
@@ -204,23 +302,52 @@ public class GitNotifyMcpServer {
             status.append("❌ Webhook server: Not running\n");
         }
         
-        status.append("✅ Polling: Active (every 30 seconds)\n");
+        long webhookOnly = watchers.values().stream().filter(RunWatcher::webhookOnly).count();
+        if (!watchers.isEmpty()) {
+            status.append("✅ Watching: ").append(watchers.size() - webhookOnly).append(" polling, ")
+                .append(webhookOnly).append(" webhook-only\n");
+        }
         
         return createToolResponse("text", status.toString());
     }
 
     private JsonNode getNotifications() {
-        return createToolResponse("text", "📋 Recent notifications are logged to stderr. Check server logs for workflow status updates.");
+        return createToolResponse("text", "📋 Recent notifications are logged to stderr. Check server logs for workflow status updates."
+            + (eventLog != null ? " Webhook deliveries can be replayed with get_events." : ""));
+    }
+
+    private JsonNode getEvents(long since, int limit) {
+        if (eventLog == null) {
+            return createToolResponse("text", "❌ Event log not available");
+        }
+        try {
+            JsonNode page = eventLog.page(mapper, since, Math.max(1, Math.min(limit, 500)));
+            return createToolResponse("text", mapper.writerWithDefaultPrettyPrinter().writeValueAsString(page));
+        } catch (Exception e) {
+            return createToolResponse("text", "❌ Error reading events: " + e.getMessage());
+        }
     }
 
     private JsonNode webhookStatus() {
         String status = webhookServer != null 
-            ? "✅ Webhook server running on http://localhost:8080/webhook"
+            ? "✅ Webhook server running on http://localhost:8080/webhook\n📥 " + webhookIntake.status()
             : "❌ Webhook server not running";
+        status += eventLog != null ? "\n🗄️ Event log: " + eventLog.describe() : "\n❌ Event log not available";
         
         return createToolResponse("text", status);
     }
 
+    private JsonNode watchStatus(String repo) {
+        StringBuilder status = new StringBuilder();
+        for (RunWatcher watcher : watchers.values()) {
+            if (repo == null || watcher.repo.equalsIgnoreCase(repo)) {
+                status.append(watcher.repo).append(": ").append(watcher.describe()).append("\n");
+            }
+        }
+        return createToolResponse("text", status.length() == 0 ? "Not watching " + (repo == null ? "any repository" : repo)
+            : status.toString());
+    }
+
     private JsonNode getRepoFromPush(String gitUrl) {
         try {
             String repoName = extractRepoName(gitUrl);
@@ -257,118 +384,69 @@ public class GitNotifyMcpServer {
         throw new IllegalArgumentException("Unsupported Git URL format: " + gitUrl);
     }
 
-    private void shutdown() {
-        if (webhookServer != null) {
-            webhookServer.stop(0);
-        }
-        scheduler.shutdown();
-    }
-
-    private class WebhookHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            if ("POST".equals(exchange.getRequestMethod())) {
-                try {
-                    String body = new String(exchange.getRequestBody().readAllBytes());
-                    JsonNode payload = mapper.readTree(body);
-                    
-                    if (payload.has("action") && payload.has("workflow_run")) {
-                        JsonNode run = payload.get("workflow_run");
-                        String action = payload.get("action").asText();
-                        String name = run.get("name").asText();
-                        String status = run.get("status").asText();
-                        
-                        String message = String.format("🔔 Webhook: Workflow '%s' %s (status: %s)", 
-                            name, action, status);
-                        System.err.println(message);
+    /**
+     * Repositories from {@code GITHUB_REPOS} (comma or whitespace separated), the file named by
+     * {@code GITHUB_REPOS_FILE} (one per line, {@code #} comments) and the single {@code GITHUB_REPO}.
+     */
+    private static List<String> reposFromEnv() {
+        List<String> repos = new ArrayList<>();
+        String file = System.getenv("GITHUB_REPOS_FILE");
+        if (file != null && !file.isBlank()) {
+            try {
+                for (String line : Files.readAllLines(Path.of(file.trim()))) {
+                    String repo = line.replaceFirst("#.*", "").trim();
+                    if (!repo.isEmpty()) {
+                        repos.add(repo);
                     }
-                    
-                    String response = "OK";
-                    exchange.sendResponseHeaders(200, response.length());
-                    OutputStream os = exchange.getResponseBody();
-                    os.write(response.getBytes());
-                    os.close();
-                } catch (Exception e) {
-                    exchange.sendResponseHeaders(500, 0);
-                    exchange.getResponseBody().close();
                 }
-            } else {
-                exchange.sendResponseHeaders(405, 0);
-                exchange.getResponseBody().close();
+            } catch (IOException e) {
+                System.err.println("Warning: Cannot read GITHUB_REPOS_FILE '" + file + "': " + e.getMessage());
             }
         }
-    }
-
-    private ObjectNode createTool(String name, String description, ObjectNode... params) {
-        ObjectNode tool = mapper.createObjectNode();
-        tool.put("name", name);
-        tool.put("description", description);
-        
-        ObjectNode inputSchema = mapper.createObjectNode();
-        inputSchema.put("type", "object");
-        
-        ObjectNode properties = mapper.createObjectNode();
-        ArrayNode required = mapper.createArrayNode();
-        
-        for (ObjectNode param : params) {
-            String paramName = param.get("name").asText();
-            properties.set(paramName, param);
-            if (param.get("required").asBoolean()) {
-                required.add(paramName);
+        for (String name : List.of("GITHUB_REPOS", "GITHUB_REPO")) {
+            String value = System.getenv(name);
+            if (value != null && !value.isBlank()) {
+                for (String repo : value.trim().split("[,\\s]+")) {
+                    repos.add(repo);
+                }
             }
         }
-        
-        inputSchema.set("properties", properties);
-        inputSchema.set("required", required);
-        tool.set("inputSchema", inputSchema);
-        
-        return tool;
+        return repos;
     }
 
-    private ObjectNode createParam(String name, String type, String description, boolean required) {
-        ObjectNode param = mapper.createObjectNode();
-        param.put("name", name);
-        param.put("type", type);
-        param.put("description", description);
-        param.put("required", required);
-        return param;
-    }
-
-    private ObjectNode createSuccessResponse(JsonNode id, JsonNode result) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        if (id != null) {
-            response.set("id", id);
+    void shutdown() {
+        if (webhookServer != null) {
+            webhookServer.stop(0);
+            webhookIntake.close();
         }
-        response.set("result", result);
-        return response;
+        if (eventLog != null) {
+            try {
+                eventLog.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close event log: " + e.getMessage());
+            }
+        }
+        scheduler.shutdown();
     }
 
-    private ObjectNode createErrorResponse(JsonNode id, int code, String message) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        if (id != null) {
-            response.set("id", id);
+    void processWebhook(WebhookIntake.Delivery delivery) throws IOException {
+        JsonNode payload = mapper.readTree(delivery.body());
+        if (!payload.has("action") || !payload.has("workflow_run")) {
+            return;
         }
-        
-        ObjectNode error = mapper.createObjectNode();
-        error.put("code", code);
-        error.put("message", message);
-        response.set("error", error);
-        
-        return response;
-    }
+        JsonNode run = payload.get("workflow_run");
+        String action = payload.get("action").asText();
+        String name = run.get("name").asText();
+        String status = run.get("status").asText();
 
-    private ObjectNode createToolResponse(String type, String content) {
-        ObjectNode response = mapper.createObjectNode();
-        ArrayNode contentArray = mapper.createArrayNode();
-        
-        ObjectNode contentObj = mapper.createObjectNode();
-        contentObj.put("type", type);
-        contentObj.put("text", content);
-        contentArray.add(contentObj);
-        
-        response.set("content", contentArray);
-        return response;
+        // The watcher goes quiet while webhooks arrive and drops completions it already reported
+        boolean completed = "completed".equals(action);
+        RunWatcher watcher = watchers.get(
+            payload.path("repository").path("full_name").asText().toLowerCase(Locale.ROOT));
+        if (watcher == null || watcher.webhook(run, completed) || !completed) {
+            String message = String.format("🔔 Webhook: Workflow '%s' %s (status: %s)",
+                name, action, status);
+            System.err.println(message);
+        }
     }
-}
\ No newline at end of file
+}
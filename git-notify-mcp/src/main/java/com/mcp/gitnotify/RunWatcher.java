@@ -0,0 +1,238 @@
+package com.mcp.gitnotify;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Incremental view of one repository's workflow runs. Each poll only asks for runs created since the high-water
+ * mark, or since the oldest run still in progress, and is sent with the last ETag so an unchanged list costs a
+ * 304. A run is reported once when it completes, whether the poll or a webhook saw it first.
+ * <p>
+ * The poll interval starts at the minimum, is reset there whenever something is running or has just finished,
+ * and doubles up to the maximum while the repository is idle. While webhooks are arriving the watcher does not
+ * poll at all.
+ * <p>
+ * A run still in progress that falls off the page (more than a page of newer runs, or a run stuck in the queue)
+ * stops pinning the query window; it is checked on its own with {@link #offPage()} until it completes or is gone.
+ * <p>
+ * One server watches hundreds of repositories, so the state is kept small: times are epoch seconds, the set of
+ * running runs only exists while something runs, and reported completions are only kept while the query window,
+ * or the last hour, can still return them.
+ */
+class RunWatcher {
+    private static final int PAGE_SIZE = 100;
+    private static final long REPORTED_MIN_SECONDS = 3600;
+
+    final String repo;
+    private final Settings settings;
+
+    private long highWater;
+    private Map<Long, Long> running;
+    private Map<Long, Long> offPage;
+    // Reported completions, packed id and attempt, to when the run was created
+    private final Map<Long, Long> reported = new HashMap<>();
+    private String eTag;
+    private long eTagSince = -1;
+    private long interval;
+    private long lastWebhook;
+    private int polls;
+    private int notModified;
+
+    /**
+     * Intervals in milliseconds, shared by every watcher of a server.
+     */
+    record Settings(long minInterval, long maxInterval, long webhookIdle) {
+    }
+
+    RunWatcher(String repo, Settings settings) {
+        this.repo = repo;
+        this.settings = settings;
+        this.interval = settings.minInterval();
+    }
+
+    synchronized String url(String baseUrl) {
+        String url = String.format("%s/repos/%s/actions/runs?per_page=%d", baseUrl, repo, PAGE_SIZE);
+        long since = since();
+        return since == 0 ? url
+            : url + "&created=" + URLEncoder.encode(">=" + Instant.ofEpochSecond(since), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The ETag to revalidate the current query with, if the last poll asked the same thing.
+     */
+    synchronized String eTag() {
+        return since() == eTagSince ? eTag : null;
+    }
+
+    synchronized void notModified() {
+        polls++;
+        notModified++;
+        backOff(false);
+    }
+
+    /**
+     * Takes a page of runs and returns the ones that completed since they were last seen. The first page only
+     * sets the baseline, so history is not reported on startup.
+     */
+    synchronized List<JsonNode> accept(String eTag, JsonNode runs) {
+        boolean baseline = polls++ == 0;
+        this.eTagSince = since();
+        this.eTag = eTag;
+        List<JsonNode> completed = new ArrayList<>();
+        Set<Long> onPage = new HashSet<>();
+        for (JsonNode run : runs) {
+            long id = run.path("id").asLong();
+            long created = created(run);
+            onPage.add(id);
+            highWater = Math.max(highWater, created);
+            if (!"completed".equals(run.path("status").asText())) {
+                started(id, created);
+                continue;
+            }
+            finished(id);
+            if (report(run) && !baseline) {
+                completed.add(run);
+            }
+        }
+        if (running != null) {
+            for (Map.Entry<Long, Long> entry : new ArrayList<>(running.entrySet())) {
+                if (!onPage.contains(entry.getKey())) {
+                    if (offPage == null) {
+                        offPage = new HashMap<>();
+                    }
+                    offPage.put(entry.getKey(), entry.getValue());
+                    running.remove(entry.getKey());
+                }
+            }
+            if (running.isEmpty()) {
+                running = null;
+            }
+        }
+        forgetOldCompletions();
+        backOff(!completed.isEmpty() || running != null);
+        return completed;
+    }
+
+    /**
+     * Runs in progress that the last page no longer included; each needs a {@code GET /runs/{id}}.
+     */
+    synchronized List<Long> offPage() {
+        return offPage == null ? List.of() : List.copyOf(offPage.keySet());
+    }
+
+    /**
+     * Takes the current state of an off-page run, or null if GitHub no longer has it; returns the run if it has
+     * completed and not been reported yet.
+     */
+    synchronized JsonNode checked(long id, JsonNode run) {
+        if (offPage == null || !offPage.containsKey(id)) {
+            return null;
+        }
+        if (run != null && !"completed".equals(run.path("status").asText())) {
+            return null;
+        }
+        backOnPage(id);
+        return run != null && report(run) ? run : null;
+    }
+
+    /**
+     * Records a {@code workflow_run} webhook; returns whether it reports a completion not seen before.
+     */
+    synchronized boolean webhook(JsonNode run, boolean completed) {
+        lastWebhook = System.currentTimeMillis();
+        long id = run.path("id").asLong();
+        long created = created(run);
+        // Kept the same way a poll would, so polling picks up where the webhooks left off
+        highWater = Math.max(highWater, created);
+        if (!completed) {
+            started(id, created);
+            return false;
+        }
+        finished(id);
+        boolean isNew = report(run);
+        forgetOldCompletions();
+        return isNew;
+    }
+
+    synchronized boolean webhookOnly() {
+        return System.currentTimeMillis() - lastWebhook < settings.webhookIdle();
+    }
+
+    /**
+     * Milliseconds until the next poll.
+     */
+    synchronized long nextDelay() {
+        return webhookOnly() ? settings.webhookIdle() - (System.currentTimeMillis() - lastWebhook) : interval;
+    }
+
+    synchronized String describe() {
+        return webhookOnly()
+            ? "webhook-only (webhooks arriving)"
+            : String.format("polling every %ds, %d running, %d checked separately, %d of %d polls unchanged",
+                interval / 1000, running == null ? 0 : running.size(), offPage == null ? 0 : offPage.size(),
+                notModified, polls);
+    }
+
+    private long since() {
+        long since = highWater;
+        if (running != null) {
+            for (long created : running.values()) {
+                since = Math.min(since, created);
+            }
+        }
+        return since;
+    }
+
+    private void started(long id, long created) {
+        if (running == null) {
+            running = new HashMap<>();
+        }
+        running.put(id, created);
+        backOnPage(id);
+    }
+
+    private void finished(long id) {
+        if (running != null && running.remove(id) != null && running.isEmpty()) {
+            running = null;
+        }
+        backOnPage(id);
+    }
+
+    private void backOnPage(long id) {
+        if (offPage != null && offPage.remove(id) != null && offPage.isEmpty()) {
+            offPage = null;
+        }
+    }
+
+    // Returns false when the completion was reported already
+    private boolean report(JsonNode run) {
+        // A re-run keeps the run id, so the attempt is part of what makes a completion new
+        long key = run.path("id").asLong() << 8 | (run.path("run_attempt").asInt(1) & 0xff);
+        return reported.putIfAbsent(key, created(run)) == null;
+    }
+
+    // A completion created before the query window can't come back from a poll, so it only needs remembering
+    // for a while in case a webhook repeats it
+    private void forgetOldCompletions() {
+        long before = Math.min(since(), Instant.now().getEpochSecond() - REPORTED_MIN_SECONDS);
+        reported.values().removeIf(created -> created < before);
+    }
+
+    private static long created(JsonNode run) {
+        String created = run.path("created_at").asText("");
+        return created.isEmpty() ? Instant.now().getEpochSecond() : Instant.parse(created).getEpochSecond();
+    }
+
+    private void backOff(boolean active) {
+        interval = active ? settings.minInterval() : Math.min(settings.maxInterval(), interval * 2);
+    }
+}
@@ -0,0 +1,111 @@
+package com.mcp.gitnotify;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mcp.core.WebhookIntake;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GitNotifyMcpServerTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    // Time of the first poll of each repository
+    private final Map<String, Long> firstPolls = new ConcurrentHashMap<>();
+    private HttpServer github;
+    private String baseUrl;
+    private GitNotifyMcpServer server;
+
+    @BeforeEach
+    void startGitHub() throws Exception {
+        github = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        github.setExecutor(Executors.newCachedThreadPool());
+        github.createContext("/repos/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            firstPolls.putIfAbsent(path.substring("/repos/".length(), path.indexOf("/actions/")),
+                System.currentTimeMillis());
+            byte[] body = "{\"total_count\":0,\"workflow_runs\":[]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        baseUrl = "http://127.0.0.1:" + github.getAddress().getPort();
+        github.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.shutdown();
+        }
+        github.stop(0);
+    }
+
+    @Test
+    void testRoutesWebhooksByRepositoryNameIgnoringCase() throws Exception {
+        server = new GitNotifyMcpServer(baseUrl, "test", List.of("Owner/Repo", "other/repo", "owner/REPO"),
+            new RunWatcher.Settings(60_000, 60_000, 600_000));
+        assertTrue(text(server.handleToolCall(tool("health_check"))).contains("Repositories: 2"));
+
+        server.processWebhook(delivery("OWNER/repo"));
+        server.processWebhook(delivery("unknown/repo"));
+
+        // The first name listed is the one watched; the other spelling of it collapses into the same watcher
+        assertEquals("Owner/Repo: webhook-only (webhooks arriving)\n",
+            text(server.handleToolCall(watchStatus("owner/repo"))));
+        assertTrue(text(server.handleToolCall(watchStatus("other/repo"))).startsWith("other/repo: polling"));
+        assertEquals("Not watching unknown/repo", text(server.handleToolCall(watchStatus("unknown/repo"))));
+    }
+
+    @Test
+    void testStaggersTheFirstPollsAcrossTheMinimumInterval() throws Exception {
+        server = new GitNotifyMcpServer(baseUrl, "test", List.of("a/one", "b/two", "c/three"),
+            new RunWatcher.Settings(600, 60_000, 600_000));
+        long started = System.currentTimeMillis();
+        server.startPolling();
+
+        long deadline = started + 5000;
+        while (firstPolls.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, firstPolls.size());
+        // Scheduled at 0, 200 and 400 ms
+        assertTrue(firstPolls.get("b/two") - started >= 180, firstPolls.toString());
+        assertTrue(firstPolls.get("c/three") - started >= 380, firstPolls.toString());
+        assertTrue(firstPolls.get("a/one") < firstPolls.get("c/three"));
+    }
+
+    private ObjectNode tool(String name) {
+        return mapper.createObjectNode().put("name", name);
+    }
+
+    private ObjectNode watchStatus(String repo) {
+        ObjectNode params = tool("watch_status");
+        params.putObject("arguments").put("repo", repo);
+        return params;
+    }
+
+    private WebhookIntake.Delivery delivery(String repo) {
+        ObjectNode payload = mapper.createObjectNode().put("action", "completed");
+        payload.putObject("workflow_run").put("id", 1).put("name", "ci").put("status", "completed")
+            .put("conclusion", "success").put("created_at", "2024-01-01T00:00:00Z");
+        payload.putObject("repository").put("full_name", repo);
+        return new WebhookIntake.Delivery(0, "workflow_run", "d1", payload.toString().getBytes(StandardCharsets.UTF_8),
+            System.currentTimeMillis());
+    }
+
+    private static String text(JsonNode result) {
+        return result.get("content").get(0).get("text").asText();
+    }
+}
@@ -0,0 +1,138 @@
+package com.mcp.gitnotify;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunWatcherTest {
+    private static final String BASE_URL = "https://api.example.com";
+    private static final RunWatcher.Settings SETTINGS = new RunWatcher.Settings(10_000, 80_000, 600_000);
+    // Recent enough that reported completions are still remembered
+    private static final long START = Instant.now().getEpochSecond() - 600;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testFirstPageIsOnlyTheBaseline() {
+        RunWatcher watcher = new RunWatcher("owner/repo", SETTINGS);
+        assertEquals(BASE_URL + "/repos/owner/repo/actions/runs?per_page=100", watcher.url(BASE_URL));
+
+        assertEquals(List.of(), watcher.accept("\"a\"", page(run(1, 0, "completed"), run(2, 60, "in_progress"),
+            run(3, 120, "completed"))));
+
+        // The run still in progress pins the window; the ETag of the unfiltered query does not apply to it
+        assertEquals(since(60), watcher.url(BASE_URL));
+        assertNull(watcher.eTag());
+        List<JsonNode> completed = watcher.accept("\"b\"", page(run(2, 60, "completed"), run(3, 120, "completed")));
+        assertEquals(List.of(2L), ids(completed));
+        assertEquals(since(120), watcher.url(BASE_URL));
+        assertNull(watcher.eTag());
+        // Once the window stays put, the next poll revalidates the same query
+        assertEquals(List.of(), watcher.accept("\"c\"", page(run(2, 60, "completed"), run(3, 120, "completed"))));
+        assertEquals("\"c\"", watcher.eTag());
+    }
+
+    @Test
+    void testReRunIsReportedAgain() {
+        RunWatcher watcher = new RunWatcher("owner/repo", SETTINGS);
+        watcher.accept(null, page(run(1, 0, "in_progress")));
+        assertEquals(List.of(1L), ids(watcher.accept(null, page(run(1, 0, "completed")))));
+
+        ObjectNode reRun = run(1, 0, "completed").put("run_attempt", 2);
+        assertEquals(List.of(1L), ids(watcher.accept(null, page(reRun))));
+        assertEquals(List.of(), watcher.accept(null, page(reRun)));
+    }
+
+    @Test
+    void testRunPushedOffThePageIsCheckedSeparately() {
+        RunWatcher watcher = new RunWatcher("owner/repo", SETTINGS);
+        watcher.accept(null, page(run(5, 0, "queued"), run(6, 30, "in_progress")));
+        assertEquals(since(0), watcher.url(BASE_URL));
+
+        // A page of newer runs no longer has run 5; it stops pinning the window
+        watcher.accept(null, page(run(6, 30, "in_progress"), run(7, 90, "completed")));
+        assertEquals(List.of(5L), watcher.offPage());
+        assertEquals(since(30), watcher.url(BASE_URL));
+
+        assertNull(watcher.checked(5, run(5, 0, "in_progress")));
+        assertEquals(List.of(5L), watcher.offPage());
+        assertEquals(5L, watcher.checked(5, run(5, 0, "completed")).path("id").asLong());
+        assertEquals(List.of(), watcher.offPage());
+        assertNull(watcher.checked(5, run(5, 0, "completed")));
+
+        // A run GitHub no longer has is dropped without a report
+        watcher.accept(null, page(run(8, 120, "in_progress")));
+        watcher.accept(null, page(run(9, 180, "in_progress")));
+        assertTrue(watcher.offPage().contains(8L));
+        assertNull(watcher.checked(8, null));
+        assertFalse(watcher.offPage().contains(8L));
+    }
+
+    @Test
+    void testWebhookThenPollReportsOnce() {
+        RunWatcher watcher = new RunWatcher("owner/repo", SETTINGS);
+        watcher.accept(null, page(run(1, 0, "completed")));
+        assertFalse(watcher.webhookOnly());
+
+        assertFalse(watcher.webhook(run(2, 60, "in_progress"), false));
+        assertTrue(watcher.webhook(run(2, 60, "completed"), true));
+        // GitHub may deliver the same webhook twice
+        assertFalse(watcher.webhook(run(2, 60, "completed"), true));
+        assertTrue(watcher.webhookOnly());
+        assertTrue(watcher.describe().startsWith("webhook-only"));
+
+        // The poll after the webhooks go quiet sees the run the webhook already reported
+        assertEquals(since(60), watcher.url(BASE_URL));
+        assertEquals(List.of(), watcher.accept(null, page(run(2, 60, "completed"))));
+        assertEquals(List.of(3L), ids(watcher.accept(null, page(run(2, 60, "completed"), run(3, 90, "completed")))));
+        assertFalse(watcher.webhook(run(3, 90, "completed"), true));
+    }
+
+    @Test
+    void testBacksOffWhileIdle() {
+        RunWatcher watcher = new RunWatcher("owner/repo", SETTINGS);
+        watcher.accept("\"a\"", page(run(1, 0, "completed")));
+        assertEquals(20_000, watcher.nextDelay());
+        watcher.notModified();
+        watcher.notModified();
+        assertEquals(80_000, watcher.nextDelay());
+        watcher.notModified();
+        assertEquals(80_000, watcher.nextDelay());
+        assertEquals("polling every 80s, 0 running, 0 checked separately, 3 of 4 polls unchanged", watcher.describe());
+
+        // Something running brings polling back to the minimum
+        watcher.accept("\"b\"", page(run(2, 60, "in_progress")));
+        assertEquals(10_000, watcher.nextDelay());
+    }
+
+    private ArrayNode page(ObjectNode... runs) {
+        ArrayNode page = mapper.createArrayNode();
+        for (ObjectNode run : runs) {
+            page.add(run);
+        }
+        return page;
+    }
+
+    private ObjectNode run(long id, long createdOffset, String status) {
+        return mapper.createObjectNode().put("id", id).put("name", "ci").put("status", status)
+            .put("created_at", Instant.ofEpochSecond(START + createdOffset).toString());
+    }
+
+    private static String since(long createdOffset) {
+        return BASE_URL + "/repos/owner/repo/actions/runs?per_page=100&created="
+            + URLEncoder.encode(">=" + Instant.ofEpochSecond(START + createdOffset), StandardCharsets.UTF_8);
+    }
+
+    private static List<Long> ids(List<JsonNode> runs) {
+        return runs.stream().map(run -> run.path("id").asLong()).toList();
+    }
+}
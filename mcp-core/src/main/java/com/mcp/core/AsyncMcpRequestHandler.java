@@ -0,0 +1,15 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.concurrent.CompletableFuture;
+
+@FunctionalInterface
+public interface AsyncMcpRequestHandler {
+
+    /**
+     * Starts handling one request. The future completes with its result, or null when no response should be
+     * sent. A thrown exception or a failed future is reported to the client as an internal error.
+     */
+    CompletableFuture<JsonNode> handle(JsonRpcRequest request) throws Exception;
+}
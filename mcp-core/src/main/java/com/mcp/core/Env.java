@@ -0,0 +1,49 @@
+package com.mcp.core;
+
+/**
+ * Numeric settings read from environment variables. Unset or blank variables give the default; values that don't
+ * parse give the default with a warning on stderr.
+ */
+public final class Env {
+    private Env() {
+    }
+
+    public static int getInt(String name, int defaultValue) {
+        return (int) getLong(name, defaultValue, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #getInt(String, int)}, with configured values below {@code min} raised to it.
+     */
+    public static int getInt(String name, int defaultValue, int min) {
+        return (int) getLong(name, defaultValue, min, Integer.MAX_VALUE);
+    }
+
+    public static long getLong(String name, long defaultValue) {
+        return getLong(name, defaultValue, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #getLong(String, long)}, with configured values below {@code min} raised to it.
+     */
+    public static long getLong(String name, long defaultValue, long min) {
+        return getLong(name, defaultValue, min, Long.MAX_VALUE);
+    }
+
+    private static long getLong(String name, long defaultValue, long min, long max) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed > max) {
+                throw new NumberFormatException("out of range");
+            }
+            return Math.max(min, parsed);
+        } catch (NumberFormatException e) {
+            System.err.println("Warning: Invalid " + name + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of webhook events on local disk. Every event gets the next offset, starting at 0, and can be
+ * read back from any offset that retention has not removed yet.
+ * <p>
+ * The log is a directory of segments named after the offset of their first event. The newest segment is
+ * memory-mapped and appended to in place; a write is in the page cache as soon as {@link #append} returns, so a
+ * process that dies or is redeployed loses nothing, and a background thread forces the mapping to disk every few
+ * hundred milliseconds to cover a machine crash. A segment that fills up is sealed with a sparse offset index
+ * beside it and a new one is started. Sealed segments are deleted once they are older or the log larger than the
+ * retention allows.
+ * <p>
+ * Each record is {@code size, crc32c, offset, timestamp, type, delivery id, body}; on startup the newest segment is
+ * scanned and anything after the last intact record is dropped.
+ * <p>
+ * Appends are serialized; reads run without the append lock and only see records whose append has finished.
+ */
+public class EventLog implements Closeable {
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final int HEADER = 4 + 4 + 8 + 8;
+    private static final int INDEX_INTERVAL_BYTES = 4096;
+
+    public record Event(long offset, long timestamp, String type, String deliveryId, byte[] body) {
+    }
+
+    public record Settings(long segmentBytes, long flushMillis, long retentionMillis, long retentionBytes) {
+        public static Settings fromEnv() {
+            return new Settings(Env.getLong("WEBHOOK_LOG_SEGMENT_MB", 64, 1) << 20,
+                Env.getLong("WEBHOOK_LOG_FLUSH_MS", 200, 1),
+                TimeUnit.HOURS.toMillis(Env.getLong("WEBHOOK_LOG_RETENTION_HOURS", 168, 1)),
+                Env.getLong("WEBHOOK_LOG_RETENTION_MB", 1024, 1) << 20);
+        }
+    }
+
+    private final Path directory;
+    private final Settings settings;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean dirty;
+
+    public EventLog(Path directory, Settings settings) throws IOException {
+        this.directory = directory;
+        this.settings = settings;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve("lock"),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        this.lock = acquired;
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Event log " + directory + " is in use by another process");
+        }
+
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                .filter(name -> name.endsWith(LOG_SUFFIX))
+                .forEach(name -> bases.add(Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()))));
+        }
+        bases.sort(null);
+        for (int i = 0; i < bases.size(); i++) {
+            boolean last = i == bases.size() - 1;
+            segments.add(Segment.open(directory, bases.get(i), last ? -1 : bases.get(i + 1), settings.segmentBytes()));
+        }
+        if (segments.isEmpty()) {
+            segments.add(Segment.create(directory, 0, settings.segmentBytes()));
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, settings.flushMillis(), settings.flushMillis(),
+            TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::applyRetention, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Opens the log under {@code WEBHOOK_LOG_DIR}, or {@code ~/.mcp/<name>} when it is not set. Returns null and
+     * logs why when the log can't be opened, so the server runs on without one.
+     */
+    public static EventLog openFromEnv(String name) {
+        String configured = System.getenv("WEBHOOK_LOG_DIR");
+        Path directory = configured == null || configured.isBlank()
+            ? Path.of(System.getProperty("user.home"), ".mcp", name)
+            : Path.of(configured.trim());
+        try {
+            EventLog log = new EventLog(directory, Settings.fromEnv());
+            System.err.println("Event log: " + log.describe());
+            return log;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Event log disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Appends an event and returns its offset.
+     */
+    public synchronized long append(long timestamp, String type, String deliveryId, byte[] body) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+        byte[] idBytes = deliveryId == null ? new byte[0] : deliveryId.getBytes(StandardCharsets.UTF_8);
+        int size = HEADER + 2 + typeBytes.length + 2 + idBytes.length + body.length;
+        Segment active = active();
+        if (!active.fits(size)) {
+            active = roll(size);
+        }
+        active.append(size, timestamp, typeBytes, idBytes, body);
+        dirty = true;
+        return active.next - 1;
+    }
+
+    /**
+     * Returns up to {@code limit} events starting at {@code offset}, or at the oldest retained event when that
+     * offset has already been deleted.
+     */
+    public List<Event> read(long offset, int limit) {
+        List<Event> events = new ArrayList<>();
+        Segment[] snapshot = segments.toArray(new Segment[0]);
+        int i = 0;
+        while (i < snapshot.length - 1 && snapshot[i + 1].base <= offset) {
+            i++;
+        }
+        for (; i < snapshot.length && events.size() < limit; i++) {
+            snapshot[i].read(Math.max(offset, snapshot[i].base), limit, events);
+        }
+        return events;
+    }
+
+    /**
+     * The {@code get_events} tool result: a page of events with JSON payloads parsed, and the offset to ask for next.
+     */
+    public ObjectNode page(ObjectMapper mapper, long since, int limit) {
+        List<Event> events = read(since, limit);
+        ObjectNode page = mapper.createObjectNode();
+        page.put("first_offset", firstOffset());
+        page.put("end_offset", endOffset());
+        page.put("next_offset", events.isEmpty()
+            ? Math.max(since, firstOffset())
+            : events.get(events.size() - 1).offset() + 1);
+        ArrayNode items = page.putArray("events");
+        for (Event event : events) {
+            ObjectNode item = items.addObject();
+            item.put("offset", event.offset());
+            item.put("received_at", Instant.ofEpochMilli(event.timestamp()).toString());
+            item.put("event", event.type());
+            item.put("delivery", event.deliveryId());
+            try {
+                item.set("payload", mapper.readTree(event.body()));
+            } catch (IOException e) {
+                item.put("payload", new String(event.body(), StandardCharsets.UTF_8));
+            }
+        }
+        return page;
+    }
+
+    public long firstOffset() {
+        return segments.get(0).base;
+    }
+
+    /**
+     * The offset the next event will get.
+     */
+    public long endOffset() {
+        return active().next;
+    }
+
+    public long sizeBytes() {
+        return segments.stream().mapToLong(segment -> segment.end).sum();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public String describe() {
+        String events = endOffset() == firstOffset()
+            ? "no events"
+            : "offsets " + firstOffset() + "-" + (endOffset() - 1);
+        return String.format("%s in %d segment(s), %d KB at %s", events, segmentCount(), sizeBytes() / 1024, directory);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flusher.shutdownNow();
+        active().force();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        lock.release();
+        lockChannel.close();
+    }
+
+    private Segment active() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private Segment roll(int size) {
+        Segment sealed = active();
+        try {
+            sealed.seal(directory);
+            Segment next = Segment.create(directory, sealed.next, Math.max(settings.segmentBytes(), size + 4L));
+            segments.add(next);
+            flusher.execute(this::applyRetention);
+            return next;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush() {
+        if (dirty) {
+            dirty = false;
+            active().force();
+        }
+    }
+
+    private synchronized void applyRetention() {
+        long cutoff = System.currentTimeMillis() - settings.retentionMillis();
+        long size = sizeBytes();
+        while (segments.size() > 1) {
+            Segment oldest = segments.get(0);
+            if (size <= settings.retentionBytes() && oldest.lastModified() >= cutoff) {
+                break;
+            }
+            segments.remove(0);
+            size -= oldest.end;
+            try {
+                oldest.delete(directory);
+            } catch (IOException e) {
+                System.err.println("Failed to delete event log segment " + oldest.base + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Segment {
+        final long base;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // Sparse index: entry i says the record at base + indexOffsets[i] starts at indexPositions[i]
+        private int[] indexOffsets = new int[16];
+        private int[] indexPositions = new int[16];
+        private int indexSize;
+        private int lastIndexed = -INDEX_INTERVAL_BYTES;
+        // Written after the record bytes, so a reader that sees them also sees the record
+        volatile int end;
+        volatile long next;
+
+        private Segment(Path file, long base, long capacity) throws IOException {
+            this.file = file;
+            this.base = base;
+            this.next = base;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, channel.size()));
+        }
+
+        static Segment create(Path directory, long base, long capacity) throws IOException {
+            return new Segment(directory.resolve(name(base, LOG_SUFFIX)), base, Math.min(capacity, Integer.MAX_VALUE));
+        }
+
+        /**
+         * Opens an existing segment. A sealed one (whose successor starts at {@code nextBase}) loads its index
+         * file; the newest one, or a sealed one without an index, is scanned.
+         */
+        static Segment open(Path directory, long base, long nextBase, long capacity) throws IOException {
+            Segment segment = new Segment(directory.resolve(name(base, LOG_SUFFIX)), base,
+                nextBase < 0 ? Math.min(capacity, Integer.MAX_VALUE) : 0);
+            Path index = directory.resolve(name(base, INDEX_SUFFIX));
+            if (nextBase >= 0 && Files.exists(index)) {
+                segment.loadIndex(index, nextBase);
+            } else {
+                segment.recover();
+            }
+            return segment;
+        }
+
+        boolean fits(int size) {
+            return end + size <= buffer.capacity() - 4;
+        }
+
+        void append(int size, long timestamp, byte[] type, byte[] deliveryId, byte[] body) {
+            int position = end;
+            int at = position + 8;
+            buffer.putLong(at, next);
+            buffer.putLong(at + 8, timestamp);
+            buffer.putShort(at + 16, (short) type.length);
+            buffer.put(at + 18, type);
+            at += 18 + type.length;
+            buffer.putShort(at, (short) deliveryId.length);
+            buffer.put(at + 2, deliveryId);
+            buffer.put(at + 2 + deliveryId.length, body);
+            buffer.putInt(position + 4, crc(position, size));
+            buffer.putInt(position, size - 4);
+            index(position, next);
+            end = position + size;
+            next = next + 1;
+        }
+
+        void read(long from, int limit, List<Event> events) {
+            int position;
+            long offset;
+            synchronized (this) {
+                int entry = Arrays.binarySearch(indexOffsets, 0, indexSize, (int) (from - base));
+                entry = entry >= 0 ? entry : -entry - 2;
+                position = entry < 0 ? 0 : indexPositions[entry];
+                offset = entry < 0 ? base : base + indexOffsets[entry];
+            }
+            long stop = next;
+            int limitPosition = end;
+            while (offset < stop && position < limitPosition && events.size() < limit) {
+                int size = buffer.getInt(position) + 4;
+                if (offset >= from) {
+                    events.add(decode(position, size));
+                }
+                position += size;
+                offset++;
+            }
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        long lastModified() {
+            return file.toFile().lastModified();
+        }
+
+        /**
+         * Flushes the segment and writes its index, so startup can skip scanning it.
+         */
+        void seal(Path directory) throws IOException {
+            force();
+            Path index = directory.resolve(name(base, INDEX_SUFFIX));
+            Path temporary = directory.resolve(name(base, INDEX_SUFFIX + ".tmp"));
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary))) {
+                synchronized (this) {
+                    out.writeInt(end);
+                    out.writeInt(indexSize);
+                    for (int i = 0; i < indexSize; i++) {
+                        out.writeInt(indexOffsets[i]);
+                        out.writeInt(indexPositions[i]);
+                    }
+                }
+            }
+            Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+
+        void delete(Path directory) throws IOException {
+            close();
+            Files.deleteIfExists(directory.resolve(name(base, INDEX_SUFFIX)));
+            Files.deleteIfExists(file);
+        }
+
+        private void loadIndex(Path index, long nextBase) throws IOException {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(index))) {
+                int length = in.readInt();
+                int entries = in.readInt();
+                synchronized (this) {
+                    indexOffsets = new int[Math.max(16, entries)];
+                    indexPositions = new int[Math.max(16, entries)];
+                    for (int i = 0; i < entries; i++) {
+                        indexOffsets[i] = in.readInt();
+                        indexPositions[i] = in.readInt();
+                    }
+                    indexSize = entries;
+                }
+                end = length;
+                next = nextBase;
+            }
+        }
+
+        // Walks the records from the start and stops at the first one that is missing or torn
+        private void recover() {
+            int position = 0;
+            long offset = base;
+            while (position + HEADER <= buffer.capacity()) {
+                int size = buffer.getInt(position) + 4;
+                if (size < HEADER + 4 || (long) position + size > buffer.capacity()
+                    || buffer.getLong(position + 8) != offset || buffer.getInt(position + 4) != crc(position, size)) {
+                    break;
+                }
+                index(position, offset);
+                position += size;
+                offset++;
+            }
+            if (position + 4 <= buffer.capacity()) {
+                buffer.putInt(position, 0);
+            }
+            end = position;
+            next = offset;
+        }
+
+        private synchronized void index(int position, long offset) {
+            if (position - lastIndexed < INDEX_INTERVAL_BYTES) {
+                return;
+            }
+            if (indexSize == indexOffsets.length) {
+                indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+            }
+            indexOffsets[indexSize] = (int) (offset - base);
+            indexPositions[indexSize] = position;
+            indexSize++;
+            lastIndexed = position;
+        }
+
+        private int crc(int position, int size) {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(position + 8, size - 8));
+            return (int) crc.getValue();
+        }
+
+        private Event decode(int position, int size) {
+            long offset = buffer.getLong(position + 8);
+            long timestamp = buffer.getLong(position + 16);
+            int at = position + HEADER;
+            byte[] type = new byte[buffer.getShort(at)];
+            buffer.get(at + 2, type);
+            at += 2 + type.length;
+            byte[] deliveryId = new byte[buffer.getShort(at)];
+            buffer.get(at + 2, deliveryId);
+            at += 2 + deliveryId.length;
+            byte[] body = new byte[position + size - at];
+            buffer.get(at, body);
+            return new Event(offset, timestamp, new String(type, StandardCharsets.UTF_8),
+                deliveryId.length == 0 ? null : new String(deliveryId, StandardCharsets.UTF_8), body);
+        }
+
+        private static String name(long base, String suffix) {
+            return String.format("%020d%s", base, suffix);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads requests continuously and runs them concurrently, writing each response as soon as it completes.
+ * The number of requests in flight is bounded; notifications never wait for a permit. With an
+ * {@link AsyncMcpRequestHandler} a request holds its permit until the returned future completes, not just while
+ * the handler runs.
+ */
+public class JsonRpcDispatcher {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    private final ObjectMapper mapper;
+    private final AsyncMcpRequestHandler handler;
+    private final JsonRpcWriter writer;
+    private final ToolRegistry tools;
+    private final ExecutorService requestExecutor;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    public JsonRpcDispatcher(ObjectMapper mapper, McpRequestHandler handler, JsonRpcWriter writer,
+                             ToolRegistry tools, int maxInFlight) {
+        this(mapper, (AsyncMcpRequestHandler) request -> CompletableFuture.completedFuture(handler.handle(request)),
+            writer, tools, maxInFlight);
+    }
+
+    /**
+     * A dispatcher whose handler returns futures, for servers built on non-blocking clients.
+     */
+    public static JsonRpcDispatcher forAsyncHandler(ObjectMapper mapper, AsyncMcpRequestHandler handler,
+                                                    JsonRpcWriter writer, ToolRegistry tools, int maxInFlight) {
+        return new JsonRpcDispatcher(mapper, handler, writer, tools, maxInFlight);
+    }
+
+    private JsonRpcDispatcher(ObjectMapper mapper, AsyncMcpRequestHandler handler, JsonRpcWriter writer,
+                              ToolRegistry tools, int maxInFlight) {
+        this.mapper = mapper;
+        this.handler = handler;
+        this.writer = writer;
+        this.tools = tools;
+        this.requestExecutor = Executors.newCachedThreadPool();
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public JsonRpcWriter getWriter() {
+        return writer;
+    }
+
+    public void run(InputStream in) {
+        JsonRpcReader reader = new JsonRpcReader(in, mapper);
+        try {
+            while (true) {
+                JsonRpcRequest request;
+                try {
+                    request = reader.next();
+                } catch (JsonProcessingException e) {
+                    System.err.println("Parse error: " + e.getOriginalMessage());
+                    writeError(null, -32700, "Parse error: " + e.getOriginalMessage());
+                    continue;
+                }
+                if (request == null) {
+                    break;
+                }
+                dispatch(request);
+            }
+        } catch (Exception e) {
+            System.err.println("Fatal error in main loop: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            awaitInFlight();
+        }
+    }
+
+    private void dispatch(JsonRpcRequest request) throws IOException {
+        if (request.method() == null) {
+            if (!request.notification()) {
+                writeError(request.id(), -32600, "Invalid request: missing method");
+            }
+            return;
+        }
+        
+        // Server info and tool schema are constant, so answer from the registry's pre-encoded bytes
+        if ("initialize".equals(request.method())) {
+            if (!request.notification()) {
+                tools.writeInitialize(writer, request.id());
+            }
+            tools.attach(writer);
+            return;
+        }
+        if ("tools/list".equals(request.method())) {
+            if (!request.notification()) {
+                tools.writeToolsList(writer, request.id());
+            }
+            return;
+        }
+        
+        // Notifications get no response, so handle them inline without taking a permit
+        if (request.notification()) {
+            try {
+                CompletableFuture<JsonNode> result = handler.handle(request);
+                if (result != null) {
+                    result.exceptionally(e -> {
+                        System.err.println("Error handling notification " + request.method() + ": "
+                            + cause(e).getMessage());
+                        return null;
+                    });
+                }
+            } catch (Exception e) {
+                System.err.println("Error handling notification " + request.method() + ": " + e.getMessage());
+            }
+            return;
+        }
+        
+        inFlight.acquireUninterruptibly();
+        requestExecutor.execute(() -> {
+            CompletableFuture<JsonNode> result;
+            try {
+                result = handler.handle(request);
+            } catch (Exception e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            if (result == null) {
+                // Same as a future of null: nothing to send, but the permit must still come back
+                result = CompletableFuture.completedFuture(null);
+            }
+            result.whenComplete((response, error) -> {
+                try {
+                    if (error != null) {
+                        Throwable cause = cause(error);
+                        System.err.println("Error handling request: " + cause.getMessage());
+                        writeError(request.id(), -32603, "Internal error: " + cause.getMessage());
+                    } else if (response != null) {
+                        writer.writeResult(request.id(), response);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Failed to send response: " + e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            });
+        });
+    }
+
+    private static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private void writeError(JsonNode id, int code, String message) {
+        try {
+            writer.writeError(id, code, message);
+        } catch (IOException e) {
+            System.err.println("Failed to send response: " + e.getMessage());
+        }
+    }
+
+    private void awaitInFlight() {
+        requestExecutor.shutdown();
+        try {
+            // Every permit is back once the last response (sync or async) has been written
+            if (!inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS)) {
+                System.err.println("Timed out waiting for in-flight requests");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static int maxInFlightFromEnv() {
+        return Env.getInt("MCP_MAX_IN_FLIGHT", DEFAULT_MAX_IN_FLIGHT, 1);
+    }
+}
@@ -0,0 +1,104 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads newline-delimited JSON-RPC messages from a byte stream without decoding lines into Strings.
+ * Each line is parsed in place from a reused buffer, so a malformed message only costs that line.
+ */
+public class JsonRpcReader {
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final ObjectMapper mapper;
+    private final JsonFactory factory;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    public JsonRpcReader(InputStream in, ObjectMapper mapper) {
+        this.in = new BufferedInputStream(in, INITIAL_BUFFER_SIZE);
+        this.mapper = mapper;
+        this.factory = mapper.getFactory();
+    }
+
+    /**
+     * Returns the next request, or null at end of stream. Blank lines are skipped.
+     * A malformed line throws {@link JsonParseException}; the reader stays usable for the following lines.
+     */
+    public JsonRpcRequest next() throws IOException {
+        int length;
+        do {
+            length = readLine();
+            if (length < 0) {
+                return null;
+            }
+        } while (isBlank(length));
+        
+        try (JsonParser parser = factory.createParser(buffer, 0, length)) {
+            parser.setCodec(mapper);
+            return parseRequest(parser);
+        }
+    }
+
+    private JsonRpcRequest parseRequest(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON-RPC request object");
+        }
+        
+        JsonNode id = null;
+        String method = null;
+        JsonNode params = null;
+        boolean hasId = false;
+        
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> {
+                    hasId = true;
+                    id = value == JsonToken.VALUE_NULL ? NullNode.getInstance() : parser.readValueAsTree();
+                }
+                case "method" -> method = parser.getValueAsString();
+                case "params" -> params = parser.readValueAsTree();
+                default -> parser.skipChildren();
+            }
+        }
+        
+        return new JsonRpcRequest(id, method, params, !hasId);
+    }
+
+    private int readLine() throws IOException {
+        int length = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return length;
+            }
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[length++] = (byte) b;
+        }
+        return length > 0 ? length : -1;
+    }
+
+    private boolean isBlank(int length) {
+        for (int i = 0; i < length; i++) {
+            byte b = buffer[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
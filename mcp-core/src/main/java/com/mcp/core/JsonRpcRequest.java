@@ -0,0 +1,13 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A decoded JSON-RPC request. Only {@code params} is materialized as a tree; the envelope is read token by token.
+ */
+public record JsonRpcRequest(JsonNode id, String method, JsonNode params, boolean notification) {
+
+    public JsonNode param(String name) {
+        return params != null ? params.get(name) : null;
+    }
+}
@@ -0,0 +1,89 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serialized writer for JSON-RPC messages. One {@link JsonGenerator} is reused for the life of the stream and
+ * every message is written as a single newline-terminated line, so concurrent callers never interleave.
+ */
+public class JsonRpcWriter {
+    private static final SerializableString ENVELOPE_HEAD = new SerializedString("{\"jsonrpc\":\"2.0\",\"id\":");
+
+    private final JsonGenerator generator;
+
+    public JsonRpcWriter(OutputStream out, ObjectMapper mapper) throws IOException {
+        this.generator = mapper.getFactory()
+            .createGenerator(new BufferedOutputStream(out, 8192), JsonEncoding.UTF8);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    public synchronized void writeResult(JsonNode id, JsonNode result) throws IOException {
+        writeEnvelopeStart(id, false);
+        generator.writeFieldName("result");
+        generator.writeTree(result);
+        writeEnvelopeEnd();
+    }
+
+    /**
+     * Writes a response that was serialized ahead of time except for its id. {@code tail} holds everything after
+     * the id, i.e. {@code ,"result":{...}}}, and is copied as pre-encoded bytes.
+     */
+    public synchronized void writeSpliced(JsonNode id, SerializableString tail) throws IOException {
+        generator.writeRaw(ENVELOPE_HEAD);
+        if (id != null) {
+            generator.writeTree(id);
+        } else {
+            generator.writeNull();
+        }
+        generator.writeRaw(tail);
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    public synchronized void writeError(JsonNode id, int code, String message) throws IOException {
+        writeEnvelopeStart(id, true);
+        generator.writeObjectFieldStart("error");
+        generator.writeNumberField("code", code);
+        generator.writeStringField("message", message);
+        generator.writeEndObject();
+        writeEnvelopeEnd();
+    }
+
+    public synchronized void writeNotification(String method, JsonNode params) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("jsonrpc", "2.0");
+        generator.writeStringField("method", method);
+        if (params != null) {
+            generator.writeFieldName("params");
+            generator.writeTree(params);
+        }
+        writeEnvelopeEnd();
+    }
+
+    private void writeEnvelopeStart(JsonNode id, boolean includeNullId) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("jsonrpc", "2.0");
+        // A request sent with "id":null is answered with "id":null; only notifications have no id at all
+        if (id != null) {
+            generator.writeFieldName("id");
+            generator.writeTree(id);
+        } else if (includeNullId) {
+            generator.writeNullField("id");
+        }
+    }
+
+    private void writeEnvelopeEnd() throws IOException {
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+}
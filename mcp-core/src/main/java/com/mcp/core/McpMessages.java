@@ -0,0 +1,97 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Builders for the MCP payloads every server returns: tool schemas, tool results and the initialize result.
+ */
+public final class McpMessages {
+    public static final String PROTOCOL_VERSION = "2024-11-05";
+
+    private static final JsonNodeFactory nodes = JsonNodeFactory.instance;
+
+    private McpMessages() {
+    }
+
+    public static ObjectNode createInitializeResult(String serverName, String version, boolean listChanged) {
+        ObjectNode response = nodes.objectNode();
+        response.put("protocolVersion", PROTOCOL_VERSION);
+        
+        ObjectNode capabilities = nodes.objectNode();
+        ObjectNode tools = nodes.objectNode();
+        tools.put("listChanged", listChanged);
+        capabilities.set("tools", tools);
+        response.set("capabilities", capabilities);
+        
+        ObjectNode serverInfo = nodes.objectNode();
+        serverInfo.put("name", serverName);
+        serverInfo.put("version", version);
+        response.set("serverInfo", serverInfo);
+        
+        return response;
+    }
+
+    public static ObjectNode createTool(String name, String description, ObjectNode... params) {
+        ObjectNode tool = nodes.objectNode();
+        tool.put("name", name);
+        tool.put("description", description);
+        
+        ObjectNode inputSchema = nodes.objectNode();
+        inputSchema.put("type", "object");
+        
+        ObjectNode properties = nodes.objectNode();
+        ArrayNode required = nodes.arrayNode();
+        
+        for (ObjectNode param : params) {
+            String paramName = param.get("name").asText();
+            properties.set(paramName, param);
+            if (param.get("required").asBoolean()) {
+                required.add(paramName);
+            }
+        }
+        
+        inputSchema.set("properties", properties);
+        inputSchema.set("required", required);
+        tool.set("inputSchema", inputSchema);
+        
+        return tool;
+    }
+
+    public static ObjectNode createParam(String name, String type, String description, boolean required) {
+        ObjectNode param = nodes.objectNode();
+        param.put("name", name);
+        param.put("type", type);
+        param.put("description", description);
+        param.put("required", required);
+        return param;
+    }
+
+    /**
+     * Params for a {@code notifications/progress} message; {@code total} may be null when unknown.
+     */
+    public static ObjectNode createProgress(JsonNode progressToken, long progress, Long total) {
+        ObjectNode params = nodes.objectNode();
+        params.set("progressToken", progressToken);
+        params.put("progress", progress);
+        if (total != null) {
+            params.put("total", total);
+        }
+        return params;
+    }
+
+    public static ObjectNode createToolResponse(String type, String content) {
+        ObjectNode response = nodes.objectNode();
+        ArrayNode contentArray = nodes.arrayNode();
+        
+        ObjectNode contentObj = nodes.objectNode();
+        contentObj.put("type", type);
+        contentObj.put("text", content);
+        contentArray.add(contentObj);
+        
+        response.set("content", contentArray);
+        return response;
+    }
+}
@@ -0,0 +1,13 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+@FunctionalInterface
+public interface McpRequestHandler {
+
+    /**
+     * Handles one request and returns its result, or null when no response should be sent.
+     * Any exception is reported to the client as an internal error.
+     */
+    JsonNode handle(JsonRpcRequest request) throws Exception;
+}
@@ -0,0 +1,287 @@
+package com.mcp.core;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends HTTP requests within the rate budget an API reports the way GitHub does: {@code X-RateLimit-Limit},
+ * {@code X-RateLimit-Remaining} and {@code X-RateLimit-Reset}, plus {@code Retry-After} for secondary limits.
+ * Budgets are tracked per credential (the {@code Authorization} header).
+ * <p>
+ * Interactive requests always go first. Background requests leave a reserve of the budget for them, are spread
+ * evenly over the time left until the reset, and wait while any interactive request is queued. A rate-limited
+ * response (429, or 403 with an exhausted budget or {@code Retry-After}) puts the budget into backoff and the
+ * request is retried when it ends rather than failing.
+ * <p>
+ * Settings come from the environment: {@code GITHUB_MAX_CONCURRENCY} (requests in flight per credential,
+ * default 10), {@code GITHUB_RATE_RESERVE_PERCENT} (share of the budget background work leaves alone, default 20)
+ * and {@code GITHUB_RATE_MAX_WAIT_MS} (longest an interactive request waits for budget before failing,
+ * default 60000).
+ */
+public class RateLimitScheduler {
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long DEFAULT_BACKOFF_MILLIS = 60_000;
+    private static final long MAX_BACKOFF_MILLIS = 15 * 60_000;
+
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    private static final RateLimitScheduler SHARED = new RateLimitScheduler(
+        Env.getInt("GITHUB_MAX_CONCURRENCY", 10),
+        Env.getInt("GITHUB_RATE_RESERVE_PERCENT", 20) / 100.0,
+        Env.getInt("GITHUB_RATE_MAX_WAIT_MS", 60_000));
+
+    private final int maxConcurrent;
+    private final double reserve;
+    private final long maxInteractiveWait;
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rate-limit-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RateLimitScheduler(int maxConcurrent, double reserve, long maxInteractiveWait) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.reserve = reserve;
+        this.maxInteractiveWait = maxInteractiveWait;
+    }
+
+    /**
+     * The scheduler for this process, so every client of the same credential shares one budget.
+     */
+    public static RateLimitScheduler shared() {
+        return SHARED;
+    }
+
+    public <T> HttpResponse<T> send(HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                    Priority priority) throws IOException, InterruptedException {
+        try {
+            return sendAsync(client, request, handler, priority).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpClient client, HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> handler, Priority priority) {
+        String credential = request.headers().firstValue("Authorization").orElse("");
+        Task<T> task = new Task<>(client, request, handler, priority);
+        budgets.computeIfAbsent(credential, ignored -> new Budget()).enqueue(task);
+        return task.result;
+    }
+
+    private static final class Task<T> {
+        final HttpClient client;
+        final HttpRequest request;
+        final HttpResponse.BodyHandler<T> handler;
+        final Priority priority;
+        final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        HttpResponse<T> lastResponse;
+        int attempts;
+
+        Task(HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> handler, Priority priority) {
+            this.client = client;
+            this.request = request;
+            this.handler = handler;
+            this.priority = priority;
+        }
+
+        void finish(HttpResponse<T> response) {
+            // Complete off the scheduler's lock and timer thread; callers may chain more requests
+            result.completeAsync(() -> response);
+        }
+
+        void fail(Throwable error) {
+            CompletableFuture.runAsync(() -> result.completeExceptionally(error));
+        }
+
+        void expire(String reason) {
+            if (lastResponse != null) {
+                finish(lastResponse);
+            } else {
+                fail(new IOException(reason));
+            }
+        }
+    }
+
+    /**
+     * The budget of one credential. All state is guarded by the budget's monitor.
+     */
+    private final class Budget {
+        private final ArrayDeque<Task<?>> interactive = new ArrayDeque<>();
+        private final ArrayDeque<Task<?>> background = new ArrayDeque<>();
+        private int limit = -1;
+        private int remaining = -1;
+        private long resetAt;
+        private long backoffUntil;
+        private int backoffs;
+        private long lastBackground;
+        private int inFlight;
+        private ScheduledFuture<?> wakeup;
+        private long wakeupAt;
+
+        synchronized void enqueue(Task<?> task) {
+            (task.priority == Priority.INTERACTIVE ? interactive : background).addLast(task);
+            drain();
+        }
+
+        private void drain() {
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (resetAt > 0 && now >= resetAt) {
+                    // A new window: the next response will tell the real numbers
+                    remaining = limit;
+                    resetAt = 0;
+                }
+                if (!interactive.isEmpty()) {
+                    long wait = Math.max(backoffUntil - now, remaining == 0 ? untilReset(now) : 0);
+                    if (wait > maxInteractiveWait) {
+                        String reason = "Rate limit exhausted; retry in " + (wait + 999) / 1000 + "s";
+                        while (!interactive.isEmpty()) {
+                            interactive.pollFirst().expire(reason);
+                        }
+                        continue;
+                    }
+                    if (!dispatchOrWait(interactive, wait, now)) {
+                        return;
+                    }
+                } else if (!background.isEmpty()) {
+                    long wait = Math.max(backoffUntil - now, belowReserve() ? untilReset(now) : pace(now));
+                    if (!dispatchOrWait(background, wait, now)) {
+                        return;
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private boolean dispatchOrWait(ArrayDeque<Task<?>> queue, long wait, long now) {
+            if (wait > 0) {
+                wakeUpIn(wait, now);
+                return false;
+            }
+            if (inFlight >= maxConcurrent) {
+                // A completion will drain again
+                return false;
+            }
+            dispatch(queue.pollFirst(), now);
+            return true;
+        }
+
+        private <T> void dispatch(Task<T> task, long now) {
+            inFlight++;
+            if (remaining > 0) {
+                remaining--;
+            }
+            if (task.priority == Priority.BACKGROUND) {
+                lastBackground = now;
+            }
+            task.attempts++;
+            task.client.sendAsync(task.request, task.handler)
+                .whenComplete((response, error) -> completed(task, response, error));
+        }
+
+        private synchronized <T> void completed(Task<T> task, HttpResponse<T> response, Throwable error) {
+            inFlight--;
+            if (error != null) {
+                task.fail(error);
+            } else if (update(response)) {
+                task.lastResponse = response;
+                if (task.attempts < MAX_ATTEMPTS) {
+                    (task.priority == Priority.INTERACTIVE ? interactive : background).addFirst(task);
+                } else {
+                    task.finish(response);
+                }
+            } else {
+                task.finish(response);
+            }
+            drain();
+        }
+
+        /**
+         * Records the budget a response reports; returns whether the response was rate-limited.
+         */
+        private boolean update(HttpResponse<?> response) {
+            HttpHeaders headers = response.headers();
+            long now = System.currentTimeMillis();
+            headers.firstValue("X-RateLimit-Limit").ifPresent(value -> limit = parse(value, limit));
+            headers.firstValue("X-RateLimit-Remaining").ifPresent(value -> remaining = parse(value, remaining));
+            headers.firstValue("X-RateLimit-Reset").ifPresent(value -> resetAt = parse(value, 0) * 1000L);
+            long retryAfter = headers.firstValue("Retry-After").map(value -> parse(value, -1)).orElse(-1) * 1000L;
+
+            int status = response.statusCode();
+            boolean limited = status == 429 || (status == 403 && (retryAfter >= 0 || remaining == 0));
+            if (!limited) {
+                backoffs = 0;
+                return false;
+            }
+            backoffs++;
+            long backoff = retryAfter >= 0 ? retryAfter
+                : remaining == 0 && resetAt > now ? resetAt - now
+                : Math.min(MAX_BACKOFF_MILLIS, DEFAULT_BACKOFF_MILLIS << Math.min(backoffs - 1, 4));
+            backoffUntil = Math.max(backoffUntil, now + backoff);
+            return true;
+        }
+
+        private boolean belowReserve() {
+            return limit > 0 && remaining >= 0 && remaining <= Math.ceil(limit * reserve);
+        }
+
+        private long untilReset(long now) {
+            return resetAt > now ? resetAt - now : DEFAULT_BACKOFF_MILLIS;
+        }
+
+        // Spread the background share of what is left evenly until the reset
+        private long pace(long now) {
+            if (limit <= 0 || remaining < 0 || resetAt <= now) {
+                return 0;
+            }
+            long spare = remaining - (long) Math.ceil(limit * reserve);
+            return spare <= 0 ? resetAt - now : lastBackground + (resetAt - now) / spare - now;
+        }
+
+        private void wakeUpIn(long wait, long now) {
+            if (wakeup != null && !wakeup.isDone() && wakeupAt <= now + wait) {
+                return;
+            }
+            if (wakeup != null) {
+                wakeup.cancel(false);
+            }
+            wakeupAt = now + wait;
+            wakeup = timer.schedule(() -> {
+                synchronized (this) {
+                    drain();
+                }
+            }, wait, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static int parse(String value, int fallback) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
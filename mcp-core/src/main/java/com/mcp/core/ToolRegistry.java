@@ -0,0 +1,112 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the tool schema of a server and the pre-serialized {@code tools/list} and {@code initialize} responses.
+ * Everything but the request id is encoded once; answering either method only writes the id between two cached
+ * byte sequences. Changing the registry after a client has attached re-encodes the schema and sends
+ * {@code notifications/tools/list_changed}.
+ */
+public class ToolRegistry {
+    private final ObjectMapper mapper;
+    private final SerializableString initializeTail;
+    private final Map<String, ObjectNode> tools = new LinkedHashMap<>();
+    private volatile SerializableString toolsListTail;
+    private volatile JsonRpcWriter client;
+
+    public ToolRegistry(ObjectMapper mapper, String serverName, String version) {
+        this.mapper = mapper;
+        this.initializeTail = encodeResultTail(McpMessages.createInitializeResult(serverName, version, true));
+        this.toolsListTail = encodeToolsList();
+    }
+
+    public void registerAll(ArrayNode toolNodes) {
+        synchronized (this) {
+            for (JsonNode tool : toolNodes) {
+                tools.put(tool.get("name").asText(), (ObjectNode) tool);
+            }
+            toolsListTail = encodeToolsList();
+        }
+        notifyListChanged();
+    }
+
+    public void register(ObjectNode tool) {
+        synchronized (this) {
+            tools.put(tool.get("name").asText(), tool);
+            toolsListTail = encodeToolsList();
+        }
+        notifyListChanged();
+    }
+
+    public boolean unregister(String name) {
+        synchronized (this) {
+            if (tools.remove(name) == null) {
+                return false;
+            }
+            toolsListTail = encodeToolsList();
+        }
+        notifyListChanged();
+        return true;
+    }
+
+    public synchronized boolean contains(String name) {
+        return tools.containsKey(name);
+    }
+
+    /**
+     * Marks the client as initialized; later schema changes are announced to it.
+     */
+    public void attach(JsonRpcWriter writer) {
+        this.client = writer;
+    }
+
+    public void writeInitialize(JsonRpcWriter writer, JsonNode id) throws IOException {
+        writer.writeSpliced(id, initializeTail);
+    }
+
+    public void writeToolsList(JsonRpcWriter writer, JsonNode id) throws IOException {
+        writer.writeSpliced(id, toolsListTail);
+    }
+
+    private void notifyListChanged() {
+        JsonRpcWriter writer = client;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.writeNotification("notifications/tools/list_changed", null);
+        } catch (IOException e) {
+            System.err.println("Failed to send tools/list_changed notification: " + e.getMessage());
+        }
+    }
+
+    private SerializableString encodeToolsList() {
+        ObjectNode result = mapper.createObjectNode();
+        ArrayNode toolArray = result.putArray("tools");
+        tools.values().forEach(toolArray::add);
+        return encodeResultTail(result);
+    }
+
+    private SerializableString encodeResultTail(JsonNode result) {
+        try {
+            SerializedString tail = new SerializedString(",\"result\":" + mapper.writeValueAsString(result) + "}");
+            // Encode to UTF-8 now so request threads only copy bytes
+            tail.asUnquotedUTF8();
+            return tail;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
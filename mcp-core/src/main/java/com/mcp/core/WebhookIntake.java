@@ -0,0 +1,173 @@
+package com.mcp.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Webhook endpoint that acknowledges deliveries before processing them. A POST is read, queued and answered
+ * with 202 right away; workers take deliveries off the bounded queue and hand them to the processor. When the
+ * queue is full the sender gets 429 with {@code Retry-After}, which GitHub records as a failed delivery that can
+ * be redelivered, instead of the request waiting out its 10 second timeout.
+ * <p>
+ * With an {@link EventLog} every accepted delivery is appended to it before the 202 goes out, and the delivery
+ * carries its log offset.
+ * <p>
+ * Sizes come from {@code WEBHOOK_QUEUE_CAPACITY} (default 1000) and {@code WEBHOOK_WORKERS} (default 2).
+ */
+public class WebhookIntake implements HttpHandler {
+    private static final int HTTP_THREADS = 4;
+
+    /**
+     * One accepted delivery. {@code event} is the {@code X-GitHub-Event} header, or "unknown"; {@code offset} is -1
+     * without an event log.
+     */
+    public record Delivery(long offset, String event, String deliveryId, byte[] body, long receivedAt) {
+    }
+
+    @FunctionalInterface
+    public interface Processor {
+        void process(Delivery delivery) throws Exception;
+    }
+
+    private final Processor processor;
+    private final HttpHandler otherMethods;
+    private final EventLog eventLog;
+    private final BlockingQueue<Delivery> queue;
+    private final ExecutorService workers;
+    private final int workerCount;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * {@code otherMethods} answers anything but POST; null means 405. {@code eventLog} may be null.
+     */
+    public WebhookIntake(String name, Processor processor, HttpHandler otherMethods, EventLog eventLog,
+                         int capacity, int workerCount) {
+        this.processor = processor;
+        this.otherMethods = otherMethods;
+        this.eventLog = eventLog;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.workerCount = Math.max(1, workerCount);
+        this.workers = Executors.newFixedThreadPool(this.workerCount, daemon(name + "-worker"));
+        for (int i = 0; i < this.workerCount; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    public static WebhookIntake fromEnv(String name, Processor processor, HttpHandler otherMethods,
+                                        EventLog eventLog) {
+        return new WebhookIntake(name, processor, otherMethods, eventLog,
+            Env.getInt("WEBHOOK_QUEUE_CAPACITY", 1000), Env.getInt("WEBHOOK_WORKERS", 2));
+    }
+
+    /**
+     * Mounts the intake on {@code path} and gives the server a small thread pool of its own, so one slow client
+     * can't hold up the others.
+     */
+    public void bind(HttpServer server, String path) {
+        server.createContext(path, this);
+        server.setExecutor(Executors.newFixedThreadPool(HTTP_THREADS, daemon("webhook-http")));
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                if (otherMethods != null) {
+                    otherMethods.handle(exchange);
+                } else {
+                    exchange.sendResponseHeaders(405, -1);
+                }
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String header = exchange.getRequestHeaders().getFirst("X-GitHub-Event");
+            String event = header == null ? "unknown" : header;
+            String deliveryId = exchange.getRequestHeaders().getFirst("X-GitHub-Delivery");
+            long receivedAt = System.currentTimeMillis();
+            boolean queued = false;
+            RuntimeException logFailure = null;
+            // Only producers add to the queue, so a free slot seen under this lock is still free for the add, and
+            // nothing is logged that the queue then turns away
+            synchronized (queue) {
+                if (running && queue.remainingCapacity() > 0) {
+                    try {
+                        long offset = eventLog == null ? -1 : eventLog.append(receivedAt, event, deliveryId, body);
+                        queued = queue.add(new Delivery(offset, event, deliveryId, body, receivedAt));
+                    } catch (RuntimeException e) {
+                        logFailure = e;
+                    }
+                }
+            }
+            if (logFailure != null) {
+                System.err.println("Webhook not logged: " + logFailure.getMessage());
+                respond(exchange, 503, "Event log unavailable");
+            } else if (queued) {
+                accepted.incrementAndGet();
+                respond(exchange, 202, "Accepted");
+            } else {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 429, "Too many deliveries queued");
+            }
+        }
+    }
+
+    public String status() {
+        return String.format("%d queued of %d, %d workers; %d accepted, %d rejected, %d processed, %d failed",
+            queue.size(), queue.size() + queue.remainingCapacity(), workerCount,
+            accepted.get(), rejected.get(), processed.get(), failed.get());
+    }
+
+    public void close() {
+        running = false;
+        workers.shutdownNow();
+    }
+
+    private void work() {
+        while (running) {
+            Delivery delivery;
+            try {
+                delivery = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                processor.process(delivery);
+                processed.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                System.err.println("Webhook error: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static java.util.concurrent.ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
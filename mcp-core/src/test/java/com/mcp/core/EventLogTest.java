@@ -0,0 +1,146 @@
+package com.mcp.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLogTest {
+    private static final EventLog.Settings SMALL_SEGMENTS = new EventLog.Settings(8 * 1024, 50, 3_600_000, 1 << 30);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testAppendAndReadFromOffset() throws Exception {
+        try (EventLog log = new EventLog(directory, SMALL_SEGMENTS)) {
+            for (int i = 0; i < 5; i++) {
+                assertEquals(i, log.append(1000 + i, "push", "d" + i, body(i)));
+            }
+
+            List<EventLog.Event> events = log.read(2, 2);
+
+            assertEquals(2, events.size());
+            assertEquals(2, events.get(0).offset());
+            assertEquals(1002, events.get(0).timestamp());
+            assertEquals("push", events.get(0).type());
+            assertEquals("d2", events.get(0).deliveryId());
+            assertArrayEquals(body(2), events.get(0).body());
+            assertEquals(3, events.get(1).offset());
+            assertEquals(5, log.endOffset());
+        }
+    }
+
+    @Test
+    void testRollsSegmentsAndReopensFromIndex() throws Exception {
+        try (EventLog log = new EventLog(directory, SMALL_SEGMENTS)) {
+            for (int i = 0; i < 500; i++) {
+                log.append(i, "workflow_run", null, body(i));
+            }
+            assertTrue(log.segmentCount() > 3);
+        }
+
+        try (EventLog log = new EventLog(directory, SMALL_SEGMENTS)) {
+            assertEquals(500, log.endOffset());
+            List<EventLog.Event> events = log.read(321, 1000);
+            assertEquals(179, events.size());
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(321 + i, events.get(i).offset());
+                assertArrayEquals(body(321 + i), events.get(i).body());
+            }
+            assertNull(events.get(0).deliveryId());
+            assertEquals(500, log.append(0, "push", null, body(500)));
+        }
+    }
+
+    @Test
+    void testReopensActiveSegmentAndReadsFromTheMiddle() throws Exception {
+        // One segment much larger than the index interval, so recovery rebuilds several index entries
+        EventLog.Settings settings = new EventLog.Settings(1024 * 1024, 50, 3_600_000, 1 << 30);
+        try (EventLog log = new EventLog(directory, settings)) {
+            for (int i = 0; i < 500; i++) {
+                log.append(i, "push", null, body(i));
+            }
+            assertEquals(1, log.segmentCount());
+        }
+
+        try (EventLog log = new EventLog(directory, settings)) {
+            for (int from : new int[]{0, 100, 400, 499}) {
+                List<EventLog.Event> events = log.read(from, 3);
+                assertEquals(Math.min(3, 500 - from), events.size());
+                for (int i = 0; i < events.size(); i++) {
+                    assertEquals(from + i, events.get(i).offset());
+                    assertArrayEquals(body(from + i), events.get(i).body());
+                }
+            }
+            assertEquals(500, log.append(0, "push", null, body(500)));
+            assertEquals(500, log.read(500, 1).get(0).offset());
+        }
+    }
+
+    @Test
+    void testDropsTornRecordOnRecovery() throws Exception {
+        try (EventLog log = new EventLog(directory, SMALL_SEGMENTS)) {
+            log.append(0, "push", null, body(0));
+            log.append(0, "push", null, body(1));
+        }
+        // Corrupt the last byte of the second record, as if the write had been cut off
+        Path segment = directory.resolve(String.format("%020d.log", 0));
+        int recordSize = 4 + 4 + 8 + 8 + 2 + 4 + 2 + body(0).length;
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(2L * recordSize - 1);
+            file.write('X');
+        }
+
+        try (EventLog log = new EventLog(directory, SMALL_SEGMENTS)) {
+            assertEquals(1, log.endOffset());
+            assertEquals(1, log.append(0, "push", null, body(2)));
+            assertArrayEquals(body(2), log.read(1, 10).get(0).body());
+        }
+    }
+
+    @Test
+    void testRetentionDeletesOldestSegments() throws Exception {
+        EventLog.Settings settings = new EventLog.Settings(8 * 1024, 50, 3_600_000, 16 * 1024);
+        try (EventLog log = new EventLog(directory, settings)) {
+            for (int i = 0; i < 500; i++) {
+                log.append(i, "push", null, body(i));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (log.segmentCount() > 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            // Checked when a segment rolls, so the active segment can take the log past the limit until the next one
+            assertTrue(log.sizeBytes() <= 16 * 1024 + 8 * 1024);
+            assertTrue(log.firstOffset() > 0);
+            assertEquals(log.firstOffset(), log.read(0, 1).get(0).offset());
+            assertEquals(log.segmentCount(), countSegments());
+        }
+    }
+
+    @Test
+    void testSecondProcessCannotOpen() throws Exception {
+        try (EventLog log = new EventLog(directory, SMALL_SEGMENTS)) {
+            assertThrows(IOException.class, () -> new EventLog(directory, SMALL_SEGMENTS));
+        }
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).count();
+        }
+    }
+
+    private static byte[] body(int i) {
+        return String.format("{\"n\":%08d,\"pad\":\"%s\"}", i, "x".repeat(50)).getBytes(StandardCharsets.UTF_8);
+    }
+}
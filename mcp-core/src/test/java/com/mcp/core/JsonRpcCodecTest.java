@@ -0,0 +1,166 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonRpcCodecTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonRpcReader reader(String input) {
+        return new JsonRpcReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), mapper);
+    }
+
+    @Test
+    void testReadsRequestsAndNotifications() throws Exception {
+        JsonRpcReader reader = reader(
+            "{\"jsonrpc\":\"2.0\",\"id\":7,\"method\":\"tools/call\",\"params\":{\"name\":\"git_log\",\"arguments\":{\"limit\":3}}}\n"
+            + "\n"
+            + "{\"jsonrpc\":\"2.0\",\"method\":\"initialized\"}");
+        
+        JsonRpcRequest call = reader.next();
+        assertEquals(7, call.id().asInt());
+        assertEquals("tools/call", call.method());
+        assertEquals(3, call.param("arguments").get("limit").asInt());
+        assertFalse(call.notification());
+        
+        JsonRpcRequest notification = reader.next();
+        assertEquals("initialized", notification.method());
+        assertTrue(notification.notification());
+        
+        assertNull(reader.next());
+    }
+
+    @Test
+    void testRecoversAfterMalformedLine() throws Exception {
+        JsonRpcReader reader = reader("not json\n{\"id\":\"a\",\"method\":\"tools/list\"}\n");
+        
+        assertThrows(JsonProcessingException.class, reader::next);
+        JsonRpcRequest request = reader.next();
+        assertEquals("a", request.id().asText());
+        assertEquals("tools/list", request.method());
+    }
+
+    @Test
+    void testWritesOneLinePerMessage() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRpcWriter writer = new JsonRpcWriter(out, mapper);
+        
+        writer.writeResult(mapper.getNodeFactory().numberNode(1), McpMessages.createToolResponse("text", "ok"));
+        writer.writeError(null, -32700, "Parse error");
+        
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        
+        JsonNode result = mapper.readTree(lines[0]);
+        assertEquals("2.0", result.get("jsonrpc").asText());
+        assertEquals(1, result.get("id").asInt());
+        assertEquals("ok", result.path("result").path("content").get(0).get("text").asText());
+        
+        JsonNode error = mapper.readTree(lines[1]);
+        assertTrue(error.get("id").isNull());
+        assertEquals(-32700, error.path("error").path("code").asInt());
+    }
+
+    @Test
+    void testAnswersNullIdWithNullId() throws Exception {
+        assertTrue(reader("{\"id\":null,\"method\":\"tools/call\"}").next().id().isNull());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRpcDispatcher dispatcher = new JsonRpcDispatcher(mapper,
+            request -> McpMessages.createToolResponse("text", "ok"),
+            new JsonRpcWriter(out, mapper), new ToolRegistry(mapper, "test-server", "1.0.0"), 1);
+        dispatcher.run(new ByteArrayInputStream(
+            "{\"id\":null,\"method\":\"tools/call\",\"params\":{}}\n".getBytes(StandardCharsets.UTF_8)));
+
+        JsonNode response = mapper.readTree(out.toString(StandardCharsets.UTF_8));
+        assertTrue(response.has("id"));
+        assertTrue(response.get("id").isNull());
+        assertEquals("ok", response.path("result").path("content").get(0).get("text").asText());
+    }
+
+    @Test
+    void testDispatcherServesCachedResultsAndRunsRequestsConcurrently() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRpcDispatcher dispatcher = new JsonRpcDispatcher(mapper, request -> {
+            String tool = request.param("name").asText();
+            if ("slow".equals(tool)) {
+                Thread.sleep(300);
+            }
+            return McpMessages.createToolResponse("text", tool);
+        }, new JsonRpcWriter(out, mapper), new ToolRegistry(mapper, "test-server", "1.0.0"), 4);
+        
+        dispatcher.run(new ByteArrayInputStream((
+            "{\"id\":1,\"method\":\"tools/call\",\"params\":{\"name\":\"slow\"}}\n"
+            + "{\"id\":2,\"method\":\"tools/call\",\"params\":{\"name\":\"fast\"}}\n"
+            + "{\"id\":3,\"method\":\"initialize\"}\n").getBytes(StandardCharsets.UTF_8)));
+        
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        // The slow call must not hold back the responses queued behind it
+        assertEquals(1, mapper.readTree(lines[2]).get("id").asInt());
+        
+        for (int i = 0; i < 2; i++) {
+            JsonNode response = mapper.readTree(lines[i]);
+            if (response.get("id").asInt() == 3) {
+                assertEquals("test-server", response.path("result").path("serverInfo").path("name").asText());
+            } else {
+                assertEquals("fast", response.path("result").path("content").get(0).get("text").asText());
+            }
+        }
+    }
+
+    @Test
+    void testAsyncHandlerRespondsWhenFutureCompletes() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRpcDispatcher dispatcher = JsonRpcDispatcher.forAsyncHandler(mapper, request -> {
+            String tool = request.param("name").asText();
+            if ("fail".equals(tool)) {
+                return CompletableFuture.failedFuture(new IllegalStateException("boom"));
+            }
+            return CompletableFuture.supplyAsync(() -> McpMessages.createToolResponse("text", tool),
+                CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+        }, new JsonRpcWriter(out, mapper), new ToolRegistry(mapper, "test-server", "1.0.0"), 1);
+        
+        // One permit: the second call can only start once the first future has completed
+        dispatcher.run(new ByteArrayInputStream((
+            "{\"id\":1,\"method\":\"tools/call\",\"params\":{\"name\":\"later\"}}\n"
+            + "{\"id\":2,\"method\":\"tools/call\",\"params\":{\"name\":\"fail\"}}\n").getBytes(StandardCharsets.UTF_8)));
+        
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("later", mapper.readTree(lines[0]).path("result").path("content").get(0).get("text").asText());
+        JsonNode error = mapper.readTree(lines[1]);
+        assertEquals(2, error.get("id").asInt());
+        assertEquals("Internal error: boom", error.path("error").path("message").asText());
+    }
+
+    @Test
+    void testAsyncHandlerReturningNullReleasesItsPermit() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRpcDispatcher dispatcher = JsonRpcDispatcher.forAsyncHandler(mapper, request -> {
+            String tool = request.param("name").asText();
+            return "none".equals(tool) ? null : CompletableFuture.completedFuture(
+                McpMessages.createToolResponse("text", tool));
+        }, new JsonRpcWriter(out, mapper), new ToolRegistry(mapper, "test-server", "1.0.0"), 1);
+
+        // With one permit, the second call is only answered if the first gave its permit back
+        dispatcher.run(new ByteArrayInputStream((
+            "{\"id\":1,\"method\":\"tools/call\",\"params\":{\"name\":\"none\"}}\n"
+            + "{\"method\":\"tools/call\",\"params\":{\"name\":\"none\"}}\n"
+            + "{\"id\":2,\"method\":\"tools/call\",\"params\":{\"name\":\"after\"}}\n").getBytes(StandardCharsets.UTF_8)));
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length);
+        assertEquals(2, mapper.readTree(lines[0]).get("id").asInt());
+    }
+}
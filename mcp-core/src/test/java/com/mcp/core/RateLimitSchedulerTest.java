@@ -0,0 +1,84 @@
+package com.mcp.core;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitSchedulerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // The first request hits a secondary limit; afterwards 1 of 10 requests is left until the reset
+        long reset = System.currentTimeMillis() / 1000 + 2;
+        server.createContext("/", exchange -> {
+            if (requests.getAndIncrement() == 0 && exchange.getRequestURI().getPath().equals("/limited")) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                exchange.sendResponseHeaders(429, -1);
+            } else {
+                exchange.getResponseHeaders().add("X-RateLimit-Limit", "10");
+                exchange.getResponseHeaders().add("X-RateLimit-Remaining", "1");
+                exchange.getResponseHeaders().add("X-RateLimit-Reset", Long.toString(reset));
+                exchange.sendResponseHeaders(200, -1);
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void testRetriesAfterSecondaryLimit() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(4, 0.2, 60_000);
+        long start = System.nanoTime();
+        HttpResponse<Void> response = scheduler.send(client, request("/limited"),
+            HttpResponse.BodyHandlers.discarding(), RateLimitScheduler.Priority.INTERACTIVE);
+
+        assertEquals(200, response.statusCode());
+        assertEquals(2, requests.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1000);
+    }
+
+    @Test
+    void testBackgroundLeavesReserveToInteractive() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(4, 0.2, 60_000);
+        scheduler.send(client, request("/runs"), HttpResponse.BodyHandlers.discarding(),
+            RateLimitScheduler.Priority.BACKGROUND);
+
+        CompletableFuture<HttpResponse<Void>> poll = scheduler.sendAsync(client, request("/runs"),
+            HttpResponse.BodyHandlers.discarding(), RateLimitScheduler.Priority.BACKGROUND);
+        HttpResponse<Void> interactive = scheduler.send(client, request("/user"),
+            HttpResponse.BodyHandlers.discarding(), RateLimitScheduler.Priority.INTERACTIVE);
+
+        assertEquals(200, interactive.statusCode());
+        assertFalse(poll.isDone(), "background request should wait for the reset");
+        assertEquals(200, poll.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(3, requests.get());
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path))
+            .header("Authorization", "Bearer test")
+            .GET()
+            .build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.mcp.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolRegistryTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testCachedResponsesSpliceRequestId() throws Exception {
+        ToolRegistry registry = new ToolRegistry(mapper, "test-server", "1.0.0");
+        registry.registerAll(mapper.createArrayNode()
+            .add(McpMessages.createTool("git_log", "Get git commit history",
+                McpMessages.createParam("limit", "number", "Number of commits to show", false))));
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRpcWriter writer = new JsonRpcWriter(out, mapper);
+        registry.writeToolsList(writer, mapper.getNodeFactory().textNode("req-1"));
+        registry.writeInitialize(writer, mapper.getNodeFactory().numberNode(2));
+        
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        JsonNode toolsList = mapper.readTree(lines[0]);
+        assertEquals("req-1", toolsList.get("id").asText());
+        assertEquals("git_log", toolsList.path("result").path("tools").get(0).get("name").asText());
+        
+        JsonNode initialize = mapper.readTree(lines[1]);
+        assertEquals(2, initialize.get("id").asInt());
+        assertTrue(initialize.path("result").path("capabilities").path("tools").path("listChanged").asBoolean());
+    }
+
+    @Test
+    void testChangesAfterAttachNotifyClient() throws Exception {
+        ToolRegistry registry = new ToolRegistry(mapper, "test-server", "1.0.0");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonRpcWriter writer = new JsonRpcWriter(out, mapper);
+        
+        registry.register(McpMessages.createTool("health_check", "Check connectivity"));
+        assertEquals(0, out.size());
+        
+        registry.attach(writer);
+        registry.register(McpMessages.createTool("webhook_status", "Check webhook server status"));
+        assertTrue(registry.unregister("health_check"));
+        assertFalse(registry.unregister("health_check"));
+        
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("notifications/tools/list_changed", mapper.readTree(lines[0]).get("method").asText());
+        
+        out.reset();
+        registry.writeToolsList(writer, mapper.getNodeFactory().numberNode(9));
+        JsonNode tools = mapper.readTree(out.toString(StandardCharsets.UTF_8)).path("result").path("tools");
+        assertEquals(1, tools.size());
+        assertEquals("webhook_status", tools.get(0).get("name").asText());
+    }
+}
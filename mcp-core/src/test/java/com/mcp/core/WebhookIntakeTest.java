@@ -0,0 +1,97 @@
+package com.mcp.core;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookIntakeTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpServer server;
+    private WebhookIntake intake;
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        intake.close();
+    }
+
+    @Test
+    void testAcknowledgesBeforeProcessing() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        LinkedBlockingQueue<WebhookIntake.Delivery> processed = new LinkedBlockingQueue<>();
+        start(new WebhookIntake("test", delivery -> {
+            release.await();
+            processed.add(delivery);
+        }, null, null, 10, 1));
+
+        HttpResponse<String> response = post("{\"action\":\"completed\"}");
+
+        assertEquals(202, response.statusCode());
+        assertTrue(processed.isEmpty());
+        release.countDown();
+        WebhookIntake.Delivery delivery = processed.poll(5, TimeUnit.SECONDS);
+        assertNotNull(delivery);
+        assertEquals("workflow_run", delivery.event());
+        assertEquals("{\"action\":\"completed\"}", new String(delivery.body()));
+    }
+
+    @Test
+    void testRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        start(new WebhookIntake("test", delivery -> {
+            started.countDown();
+            release.await();
+        }, null, null, 1, 1));
+
+        // One delivery held by the worker, one waiting in the queue, the third has nowhere to go
+        assertEquals(202, post("{}").statusCode());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(202, post("{}").statusCode());
+        HttpResponse<String> rejected = post("{}");
+
+        assertEquals(429, rejected.statusCode());
+        assertEquals("1", rejected.headers().firstValue("Retry-After").orElse(null));
+        assertTrue(intake.status().contains("1 rejected"));
+        release.countDown();
+    }
+
+    @Test
+    void testOtherMethodsGoToFallback() throws Exception {
+        start(new WebhookIntake("test", delivery -> { }, null, null, 10, 1));
+
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri()).GET().build(),
+            HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(405, response.statusCode());
+    }
+
+    private void start(WebhookIntake intake) throws Exception {
+        this.intake = intake;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        intake.bind(server, "/webhook");
+        server.start();
+    }
+
+    private HttpResponse<String> post(String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri())
+            .header("X-GitHub-Event", "workflow_run")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/webhook");
+    }
+}
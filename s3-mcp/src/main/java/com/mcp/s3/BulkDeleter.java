@@ -0,0 +1,157 @@
+package com.mcp.s3;
+
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Deletes keys with {@code DeleteObjects}, 1,000 keys per request and several requests in flight. Keys are
+ * pulled lazily, so deleting a prefix never holds more than the in-flight batches in memory.
+ */
+public class BulkDeleter {
+    static final int DEFAULT_CONCURRENCY = 4;
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_FAILURES = 100;
+
+    public record Result(long deleted, long failed, List<String> failures) {
+    }
+
+    /**
+     * Supplies keys a batch at a time; an empty batch means there are no more.
+     */
+    private interface KeySource {
+        CompletableFuture<List<String>> nextBatch();
+    }
+
+    private final S3AsyncClient s3;
+
+    public BulkDeleter(S3AsyncClient s3) {
+        this.s3 = s3;
+    }
+
+    public CompletableFuture<Result> deleteKeys(String bucket, List<String> keys, int concurrency,
+                                                LongConsumer progress) {
+        AtomicInteger position = new AtomicInteger();
+        KeySource source = () -> {
+            int start = position.getAndAdd(BATCH_SIZE);
+            return CompletableFuture.completedFuture(
+                start >= keys.size() ? List.of() : keys.subList(start, Math.min(keys.size(), start + BATCH_SIZE)));
+        };
+        return delete(bucket, source, concurrency, progress);
+    }
+
+    public CompletableFuture<Result> deletePrefix(String bucket, String prefix, int concurrency,
+                                                  LongConsumer progress) {
+        return delete(bucket, new PrefixListing(bucket, prefix), concurrency, progress);
+    }
+
+    /**
+     * {@code concurrency} lanes each take the next batch, delete it, and move on. {@code progress} gets the
+     * running count of deleted keys after each batch.
+     */
+    private CompletableFuture<Result> delete(String bucket, KeySource source, int concurrency, LongConsumer progress) {
+        AtomicLong deleted = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+
+        class Lane {
+            CompletableFuture<Void> next() {
+                return source.nextBatch().thenCompose(keys -> keys.isEmpty()
+                    ? CompletableFuture.completedFuture(null)
+                    : deleteBatch(keys).thenCompose(ignored -> next()));
+            }
+
+            CompletableFuture<Void> deleteBatch(List<String> keys) {
+                List<ObjectIdentifier> objects = new ArrayList<>(keys.size());
+                keys.forEach(key -> objects.add(ObjectIdentifier.builder().key(key).build()));
+                return s3.deleteObjects(request -> request.bucket(bucket)
+                        .delete(delete -> delete.objects(objects).quiet(true)))
+                    .handle((response, error) -> {
+                        List<String> batchFailures = error != null ? failBatch(keys, error) : failures(response);
+                        failed.addAndGet(batchFailures.size());
+                        for (String failure : batchFailures) {
+                            if (failures.size() < MAX_REPORTED_FAILURES) {
+                                failures.add(failure);
+                            }
+                        }
+                        progress.accept(deleted.addAndGet(keys.size() - batchFailures.size()));
+                        return null;
+                    });
+            }
+        }
+
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.max(1, concurrency)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane().next();
+        }
+        return CompletableFuture.allOf(lanes)
+            .thenApply(ignored -> new Result(deleted.get(), failed.get(), List.copyOf(failures)));
+    }
+
+    /**
+     * Lists a prefix one page (one batch) at a time. Requests are chained so each page uses the previous page's
+     * continuation token; deleting keys already listed doesn't disturb the listing.
+     */
+    private final class PrefixListing implements KeySource {
+        private final String bucket;
+        private final String prefix;
+        private CompletableFuture<List<String>> previous = CompletableFuture.completedFuture(List.of());
+        private String token;
+        private boolean finished;
+
+        PrefixListing(String bucket, String prefix) {
+            this.bucket = bucket;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public synchronized CompletableFuture<List<String>> nextBatch() {
+            previous = previous.thenCompose(ignored -> fetch());
+            return previous;
+        }
+
+        private CompletableFuture<List<String>> fetch() {
+            if (finished) {
+                return CompletableFuture.completedFuture(List.of());
+            }
+            return s3.listObjectsV2(request -> request.bucket(bucket).prefix(prefix).maxKeys(BATCH_SIZE)
+                    .continuationToken(token))
+                .thenCompose(page -> {
+                    token = page.nextContinuationToken();
+                    finished = token == null;
+                    // An empty batch ends a lane, so never hand out an empty page before the listing is done
+                    return page.contents().isEmpty() && !finished
+                        ? fetch()
+                        : CompletableFuture.completedFuture(page.contents().stream().map(S3Object::key).toList());
+                });
+        }
+    }
+
+    private static List<String> failures(DeleteObjectsResponse response) {
+        List<String> failures = new ArrayList<>(response.errors().size());
+        for (S3Error error : response.errors()) {
+            failures.add(error.key() + ": " + error.code() + " " + error.message());
+        }
+        return failures;
+    }
+
+    private static List<String> failBatch(List<String> keys, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        List<String> failures = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            failures.add(key + ": " + cause.getMessage());
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,210 @@
+package com.mcp.s3;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads a local file through the S3 multipart API. Parts are memory-mapped slices of the file sent
+ * concurrently up to a fixed limit. An upload that fails part-way is left open: calling again with its upload
+ * id only sends the parts S3 does not have yet. A part S3 has is kept only if its ETag is the MD5 of the same
+ * slice of the file now, so a file changed in between is never stitched together from two versions; parts
+ * whose ETag is not an MD5 (SSE-KMS or SSE-C) are sent again.
+ * <p>
+ * Each part request is retried by the client's retry policy ({@code S3_MAX_RETRIES}, with jittered backoff); a
+ * part that still fails is reported and left for the resume.
+ */
+public class MultipartUploader {
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    static final long DEFAULT_PART_SIZE = 8L * 1024 * 1024;
+    static final int DEFAULT_CONCURRENCY = 8;
+    private static final int MAX_PARTS = 10_000;
+
+    public record Result(String uploadId, long bytes, int parts, String eTag, List<Integer> failedParts, String error) {
+        public boolean complete() {
+            return failedParts.isEmpty();
+        }
+    }
+
+    private final S3AsyncClient s3;
+
+    public MultipartUploader(S3AsyncClient s3) {
+        this.s3 = s3;
+    }
+
+    public CompletableFuture<Result> upload(String bucket, String key, Path file, long partSize, int concurrency,
+                                            String uploadId) {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (uploadId == null && size <= partSize) {
+            return s3.putObject(request -> request.bucket(bucket).key(key), AsyncRequestBody.fromFile(file))
+                .thenApply(response -> new Result(null, size, 1, response.eTag(), List.of(), null));
+        }
+
+        if (uploadId == null) {
+            return s3.createMultipartUpload(request -> request.bucket(bucket).key(key))
+                .thenCompose(created -> new Upload(bucket, key, file, size, created.uploadId(), partSize)
+                    .run(concurrency));
+        }
+        // Resuming: reuse the original part size and offer what S3 already has for checking
+        return listParts(bucket, key, uploadId, null, new ArrayList<>()).thenCompose(uploaded -> {
+            long resumedPartSize = partSize;
+            for (Part part : uploaded) {
+                if (part.partNumber() == 1 && part.size() < size) {
+                    resumedPartSize = part.size();
+                }
+            }
+            Upload upload = new Upload(bucket, key, file, size, uploadId, resumedPartSize);
+            for (Part part : uploaded) {
+                long expected = Math.min(resumedPartSize, size - (part.partNumber() - 1) * resumedPartSize);
+                if (part.size() == expected) {
+                    upload.uploaded.put(part.partNumber(), part.eTag());
+                }
+            }
+            return upload.run(concurrency);
+        });
+    }
+
+    private CompletableFuture<List<Part>> listParts(String bucket, String key, String uploadId, Integer marker,
+                                                    List<Part> parts) {
+        return s3.listParts(request -> request.bucket(bucket).key(key).uploadId(uploadId).partNumberMarker(marker))
+            .thenCompose(page -> {
+                parts.addAll(page.parts());
+                return Boolean.TRUE.equals(page.isTruncated())
+                    ? listParts(bucket, key, uploadId, page.nextPartNumberMarker(), parts)
+                    : CompletableFuture.completedFuture(parts);
+            });
+    }
+
+    /**
+     * One upload in progress. {@code concurrency} lanes each take the next part, check it against what an earlier
+     * attempt uploaded or upload it, and move on, so no thread ever waits for a slot.
+     */
+    private final class Upload {
+        private final String bucket;
+        private final String key;
+        private final Path file;
+        private final long size;
+        private final String uploadId;
+        private final long partSize;
+        private final int partCount;
+        // Filled before the lanes start: ETags of the parts an earlier attempt uploaded
+        private final Map<Integer, String> uploaded = new HashMap<>();
+        private final Map<Integer, CompletedPart> done = new ConcurrentSkipListMap<>();
+        private final Map<Integer, Throwable> failed = new ConcurrentSkipListMap<>();
+        private final AtomicInteger nextPart = new AtomicInteger(1);
+        private FileChannel channel;
+
+        Upload(String bucket, String key, Path file, long size, String uploadId, long partSize) {
+            this.bucket = bucket;
+            this.key = key;
+            this.file = file;
+            this.size = size;
+            this.uploadId = uploadId;
+            // S3 allows at most 10,000 parts
+            this.partSize = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+            this.partCount = (int) Math.max(1, (size + this.partSize - 1) / this.partSize);
+        }
+
+        CompletableFuture<Result> run(int concurrency) {
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.max(1, concurrency)];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = lane();
+            }
+            return CompletableFuture.allOf(lanes)
+                .whenComplete((ignored, error) -> closeChannel())
+                .thenCompose(ignored -> failed.isEmpty() ? complete() : CompletableFuture.completedFuture(
+                    new Result(uploadId, size, partCount, null, List.copyOf(failed.keySet()),
+                        failed.values().iterator().next().getMessage())));
+        }
+
+        private CompletableFuture<Void> lane() {
+            // Parts that need no request are handled in a loop, so a long run of kept parts doesn't recurse
+            while (true) {
+                int number = nextPart.getAndIncrement();
+                if (number > partCount) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                long offset = (number - 1) * partSize;
+                ByteBuffer part;
+                try {
+                    part = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(partSize, size - offset));
+                } catch (IOException e) {
+                    failed.put(number, e);
+                    continue;
+                }
+                String kept = uploaded.get(number);
+                if (kept != null && kept.replace("\"", "").equalsIgnoreCase(md5(part))) {
+                    done.put(number, CompletedPart.builder().partNumber(number).eTag(kept).build());
+                    continue;
+                }
+                return uploadPart(number, part).handle((eTag, error) -> {
+                    if (error != null) {
+                        failed.put(number, error instanceof CompletionException ? error.getCause() : error);
+                    } else {
+                        done.put(number, CompletedPart.builder().partNumber(number).eTag(eTag).build());
+                    }
+                    return null;
+                }).thenCompose(ignored -> lane());
+            }
+        }
+
+        private CompletableFuture<String> uploadPart(int partNumber, ByteBuffer part) {
+            return s3.uploadPart(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                        .partNumber(partNumber).contentLength((long) part.remaining()),
+                    AsyncRequestBody.fromByteBufferUnsafe(part.duplicate()))
+                .thenApply(UploadPartResponse::eTag);
+        }
+
+        private CompletableFuture<Result> complete() {
+            return s3.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(done.values())))
+                .thenApply(response -> new Result(uploadId, size, partCount, response.eTag(), List.of(), null));
+        }
+
+        private void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private static String md5(ByteBuffer part) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(part.duplicate());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
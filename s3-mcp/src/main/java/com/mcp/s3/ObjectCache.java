@@ -0,0 +1,452 @@
+package com.mcp.s3;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mcp.core.Env;
+import software.amazon.awssdk.core.FileTransformerConfiguration;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache of whole objects keyed by bucket and key. Small objects live on the heap; larger ones are
+ * written to a cache directory and read through memory-mapped buffers. Both tiers are LRU and bounded by bytes.
+ * Entries remember their ETag so callers can revalidate them with a conditional GET. Short-lived listing pages
+ * are cached alongside. Settings come from the environment:
+ * <ul>
+ *   <li>{@code S3_CACHE_MEMORY_MB}: heap tier size, 0 to disable (default 64)</li>
+ *   <li>{@code S3_CACHE_MEMORY_OBJECT_KB}: largest object kept on the heap (default 1024)</li>
+ *   <li>{@code S3_CACHE_DISK_MB}: disk tier size, 0 to disable (default 1024); objects over a quarter of it
+ *       are not cached</li>
+ *   <li>{@code S3_CACHE_DIR}: disk tier directory (default {@code s3-mcp-cache} under the temp directory). Each
+ *       process keeps its files in a locked subdirectory of its own, so servers sharing the directory leave each
+ *       other's files alone; subdirectories of processes that have exited are removed at startup.</li>
+ *   <li>{@code S3_CACHE_PREFETCH_MB}: largest object fetched whole in the background once a reader follows a
+ *       cursor into it, 0 to disable (default 64)</li>
+ *   <li>{@code S3_CACHE_FRESH_MS}: how long an entry is served without revalidating (default 0, always
+ *       revalidate)</li>
+ *   <li>{@code S3_LIST_CACHE_TTL_MS}: how long a listing page is reused, 0 to disable (default 5000)</li>
+ * </ul>
+ */
+public class ObjectCache {
+    private static final int MAX_LISTINGS = 256;
+    private static final String FILE_SUFFIX = ".obj";
+    private static final String PART_SUFFIX = ".part";
+    private static final String PROCESS_PREFIX = "process-";
+    private static final String LOCK_FILE = "lock";
+    // A directory this young may belong to a process that has not locked it yet
+    private static final long ORPHAN_MIN_AGE_MILLIS = 60_000;
+
+    /**
+     * A cached object. {@code data} is a read-only view of the whole object.
+     */
+    public record Entry(String eTag, long size, ByteBuffer data, boolean fresh) {
+    }
+
+    private record Stored(String bucket, String eTag, long size, ByteBuffer data, Path file, long validatedAt) {
+        Stored validated(long now) {
+            return new Stored(bucket, eTag, size, data, file, now);
+        }
+    }
+
+    private record Listing(String bucket, String json, long expiresAt) {
+    }
+
+    private final S3AsyncClient s3;
+    private final long memoryBudget;
+    private final long memoryObjectLimit;
+    private final long diskBudget;
+    private final long prefetchLimit;
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final long freshMillis;
+    private final long listingTtlMillis;
+
+    private final LinkedHashMap<String, Stored> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Stored> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> filling = new HashSet<>();
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong listingHits = new AtomicLong();
+    private final AtomicLong listingMisses = new AtomicLong();
+
+    ObjectCache(S3AsyncClient s3, long memoryBudget, long memoryObjectLimit, long diskBudget, long prefetchLimit,
+                Path directory, long freshMillis, long listingTtlMillis) {
+        this.s3 = s3;
+        this.memoryBudget = memoryBudget;
+        this.memoryObjectLimit = Math.min(memoryObjectLimit, memoryBudget);
+        this.diskBudget = diskBudget;
+        this.prefetchLimit = prefetchLimit;
+        this.freshMillis = freshMillis;
+        this.listingTtlMillis = listingTtlMillis;
+        Path own = null;
+        FileChannel lock = null;
+        if (diskBudget > 0) {
+            try {
+                Files.createDirectories(directory);
+                removeOrphans(directory);
+                own = Files.createTempDirectory(directory, PROCESS_PREFIX);
+                // Held for the life of the process; other servers skip this directory while it is locked
+                FileChannel channel = FileChannel.open(own.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+                channel.lock();
+                lock = channel;
+            } catch (IOException e) {
+                System.err.println("Warning: S3 disk cache at " + directory + " unavailable: " + e.getMessage());
+            }
+        }
+        this.directory = own;
+        this.lockChannel = lock;
+    }
+
+    public static ObjectCache fromEnv(S3AsyncClient s3) {
+        String dir = System.getenv("S3_CACHE_DIR");
+        return new ObjectCache(s3,
+            Env.getLong("S3_CACHE_MEMORY_MB", 64) * 1024 * 1024,
+            Env.getLong("S3_CACHE_MEMORY_OBJECT_KB", 1024) * 1024,
+            Env.getLong("S3_CACHE_DISK_MB", 1024) * 1024 * 1024,
+            Env.getLong("S3_CACHE_PREFETCH_MB", 64) * 1024 * 1024,
+            dir == null || dir.isBlank() ? Path.of(System.getProperty("java.io.tmpdir"), "s3-mcp-cache") : Path.of(dir),
+            Env.getLong("S3_CACHE_FRESH_MS", 0),
+            Env.getLong("S3_LIST_CACHE_TTL_MS", 5000));
+    }
+
+    /**
+     * Returns the cached object, or null. {@code fresh} entries may be served without revalidating; the caller
+     * reports the outcome of a revalidation with {@link #notModified} or {@link #changed}.
+     */
+    public synchronized Entry lookup(String bucket, String key) {
+        String id = id(bucket, key);
+        Stored stored = memory.get(id);
+        if (stored == null) {
+            stored = disk.get(id);
+        }
+        if (stored == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        boolean fresh = System.currentTimeMillis() - stored.validatedAt() < freshMillis;
+        if (fresh) {
+            countHit(stored);
+        } else {
+            revalidations.incrementAndGet();
+        }
+        return new Entry(stored.eTag(), stored.size(), stored.data().asReadOnlyBuffer(), fresh);
+    }
+
+    /**
+     * Records that S3 answered 304 for {@code eTag}, so the entry is good for another freshness window.
+     */
+    public synchronized void notModified(String bucket, String key, String eTag) {
+        String id = id(bucket, key);
+        notModified.incrementAndGet();
+        long now = System.currentTimeMillis();
+        Stored stored = memory.get(id);
+        if (stored != null && stored.eTag().equals(eTag)) {
+            memory.put(id, stored.validated(now));
+            memoryHits.incrementAndGet();
+            return;
+        }
+        stored = disk.get(id);
+        if (stored != null && stored.eTag().equals(eTag)) {
+            disk.put(id, stored.validated(now));
+            diskHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Caches an object that was read in full.
+     */
+    public synchronized void put(String bucket, String key, String eTag, byte[] content) {
+        if (content.length == 0 || content.length > memoryObjectLimit) {
+            return;
+        }
+        String id = id(bucket, key);
+        removeLocked(id);
+        memory.put(id, new Stored(bucket, eTag, content.length, ByteBuffer.wrap(content), null,
+            System.currentTimeMillis()));
+        memoryBytes += content.length;
+        evictMemory();
+    }
+
+    /**
+     * Downloads the whole object in the background, so the rest of a sequential read comes from the cache. Callers
+     * only ask once a reader has followed a cursor; a single ranged read never costs the whole object. Objects over
+     * the prefetch limit are left alone. The download is pinned to {@code eTag}; if the object changes meanwhile
+     * nothing is cached.
+     */
+    public void fill(String bucket, String key, String eTag, long size) {
+        String id = id(bucket, key);
+        boolean toMemory = size <= memoryObjectLimit;
+        // A single mapping is limited to 2 GiB
+        if (size == 0 || size > prefetchLimit
+            || (!toMemory && (lockChannel == null || size > Math.min(diskBudget / 4, Integer.MAX_VALUE)))) {
+            return;
+        }
+        synchronized (this) {
+            Stored stored = memory.containsKey(id) ? memory.get(id) : disk.get(id);
+            if ((stored != null && stored.eTag().equals(eTag)) || !filling.add(id)) {
+                return;
+            }
+        }
+        if (toMemory) {
+            s3.getObject(request -> request.bucket(bucket).key(key).ifMatch(eTag), AsyncResponseTransformer.toBytes())
+                .whenComplete((object, error) -> {
+                    if (error == null) {
+                        put(bucket, key, object.response().eTag(), object.asByteArray());
+                    }
+                    filled(id);
+                });
+            return;
+        }
+        // A name of its own per fill, so neither a replaced version nor another writer shares the path
+        Path partial;
+        try {
+            partial = Files.createTempFile(directory, id + "-", PART_SUFFIX);
+        } catch (IOException e) {
+            System.err.println("Failed to cache s3://" + bucket + "/" + key + ": " + e.getMessage());
+            filled(id);
+            return;
+        }
+        String name = partial.getFileName().toString();
+        Path file = directory.resolve(name.substring(0, name.length() - PART_SUFFIX.length()) + FILE_SUFFIX);
+        s3.getObject(request -> request.bucket(bucket).key(key).ifMatch(eTag),
+                AsyncResponseTransformer.toFile(partial, FileTransformerConfiguration.defaultCreateOrReplaceExisting()))
+            .whenComplete((response, error) -> {
+                try {
+                    if (error == null) {
+                        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+                        putFile(bucket, id, response.eTag(), file);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Failed to cache s3://" + bucket + "/" + key + ": " + e.getMessage());
+                } finally {
+                    deleteFile(partial);
+                    filled(id);
+                }
+            });
+    }
+
+    private synchronized void filled(String id) {
+        filling.remove(id);
+    }
+
+    private synchronized void putFile(String bucket, String id, String eTag, Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        removeLocked(id);
+        disk.put(id, new Stored(bucket, eTag, data.capacity(), data, file, System.currentTimeMillis()));
+        diskBytes += data.capacity();
+        evictDisk();
+    }
+
+    /**
+     * Records that revalidation found a new version; the caller serves the fresh response instead.
+     */
+    public synchronized void changed(String bucket, String key) {
+        misses.incrementAndGet();
+        removeLocked(id(bucket, key));
+    }
+
+    public synchronized void invalidate(String bucket, String key) {
+        removeLocked(id(bucket, key));
+        invalidateListings(bucket);
+    }
+
+    /**
+     * Drops listings and objects of {@code bucket}, after writes that may touch many keys.
+     */
+    public synchronized void invalidateBucket(String bucket) {
+        for (Iterator<Map.Entry<String, Stored>> it = memory.entrySet().iterator(); it.hasNext(); ) {
+            Stored stored = it.next().getValue();
+            if (stored.bucket().equals(bucket)) {
+                memoryBytes -= stored.size();
+                it.remove();
+            }
+        }
+        for (Iterator<Map.Entry<String, Stored>> it = disk.entrySet().iterator(); it.hasNext(); ) {
+            Stored stored = it.next().getValue();
+            if (stored.bucket().equals(bucket)) {
+                diskBytes -= stored.size();
+                deleteFile(stored.file());
+                it.remove();
+            }
+        }
+        invalidateListings(bucket);
+    }
+
+    public synchronized String listing(String key) {
+        if (listingTtlMillis <= 0) {
+            return null;
+        }
+        Listing listing = listings.get(key);
+        if (listing == null || listing.expiresAt() < System.currentTimeMillis()) {
+            listings.remove(key);
+            listingMisses.incrementAndGet();
+            return null;
+        }
+        listingHits.incrementAndGet();
+        return listing.json();
+    }
+
+    public synchronized void putListing(String bucket, String key, String json) {
+        if (listingTtlMillis <= 0) {
+            return;
+        }
+        listings.put(key, new Listing(bucket, json, System.currentTimeMillis() + listingTtlMillis));
+        if (listings.size() > MAX_LISTINGS) {
+            Iterator<String> eldest = listings.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    public synchronized ObjectNode stats(ObjectMapper mapper) {
+        ObjectNode stats = mapper.createObjectNode();
+        ObjectNode memoryStats = stats.putObject("memory");
+        memoryStats.put("entries", memory.size());
+        memoryStats.put("bytes", memoryBytes);
+        memoryStats.put("capacity", memoryBudget);
+        memoryStats.put("hits", memoryHits.get());
+        ObjectNode diskStats = stats.putObject("disk");
+        diskStats.put("entries", disk.size());
+        diskStats.put("bytes", diskBytes);
+        diskStats.put("capacity", diskBudget);
+        diskStats.put("hits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("revalidations", revalidations.get());
+        stats.put("notModified", notModified.get());
+        ObjectNode listingStats = stats.putObject("listings");
+        listingStats.put("entries", listings.size());
+        listingStats.put("hits", listingHits.get());
+        listingStats.put("misses", listingMisses.get());
+        return stats;
+    }
+
+    private void countHit(Stored stored) {
+        (stored.file() == null ? memoryHits : diskHits).incrementAndGet();
+    }
+
+    private void invalidateListings(String bucket) {
+        listings.values().removeIf(listing -> listing.bucket().equals(bucket));
+    }
+
+    private void removeLocked(String id) {
+        Stored stored = memory.remove(id);
+        if (stored != null) {
+            memoryBytes -= stored.size();
+        }
+        stored = disk.remove(id);
+        if (stored != null) {
+            diskBytes -= stored.size();
+            deleteFile(stored.file());
+        }
+    }
+
+    private void evictMemory() {
+        Iterator<Stored> eldest = memory.values().iterator();
+        while (memoryBytes > memoryBudget && eldest.hasNext()) {
+            memoryBytes -= eldest.next().size();
+            eldest.remove();
+        }
+    }
+
+    private void evictDisk() {
+        Iterator<Stored> eldest = disk.values().iterator();
+        while (diskBytes > diskBudget && eldest.hasNext()) {
+            Stored stored = eldest.next();
+            diskBytes -= stored.size();
+            deleteFile(stored.file());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes the directories of processes that have exited: the index lives in memory, so their files are
+     * unreachable. A directory whose lock can be taken has no live owner.
+     */
+    private static void removeOrphans(Path base) throws IOException {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(base, PROCESS_PREFIX + "*")) {
+            for (Path dir : dirs) {
+                if (!Files.isDirectory(dir)
+                    || Files.getLastModifiedTime(dir).toMillis() > System.currentTimeMillis() - ORPHAN_MIN_AGE_MILLIS) {
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE);
+                     FileLock lock = channel.tryLock()) {
+                    if (lock == null) {
+                        continue;
+                    }
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                        for (Path file : files) {
+                            if (!file.getFileName().toString().equals(LOCK_FILE)) {
+                                Files.deleteIfExists(file);
+                            }
+                        }
+                    }
+                } catch (OverlappingFileLockException e) {
+                    continue; // another cache in this process
+                } catch (IOException e) {
+                    System.err.println("Failed to remove stale cache directory " + dir + ": " + e.getMessage());
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(dir.resolve(LOCK_FILE));
+                    Files.deleteIfExists(dir);
+                } catch (IOException e) {
+                    System.err.println("Failed to remove stale cache directory " + dir + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            // Readers holding the mapping keep their view; the space is freed when it is unmapped
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete cache file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static String id(String bucket, String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest((bucket + "/" + key).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.mcp.s3;
+
+import com.mcp.core.Env;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.crt.AwsCrtAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.regions.providers.DefaultAwsRegionProviderChain;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Settings for the shared {@link S3AsyncClient}, read from the environment:
+ * <ul>
+ *   <li>{@code S3_HTTP_CLIENT}: {@code netty} (default) or {@code crt}</li>
+ *   <li>{@code S3_MAX_CONNECTIONS}: connection pool size, i.e. requests in flight (default 64)</li>
+ *   <li>{@code S3_MAX_PENDING_ACQUIRES}: requests allowed to wait for a connection (default 10000, netty only)</li>
+ *   <li>{@code S3_CONNECT_TIMEOUT_MS} (default 10000) and {@code S3_READ_TIMEOUT_MS} (default 30000, netty only)</li>
+ *   <li>{@code S3_API_CALL_TIMEOUT_MS}: per-attempt timeout, 0 for none (default 0)</li>
+ *   <li>{@code S3_MAX_RETRIES} (default 3) and {@code S3_RETRY_MODE}: {@code standard} (default), {@code adaptive}
+ *       or {@code legacy}</li>
+ *   <li>{@code S3_ENDPOINT_URL} and {@code S3_FORCE_PATH_STYLE} for S3-compatible stores</li>
+ * </ul>
+ */
+public record S3ClientConfig(String httpClient, int maxConnections, int maxPendingAcquires, Duration connectTimeout,
+                             Duration readTimeout, Duration apiCallAttemptTimeout, int maxRetries, RetryMode retryMode,
+                             URI endpoint, boolean forcePathStyle) {
+
+    public static S3ClientConfig fromEnv() {
+        String endpoint = env("S3_ENDPOINT_URL", "");
+        return new S3ClientConfig(
+            env("S3_HTTP_CLIENT", "netty").toLowerCase(Locale.ROOT),
+            Env.getInt("S3_MAX_CONNECTIONS", 64),
+            Env.getInt("S3_MAX_PENDING_ACQUIRES", 10_000),
+            Duration.ofMillis(Env.getInt("S3_CONNECT_TIMEOUT_MS", 10_000)),
+            Duration.ofMillis(Env.getInt("S3_READ_TIMEOUT_MS", 30_000)),
+            Duration.ofMillis(Env.getInt("S3_API_CALL_TIMEOUT_MS", 0)),
+            Env.getInt("S3_MAX_RETRIES", 3),
+            RetryMode.valueOf(env("S3_RETRY_MODE", "standard").toUpperCase(Locale.ROOT)),
+            endpoint.isEmpty() ? null : URI.create(endpoint),
+            Boolean.parseBoolean(env("S3_FORCE_PATH_STYLE", "false")));
+    }
+
+    public S3AsyncClient createClient() {
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+            .httpClient(createHttpClient())
+            .region(region())
+            .forcePathStyle(forcePathStyle)
+            .overrideConfiguration(overrides());
+        if (endpoint != null) {
+            builder.endpointOverride(endpoint);
+        }
+        return builder.build();
+    }
+
+    private SdkAsyncHttpClient createHttpClient() {
+        return switch (httpClient) {
+            case "crt" -> AwsCrtAsyncHttpClient.builder()
+                .maxConcurrency(maxConnections)
+                .connectionTimeout(connectTimeout)
+                .build();
+            case "netty" -> NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConnections)
+                .maxPendingConnectionAcquires(maxPendingAcquires)
+                .connectionTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .build();
+            default -> throw new IllegalArgumentException("Unknown S3_HTTP_CLIENT '" + httpClient + "' (netty or crt)");
+        };
+    }
+
+    private ClientOverrideConfiguration overrides() {
+        ClientOverrideConfiguration.Builder overrides = ClientOverrideConfiguration.builder()
+            .retryPolicy(RetryPolicy.builder(retryMode).numRetries(maxRetries).build());
+        if (!apiCallAttemptTimeout.isZero()) {
+            overrides.apiCallAttemptTimeout(apiCallAttemptTimeout);
+        }
+        return overrides.build();
+    }
+
+    private static Region region() {
+        try {
+            return new DefaultAwsRegionProviderChain().getRegion();
+        } catch (Exception e) {
+            System.err.println("Warning: Using default region us-east-1. Set AWS_REGION environment variable for your preferred region.");
+            return Region.US_EAST_1;
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+}
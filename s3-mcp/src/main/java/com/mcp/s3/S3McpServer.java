@@ -1,35 +1,63 @@
 package com.mcp.s3;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
+import com.mcp.core.JsonRpcDispatcher;
+import com.mcp.core.JsonRpcRequest;
+import com.mcp.core.JsonRpcWriter;
+import com.mcp.core.ToolRegistry;
+import software.amazon.awssdk.core.FileTransformerConfiguration;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.*;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.mcp.core.McpMessages.createParam;
+import static com.mcp.core.McpMessages.createProgress;
+import static com.mcp.core.McpMessages.createTool;
+import static com.mcp.core.McpMessages.createToolResponse;
 
 public class S3McpServer {
-    private final S3Client s3Client;
+    private static final int DEFAULT_LIST_PAGE = 1000;
+    private static final int MAX_LIST_PAGE = 10_000;
+    private static final int S3_MAX_KEYS = 1000;
+    private static final int DEFAULT_CHUNK = 1024 * 1024;
+    private static final int MAX_CHUNK = 16 * 1024 * 1024;
+
+    private final S3AsyncClient s3Client;
+    private final MultipartUploader uploader;
+    private final BulkDeleter deleter;
+    private final ObjectCache cache;
     private final ObjectMapper mapper;
+    private final ToolRegistry toolRegistry;
+    private JsonRpcWriter writer;
 
     public S3McpServer() {
-        S3Client client;
-        try {
-            // Try to create S3 client with default configuration
-            client = S3Client.create();
-        } catch (Exception e) {
-            // If default fails, try with us-east-1 as fallback
-            System.err.println("Warning: Using default region us-east-1. Set AWS_REGION environment variable for your preferred region.");
-            client = S3Client.builder()
-                .region(Region.US_EAST_1)
-                .build();
-        }
-        this.s3Client = client;
+        // One pooled, non-blocking client for every tool; see S3ClientConfig for the S3_* settings
+        this.s3Client = S3ClientConfig.fromEnv().createClient();
+        this.uploader = new MultipartUploader(s3Client);
+        this.deleter = new BulkDeleter(s3Client);
+        this.cache = ObjectCache.fromEnv(s3Client);
         this.mapper = new ObjectMapper();
+        this.toolRegistry = new ToolRegistry(mapper, "s3-mcp-server", "1.0.0");
+        this.toolRegistry.registerAll(createTools());
         
         // Log initialization status
         System.err.println("S3 MCP Server initialized successfully");
@@ -41,285 +69,533 @@ public class S3McpServer {
 
     private void run() {
         System.err.println("Starting MCP server main loop...");
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.err.println("Received request: " + line);
-                try {
-                    JsonNode request = mapper.readTree(line);
-                    JsonNode response = handleRequest(request);
-                    
-                    // Only send response if it's not null (notifications don't need responses)
-                    if (response != null) {
-                        String responseStr = mapper.writeValueAsString(response);
-                        System.err.println("Sending response: " + responseStr);
-                        System.out.println(responseStr);
-                        System.out.flush();
-                    }
-                } catch (Exception e) {
-                    System.err.println("Parse error: " + e.getMessage());
-                    e.printStackTrace();
-                    ObjectNode errorResponse = createErrorResponse(null, -32700, "Parse error: " + e.getMessage());
-                    System.out.println(mapper.writeValueAsString(errorResponse));
-                    System.out.flush();
-                }
-            }
+        try {
+            writer = new JsonRpcWriter(System.out, mapper);
+            JsonRpcDispatcher dispatcher = JsonRpcDispatcher.forAsyncHandler(mapper, this::handleRequest,
+                writer, toolRegistry, JsonRpcDispatcher.maxInFlightFromEnv());
+            dispatcher.run(System.in);
             System.err.println("Input stream closed, exiting...");
         } catch (Exception e) {
             System.err.println("Fatal error in main loop: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            s3Client.close();
         }
     }
 
-    private JsonNode handleRequest(JsonNode request) {
-        String method = request.get("method").asText();
-        JsonNode id = request.get("id");
-        
-        try {
-            JsonNode result = switch (method) {
-                case "initialize" -> handleInitialize();
-                case "initialized" -> handleInitialized();
-                case "tools/list" -> handleToolsList();
-                case "tools/call" -> handleToolCall(request.get("params"));
-                default -> throw new RuntimeException("Unknown method: " + method);
-            };
-            
-            return result != null ? createSuccessResponse(id, result) : null;
-        } catch (Exception e) {
-            return createErrorResponse(id, -32603, "Internal error: " + e.getMessage());
-        }
-    }
-
-    private JsonNode handleInitialize() {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("protocolVersion", "2024-11-05");
-        
-        ObjectNode capabilities = mapper.createObjectNode();
-        ObjectNode tools = mapper.createObjectNode();
-        tools.put("listChanged", false);
-        capabilities.set("tools", tools);
-        response.set("capabilities", capabilities);
-        
-        ObjectNode serverInfo = mapper.createObjectNode();
-        serverInfo.put("name", "s3-mcp-server");
-        serverInfo.put("version", "1.0.0");
-        response.set("serverInfo", serverInfo);
-        
-        System.err.println("MCP Server initialized successfully");
-        return response;
+    private CompletableFuture<JsonNode> handleRequest(JsonRpcRequest request) {
+        return switch (request.method()) {
+            case "initialized" -> handleInitialized();
+            case "tools/call" -> handleToolCall(request.params());
+            default -> throw new RuntimeException("Unknown method: " + request.method());
+        };
     }
 
-    private JsonNode handleInitialized() {
+    private CompletableFuture<JsonNode> handleInitialized() {
         // This is a notification, no response needed
         System.err.println("MCP Server initialization completed");
-        return null;
+        return CompletableFuture.completedFuture(null);
     }
 
-    private JsonNode handleToolsList() {
+    private ArrayNode createTools() {
         ArrayNode tools = mapper.createArrayNode();
         
         tools.add(createTool("health_check", "Check AWS credentials and S3 connectivity"));
         tools.add(createTool("list_buckets", "List all S3 buckets"));
-        tools.add(createTool("list_objects", "List objects in a bucket", 
-            createParam("bucket", "string", "Bucket name", true)));
-        tools.add(createTool("get_object", "Get object content", 
+        tools.add(createTool("cache_stats", "Show object and listing cache hits, misses and sizes"));
+        tools.add(createTool("list_objects", "List objects in a bucket, one page per call",
             createParam("bucket", "string", "Bucket name", true),
-            createParam("key", "string", "Object key", true)));
+            createParam("prefix", "string", "Only keys starting with this prefix", false),
+            createParam("delimiter", "string", "Group keys sharing a prefix up to this delimiter (e.g. /)", false),
+            createParam("max_keys", "number", "Maximum keys per page (default 1000, max " + MAX_LIST_PAGE + ")", false),
+            createParam("cursor", "string", "Cursor from a previous page to continue the listing", false)));
+        tools.add(createTool("get_object", "Get object content in chunks, or save it to a local file",
+            createParam("bucket", "string", "Bucket name", true),
+            createParam("key", "string", "Object key", true),
+            createParam("range", "string", "Byte range, e.g. bytes=0-1023, 1024- or -500", false),
+            createParam("offset", "number", "First byte to read", false),
+            createParam("length", "number", "Bytes to read per chunk (default 1 MiB, max 16 MiB)", false),
+            createParam("cursor", "string", "Cursor from a previous chunk to read the next one", false),
+            createParam("output_path", "string", "Stream the object (or range) to this local file instead", false)));
         tools.add(createTool("put_object", "Upload object", 
             createParam("bucket", "string", "Bucket name", true),
             createParam("key", "string", "Object key", true),
             createParam("content", "string", "Object content", true)));
+        tools.add(createTool("upload_file", "Upload a local file with parallel multipart upload",
+            createParam("bucket", "string", "Bucket name", true),
+            createParam("key", "string", "Object key", true),
+            createParam("path", "string", "Local file to upload", true),
+            createParam("part_size_mb", "number", "Part size in MiB (default 8, min 5)", false),
+            createParam("concurrency", "number", "Parts uploaded at once (default 8)", false),
+            createParam("upload_id", "string", "Upload id of an incomplete upload to resume", false)));
         tools.add(createTool("delete_object", "Delete object", 
             createParam("bucket", "string", "Bucket name", true),
             createParam("key", "string", "Object key", true)));
+        tools.add(createTool("delete_objects", "Delete many objects, by key list or by prefix",
+            createParam("bucket", "string", "Bucket name", true),
+            createParam("keys", "array", "Keys to delete", false),
+            createParam("prefix", "string", "Delete every key under this prefix", false),
+            createParam("concurrency", "number", "Delete requests (1000 keys each) in flight (default 4)", false)));
         
-        ObjectNode response = mapper.createObjectNode();
-        response.set("tools", tools);
-        return response;
+        return tools;
     }
 
-    private JsonNode handleToolCall(JsonNode params) {
+    private CompletableFuture<JsonNode> handleToolCall(JsonNode params) {
         String name = params.get("name").asText();
         JsonNode arguments = params.get("arguments");
         
         return switch (name) {
             case "health_check" -> healthCheck();
             case "list_buckets" -> listBuckets();
-            case "list_objects" -> listObjects(arguments.get("bucket").asText());
-            case "get_object" -> getObject(arguments.get("bucket").asText(), arguments.get("key").asText());
+            case "cache_stats" -> CompletableFuture.completedFuture(
+                createToolResponse("text", cache.stats(mapper).toString()));
+            case "list_objects" -> listObjects(arguments.get("bucket").asText(),
+                optionalText(arguments, "prefix"), optionalText(arguments, "delimiter"),
+                arguments.has("max_keys") ? arguments.get("max_keys").asInt() : DEFAULT_LIST_PAGE,
+                optionalText(arguments, "cursor"));
+            case "get_object" -> getObject(arguments.get("bucket").asText(), arguments.get("key").asText(), arguments);
             case "put_object" -> putObject(arguments.get("bucket").asText(), 
                 arguments.get("key").asText(), arguments.get("content").asText());
+            case "upload_file" -> uploadFile(arguments.get("bucket").asText(), arguments.get("key").asText(),
+                arguments.get("path").asText(),
+                arguments.has("part_size_mb") ? arguments.get("part_size_mb").asLong() * 1024 * 1024 : MultipartUploader.DEFAULT_PART_SIZE,
+                arguments.has("concurrency") ? arguments.get("concurrency").asInt() : MultipartUploader.DEFAULT_CONCURRENCY,
+                optionalText(arguments, "upload_id"));
             case "delete_object" -> deleteObject(arguments.get("bucket").asText(), arguments.get("key").asText());
+            case "delete_objects" -> deleteObjects(arguments.get("bucket").asText(), arguments.get("keys"),
+                optionalText(arguments, "prefix"),
+                arguments.has("concurrency") ? arguments.get("concurrency").asInt() : BulkDeleter.DEFAULT_CONCURRENCY,
+                params.path("_meta").get("progressToken"));
             default -> throw new RuntimeException("Unknown tool: " + name);
         };
     }
 
-    private JsonNode healthCheck() {
-        try {
-            // Try to list buckets as a connectivity test
-            s3Client.listBuckets();
-            return createToolResponse("text", "✅ AWS S3 connectivity successful! Credentials are properly configured.");
-        } catch (Exception e) {
+    private CompletableFuture<JsonNode> healthCheck() {
+        // Try to list buckets as a connectivity test
+        return s3Client.listBuckets().handle((response, error) -> {
+            if (error == null) {
+                return createToolResponse("text", "✅ AWS S3 connectivity successful! Credentials are properly configured.");
+            }
             String errorMsg = "❌ AWS S3 connectivity failed. Please check your AWS credentials and configuration.\n\n" +
-                "Error: " + e.getMessage() + "\n\n" +
+                "Error: " + cause(error).getMessage() + "\n\n" +
                 "To fix this:\n" +
                 "1. Configure AWS credentials using 'aws configure'\n" +
                 "2. Or set environment variables: AWS_ACCESS_KEY_ID, AWS_SECRET_ACCESS_KEY\n" +
                 "3. Or use IAM roles if running on EC2\n" +
                 "4. Ensure AWS_REGION is set (currently: " + System.getenv("AWS_REGION") + ")";
             return createToolResponse("text", errorMsg);
-        }
+        });
     }
 
-    private JsonNode listBuckets() {
-        try {
-            List<Bucket> buckets = s3Client.listBuckets().buckets();
+    private CompletableFuture<JsonNode> listBuckets() {
+        return attempt(() -> s3Client.listBuckets().thenApply(response -> {
             ArrayNode content = mapper.createArrayNode();
             
-            for (Bucket bucket : buckets) {
+            for (Bucket bucket : response.buckets()) {
                 ObjectNode bucketNode = mapper.createObjectNode();
                 bucketNode.put("name", bucket.name());
                 bucketNode.put("creationDate", bucket.creationDate().toString());
                 content.add(bucketNode);
             }
             
-            return createToolResponse("text", mapper.writeValueAsString(content));
-        } catch (Exception e) {
-            String errorMsg = "Failed to list S3 buckets. Please ensure AWS credentials are configured. Error: " + e.getMessage();
-            return createToolResponse("text", errorMsg);
+            return createToolResponse("text", content.toString());
+        }), "Failed to list S3 buckets. Please ensure AWS credentials are configured.");
+    }
+
+    /**
+     * Lists one page of up to {@code maxKeys} entries and returns a cursor for the next. S3 pages are requested
+     * one after another without blocking a thread, so memory is bounded by the page size, not the bucket.
+     */
+    private CompletableFuture<JsonNode> listObjects(String bucketName, String prefix, String delimiter, int maxKeys,
+                                                    String cursor) {
+        return attempt(() -> {
+            int limit = Math.max(1, Math.min(maxKeys, MAX_LIST_PAGE));
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .delimiter(delimiter)
+                .maxKeys(Math.min(limit, S3_MAX_KEYS))
+                .continuationToken(cursor)
+                .build();
+            String cacheKey = String.join("\u0000", bucketName, String.valueOf(prefix), String.valueOf(delimiter),
+                Integer.toString(limit), String.valueOf(cursor));
+            String cached = cache.listing(cacheKey);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(createToolResponse("text", cached));
+            }
+            return listPages(request, limit, new ArrayList<>(), 0).thenApply(pages -> {
+                String json = writeListing(pages, delimiter != null);
+                cache.putListing(bucketName, cacheKey, json);
+                return createToolResponse("text", json);
+            });
+        }, "Failed to list objects in bucket '" + bucketName + "'.");
+    }
+
+    private CompletableFuture<List<ListObjectsV2Response>> listPages(ListObjectsV2Request request, int limit,
+                                                                     List<ListObjectsV2Response> pages, int count) {
+        return s3Client.listObjectsV2(request).thenCompose(page -> {
+            pages.add(page);
+            int total = count + page.keyCount();
+            String nextCursor = page.nextContinuationToken();
+            if (nextCursor == null || total >= limit) {
+                return CompletableFuture.completedFuture(pages);
+            }
+            // The last page asks for no more than the limit leaves, so the continuation token resumes exactly
+            return listPages(request.toBuilder()
+                .continuationToken(nextCursor)
+                .maxKeys(Math.min(limit - total, S3_MAX_KEYS))
+                .build(), limit, pages, total);
+        });
+    }
+
+    private String writeListing(List<ListObjectsV2Response> pages, boolean withPrefixes) {
+        StringWriter json = new StringWriter();
+        int count = 0;
+        String nextCursor = pages.get(pages.size() - 1).nextContinuationToken();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("objects");
+            for (ListObjectsV2Response page : pages) {
+                for (S3Object obj : page.contents()) {
+                    generator.writeStartObject();
+                    generator.writeStringField("key", obj.key());
+                    generator.writeNumberField("size", obj.size());
+                    generator.writeStringField("lastModified", obj.lastModified().toString());
+                    generator.writeEndObject();
+                }
+                count += page.keyCount();
+            }
+            generator.writeEndArray();
+            if (withPrefixes) {
+                generator.writeArrayFieldStart("prefixes");
+                for (ListObjectsV2Response page : pages) {
+                    for (CommonPrefix commonPrefix : page.commonPrefixes()) {
+                        generator.writeString(commonPrefix.prefix());
+                    }
+                }
+                generator.writeEndArray();
+            }
+            generator.writeNumberField("count", count);
+            generator.writeBooleanField("truncated", nextCursor != null);
+            if (nextCursor != null) {
+                generator.writeStringField("cursor", nextCursor);
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return json.toString();
     }
 
-    private JsonNode listObjects(String bucketName) {
-        try {
-            ListObjectsV2Response response = s3Client.listObjectsV2(
-                ListObjectsV2Request.builder().bucket(bucketName).build());
+    /**
+     * Reads one bounded chunk of an object through a byte-range GET. When more remains, a second content block
+     * carries the range and a cursor (next offset, range end and ETag) so the client can keep reading; the ETag
+     * is sent as If-Match so a cursor never mixes two versions of an object.
+     */
+    private CompletableFuture<JsonNode> getObject(String bucketName, String key, JsonNode arguments) {
+        return attempt(() -> {
+            long offset = arguments.has("offset") ? arguments.get("offset").asLong() : 0;
+            Long end = null;
+            String ifMatch = null;
+            String cursor = optionalText(arguments, "cursor");
+            String range = optionalText(arguments, "range");
+            if (cursor != null) {
+                String[] parts = cursor.split(":", 3);
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Invalid cursor: " + cursor);
+                }
+                offset = Long.parseLong(parts[0]);
+                end = parts[1].isEmpty() ? null : Long.parseLong(parts[1]);
+                ifMatch = "\"" + parts[2] + "\"";
+            } else if (range != null) {
+                String spec = range.startsWith("bytes=") ? range.substring(6) : range;
+                int dash = spec.indexOf('-');
+                if (dash < 0 || spec.indexOf(',') >= 0) {
+                    throw new IllegalArgumentException("Unsupported range: " + range);
+                }
+                if (dash == 0) {
+                    return getObjectSuffix(bucketName, key, Long.parseLong(spec.substring(1)), arguments);
+                }
+                offset = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? null : Long.parseLong(spec.substring(dash + 1));
+            }
             
-            ArrayNode content = mapper.createArrayNode();
-            for (S3Object obj : response.contents()) {
-                ObjectNode objNode = mapper.createObjectNode();
-                objNode.put("key", obj.key());
-                objNode.put("size", obj.size());
-                objNode.put("lastModified", obj.lastModified().toString());
-                content.add(objNode);
+            String outputPath = optionalText(arguments, "output_path");
+            if (outputPath != null) {
+                boolean whole = offset == 0 && end == null && !arguments.has("length");
+                if (!whole && end == null && arguments.has("length")) {
+                    end = offset + arguments.get("length").asLong() - 1;
+                }
+                String byteRange = whole ? null : "bytes=" + offset + "-" + (end == null ? "" : end);
+                return saveObject(bucketName, key, byteRange, ifMatch, Path.of(outputPath));
             }
             
-            return createToolResponse("text", mapper.writeValueAsString(content));
-        } catch (Exception e) {
-            String errorMsg = "Failed to list objects in bucket '" + bucketName + "'. Error: " + e.getMessage();
-            return createToolResponse("text", errorMsg);
+            long length = arguments.has("length") ? arguments.get("length").asLong() : DEFAULT_CHUNK;
+            length = Math.max(1, Math.min(length, MAX_CHUNK));
+            long last = end == null ? offset + length - 1 : Math.min(end, offset + length - 1);
+            long first = offset;
+            Long rangeEnd = end;
+            
+            ObjectCache.Entry cached = cache.lookup(bucketName, key);
+            if (cached != null && (offset >= cached.size() || (ifMatch != null && !ifMatch.equals(cached.eTag())))) {
+                cached = null;
+            }
+            if (cached != null && cached.fresh()) {
+                return CompletableFuture.completedFuture(cachedChunk(cached, first, last, rangeEnd));
+            }
+            // With a cached copy this is a conditional GET: 304 means serve the copy, anything else is a new version.
+            // The copy already matches the cursor's ETag, so If-None-Match alone also covers If-Match.
+            ObjectCache.Entry revalidating = cached;
+            GetObjectRequest request = GetObjectRequest.builder().bucket(bucketName).key(key)
+                .range("bytes=" + offset + "-" + last)
+                .ifMatch(cached == null ? ifMatch : null)
+                .ifNoneMatch(cached == null ? null : cached.eTag()).build();
+            
+            boolean resumed = cursor != null;
+            return s3Client.getObject(request, AsyncResponseTransformer.toBytes()).handle((object, error) -> {
+                if (error == null) {
+                    if (revalidating != null) {
+                        cache.changed(bucketName, key);
+                        if (resumed) {
+                            throw new IllegalStateException("Object changed since the cursor was issued; read it again without a cursor");
+                        }
+                    }
+                    return remember(bucketName, key, object, first, rangeEnd, resumed);
+                }
+                if (revalidating != null && cause(error) instanceof S3Exception e && e.statusCode() == 304) {
+                    cache.notModified(bucketName, key, revalidating.eTag());
+                    return cachedChunk(revalidating, first, last, rangeEnd);
+                }
+                // S3 rejects any range on an empty object
+                if (cause(error) instanceof S3Exception e && e.statusCode() == 416 && first == 0 && !resumed) {
+                    return createToolResponse("text", "");
+                }
+                throw new CompletionException(cause(error));
+            });
+        }, "Failed to get object '" + key + "' from bucket '" + bucketName + "'.");
+    }
+
+    /**
+     * Builds the chunk response and caches the object: directly when the chunk was all of it, otherwise by
+     * fetching the rest in the background once the caller is following cursors through it.
+     */
+    private JsonNode remember(String bucketName, String key, ResponseBytes<GetObjectResponse> object, long offset,
+                              Long end, boolean resumed) {
+        byte[] bytes = object.asByteArrayUnsafe();
+        GetObjectResponse response = object.response();
+        long total = totalSize(response, offset + bytes.length);
+        if (offset == 0 && bytes.length == total) {
+            cache.put(bucketName, key, response.eTag(), bytes);
+        } else if (resumed) {
+            cache.fill(bucketName, key, response.eTag(), total);
         }
+        return chunk(bytes, offset, end, total, response.eTag());
     }
 
-    private JsonNode getObject(String bucketName, String key) {
-        try (var responseStream = s3Client.getObject(
-            GetObjectRequest.builder().bucket(bucketName).key(key).build())) {
-            
-            String content = new String(responseStream.readAllBytes());
+    private JsonNode cachedChunk(ObjectCache.Entry cached, long offset, long last, Long end) {
+        byte[] bytes = new byte[(int) (Math.min(last + 1, cached.size()) - offset)];
+        cached.data().get((int) offset, bytes);
+        return chunk(bytes, offset, end, cached.size(), cached.eTag());
+    }
+
+    private JsonNode chunk(byte[] bytes, long offset, Long end, long total, String eTag) {
+        long stop = end == null ? total : Math.min(end + 1, total);
+        int returned = bytes.length;
+        if (offset + returned < stop) {
+            // Don't split a UTF-8 sequence across chunks; the next chunk starts at its lead byte
+            returned = utf8Boundary(bytes);
+        }
+        String content = new String(bytes, 0, returned, StandardCharsets.UTF_8);
+        if (offset == 0 && returned == total) {
             return createToolResponse("text", content);
-        } catch (Exception e) {
-            String errorMsg = "Failed to get object '" + key + "' from bucket '" + bucketName + "'. Error: " + e.getMessage();
-            return createToolResponse("text", errorMsg);
         }
+        
+        ObjectNode chunk = mapper.createObjectNode();
+        chunk.put("range", "bytes " + offset + "-" + (offset + returned - 1) + "/" + total);
+        chunk.put("size", total);
+        chunk.put("etag", eTag);
+        if (offset + returned < stop) {
+            chunk.put("cursor", (offset + returned) + ":" + (end == null ? "" : end) + ":"
+                + eTag.replace("\"", ""));
+        }
+        return withChunkInfo(createToolResponse("text", content), chunk);
     }
 
-    private JsonNode putObject(String bucketName, String key, String content) {
-        try {
-            s3Client.putObject(
-                PutObjectRequest.builder().bucket(bucketName).key(key).build(),
-                software.amazon.awssdk.core.sync.RequestBody.fromString(content));
-            
-            return createToolResponse("text", "Object uploaded successfully");
-        } catch (Exception e) {
-            String errorMsg = "Failed to upload object '" + key + "' to bucket '" + bucketName + "'. Error: " + e.getMessage();
-            return createToolResponse("text", errorMsg);
+    private CompletableFuture<JsonNode> getObjectSuffix(String bucketName, String key, long suffixLength,
+                                                        JsonNode arguments) {
+        String byteRange = "bytes=-" + suffixLength;
+        String outputPath = optionalText(arguments, "output_path");
+        if (outputPath != null) {
+            return saveObject(bucketName, key, byteRange, null, Path.of(outputPath));
         }
+        if (suffixLength > MAX_CHUNK) {
+            throw new IllegalArgumentException("Suffix ranges are limited to " + MAX_CHUNK + " bytes; use offset and cursor");
+        }
+        return s3Client.getObject(GetObjectRequest.builder().bucket(bucketName).key(key).range(byteRange).build(),
+                AsyncResponseTransformer.toBytes())
+            .thenApply(object -> {
+                byte[] bytes = object.asByteArrayUnsafe();
+                GetObjectResponse response = object.response();
+                ObjectNode chunk = mapper.createObjectNode();
+                chunk.put("range", response.contentRange());
+                chunk.put("size", totalSize(response, bytes.length));
+                chunk.put("etag", response.eTag());
+                return withChunkInfo(createToolResponse("text", new String(bytes, StandardCharsets.UTF_8)), chunk);
+            });
     }
 
-    private JsonNode deleteObject(String bucketName, String key) {
-        try {
-            s3Client.deleteObject(
-                DeleteObjectRequest.builder().bucket(bucketName).key(key).build());
-            
-            return createToolResponse("text", "Object deleted successfully");
-        } catch (Exception e) {
-            String errorMsg = "Failed to delete object '" + key + "' from bucket '" + bucketName + "'. Error: " + e.getMessage();
-            return createToolResponse("text", errorMsg);
+    private CompletableFuture<JsonNode> saveObject(String bucketName, String key, String byteRange, String ifMatch,
+                                                   Path target) {
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        // The body streams from the connection to disk; a failed download removes the partial file
+        return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucketName).key(key).range(byteRange).ifMatch(ifMatch).build(),
+                AsyncResponseTransformer.toFile(partial, FileTransformerConfiguration.defaultCreateOrReplaceExisting()))
+            .thenApply(response -> {
+                try {
+                    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+                    return createToolResponse("text", "Object saved to " + target.toAbsolutePath()
+                        + " (" + Files.size(target) + " bytes)");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    private JsonNode withChunkInfo(JsonNode response, ObjectNode chunk) {
+        ((ArrayNode) response.get("content")).addObject()
+            .put("type", "text")
+            .put("text", chunk.toString());
+        return response;
+    }
+
+    private static long totalSize(GetObjectResponse response, long fallback) {
+        String contentRange = response.contentRange();
+        int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return fallback;
         }
+        return Long.parseLong(contentRange.substring(slash + 1));
     }
 
-    private ObjectNode createTool(String name, String description, ObjectNode... params) {
-        ObjectNode tool = mapper.createObjectNode();
-        tool.put("name", name);
-        tool.put("description", description);
-        
-        ObjectNode inputSchema = mapper.createObjectNode();
-        inputSchema.put("type", "object");
-        
-        ObjectNode properties = mapper.createObjectNode();
-        ArrayNode required = mapper.createArrayNode();
-        
-        for (ObjectNode param : params) {
-            String paramName = param.get("name").asText();
-            properties.set(paramName, param);
-            if (param.get("required").asBoolean()) {
-                required.add(paramName);
+    private static int utf8Boundary(byte[] bytes) {
+        for (int i = bytes.length - 1; i >= Math.max(0, bytes.length - 4); i--) {
+            int b = bytes[i] & 0xff;
+            if ((b & 0xc0) != 0x80) {
+                int sequence = b < 0x80 ? 1 : b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : b >= 0xc0 ? 2 : 1;
+                // A chunk shorter than one character still has to make progress
+                return i + sequence <= bytes.length || i == 0 ? bytes.length : i;
             }
         }
-        
-        inputSchema.set("properties", properties);
-        inputSchema.set("required", required);
-        tool.set("inputSchema", inputSchema);
-        
-        return tool;
+        return bytes.length;
+    }
+
+    private CompletableFuture<JsonNode> putObject(String bucketName, String key, String content) {
+        return attempt(() -> s3Client.putObject(
+                PutObjectRequest.builder().bucket(bucketName).key(key).build(),
+                AsyncRequestBody.fromString(content))
+            .thenApply(response -> {
+                cache.invalidate(bucketName, key);
+                return createToolResponse("text", "Object uploaded successfully");
+            }),
+            "Failed to upload object '" + key + "' to bucket '" + bucketName + "'.");
     }
 
-    private ObjectNode createParam(String name, String type, String description, boolean required) {
-        ObjectNode param = mapper.createObjectNode();
-        param.put("name", name);
-        param.put("type", type);
-        param.put("description", description);
-        param.put("required", required);
-        return param;
+    private CompletableFuture<JsonNode> uploadFile(String bucketName, String key, String path, long partSize,
+                                                   int concurrency, String uploadId) {
+        return attempt(() -> uploader.upload(bucketName, key, Path.of(path),
+                Math.max(partSize, MultipartUploader.MIN_PART_SIZE), concurrency, uploadId)
+            .thenApply(result -> {
+                cache.invalidate(bucketName, key);
+                if (!result.complete()) {
+                    return createToolResponse("text", "Upload of '" + key + "' incomplete: " + result.failedParts().size()
+                        + " of " + result.parts() + " parts failed " + result.failedParts() + ". Error: " + result.error()
+                        + "\nResume with upload_id: " + result.uploadId());
+                }
+                return createToolResponse("text", "File uploaded successfully (" + result.bytes() + " bytes in "
+                    + result.parts() + " part" + (result.parts() == 1 ? "" : "s") + ", ETag " + result.eTag() + ")");
+            }), "Failed to upload file '" + path + "' to bucket '" + bucketName + "'.");
+    }
+
+    private CompletableFuture<JsonNode> deleteObject(String bucketName, String key) {
+        return attempt(() -> s3Client.deleteObject(
+                DeleteObjectRequest.builder().bucket(bucketName).key(key).build())
+            .thenApply(response -> {
+                cache.invalidate(bucketName, key);
+                return createToolResponse("text", "Object deleted successfully");
+            }),
+            "Failed to delete object '" + key + "' from bucket '" + bucketName + "'.");
     }
 
-    private ObjectNode createSuccessResponse(JsonNode id, JsonNode result) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        if (id != null && !id.isNull()) {
-            response.set("id", id);
+    private CompletableFuture<JsonNode> deleteObjects(String bucketName, JsonNode keys, String prefix, int concurrency,
+                                                      JsonNode progressToken) {
+        return attempt(() -> {
+            CompletableFuture<BulkDeleter.Result> deletion;
+            if (keys != null && keys.isArray()) {
+                List<String> keyList = new ArrayList<>(keys.size());
+                keys.forEach(key -> keyList.add(key.asText()));
+                long total = keyList.size();
+                deletion = deleter.deleteKeys(bucketName, keyList, concurrency,
+                    deleted -> reportProgress(progressToken, deleted, total));
+            } else if (prefix != null) {
+                deletion = deleter.deletePrefix(bucketName, prefix, concurrency,
+                    deleted -> reportProgress(progressToken, deleted, null));
+            } else {
+                return CompletableFuture.completedFuture(
+                    createToolResponse("text", "Either keys or a non-empty prefix is required"));
+            }
+            
+            return deletion.thenApply(result -> {
+                cache.invalidateBucket(bucketName);
+                StringBuilder message = new StringBuilder("Deleted ").append(result.deleted()).append(" objects");
+                if (result.failed() > 0) {
+                    message.append(", ").append(result.failed()).append(" failed:");
+                    result.failures().forEach(failure -> message.append("\n- ").append(failure));
+                    if (result.failed() > result.failures().size()) {
+                        message.append("\n... and ").append(result.failed() - result.failures().size()).append(" more");
+                    }
+                }
+                return createToolResponse("text", message.toString());
+            });
+        }, "Failed to delete objects from bucket '" + bucketName + "'.");
+    }
+
+    private void reportProgress(JsonNode progressToken, long progress, Long total) {
+        if (progressToken == null || writer == null) {
+            return;
+        }
+        try {
+            writer.writeNotification("notifications/progress", createProgress(progressToken, progress, total));
+        } catch (IOException e) {
+            System.err.println("Failed to send progress: " + e.getMessage());
         }
-        response.set("result", result);
-        return response;
     }
 
-    private ObjectNode createErrorResponse(JsonNode id, int code, String message) {
-        ObjectNode response = mapper.createObjectNode();
-        response.put("jsonrpc", "2.0");
-        if (id != null && !id.isNull()) {
-            response.set("id", id);
-        } else {
-            response.putNull("id");
+    /**
+     * Runs a tool call and turns any failure, thrown or asynchronous, into the tool's error text.
+     */
+    private static CompletableFuture<JsonNode> attempt(Callable<CompletableFuture<JsonNode>> call, String failure) {
+        CompletableFuture<JsonNode> result;
+        try {
+            result = call.call();
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
         }
-        
-        ObjectNode error = mapper.createObjectNode();
-        error.put("code", code);
-        error.put("message", message);
-        response.set("error", error);
-        
-        return response;
+        return result.exceptionally(error ->
+            createToolResponse("text", failure + " Error: " + cause(error).getMessage()));
     }
 
-    private ObjectNode createToolResponse(String type, String content) {
-        ObjectNode response = mapper.createObjectNode();
-        ArrayNode contentArray = mapper.createArrayNode();
-        
-        ObjectNode contentObj = mapper.createObjectNode();
-        contentObj.put("type", type);
-        contentObj.put("text", content);
-        contentArray.add(contentObj);
-        
-        response.set("content", contentArray);
-        return response;
+    private static Throwable cause(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static String optionalText(JsonNode arguments, String name) {
+        JsonNode value = arguments.get(name);
+        return value == null || value.isNull() || value.asText().isEmpty() ? null : value.asText();
     }
-}
\ No newline at end of file
+}
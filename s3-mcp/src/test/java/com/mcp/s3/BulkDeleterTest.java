@@ -0,0 +1,124 @@
+package com.mcp.s3;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkDeleterTest {
+
+    @Test
+    void testDeletesPrefixPageByPage() throws Exception {
+        FakeS3 s3 = new FakeS3();
+        for (int i = 0; i < 2500; i++) {
+            s3.keys.add(String.format("logs/%05d", i));
+        }
+        s3.keys.add("other/keep");
+        AtomicLong progress = new AtomicLong();
+
+        BulkDeleter.Result result = new BulkDeleter(s3).deletePrefix("bucket", "logs/", 3,
+            deleted -> progress.accumulateAndGet(deleted, Math::max)).get();
+
+        assertEquals(2500, result.deleted());
+        assertEquals(0, result.failed());
+        assertEquals(2500, progress.get());
+        assertEquals(List.of("other/keep"), List.copyOf(s3.keys));
+        assertEquals(List.of(1000, 1000, 500), s3.batchSizes.stream().sorted((a, b) -> b - a).toList());
+    }
+
+    @Test
+    void testReportsKeysThatCouldNotBeDeleted() throws Exception {
+        FakeS3 s3 = new FakeS3();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            keys.add("k" + i);
+        }
+        s3.locked.add("k7");
+        s3.locked.add("k1200");
+
+        BulkDeleter.Result result = new BulkDeleter(s3).deleteKeys("bucket", keys, 2, deleted -> {}).get();
+
+        assertEquals(1498, result.deleted());
+        assertEquals(2, result.failed());
+        assertEquals(List.of("k1200: AccessDenied locked", "k7: AccessDenied locked"),
+            result.failures().stream().sorted().toList());
+    }
+
+    @Test
+    void testFailsTheWholeBatchWhenTheRequestFails() throws Exception {
+        FakeS3 s3 = new FakeS3();
+        s3.unavailable = true;
+
+        BulkDeleter.Result result = new BulkDeleter(s3).deleteKeys("bucket", List.of("a", "b"), 1, deleted -> {}).get();
+
+        assertEquals(0, result.deleted());
+        assertEquals(List.of("a: unavailable", "b: unavailable"), result.failures());
+    }
+
+    /**
+     * One bucket of {@code keys}; listing pages continue after the last key returned, as S3 does.
+     */
+    private static class FakeS3 implements S3AsyncClient {
+        final ConcurrentSkipListSet<String> keys = new ConcurrentSkipListSet<>();
+        final List<String> locked = new CopyOnWriteArrayList<>();
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        volatile boolean unavailable;
+
+        @Override
+        public CompletableFuture<ListObjectsV2Response> listObjectsV2(ListObjectsV2Request request) {
+            String after = request.continuationToken() == null ? request.prefix() : request.continuationToken();
+            List<S3Object> page = new ArrayList<>();
+            for (String key : keys.tailSet(after, false)) {
+                if (!key.startsWith(request.prefix()) || page.size() == request.maxKeys()) {
+                    break;
+                }
+                page.add(S3Object.builder().key(key).build());
+            }
+            String last = page.isEmpty() ? null : page.get(page.size() - 1).key();
+            String next = last != null && keys.higher(last) != null && keys.higher(last).startsWith(request.prefix())
+                ? last : null;
+            return CompletableFuture.completedFuture(
+                ListObjectsV2Response.builder().contents(page).nextContinuationToken(next).build());
+        }
+
+        @Override
+        public CompletableFuture<DeleteObjectsResponse> deleteObjects(DeleteObjectsRequest request) {
+            if (unavailable) {
+                return CompletableFuture.failedFuture(new IllegalStateException("unavailable"));
+            }
+            batchSizes.add(request.delete().objects().size());
+            List<S3Error> errors = new ArrayList<>();
+            for (ObjectIdentifier object : request.delete().objects()) {
+                if (locked.contains(object.key())) {
+                    errors.add(S3Error.builder().key(object.key()).code("AccessDenied").message("locked").build());
+                } else {
+                    keys.remove(object.key());
+                }
+            }
+            return CompletableFuture.completedFuture(DeleteObjectsResponse.builder().errors(errors).build());
+        }
+
+        @Override
+        public String serviceName() {
+            return "s3";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.mcp.s3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsResponse;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartUploaderTest {
+    private static final long PART_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSmallFileIsOnePut() throws Exception {
+        FakeS3 s3 = new FakeS3();
+        Path file = write(content(100));
+
+        MultipartUploader.Result result = new MultipartUploader(s3).upload("bucket", "key", file, PART_SIZE, 4, null)
+            .get();
+
+        assertTrue(result.complete());
+        assertNull(result.uploadId());
+        assertArrayEquals(content(100), s3.objects.get("key"));
+    }
+
+    @Test
+    void testUploadsPartsConcurrentlyAndCompletesInOrder() throws Exception {
+        FakeS3 s3 = new FakeS3();
+        Path file = write(content(4500));
+
+        MultipartUploader.Result result = new MultipartUploader(s3).upload("bucket", "key", file, PART_SIZE, 3, null)
+            .get();
+
+        assertTrue(result.complete());
+        assertEquals(5, result.parts());
+        assertArrayEquals(content(4500), s3.objects.get("key"));
+    }
+
+    @Test
+    void testResumeOnlySendsMissingOrChangedParts() throws Exception {
+        FakeS3 s3 = new FakeS3();
+        byte[] original = content(4500);
+        Path file = write(original);
+        s3.failing.add(3);
+
+        MultipartUploader.Result failed = new MultipartUploader(s3).upload("bucket", "key", file, PART_SIZE, 2, null)
+            .get();
+
+        assertFalse(failed.complete());
+        assertEquals(List.of(3), failed.failedParts());
+        // Retries are the client's job; the uploader doesn't resend on top of them
+        assertEquals(1, s3.sent.stream().filter(number -> number == 3).count());
+        assertNull(s3.objects.get("key"));
+
+        // The file changes inside part 2 before the upload is resumed
+        byte[] changed = original.clone();
+        changed[1500] ^= 1;
+        Files.write(file, changed);
+        s3.failing.clear();
+        s3.sent.clear();
+
+        MultipartUploader.Result resumed = new MultipartUploader(s3).upload("bucket", "key", file, PART_SIZE, 2,
+            failed.uploadId()).get();
+
+        assertTrue(resumed.complete());
+        assertEquals(List.of(2, 3), s3.sent.stream().sorted().toList());
+        assertArrayEquals(changed, s3.objects.get("key"));
+    }
+
+    private Path write(byte[] content) throws Exception {
+        Path file = directory.resolve("upload.bin");
+        Files.write(file, content);
+        return file;
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 7 + i / 256);
+        }
+        return content;
+    }
+
+    /**
+     * One multipart upload at a time, with ETags that are the MD5 of each part as S3 returns them. Part numbers
+     * in {@code failing} are rejected; listings come back two parts per page.
+     */
+    private static class FakeS3 implements S3AsyncClient {
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        final Map<Integer, byte[]> parts = new ConcurrentSkipListMap<>();
+        final Set<Integer> failing = ConcurrentHashMap.newKeySet();
+        final List<Integer> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody body) {
+            return read(body).thenApply(bytes -> {
+                objects.put(request.key(), bytes);
+                return PutObjectResponse.builder().eTag(eTag(bytes)).build();
+            });
+        }
+
+        @Override
+        public CompletableFuture<CreateMultipartUploadResponse> createMultipartUpload(
+            CreateMultipartUploadRequest request) {
+            parts.clear();
+            return CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("u1").build());
+        }
+
+        @Override
+        public CompletableFuture<UploadPartResponse> uploadPart(UploadPartRequest request, AsyncRequestBody body) {
+            sent.add(request.partNumber());
+            if (failing.contains(request.partNumber())) {
+                return CompletableFuture.failedFuture(new IllegalStateException("part " + request.partNumber()));
+            }
+            return read(body).thenApply(bytes -> {
+                assertEquals(request.contentLength(), bytes.length);
+                parts.put(request.partNumber(), bytes);
+                return UploadPartResponse.builder().eTag(eTag(bytes)).build();
+            });
+        }
+
+        @Override
+        public CompletableFuture<ListPartsResponse> listParts(ListPartsRequest request) {
+            int after = request.partNumberMarker() == null ? 0 : request.partNumberMarker();
+            List<Part> page = new ArrayList<>();
+            for (Map.Entry<Integer, byte[]> part : parts.entrySet()) {
+                if (part.getKey() > after && page.size() < 2) {
+                    page.add(Part.builder().partNumber(part.getKey()).size((long) part.getValue().length)
+                        .eTag(eTag(part.getValue())).build());
+                }
+            }
+            int last = page.isEmpty() ? after : page.get(page.size() - 1).partNumber();
+            boolean truncated = parts.keySet().stream().anyMatch(number -> number > last);
+            return CompletableFuture.completedFuture(ListPartsResponse.builder().parts(page)
+                .isTruncated(truncated).nextPartNumberMarker(last).build());
+        }
+
+        @Override
+        public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(
+            CompleteMultipartUploadRequest request) {
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            int expected = 1;
+            for (CompletedPart part : request.multipartUpload().parts()) {
+                assertEquals(expected++, part.partNumber());
+                assertEquals(eTag(parts.get(part.partNumber())), part.eTag());
+                object.writeBytes(parts.get(part.partNumber()));
+            }
+            objects.put(request.key(), object.toByteArray());
+            return CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().eTag("\"done\"").build());
+        }
+
+        @Override
+        public String serviceName() {
+            return "s3";
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private static String eTag(byte[] bytes) {
+            try {
+                return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(bytes)) + "\"";
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static CompletableFuture<byte[]> read(AsyncRequestBody body) {
+            CompletableFuture<byte[]> result = new CompletableFuture<>();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            body.subscribe(new Subscriber<ByteBuffer>() {
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(ByteBuffer buffer) {
+                    byte[] chunk = new byte[buffer.remaining()];
+                    buffer.get(chunk);
+                    bytes.writeBytes(chunk);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    result.completeExceptionally(error);
+                }
+
+                @Override
+                public void onComplete() {
+                    result.complete(bytes.toByteArray());
+                }
+            });
+            return result;
+        }
+    }
+}
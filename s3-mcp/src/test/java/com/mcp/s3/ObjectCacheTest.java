@@ -0,0 +1,232 @@
+package com.mcp.s3;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObjectCacheTest {
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testMemoryTierIsLruBoundedByBytes() {
+        ObjectCache cache = new ObjectCache(new FakeS3(), 3 * 1024, 1024, 0, 0, directory, 60_000, 0);
+        cache.put("bucket", "a", ETAG, content(1024));
+        cache.put("bucket", "b", ETAG, content(1024));
+        cache.put("bucket", "c", ETAG, content(1024));
+        assertNotNull(cache.lookup("bucket", "a"));
+        cache.put("bucket", "d", ETAG, content(1024));
+        // Too big for the heap tier
+        cache.put("bucket", "e", ETAG, content(1025));
+
+        assertNull(cache.lookup("bucket", "b"));
+        assertNull(cache.lookup("bucket", "e"));
+        ObjectCache.Entry entry = cache.lookup("bucket", "a");
+        assertTrue(entry.fresh());
+        assertEquals(ETAG, entry.eTag());
+        assertEquals(content(1024)[100], entry.data().get(100));
+
+        cache.invalidateBucket("bucket");
+        assertNull(cache.lookup("bucket", "a"));
+        assertEquals(0, stats(cache).get("memory").get("bytes").asLong());
+    }
+
+    @Test
+    void testRevalidationKeepsOrDropsTheEntry() {
+        ObjectCache cache = new ObjectCache(new FakeS3(), 1024 * 1024, 1024, 0, 0, directory, 0, 0);
+        cache.put("bucket", "key", ETAG, content(10));
+
+        assertFalse(cache.lookup("bucket", "key").fresh());
+        cache.notModified("bucket", "key", ETAG);
+        assertNotNull(cache.lookup("bucket", "key"));
+        cache.changed("bucket", "key");
+        assertNull(cache.lookup("bucket", "key"));
+
+        ObjectNode stats = stats(cache);
+        assertEquals(2, stats.get("revalidations").asLong());
+        assertEquals(1, stats.get("notModified").asLong());
+    }
+
+    @Test
+    void testFillsSmallObjectsOnTheHeapAndLargerOnesOnDisk() throws Exception {
+        FakeS3 s3 = new FakeS3();
+        s3.objects.put("small", content(512));
+        s3.objects.put("large", content(64 * 1024));
+        ObjectCache cache = new ObjectCache(s3, 1024 * 1024, 1024, 1024 * 1024, 1024 * 1024, directory, 60_000, 0);
+
+        cache.fill("bucket", "small", ETAG, 512);
+        cache.fill("bucket", "large", ETAG, 64 * 1024);
+
+        assertArrayEquals(content(512), bytes(await(cache, "small")));
+        assertArrayEquals(content(64 * 1024), bytes(await(cache, "large")));
+        assertEquals(1, countFiles());
+        ObjectNode stats = stats(cache);
+        assertEquals(512, stats.get("memory").get("bytes").asLong());
+        assertEquals(64 * 1024, stats.get("disk").get("bytes").asLong());
+
+        // Already cached at this version
+        cache.fill("bucket", "large", ETAG, 64 * 1024);
+        assertEquals(2, s3.gets.size());
+        cache.invalidate("bucket", "large");
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testFillSkipsObjectsOverThePrefetchLimit() {
+        FakeS3 s3 = new FakeS3();
+        s3.objects.put("key", content(8 * 1024));
+        ObjectCache cache = new ObjectCache(s3, 1024 * 1024, 1024, 1024 * 1024, 4 * 1024, directory, 60_000, 0);
+
+        cache.fill("bucket", "key", ETAG, 8 * 1024);
+
+        assertTrue(s3.gets.isEmpty());
+        assertNull(cache.lookup("bucket", "key"));
+    }
+
+    @Test
+    void testFillIsPinnedToTheETag() throws Exception {
+        FakeS3 s3 = new FakeS3();
+        s3.objects.put("key", content(512));
+        ObjectCache cache = new ObjectCache(s3, 1024 * 1024, 1024, 0, 1024 * 1024, directory, 60_000, 0);
+
+        cache.fill("bucket", "key", "\"v0\"", 512);
+
+        assertEquals("\"v0\"", s3.gets.get(0).ifMatch());
+        assertNull(cache.lookup("bucket", "key"));
+        // The failed fill doesn't block the next one
+        cache.fill("bucket", "key", ETAG, 512);
+        assertNotNull(await(cache, "key"));
+    }
+
+    @Test
+    void testServersSharingTheDirectoryKeepTheirOwnFiles() throws Exception {
+        Path orphan = Files.createDirectories(directory.resolve("process-1"));
+        Files.writeString(orphan.resolve("old.obj"), "left by a process that exited");
+        Files.setLastModifiedTime(orphan, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+        Path starting = Files.createDirectories(directory.resolve("process-2"));
+        FakeS3 s3 = new FakeS3();
+        s3.objects.put("large", content(8 * 1024));
+
+        ObjectCache first = new ObjectCache(s3, 1024, 1024, 1024 * 1024, 1024 * 1024, directory, 60_000, 0);
+        first.fill("bucket", "large", ETAG, 8 * 1024);
+        await(first, "large");
+        assertFalse(Files.exists(orphan));
+        // Too young to tell from a process that has not locked it yet
+        assertTrue(Files.exists(starting));
+
+        try (Stream<Path> dirs = Files.list(directory)) {
+            for (Path dir : dirs.toList()) {
+                Files.setLastModifiedTime(dir, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+            }
+        }
+        ObjectCache second = new ObjectCache(s3, 1024, 1024, 1024 * 1024, 1024 * 1024, directory, 60_000, 0);
+        second.fill("bucket", "large", ETAG, 8 * 1024);
+        await(second, "large");
+
+        // The first cache's directory is still locked, so its file survives the second one starting
+        assertEquals(2, countFiles());
+        assertFalse(Files.exists(starting));
+        assertArrayEquals(content(8 * 1024), bytes(first.lookup("bucket", "large")));
+    }
+
+    @Test
+    void testListingsExpireAndAreDroppedWithTheirBucket() throws Exception {
+        ObjectCache cache = new ObjectCache(new FakeS3(), 0, 0, 0, 0, directory, 0, 50);
+        cache.putListing("bucket", "bucket|a", "{}");
+        cache.putListing("other", "other|a", "{}");
+
+        assertEquals("{}", cache.listing("bucket|a"));
+        cache.invalidate("bucket", "x");
+        assertNull(cache.listing("bucket|a"));
+        assertEquals("{}", cache.listing("other|a"));
+        Thread.sleep(80);
+        assertNull(cache.listing("other|a"));
+    }
+
+    private ObjectCache.Entry await(ObjectCache cache, String key) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        ObjectCache.Entry entry = cache.lookup("bucket", key);
+        while (entry == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            entry = cache.lookup("bucket", key);
+        }
+        assertNotNull(entry, key + " was not cached");
+        return entry;
+    }
+
+    private long countFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> file.toString().endsWith(".obj")).count();
+        }
+    }
+
+    private static ObjectNode stats(ObjectCache cache) {
+        return cache.stats(new ObjectMapper());
+    }
+
+    private static byte[] bytes(ObjectCache.Entry entry) {
+        byte[] bytes = new byte[entry.data().remaining()];
+        entry.data().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31 + size);
+        }
+        return content;
+    }
+
+    /**
+     * Serves {@code objects} at version {@link #ETAG}, honouring If-Match.
+     */
+    private static class FakeS3 implements S3AsyncClient {
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        final List<GetObjectRequest> gets = new CopyOnWriteArrayList<>();
+
+        @Override
+        public <T> CompletableFuture<T> getObject(GetObjectRequest request,
+                                                  AsyncResponseTransformer<GetObjectResponse, T> transformer) {
+            gets.add(request);
+            if (request.ifMatch() != null && !request.ifMatch().equals(ETAG)) {
+                return CompletableFuture.failedFuture(S3Exception.builder().statusCode(412).build());
+            }
+            byte[] content = objects.get(request.key());
+            CompletableFuture<T> result = transformer.prepare();
+            transformer.onResponse(GetObjectResponse.builder().eTag(ETAG).contentLength((long) content.length).build());
+            transformer.onStream(AsyncRequestBody.fromBytes(content));
+            return result;
+        }
+
+        @Override
+        public String serviceName() {
+            return "s3";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}